@@ -0,0 +1,295 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.core.filebuffers.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.core.runtime.Status;
+
+import org.eclipse.core.internal.filebuffers.AbstractFileBuffer;
+import org.eclipse.core.internal.filebuffers.FileStoreTextFileBuffer;
+import org.eclipse.core.internal.filebuffers.TextFileBufferManager;
+
+import org.eclipse.core.filebuffers.IFileBuffer;
+import org.eclipse.core.filebuffers.ITextFileBuffer;
+import org.eclipse.core.filebuffers.LocationKind;
+
+/**
+ * Tests connecting several locations at once with
+ * {@link TextFileBufferManager#connect(IPath[], LocationKind, IProgressMonitor)}, and
+ * connection hooks of file buffers that call back into the manager.
+ *
+ * @since 3.11
+ */
+public class ConnectMultipleTest {
+
+	private static final int FILE_COUNT= 16;
+
+	/**
+	 * File buffer recording its creation, which fails or cancels for the configured locations.
+	 */
+	private class TestFileBuffer extends FileStoreTextFileBuffer {
+
+		TestFileBuffer(TextFileBufferManager manager) {
+			super(manager);
+		}
+
+		@Override
+		public void create(IPath location, IProgressMonitor monitor) throws CoreException {
+			fCreatingThreads.add(Thread.currentThread());
+			if (location.equals(fFailingLocation))
+				throw new CoreException(new Status(IStatus.ERROR, "org.eclipse.core.filebuffers.tests", "creation failed"));
+			if (location.equals(fCancelingLocation))
+				fMonitor.setCanceled(true);
+			super.create(location, monitor);
+			fCreated.add(this);
+			try {
+				// give the other threads the chance to take part
+				Thread.sleep(20);
+			} catch (InterruptedException x) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		@Override
+		protected void connected() {
+			super.connected();
+			if (getLocation().equals(fHookedLocation)) {
+				fRegisteredInHook.add(fManager.getFileBuffer(getLocation(), LocationKind.LOCATION));
+				try {
+					fManager.connect(fCompanionLocation, LocationKind.LOCATION, null);
+				} catch (CoreException x) {
+					throw new IllegalStateException(x);
+				}
+			}
+		}
+
+		@Override
+		protected void disconnected() {
+			if (getLocation().equals(fHookedLocation)) {
+				fRegisteredInHook.add(fManager.getFileBuffer(getLocation(), LocationKind.LOCATION));
+				try {
+					fManager.disconnect(fCompanionLocation, LocationKind.LOCATION, null);
+				} catch (CoreException x) {
+					throw new IllegalStateException(x);
+				}
+			}
+			super.disconnected();
+		}
+
+		@Override
+		protected void dispose() {
+			fDisposed.add(this);
+			super.dispose();
+		}
+	}
+
+	/**
+	 * Manager creating test file buffers.
+	 */
+	private class TestManager extends TextFileBufferManager {
+		@Override
+		protected AbstractFileBuffer createTextFileBuffer(IPath location, LocationKind locationKind) {
+			return new TestFileBuffer(this);
+		}
+	}
+
+	private final Set<Thread> fCreatingThreads= Collections.synchronizedSet(new HashSet<Thread>());
+
+	private final List<TestFileBuffer> fCreated= Collections.synchronizedList(new ArrayList<TestFileBuffer>());
+
+	private final List<TestFileBuffer> fDisposed= Collections.synchronizedList(new ArrayList<TestFileBuffer>());
+
+	private IProgressMonitor fMonitor;
+
+	private volatile IPath fFailingLocation;
+
+	private volatile IPath fCancelingLocation;
+
+	private volatile IPath fHookedLocation;
+
+	private volatile IPath fCompanionLocation;
+
+	private final List<IFileBuffer> fRegisteredInHook= Collections.synchronizedList(new ArrayList<IFileBuffer>());
+
+	private TestManager fManager;
+
+	private File fFolder;
+
+	private IPath[] fLocations;
+
+
+	@Before
+	public void setUp() throws Exception {
+		fMonitor= new NullProgressMonitor();
+		fManager= new TestManager();
+		fFolder= FileTool.createTempFileInPlugin(FileBuffersTestPlugin.getDefault(), new Path("externalResources/ConnectMultipleTest"));
+		fFolder.mkdirs();
+		fLocations= new IPath[FILE_COUNT];
+		for (int i= 0; i < FILE_COUNT; i++) {
+			File file= new File(fFolder, "File" + i);
+			OutputStream out= new FileOutputStream(file);
+			try {
+				out.write(getContent(i).getBytes(StandardCharsets.US_ASCII));
+			} finally {
+				out.close();
+			}
+			fLocations[i]= new Path(file.getAbsolutePath());
+		}
+	}
+
+	@After
+	public void tearDown() {
+		for (int i= 0; i < FILE_COUNT; i++)
+			FileTool.delete(fLocations[i].toFile());
+		FileTool.delete(fFolder);
+	}
+
+	private static String getContent(int i) {
+		return "content of file " + i;
+	}
+
+	private void assertNotConnected(IPath location) {
+		assertNull(location.toString(), fManager.getTextFileBuffer(location, LocationKind.LOCATION));
+	}
+
+	private void assertCreatedBuffersDisposed() {
+		for (int i= 0; i < fCreated.size(); i++)
+			assertTrue(fDisposed.contains(fCreated.get(i)));
+	}
+
+	@Test
+	public void testConnectParallel() throws Exception {
+		IPath[] locations= new IPath[FILE_COUNT + 1];
+		System.arraycopy(fLocations, 0, locations, 0, FILE_COUNT);
+		locations[FILE_COUNT]= fLocations[0];
+
+		fManager.connect(locations, LocationKind.LOCATION, fMonitor);
+		try {
+			assertEquals(FILE_COUNT, fCreated.size());
+			assertTrue(fDisposed.isEmpty());
+			if (Runtime.getRuntime().availableProcessors() > 1)
+				assertTrue(fCreatingThreads.size() > 1);
+
+			for (int i= 0; i < FILE_COUNT; i++) {
+				ITextFileBuffer buffer= fManager.getTextFileBuffer(fLocations[i], LocationKind.LOCATION);
+				assertNotNull(buffer);
+				assertEquals(getContent(i), buffer.getDocument().get());
+			}
+			assertTrue(fManager.getTextFileBuffer(fLocations[0], LocationKind.LOCATION).isShared());
+
+		} finally {
+			fManager.disconnect(fLocations[0], LocationKind.LOCATION, null);
+			for (int i= 0; i < FILE_COUNT; i++)
+				fManager.disconnect(fLocations[i], LocationKind.LOCATION, null);
+		}
+
+		for (int i= 0; i < FILE_COUNT; i++)
+			assertNotConnected(fLocations[i]);
+		assertEquals(0, fManager.getFileBuffers().length);
+	}
+
+	@Test
+	public void testConnectRollback() throws Exception {
+		fManager.connect(fLocations[0], LocationKind.LOCATION, null);
+		ITextFileBuffer existing= fManager.getTextFileBuffer(fLocations[0], LocationKind.LOCATION);
+		fCreated.clear();
+
+		fFailingLocation= fLocations[FILE_COUNT / 2];
+		try {
+			fManager.connect(fLocations, LocationKind.LOCATION, fMonitor);
+			fail();
+		} catch (CoreException x) {
+			assertEquals("creation failed", x.getStatus().getMessage());
+		}
+
+		// the existing connection is kept, all others are rolled back
+		assertSame(existing, fManager.getTextFileBuffer(fLocations[0], LocationKind.LOCATION));
+		assertFalse(existing.isShared());
+		for (int i= 1; i < FILE_COUNT; i++)
+			assertNotConnected(fLocations[i]);
+		assertCreatedBuffersDisposed();
+
+		fManager.disconnect(fLocations[0], LocationKind.LOCATION, null);
+		assertNotConnected(fLocations[0]);
+		assertEquals(0, fManager.getFileBuffers().length);
+	}
+
+	@Test
+	public void testConnectCanceled() throws Exception {
+		fCancelingLocation= fLocations[FILE_COUNT / 2];
+		try {
+			fManager.connect(fLocations, LocationKind.LOCATION, fMonitor);
+			fail();
+		} catch (OperationCanceledException x) {
+			// expected
+		}
+
+		for (int i= 0; i < FILE_COUNT; i++)
+			assertNotConnected(fLocations[i]);
+		assertCreatedBuffersDisposed();
+		assertEquals(0, fManager.getFileBuffers().length);
+	}
+
+	@Test
+	public void testHooksCallingManager() throws Exception {
+		fHookedLocation= fLocations[0];
+		fCompanionLocation= fLocations[1];
+
+		// the hooks run outside of the registry, before registering and after unregistering
+		fManager.connect(fLocations[0], LocationKind.LOCATION, null);
+		assertNotNull(fManager.getTextFileBuffer(fLocations[1], LocationKind.LOCATION));
+		fManager.connect(fLocations[0], LocationKind.LOCATION, null);
+		fManager.disconnect(fLocations[0], LocationKind.LOCATION, null);
+		assertNotNull(fManager.getTextFileBuffer(fLocations[1], LocationKind.LOCATION));
+		fManager.disconnect(fLocations[0], LocationKind.LOCATION, null);
+		assertNotConnected(fLocations[0]);
+		assertNotConnected(fLocations[1]);
+		assertEquals(Arrays.asList(null, null), fRegisteredInHook);
+
+		fRegisteredInHook.clear();
+		fManager.connect(new IPath[] { fLocations[0], fLocations[2] }, LocationKind.LOCATION, fMonitor);
+		assertNotNull(fManager.getTextFileBuffer(fLocations[1], LocationKind.LOCATION));
+		fManager.disconnect(fLocations[0], LocationKind.LOCATION, null);
+		fManager.disconnect(fLocations[2], LocationKind.LOCATION, null);
+		assertEquals(Arrays.asList(null, null), fRegisteredInHook);
+
+		assertEquals(0, fManager.getFileBuffers().length);
+	}
+}
@@ -0,0 +1,159 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.core.filebuffers.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.eclipse.core.filesystem.EFS;
+import org.eclipse.core.filesystem.IFileInfo;
+import org.eclipse.core.filesystem.IFileStore;
+
+import org.eclipse.core.runtime.Path;
+import org.eclipse.core.runtime.content.IContentDescription;
+
+import org.eclipse.core.filebuffers.FileBuffers;
+import org.eclipse.core.filebuffers.ITextFileBuffer;
+import org.eclipse.core.filebuffers.ITextFileBufferManager;
+
+import org.eclipse.core.internal.filebuffers.ContentDescriptionCache;
+import org.eclipse.core.internal.filebuffers.ContentDescriptionCache.ContentInfo;
+import org.eclipse.core.internal.filebuffers.FileBuffersPlugin;
+
+/**
+ * Tests that file store based file buffers share the content descriptions of file
+ * stores through the content description cache.
+ *
+ * @since 3.11
+ */
+public class ContentDescriptionCacheTest {
+
+	private ContentDescriptionCache fCache;
+
+	private ITextFileBufferManager fManager;
+
+	private File fFolder;
+
+	private File fFile;
+
+	private IFileStore fFileStore;
+
+
+	@Before
+	public void setUp() throws Exception {
+		fCache= FileBuffersPlugin.getDefault().getContentDescriptionCache();
+		fCache.clear();
+		fManager= FileBuffers.getTextFileBufferManager();
+		fFolder= FileTool.createTempFileInPlugin(FileBuffersTestPlugin.getDefault(), new Path("externalResources/ContentDescriptionCacheTest"));
+		fFolder.mkdirs();
+		fFile= new File(fFolder, "file.txt");
+		fFileStore= EFS.getLocalFileSystem().fromLocalFile(fFile);
+	}
+
+	@After
+	public void tearDown() {
+		FileTool.delete(fFile);
+		FileTool.delete(fFolder);
+		fCache.clear();
+	}
+
+	private void write(String content, boolean withBOM) throws Exception {
+		OutputStream stream= new FileOutputStream(fFile);
+		try {
+			if (withBOM)
+				stream.write(IContentDescription.BOM_UTF_8);
+			stream.write(content.getBytes(StandardCharsets.UTF_8));
+		} finally {
+			stream.close();
+		}
+	}
+
+	private String read() throws Exception {
+		fManager.connectFileStore(fFileStore, null);
+		try {
+			ITextFileBuffer buffer= fManager.getFileStoreTextFileBuffer(fFileStore);
+			assertNotNull(buffer);
+			assertNotNull(buffer.getContentType());
+			return buffer.getDocument().get();
+		} finally {
+			fManager.disconnectFileStore(fFileStore, null);
+		}
+	}
+
+	@Test
+	public void testDescriptionCached() throws Exception {
+		write("abc", true);
+		assertNull(fCache.get(fFileStore, fFileStore.fetchInfo()));
+
+		assertEquals("abc", read());
+
+		ContentInfo info= fCache.get(fFileStore, fFileStore.fetchInfo());
+		assertNotNull(info);
+		assertTrue(info.hasByteOrderMark());
+		assertNotNull(info.getContentType());
+
+		// a cached description is used as long as the file store has not changed
+		assertEquals("abc", read());
+		assertEquals(info, fCache.get(fFileStore, fFileStore.fetchInfo()));
+	}
+
+	@Test
+	public void testChangedLengthWithinSameModificationTime() throws Exception {
+		write("abc", true);
+		assertEquals("abc", read());
+		long lastModified= fFileStore.fetchInfo().getLastModified();
+		assertNotNull(fCache.get(fFileStore, fFileStore.fetchInfo()));
+
+		// a file system with a coarse time resolution cannot tell this change apart
+		write("abcdef", false);
+		IFileInfo fileInfo= EFS.createFileInfo();
+		fileInfo.setLastModified(lastModified);
+		fFileStore.putInfo(fileInfo, EFS.SET_LAST_MODIFIED, null);
+		assertEquals(lastModified, fFileStore.fetchInfo().getLastModified());
+		assertNull(fCache.get(fFileStore, fFileStore.fetchInfo()));
+
+		// the stale byte order mark must not cut off the content
+		assertEquals("abcdef", read());
+		ContentInfo info= fCache.get(fFileStore, fFileStore.fetchInfo());
+		assertNotNull(info);
+		assertFalse(info.hasByteOrderMark());
+	}
+
+	@Test
+	public void testMissingFileStoreNotCached() throws Exception {
+		IFileInfo fileInfo= fFileStore.fetchInfo();
+		assertFalse(fileInfo.exists());
+		fCache.put(fFileStore, fileInfo, null);
+		assertNull(fCache.get(fFileStore, fileInfo));
+	}
+
+	@Test
+	public void testClear() throws Exception {
+		write("abc", false);
+		assertEquals("abc", read());
+		assertNotNull(fCache.get(fFileStore, fFileStore.fetchInfo()));
+
+		fCache.clear();
+		assertNull(fCache.get(fFileStore, fFileStore.fetchInfo()));
+	}
+}
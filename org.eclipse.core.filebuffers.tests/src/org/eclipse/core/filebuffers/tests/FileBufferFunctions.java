@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2015 IBM Corporation and others.
+ * Copyright (c) 2000, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -14,6 +14,7 @@ package org.eclipse.core.filebuffers.tests;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
@@ -1285,4 +1286,60 @@ public abstract class FileBufferFunctions {
 		}
 	}
 
+	@Test
+	public void testConnectMultiple() throws Exception {
+		fManager.connect(new IPath[] { fPath, fPath }, LocationKind.NORMALIZE, null);
+		ITextFileBuffer buffer= fManager.getTextFileBuffer(fPath, LocationKind.NORMALIZE);
+		assertNotNull(buffer);
+		assertTrue(buffer.isShared());
+		fManager.disconnect(fPath, LocationKind.NORMALIZE, null);
+		assertSame(buffer, fManager.getTextFileBuffer(fPath, LocationKind.NORMALIZE));
+		fManager.disconnect(fPath, LocationKind.NORMALIZE, null);
+		assertNull(fManager.getTextFileBuffer(fPath, LocationKind.NORMALIZE));
+	}
+
+	/*
+	 * Tests that concurrent connects, disconnects and lookups keep the file buffer
+	 * registered exactly as long as it is connected.
+	 */
+	@Test
+	public void testConcurrentConnect() throws Exception {
+		final int threadCount= 8;
+		final int iterations= 200;
+		final Throwable[] failures= new Throwable[threadCount];
+		Thread[] threads= new Thread[threadCount];
+		for (int i= 0; i < threadCount; i++) {
+			final int index= i;
+			threads[i]= new Thread() {
+				@Override
+				public void run() {
+					try {
+						for (int j= 0; j < iterations; j++) {
+							fManager.connect(fPath, LocationKind.NORMALIZE, null);
+							try {
+								ITextFileBuffer buffer= fManager.getTextFileBuffer(fPath, LocationKind.NORMALIZE);
+								assertNotNull(buffer);
+								assertSame(buffer, fManager.getTextFileBuffer(buffer.getDocument()));
+							} finally {
+								fManager.disconnect(fPath, LocationKind.NORMALIZE, null);
+							}
+						}
+					} catch (Throwable x) {
+						failures[index]= x;
+					}
+				}
+			};
+			threads[i].start();
+		}
+		for (int i= 0; i < threadCount; i++)
+			threads[i].join();
+
+		for (int i= 0; i < threadCount; i++) {
+			if (failures[i] != null)
+				throw new AssertionError(failures[i]);
+		}
+		assertNull(fManager.getTextFileBuffer(fPath, LocationKind.NORMALIZE));
+		assertEquals(0, fManager.getFileBuffers().length);
+	}
+
 }
@@ -36,7 +36,13 @@ import org.junit.runners.Suite.SuiteClasses;
 		FileStoreFileBuffersForNonExistingExternalFiles.class,
 		FileStoreFileBuffersForNonExistingWorkspaceFiles.class,
 		TextFileManagerDocCreationTests.class,
-		ResourceTextFileManagerDocCreationTests.class
+		ResourceTextFileManagerDocCreationTests.class,
+		ContentDescriptionCacheTest.class,
+		TextFileBufferEncodingTest.class,
+		ConnectMultipleTest.class,
+		SynchronizableDocumentTest.class,
+		GenericFileBufferOperationRunnerTest.class,
+		TextFileBufferOperationsTest.class
 })
 public class FileBuffersTestSuite {
 	// see @SuiteClasses
@@ -0,0 +1,278 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.core.filebuffers.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.core.runtime.Status;
+
+import org.eclipse.core.filebuffers.FileBuffers;
+import org.eclipse.core.filebuffers.IFileBuffer;
+import org.eclipse.core.filebuffers.ITextFileBuffer;
+import org.eclipse.core.filebuffers.manipulation.GenericFileBufferOperationRunner;
+import org.eclipse.core.filebuffers.manipulation.MultiTextEditWithProgress;
+import org.eclipse.core.filebuffers.manipulation.RemoveTrailingWhitespaceOperation;
+import org.eclipse.core.filebuffers.manipulation.TextFileBufferOperation;
+
+import org.eclipse.text.edits.ReplaceEdit;
+
+import org.eclipse.jface.text.DocumentRewriteSessionType;
+import org.eclipse.jface.text.IDocument;
+
+/**
+ * Tests the concurrent computation of text edits by the
+ * {@link GenericFileBufferOperationRunner}.
+ *
+ * @since 3.11
+ */
+public class GenericFileBufferOperationRunnerTest {
+
+	private static final int FILE_COUNT= 16;
+
+	/**
+	 * Operation converting the content to upper case, which fails, cancels or modifies the
+	 * document for the configured locations.
+	 */
+	private class UpperCaseOperation extends TextFileBufferOperation {
+
+		UpperCaseOperation() {
+			super("upper case");
+		}
+
+		@Override
+		protected boolean isConcurrentComputationSupported() {
+			return true;
+		}
+
+		@Override
+		protected DocumentRewriteSessionType getDocumentRewriteSessionType() {
+			return DocumentRewriteSessionType.SEQUENTIAL;
+		}
+
+		@Override
+		protected MultiTextEditWithProgress computeTextEdit(ITextFileBuffer textFileBuffer, IProgressMonitor progressMonitor) throws CoreException, OperationCanceledException {
+			IPath location= textFileBuffer.getLocation();
+			synchronized (fComputations) {
+				Integer computations= fComputations.get(location);
+				fComputations.put(location, Integer.valueOf(computations == null ? 1 : computations.intValue() + 1));
+			}
+			if (location.equals(fFailingLocation))
+				throw new CoreException(new Status(IStatus.ERROR, "org.eclipse.core.filebuffers.tests", "computation failed"));
+			if (location.equals(fCancelingLocation))
+				fMonitor.setCanceled(true);
+			try {
+				// give the other computations the chance to see the failure or cancellation
+				Thread.sleep(20);
+			} catch (InterruptedException x) {
+				Thread.currentThread().interrupt();
+			}
+			if (progressMonitor.isCanceled())
+				throw new OperationCanceledException();
+
+			IDocument document= textFileBuffer.getDocument();
+			String content= document.get();
+			MultiTextEditWithProgress edit= new MultiTextEditWithProgress(getOperationName());
+			edit.addChild(new ReplaceEdit(0, content.length(), content.toUpperCase()));
+			if (location.equals(fChangingLocation)) {
+				fChangingLocation= null;
+				document.set("changed " + content);
+			}
+			return edit;
+		}
+	}
+
+	/**
+	 * Monitor recording the threads that check it for cancellation.
+	 */
+	private static class TestMonitor extends NullProgressMonitor {
+
+		final Set<Thread> fCheckingThreads= Collections.synchronizedSet(new HashSet<Thread>());
+
+		@Override
+		public boolean isCanceled() {
+			fCheckingThreads.add(Thread.currentThread());
+			return super.isCanceled();
+		}
+	}
+
+	private final Map<IPath, Integer> fComputations= new HashMap<>();
+
+	private TestMonitor fMonitor;
+
+	private volatile IPath fFailingLocation;
+
+	private volatile IPath fCancelingLocation;
+
+	private volatile IPath fChangingLocation;
+
+	private GenericFileBufferOperationRunner fRunner;
+
+	private File fFolder;
+
+	private IPath[] fLocations;
+
+
+	@Before
+	public void setUp() throws Exception {
+		fMonitor= new TestMonitor();
+		fRunner= new GenericFileBufferOperationRunner(FileBuffers.getTextFileBufferManager(), null);
+		fFolder= FileTool.createTempFileInPlugin(FileBuffersTestPlugin.getDefault(), new Path("externalResources/GenericFileBufferOperationRunnerTest"));
+		fFolder.mkdirs();
+		fLocations= new IPath[FILE_COUNT];
+		for (int i= 0; i < FILE_COUNT; i++) {
+			File file= new File(fFolder, "File" + i);
+			FileTool.write(file.getAbsolutePath(), new StringBuffer(getContent(i)));
+			fLocations[i]= new Path(file.getAbsolutePath());
+		}
+	}
+
+	@After
+	public void tearDown() {
+		for (int i= 0; i < FILE_COUNT; i++)
+			FileTool.delete(fLocations[i].toFile());
+		FileTool.delete(fFolder);
+	}
+
+	private static String getContent(int i) {
+		return "content of file " + i;
+	}
+
+	private static String read(IPath location) throws Exception {
+		return FileTool.read(location.toOSString()).toString();
+	}
+
+	private int getComputations(IPath location) {
+		synchronized (fComputations) {
+			Integer computations= fComputations.get(location);
+			return computations == null ? 0 : computations.intValue();
+		}
+	}
+
+	private void assertUnchanged() throws Exception {
+		for (int i= 0; i < FILE_COUNT; i++)
+			assertEquals(getContent(i), read(fLocations[i]));
+		assertEquals(0, FileBuffers.getTextFileBufferManager().getFileBuffers().length);
+	}
+
+	private void assertOnlyCheckedByCaller() {
+		assertEquals(Collections.singleton(Thread.currentThread()), fMonitor.fCheckingThreads);
+	}
+
+	@Test
+	public void testExecute() throws Exception {
+		fRunner.execute(fLocations, new UpperCaseOperation(), fMonitor);
+
+		for (int i= 0; i < FILE_COUNT; i++) {
+			assertEquals(getContent(i).toUpperCase(), read(fLocations[i]));
+			assertEquals(1, getComputations(fLocations[i]));
+		}
+		assertOnlyCheckedByCaller();
+	}
+
+	@Test
+	public void testFailure() throws Exception {
+		fFailingLocation= fLocations[FILE_COUNT - 1];
+		try {
+			fRunner.execute(fLocations, new UpperCaseOperation(), fMonitor);
+			fail();
+		} catch (CoreException x) {
+			// not masked by the computations canceled because of the failure
+			assertEquals("computation failed", x.getStatus().getMessage());
+		}
+
+		assertUnchanged();
+		assertOnlyCheckedByCaller();
+	}
+
+	@Test
+	public void testCanceled() throws Exception {
+		fCancelingLocation= fLocations[FILE_COUNT / 2];
+		try {
+			fRunner.execute(fLocations, new UpperCaseOperation(), fMonitor);
+			fail();
+		} catch (OperationCanceledException x) {
+			// expected
+		}
+
+		assertUnchanged();
+		assertOnlyCheckedByCaller();
+	}
+
+	@Test
+	public void testOverriddenRun() throws Exception {
+		final Set<IPath> runLocations= Collections.synchronizedSet(new HashSet<IPath>());
+		UpperCaseOperation operation= new UpperCaseOperation() {
+			@Override
+			public void run(IFileBuffer fileBuffer, IProgressMonitor progressMonitor) throws CoreException, OperationCanceledException {
+				runLocations.add(fileBuffer.getLocation());
+				super.run(fileBuffer, progressMonitor);
+			}
+		};
+		fRunner.execute(fLocations, operation, fMonitor);
+
+		for (int i= 0; i < FILE_COUNT; i++) {
+			assertTrue(runLocations.contains(fLocations[i]));
+			assertEquals(getContent(i).toUpperCase(), read(fLocations[i]));
+		}
+	}
+
+	@Test
+	public void testSubclassComputesSequentially() throws Exception {
+		final Set<Thread> computingThreads= Collections.synchronizedSet(new HashSet<Thread>());
+		RemoveTrailingWhitespaceOperation operation= new RemoveTrailingWhitespaceOperation() {
+			@Override
+			protected MultiTextEditWithProgress computeTextEdit(ITextFileBuffer fileBuffer, IProgressMonitor progressMonitor) throws CoreException {
+				computingThreads.add(Thread.currentThread());
+				return super.computeTextEdit(fileBuffer, progressMonitor);
+			}
+		};
+		fRunner.execute(fLocations, operation, fMonitor);
+
+		assertEquals(Collections.singleton(Thread.currentThread()), computingThreads);
+	}
+
+	@Test
+	public void testRecomputeAfterChange() throws Exception {
+		IPath changingLocation= fLocations[FILE_COUNT / 2];
+		fChangingLocation= changingLocation;
+		fRunner.execute(fLocations, new UpperCaseOperation(), fMonitor);
+
+		// the text edit is computed again for the changed document
+		assertEquals(2, getComputations(changingLocation));
+		assertEquals(("changed " + getContent(FILE_COUNT / 2)).toUpperCase(), read(changingLocation));
+		for (int i= 0; i < FILE_COUNT; i++) {
+			if (!fLocations[i].equals(changingLocation)) {
+				assertEquals(getContent(i).toUpperCase(), read(fLocations[i]));
+				assertEquals(1, getComputations(fLocations[i]));
+			}
+		}
+	}
+}
@@ -0,0 +1,251 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.core.filebuffers.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import org.eclipse.core.internal.filebuffers.SynchronizableDocument;
+
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.DocumentRewriteSession;
+import org.eclipse.jface.text.DocumentRewriteSessionType;
+import org.eclipse.jface.text.GapTextStore;
+import org.eclipse.jface.text.ITextStore;
+
+/**
+ * Tests the locking of {@link SynchronizableDocument}.
+ *
+ * @since 3.11
+ */
+public class SynchronizableDocumentTest {
+
+	private static final long TIMEOUT= 10000;
+
+	/**
+	 * Text store whose read accesses can be held until they are released.
+	 */
+	private static class BlockingTextStore implements ITextStore {
+
+		private final ITextStore fStore= new GapTextStore();
+
+		volatile CountDownLatch fEntered;
+
+		volatile CountDownLatch fReleased;
+
+		volatile Runnable fNestedRead;
+
+		@Override
+		public char get(int offset) {
+			return fStore.get(offset);
+		}
+
+		@Override
+		public String get(int offset, int length) {
+			CountDownLatch entered= fEntered;
+			if (entered != null) {
+				entered.countDown();
+				try {
+					fReleased.await(TIMEOUT, TimeUnit.MILLISECONDS);
+				} catch (InterruptedException x) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			Runnable nestedRead= fNestedRead;
+			if (nestedRead != null) {
+				fNestedRead= null;
+				nestedRead.run();
+			}
+			return fStore.get(offset, length);
+		}
+
+		@Override
+		public int getLength() {
+			return fStore.getLength();
+		}
+
+		@Override
+		public void replace(int offset, int length, String text) {
+			fStore.replace(offset, length, text);
+		}
+
+		@Override
+		public void set(String text) {
+			fStore.set(text);
+		}
+	}
+
+	/**
+	 * Document using a blocking text store.
+	 */
+	private static class TestDocument extends SynchronizableDocument {
+
+		final BlockingTextStore fStore= new BlockingTextStore();
+
+		TestDocument(boolean readWriteLocking) {
+			super(readWriteLocking);
+			setTextStore(fStore);
+			setLockObject(new Object());
+		}
+	}
+
+	/**
+	 * Thread running a document access and recording its failure.
+	 */
+	private static abstract class AccessThread extends Thread {
+
+		volatile Throwable fFailure;
+
+		@Override
+		public void run() {
+			try {
+				access();
+			} catch (Throwable x) {
+				fFailure= x;
+			}
+		}
+
+		abstract void access() throws Exception;
+
+		void finish() throws InterruptedException {
+			join(TIMEOUT);
+			assertFalse("access blocked", isAlive());
+			assertNull(fFailure);
+		}
+	}
+
+	private static AccessThread startReader(final TestDocument document, final String[] result) {
+		AccessThread reader= new AccessThread() {
+			@Override
+			void access() {
+				result[0]= document.get();
+			}
+		};
+		reader.start();
+		return reader;
+	}
+
+	@Test
+	public void testConcurrentReaders() throws Exception {
+		final TestDocument document= new TestDocument(true);
+		assertTrue(document.isReadWriteLocking());
+		document.set("content");
+
+		document.fStore.fEntered= new CountDownLatch(2);
+		document.fStore.fReleased= new CountDownLatch(1);
+		String[] first= new String[1];
+		String[] second= new String[1];
+		AccessThread firstReader= startReader(document, first);
+		AccessThread secondReader= startReader(document, second);
+		try {
+			// both readers are inside the document at the same time
+			assertTrue(document.fStore.fEntered.await(TIMEOUT, TimeUnit.MILLISECONDS));
+
+			// a modification waits for the readers
+			AccessThread writer= new AccessThread() {
+				@Override
+				void access() throws BadLocationException {
+					document.replace(0, 0, "new ");
+				}
+			};
+			writer.start();
+			writer.join(200);
+			assertTrue(writer.isAlive());
+
+			document.fStore.fEntered= null;
+			document.fStore.fReleased.countDown();
+			writer.finish();
+		} finally {
+			document.fStore.fReleased.countDown();
+			firstReader.finish();
+			secondReader.finish();
+		}
+
+		assertEquals("content", first[0]);
+		assertEquals("content", second[0]);
+		assertEquals("new content", document.get());
+	}
+
+	@Test
+	public void testExclusiveReaders() throws Exception {
+		TestDocument document= new TestDocument(false);
+		assertFalse(document.isReadWriteLocking());
+		document.set("content");
+
+		document.fStore.fEntered= new CountDownLatch(2);
+		document.fStore.fReleased= new CountDownLatch(1);
+		String[] first= new String[1];
+		String[] second= new String[1];
+		AccessThread firstReader= startReader(document, first);
+		AccessThread secondReader= startReader(document, second);
+		try {
+			// only one reader is inside the document
+			assertFalse(document.fStore.fEntered.await(200, TimeUnit.MILLISECONDS));
+			assertEquals(1, document.fStore.fEntered.getCount());
+		} finally {
+			document.fStore.fEntered= null;
+			document.fStore.fReleased.countDown();
+			firstReader.finish();
+			secondReader.finish();
+		}
+
+		assertEquals("content", first[0]);
+		assertEquals("content", second[0]);
+	}
+
+	@Test
+	public void testReadDuringSequentialRewrite() throws Exception {
+		final TestDocument document= new TestDocument(true);
+		document.set("line 1\nline 2\nline 3\n");
+
+		final DocumentRewriteSession session= document.startRewriteSession(DocumentRewriteSessionType.SEQUENTIAL);
+		AccessThread rewriter= new AccessThread() {
+			@Override
+			void access() throws BadLocationException {
+				// reads of the rewriting thread, including a nested one, do not block
+				final char[] nested= new char[1];
+				document.fStore.fNestedRead= new Runnable() {
+					@Override
+					public void run() {
+						try {
+							nested[0]= document.getChar(0);
+						} catch (BadLocationException x) {
+							throw new IllegalStateException(x);
+						}
+					}
+				};
+				document.replace(document.getLineOffset(1), 4, "LINE");
+				assertEquals("line 1\nLINE 2\nline 3\n", document.get());
+				assertEquals('l', nested[0]);
+				assertEquals(14, document.getLineOffset(2));
+				document.replace(document.getLineOffset(2), 4, "LINE");
+				assertEquals("line 1\nLINE 2\nLINE 3\n", document.getSnapshot().get());
+			}
+		};
+		rewriter.start();
+		rewriter.finish();
+
+		// another thread reads during the session as well
+		String[] result= new String[1];
+		startReader(document, result).finish();
+		assertEquals("line 1\nLINE 2\nLINE 3\n", result[0]);
+
+		document.stopRewriteSession(session);
+		assertEquals("line 1\nLINE 2\nLINE 3\n", document.get());
+	}
+}
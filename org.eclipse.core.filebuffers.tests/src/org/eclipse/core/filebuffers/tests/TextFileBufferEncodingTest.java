@@ -0,0 +1,285 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.core.filebuffers.tests;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.eclipse.core.filesystem.EFS;
+import org.eclipse.core.filesystem.IFileStore;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.core.runtime.content.IContentDescription;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IProject;
+
+import org.eclipse.core.filebuffers.FileBuffers;
+import org.eclipse.core.filebuffers.IFileBufferStatusCodes;
+import org.eclipse.core.filebuffers.ITextFileBuffer;
+import org.eclipse.core.filebuffers.ITextFileBufferManager;
+import org.eclipse.core.filebuffers.LocationKind;
+
+import org.eclipse.jface.text.IDocument;
+
+/**
+ * Tests how text file buffers decode their content when it is loaded and encode it when
+ * it is saved. Each test runs for a workspace file and for an external file, i.e. for both
+ * kinds of text file buffers.
+ *
+ * @since 3.11
+ */
+public class TextFileBufferEncodingTest {
+
+	/** The number of characters the file buffers encode at once. */
+	private static final int CHUNK_SIZE= 8192;
+
+	/** The number of bytes the file buffers decode at once. */
+	private static final int DECODER_CHUNK_SIZE= 64 * 1024;
+
+	private ITextFileBufferManager fManager;
+
+	private File fExternalFile;
+
+	private IPath[] fLocations;
+
+
+	@Before
+	public void setUp() throws Exception {
+		fManager= FileBuffers.getTextFileBufferManager();
+		IProject project= ResourceHelper.createProject("project");
+		IFile file= ResourceHelper.createFile(project, "WorkspaceFile", "");
+		fExternalFile= FileTool.createTempFileInPlugin(FileBuffersTestPlugin.getDefault(), new Path("externalResources/ExternalFile"));
+		fExternalFile.getParentFile().mkdirs();
+		fExternalFile.createNewFile();
+		fLocations= new IPath[] { file.getFullPath(), new Path(fExternalFile.getAbsolutePath()) };
+	}
+
+	@After
+	public void tearDown() {
+		FileTool.delete(fExternalFile);
+		ResourceHelper.deleteProject("project");
+	}
+
+	private static void setContents(IPath location, byte[] contents) throws Exception {
+		IFile file= FileBuffers.getWorkspaceFileAtLocation(location);
+		if (file != null) {
+			file.setContents(new ByteArrayInputStream(contents), true, false, null);
+			return;
+		}
+		OutputStream out= FileBuffers.getFileStoreAtLocation(location).openOutputStream(EFS.NONE, null);
+		try {
+			out.write(contents);
+		} finally {
+			out.close();
+		}
+	}
+
+	private static byte[] getContents(IPath location) throws Exception {
+		IFileStore fileStore= FileBuffers.getFileStoreAtLocation(location);
+		ByteArrayOutputStream out= new ByteArrayOutputStream();
+		InputStream in= fileStore.openInputStream(EFS.NONE, null);
+		try {
+			FileTool.transferData(in, out);
+		} finally {
+			in.close();
+		}
+		return out.toByteArray();
+	}
+
+	private static byte[] concat(byte[] first, byte[] second) {
+		byte[] result= new byte[first.length + second.length];
+		System.arraycopy(first, 0, result, 0, first.length);
+		System.arraycopy(second, 0, result, first.length, second.length);
+		return result;
+	}
+
+	/**
+	 * Saves the given content to the given location.
+	 *
+	 * @param location the location
+	 * @param encoding the encoding to set, or <code>null</code> to keep the buffer's encoding
+	 * @param content the content to save
+	 * @throws Exception if saving fails
+	 */
+	private void save(IPath location, String encoding, String content) throws Exception {
+		fManager.connect(location, LocationKind.NORMALIZE, null);
+		try {
+			ITextFileBuffer buffer= fManager.getTextFileBuffer(location, LocationKind.NORMALIZE);
+			if (encoding != null)
+				buffer.setEncoding(encoding);
+			buffer.getDocument().set(content);
+			buffer.commit(null, true);
+		} finally {
+			fManager.disconnect(location, LocationKind.NORMALIZE, null);
+		}
+	}
+
+	/**
+	 * Loads the content of the given location.
+	 *
+	 * @param location the location
+	 * @param encoding the encoding to set, or <code>null</code> to keep the detected encoding
+	 * @return the content of the buffer's document
+	 * @throws Exception if loading fails
+	 */
+	private String load(IPath location, String encoding) throws Exception {
+		fManager.connect(location, LocationKind.NORMALIZE, null);
+		try {
+			ITextFileBuffer buffer= fManager.getTextFileBuffer(location, LocationKind.NORMALIZE);
+			if (encoding != null) {
+				buffer.setEncoding(encoding);
+				buffer.revert(null);
+			}
+			return buffer.getDocument().get();
+		} finally {
+			fManager.disconnect(location, LocationKind.NORMALIZE, null);
+		}
+	}
+
+	/**
+	 * Returns a text whose UTF-8 encoding splits the given multibyte character
+	 * at each of the first chunk boundaries of the decoder.
+	 *
+	 * @param c the multibyte character, possibly a surrogate pair
+	 * @return the text
+	 */
+	private static String createDecoderChunkBoundaryText(String c) {
+		StringBuilder text= new StringBuilder();
+		for (int chunk= 1; chunk <= 3; chunk++) {
+			int bytes= text.toString().getBytes(StandardCharsets.UTF_8).length;
+			for (int i= bytes; i < chunk * DECODER_CHUNK_SIZE - 1; i++)
+				text.append((char) ('a' + i % 26));
+			text.append(c);
+			text.append("\n");
+		}
+		text.append("end");
+		return text.toString();
+	}
+
+	/**
+	 * Returns a text which places the given character followed by a line delimiter or a
+	 * surrogate pair and the character again around each of the first chunk boundaries.
+	 *
+	 * @param c the character to place around the chunk boundaries
+	 * @param surrogates <code>true</code> to include surrogate pairs
+	 * @return the text
+	 */
+	private static String createChunkBoundaryText(char c, boolean surrogates) {
+		StringBuilder text= new StringBuilder();
+		for (int chunk= 1; chunk <= 3; chunk++) {
+			while (text.length() < chunk * CHUNK_SIZE - 2)
+				text.append((char) ('a' + text.length() % 26));
+			text.append(c);
+			if (surrogates)
+				text.append("\ud83d\ude00"); // crosses the boundary
+			else
+				text.append("\r\n"); // crosses the boundary
+			text.append(c);
+		}
+		text.append("end");
+		return text.toString();
+	}
+
+	@Test
+	public void testLoadWithBOM() throws Exception {
+		byte[] bom= IContentDescription.BOM_UTF_8;
+		for (IPath location : fLocations) {
+			setContents(location, concat(bom, "\u00e4bc".getBytes(StandardCharsets.UTF_8)));
+			assertEquals(location.toString(), "\u00e4bc", load(location, null));
+
+			// the decoder's chunks start after the BOM and still split the characters
+			String content= createDecoderChunkBoundaryText("\u20ac");
+			setContents(location, concat(bom, content.getBytes(StandardCharsets.UTF_8)));
+			assertEquals(location.toString(), content, load(location, null));
+		}
+	}
+
+	@Test
+	public void testLoadChunkBoundaries() throws Exception {
+		String[] characters= { "\u00e4", "\u20ac", "\ud83d\ude00" };
+		for (IPath location : fLocations) {
+			for (int i= 0; i < characters.length; i++) {
+				String content= createDecoderChunkBoundaryText(characters[i]);
+				setContents(location, content.getBytes(StandardCharsets.UTF_8));
+				assertEquals(location.toString(), content, load(location, "UTF-8"));
+			}
+		}
+	}
+
+	@Test
+	public void testSaveWithBOM() throws Exception {
+		byte[] bom= IContentDescription.BOM_UTF_8;
+		for (IPath location : fLocations) {
+			setContents(location, concat(bom, "abc".getBytes(StandardCharsets.UTF_8)));
+
+			fManager.connect(location, LocationKind.NORMALIZE, null);
+			try {
+				ITextFileBuffer buffer= fManager.getTextFileBuffer(location, LocationKind.NORMALIZE);
+				IDocument document= buffer.getDocument();
+				assertEquals("abc", document.get());
+				document.replace(0, 1, "\u00e4");
+				buffer.commit(null, true);
+			} finally {
+				fManager.disconnect(location, LocationKind.NORMALIZE, null);
+			}
+
+			assertArrayEquals(location.toString(), concat(bom, "\u00e4bc".getBytes(StandardCharsets.UTF_8)), getContents(location));
+		}
+	}
+
+	@Test
+	public void testSaveUnmappableCharacter() throws Exception {
+		for (IPath location : fLocations) {
+			byte[] original= "abc".getBytes(StandardCharsets.ISO_8859_1);
+			setContents(location, original);
+			try {
+				save(location, "ISO-8859-1", createChunkBoundaryText('\u00e4', false) + "\u20ac");
+				fail(location.toString());
+			} catch (CoreException x) {
+				assertEquals(location.toString(), IFileBufferStatusCodes.CHARSET_MAPPING_FAILED, x.getStatus().getCode());
+			}
+			// the file is not touched
+			assertArrayEquals(location.toString(), original, getContents(location));
+		}
+	}
+
+	@Test
+	public void testSaveChunkBoundaries() throws Exception {
+		for (IPath location : fLocations) {
+			String content= createChunkBoundaryText('\u00e4', true);
+			save(location, "UTF-8", content);
+			assertArrayEquals(location.toString(), content.getBytes(StandardCharsets.UTF_8), getContents(location));
+
+			content= createChunkBoundaryText('\u00e4', false);
+			save(location, "ISO-8859-1", content);
+			assertArrayEquals(location.toString(), content.getBytes(StandardCharsets.ISO_8859_1), getContents(location));
+
+			content= createChunkBoundaryText('\u00e4', true);
+			save(location, "UTF-16LE", content);
+			assertArrayEquals(location.toString(), content.getBytes(StandardCharsets.UTF_16LE), getContents(location));
+		}
+	}
+}
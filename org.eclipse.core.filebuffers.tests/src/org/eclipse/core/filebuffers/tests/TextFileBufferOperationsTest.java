@@ -0,0 +1,438 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.core.filebuffers.tests;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.Path;
+
+import org.eclipse.core.internal.filebuffers.SynchronizableDocument;
+import org.eclipse.core.internal.filebuffers.TextFileBufferManager;
+
+import org.eclipse.core.filebuffers.ITextFileBuffer;
+import org.eclipse.core.filebuffers.LocationKind;
+import org.eclipse.core.filebuffers.manipulation.ConvertLineDelimitersOperation;
+import org.eclipse.core.filebuffers.manipulation.MultiTextEditWithProgress;
+import org.eclipse.core.filebuffers.manipulation.RemoveTrailingWhitespaceOperation;
+
+import org.eclipse.text.edits.DeleteEdit;
+import org.eclipse.text.edits.MultiTextEdit;
+import org.eclipse.text.edits.ReplaceEdit;
+import org.eclipse.text.edits.TextEdit;
+
+import org.eclipse.jface.text.ConfigurableLineTracker;
+import org.eclipse.jface.text.DefaultLineTracker;
+import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IRegion;
+import org.eclipse.jface.text.Position;
+import org.eclipse.jface.text.source.Annotation;
+import org.eclipse.jface.text.source.AnnotationModel;
+
+/**
+ * Compares the text edits of {@link ConvertLineDelimitersOperation} and
+ * {@link RemoveTrailingWhitespaceOperation} with edits computed line by line on
+ * randomized content.
+ *
+ * @since 3.11
+ */
+public class TextFileBufferOperationsTest {
+
+	private static final int ITERATIONS= 200;
+
+	private static final String[] NON_DEFAULT_DELIMITERS= { "\r", "\n", "\r\n", "\u2028" };
+
+	private static final String[] NEWLINE_DELIMITERS= { "\n" };
+
+	/**
+	 * Manager whose documents use the configured legal line delimiters.
+	 */
+	private class TestManager extends TextFileBufferManager {
+		@Override
+		protected IDocument createSynchronizableDocument() {
+			return new SynchronizableDocument() {
+				{
+					if (fLegalLineDelimiters != null)
+						setLineTracker(new ConfigurableLineTracker(fLegalLineDelimiters));
+				}
+			};
+		}
+	}
+
+	/**
+	 * Operation giving access to the computed text edit.
+	 */
+	private static class TestConvertLineDelimitersOperation extends ConvertLineDelimitersOperation {
+		TestConvertLineDelimitersOperation(String lineDelimiter) {
+			super(lineDelimiter);
+		}
+
+		MultiTextEditWithProgress compute(ITextFileBuffer fileBuffer) throws CoreException {
+			return computeTextEdit(fileBuffer, null);
+		}
+	}
+
+	/**
+	 * Operation giving access to the computed text edit.
+	 */
+	private static class TestRemoveTrailingWhitespaceOperation extends RemoveTrailingWhitespaceOperation {
+		MultiTextEditWithProgress compute(ITextFileBuffer fileBuffer) throws CoreException {
+			return computeTextEdit(fileBuffer, null);
+		}
+	}
+
+	private String[] fLegalLineDelimiters;
+
+	private TestManager fManager;
+
+	private File fFile;
+
+	private IPath fLocation;
+
+	private Random fRandom;
+
+
+	@Before
+	public void setUp() throws Exception {
+		fManager= new TestManager();
+		fFile= FileTool.createTempFileInPlugin(FileBuffersTestPlugin.getDefault(), new Path("externalResources/TextFileBufferOperationsTest"));
+		fFile.getParentFile().mkdirs();
+		fFile.createNewFile();
+		fLocation= new Path(fFile.getAbsolutePath());
+		fRandom= new Random(1);
+	}
+
+	@After
+	public void tearDown() {
+		FileTool.delete(fFile);
+	}
+
+	private ITextFileBuffer connect(String[] legalLineDelimiters) throws CoreException {
+		fLegalLineDelimiters= legalLineDelimiters;
+		fManager.connect(fLocation, LocationKind.LOCATION, null);
+		return fManager.getTextFileBuffer(fLocation, LocationKind.LOCATION);
+	}
+
+	private void disconnect() throws CoreException {
+		fManager.disconnect(fLocation, LocationKind.LOCATION, null);
+	}
+
+	private String createContent(String[] delimiters) {
+		StringBuilder content= new StringBuilder();
+		int length= fRandom.nextInt(60);
+		while (content.length() < length) {
+			switch (fRandom.nextInt(6)) {
+				case 0:
+					content.append(delimiters[fRandom.nextInt(delimiters.length)]);
+					break;
+				case 1:
+					// the default delimiters, even if they are not legal
+					content.append("\r\n".charAt(fRandom.nextInt(2)));
+					break;
+				case 2:
+					content.append(' ');
+					break;
+				case 3:
+					content.append('\t');
+					break;
+				default:
+					content.append((char) ('a' + fRandom.nextInt(3)));
+			}
+		}
+		return content.toString();
+	}
+
+	private static IDocument createDocument(final String[] legalLineDelimiters, String content) {
+		Document document= new Document() {
+			{
+				if (legalLineDelimiters != null)
+					setLineTracker(new ConfigurableLineTracker(legalLineDelimiters));
+			}
+		};
+		document.set(content);
+		return document;
+	}
+
+	private void addPositions(IDocument document, IDocument expected) throws Exception {
+		int count= fRandom.nextInt(3) == 0 ? 0 : fRandom.nextInt(5) + 1;
+		for (int i= 0; i < count; i++) {
+			int offset= fRandom.nextInt(document.getLength() + 1);
+			int length= fRandom.nextInt(document.getLength() - offset + 1);
+			document.addPosition(new Position(offset, length));
+			expected.addPosition(new Position(offset, length));
+		}
+	}
+
+	private static void removePositions(IDocument document) throws Exception {
+		Position[] positions= document.getPositions(IDocument.DEFAULT_CATEGORY);
+		for (int i= 0; i < positions.length; i++)
+			document.removePosition(positions[i]);
+	}
+
+	/**
+	 * Applies the given edit the way text file buffer operations do.
+	 *
+	 * @param document the document
+	 * @param edit the edit, may be <code>null</code>
+	 * @throws Exception if applying fails
+	 */
+	private static void apply(IDocument document, MultiTextEditWithProgress edit) throws Exception {
+		if (edit != null)
+			edit.apply(document, TextEdit.NONE, new NullProgressMonitor());
+	}
+
+	private static void apply(IDocument document, MultiTextEdit edit) throws Exception {
+		if (edit.hasChildren())
+			edit.apply(document, TextEdit.NONE);
+	}
+
+	private static void assertEqualDocuments(String message, IDocument expected, IDocument actual) throws Exception {
+		assertEquals(message, expected.get(), actual.get());
+		Position[] expectedPositions= expected.getPositions(IDocument.DEFAULT_CATEGORY);
+		Position[] actualPositions= actual.getPositions(IDocument.DEFAULT_CATEGORY);
+		assertArrayEquals(message, expectedPositions, actualPositions);
+	}
+
+	/**
+	 * Computes the line delimiter conversion line by line, with one edit per line.
+	 *
+	 * @param document the document
+	 * @param lineDelimiter the target line delimiter
+	 * @return the edit
+	 * @throws Exception if the computation fails
+	 */
+	private static MultiTextEdit convertLineDelimitersByLines(IDocument document, String lineDelimiter) throws Exception {
+		MultiTextEdit edit= new MultiTextEdit();
+		for (int i= 0; i < document.getNumberOfLines(); i++) {
+			String delimiter= document.getLineDelimiter(i);
+			if (delimiter != null && delimiter.length() > 0 && !delimiter.equals(lineDelimiter)) {
+				IRegion region= document.getLineInformation(i);
+				edit.addChild(new ReplaceEdit(region.getOffset() + region.getLength(), delimiter.length(), lineDelimiter));
+			}
+		}
+		return edit;
+	}
+
+	/**
+	 * Computes the removal of trailing whitespace line by line, with one edit per line.
+	 *
+	 * @param document the document
+	 * @return the edit
+	 * @throws Exception if the computation fails
+	 */
+	private static MultiTextEdit removeTrailingWhitespaceByLines(IDocument document) throws Exception {
+		MultiTextEdit edit= new MultiTextEdit();
+		for (int i= 0; i < document.getNumberOfLines(); i++) {
+			IRegion region= document.getLineInformation(i);
+			int lineStart= region.getOffset();
+			int lineExclusiveEnd= lineStart + region.getLength();
+			int j= lineExclusiveEnd - 1;
+			while (j >= lineStart && Character.isWhitespace(document.getChar(j)))
+				--j;
+			++j;
+			if (j < lineExclusiveEnd)
+				edit.addChild(new DeleteEdit(j, lineExclusiveEnd - j));
+		}
+		return edit;
+	}
+
+	private void checkConvertLineDelimiters(String[] legalLineDelimiters) throws Exception {
+		String[] delimiters= legalLineDelimiters != null ? legalLineDelimiters : DefaultLineTracker.DELIMITERS;
+		ITextFileBuffer fileBuffer= connect(legalLineDelimiters);
+		try {
+			IDocument document= fileBuffer.getDocument();
+			for (int i= 0; i < ITERATIONS; i++) {
+				String content= createContent(delimiters);
+				String lineDelimiter= delimiters[fRandom.nextInt(delimiters.length)];
+				String message= "'" + content + "' to '" + lineDelimiter + "'";
+				document.set(content);
+				IDocument expected= createDocument(legalLineDelimiters, content);
+				addPositions(document, expected);
+
+				apply(expected, convertLineDelimitersByLines(expected, lineDelimiter));
+				if (i % 2 == 0)
+					apply(document, new TestConvertLineDelimitersOperation(lineDelimiter).compute(fileBuffer));
+				else
+					new ConvertLineDelimitersOperation(lineDelimiter).run(fileBuffer, null);
+				assertEqualDocuments(message, expected, document);
+
+				removePositions(document);
+			}
+		} finally {
+			disconnect();
+		}
+	}
+
+	private void checkRemoveTrailingWhitespace(String[] legalLineDelimiters) throws Exception {
+		String[] delimiters= legalLineDelimiters != null ? legalLineDelimiters : DefaultLineTracker.DELIMITERS;
+		ITextFileBuffer fileBuffer= connect(legalLineDelimiters);
+		try {
+			IDocument document= fileBuffer.getDocument();
+			for (int i= 0; i < ITERATIONS; i++) {
+				String content= createContent(delimiters);
+				String message= "'" + content + "'";
+				document.set(content);
+				IDocument expected= createDocument(legalLineDelimiters, content);
+				addPositions(document, expected);
+
+				apply(expected, removeTrailingWhitespaceByLines(expected));
+				if (i % 2 == 0)
+					apply(document, new TestRemoveTrailingWhitespaceOperation().compute(fileBuffer));
+				else
+					new RemoveTrailingWhitespaceOperation().run(fileBuffer, null);
+				assertEqualDocuments(message, expected, document);
+
+				removePositions(document);
+			}
+		} finally {
+			disconnect();
+		}
+	}
+
+	@Test
+	public void testConvertLineDelimiters() throws Exception {
+		checkConvertLineDelimiters(null);
+	}
+
+	@Test
+	public void testConvertNonDefaultLineDelimiters() throws Exception {
+		checkConvertLineDelimiters(NON_DEFAULT_DELIMITERS);
+		checkConvertLineDelimiters(NEWLINE_DELIMITERS);
+	}
+
+	@Test
+	public void testRemoveTrailingWhitespace() throws Exception {
+		checkRemoveTrailingWhitespace(null);
+	}
+
+	@Test
+	public void testRemoveTrailingWhitespaceNonDefaultLineDelimiters() throws Exception {
+		checkRemoveTrailingWhitespace(NON_DEFAULT_DELIMITERS);
+		checkRemoveTrailingWhitespace(NEWLINE_DELIMITERS);
+	}
+
+	@Test
+	public void testNoChange() throws Exception {
+		ITextFileBuffer fileBuffer= connect(null);
+		try {
+			fileBuffer.getDocument().set("a\nb\nc");
+			assertNull(new TestConvertLineDelimitersOperation("\n").compute(fileBuffer));
+			assertNull(new TestRemoveTrailingWhitespaceOperation().compute(fileBuffer));
+		} finally {
+			disconnect();
+		}
+	}
+
+	@Test
+	public void testPositionsAddedAfterComputation() throws Exception {
+		String content= "a \r\nb\t\rc  \nd ";
+		ITextFileBuffer fileBuffer= connect(null);
+		try {
+			IDocument document= fileBuffer.getDocument();
+			document.set(content);
+			MultiTextEditWithProgress convertEdit= new TestConvertLineDelimitersOperation("\n").compute(fileBuffer);
+			MultiTextEditWithProgress removeEdit= new TestRemoveTrailingWhitespaceOperation().compute(fileBuffer);
+
+			// the positions are updated exactly although they did not exist when the edit was computed
+			IDocument expected= createDocument(null, content);
+			document.addPosition(new Position(1, 3));
+			expected.addPosition(new Position(1, 3));
+			document.addPosition(new Position(9, 2));
+			expected.addPosition(new Position(9, 2));
+			apply(expected, convertLineDelimitersByLines(expected, "\n"));
+			apply(document, convertEdit);
+			assertEqualDocuments(content, expected, document);
+
+			removePositions(document);
+			removePositions(expected);
+			document.set(content);
+			expected.set(content);
+			document.addPosition(new Position(1, 3));
+			expected.addPosition(new Position(1, 3));
+			apply(expected, removeTrailingWhitespaceByLines(expected));
+			apply(document, removeEdit);
+			assertEqualDocuments(content, expected, document);
+		} finally {
+			disconnect();
+		}
+	}
+
+	@Test
+	public void testComputedEditHasChildren() throws Exception {
+		String content= "a \r\nb\nc\t\r";
+		ITextFileBuffer fileBuffer= connect(null);
+		try {
+			IDocument document= fileBuffer.getDocument();
+			document.set(content);
+			MultiTextEditWithProgress edit= new TestConvertLineDelimitersOperation("\n").compute(fileBuffer);
+			assertEquals(2, edit.getChildrenSize());
+			assertEquals(2, edit.getRegion().getOffset());
+			assertEquals(7, edit.getRegion().getLength());
+			edit.apply(document);
+			assertEquals("a \nb\nc\t\n", document.get());
+
+			document.set(content);
+			edit= new TestRemoveTrailingWhitespaceOperation().compute(fileBuffer);
+			assertEquals(2, edit.getChildrenSize());
+			assertEquals(1, edit.getRegion().getOffset());
+			assertEquals(7, edit.getRegion().getLength());
+			edit.apply(document);
+			assertEquals("a\r\nb\nc\r", document.get());
+		} finally {
+			disconnect();
+		}
+	}
+
+	@Test
+	public void testAnnotationsBetweenChangesSurvive() throws Exception {
+		ITextFileBuffer fileBuffer= connect(null);
+		try {
+			IDocument document= fileBuffer.getDocument();
+			AnnotationModel model= new AnnotationModel();
+			model.connect(document);
+			try {
+				document.set("a\r\nbb\r\nc");
+				Annotation annotation= new Annotation(false);
+				model.addAnnotation(annotation, new Position(3, 2));
+				new ConvertLineDelimitersOperation("\n").run(fileBuffer, null);
+				assertEquals("a\nbb\nc", document.get());
+				assertFalse(model.getPosition(annotation).isDeleted());
+				assertEquals(new Position(2, 2), model.getPosition(annotation));
+
+				model.removeAllAnnotations();
+				document.set("a \nbb\nc \n");
+				annotation= new Annotation(false);
+				model.addAnnotation(annotation, new Position(3, 2));
+				new RemoveTrailingWhitespaceOperation().run(fileBuffer, null);
+				assertEquals("a\nbb\nc\n", document.get());
+				assertFalse(model.getPosition(annotation).isDeleted());
+				assertEquals(new Position(2, 2), model.getPosition(annotation));
+			} finally {
+				model.disconnect(document);
+			}
+		} finally {
+			disconnect();
+		}
+	}
+}
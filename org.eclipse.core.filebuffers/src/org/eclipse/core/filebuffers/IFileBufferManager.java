@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2011 IBM Corporation and others.
+ * Copyright (c) 2000, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -74,6 +74,31 @@ public interface IFileBufferManager {
 	 */
 	void connect(IPath location, LocationKind locationKind, IProgressMonitor monitor) throws CoreException;
 
+	/**
+	 * Connects the files at the given locations to this manager. This has the same
+	 * effect as calling {@link #connect(IPath, LocationKind, IProgressMonitor)} for
+	 * each location, but the contents of files that are not connected yet may be read
+	 * in parallel.
+	 * <p>
+	 * Each location is connected once for each time it occurs in the given array,
+	 * and has to be disconnected as often. The file buffers are created and the
+	 * file buffer listeners are notified in the order of the given locations.
+	 * </p>
+	 * <p>
+	 * If one of the files cannot be connected, the files already connected by this
+	 * call are disconnected again and the exception is thrown, i.e. either all or none
+	 * of the files get connected.
+	 * </p>
+	 *
+	 * @param locations the locations of the files to be connected
+	 * @param locationKind the kind of the given locations
+	 * @param monitor the progress monitor, or <code>null</code> if progress reporting is not desired
+	 * @throws CoreException if one of the files could not successfully be connected
+	 * @see LocationKind
+	 * @since 3.6
+	 */
+	void connect(IPath[] locations, LocationKind locationKind, IProgressMonitor monitor) throws CoreException;
+
 	/**
 	 * Connects the given file store to this manager. After that call
 	 * successfully completed it is guaranteed that each call to <code>getFileBuffer</code>
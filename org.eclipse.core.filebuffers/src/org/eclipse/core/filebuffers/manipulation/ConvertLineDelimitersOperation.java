@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2008 IBM Corporation and others.
+ * Copyright (c) 2000, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -22,8 +22,6 @@ import org.eclipse.core.runtime.Status;
 import org.eclipse.core.filebuffers.IFileBufferStatusCodes;
 import org.eclipse.core.filebuffers.ITextFileBuffer;
 
-import org.eclipse.text.edits.ReplaceEdit;
-
 import org.eclipse.jface.text.BadLocationException;
 import org.eclipse.jface.text.DocumentRewriteSessionType;
 import org.eclipse.jface.text.IDocument;
@@ -37,6 +35,12 @@ import org.eclipse.jface.text.IRegion;
  */
 public class ConvertLineDelimitersOperation extends TextFileBufferOperation {
 
+	/**
+	 * The number of characters scanned per unit of work.
+	 * @since 3.6
+	 */
+	private static final int PROGRESS_CHUNK_SIZE= 64 * 1024;
+
 	private String fLineDelimiter;
 
 	/**
@@ -52,14 +56,94 @@ public class ConvertLineDelimitersOperation extends TextFileBufferOperation {
 
 	@Override
 	protected MultiTextEditWithProgress computeTextEdit(ITextFileBuffer fileBuffer, IProgressMonitor progressMonitor) throws CoreException {
+		return TextEditCollector.createChildren(computeCollectedTextEdit(fileBuffer, progressMonitor));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Returns an edit that creates its children when it is applied, see
+	 * {@link TextEditCollector}. Subclasses get the edit computed by
+	 * {@link #computeTextEdit(ITextFileBuffer, IProgressMonitor)} since they may
+	 * override it.
+	 * </p>
+	 *
+	 * @since 3.6
+	 */
+	@Override
+	MultiTextEditWithProgress computeTextEditToApply(ITextFileBuffer fileBuffer, IProgressMonitor progressMonitor) throws CoreException {
+		if (getClass() != ConvertLineDelimitersOperation.class)
+			return super.computeTextEditToApply(fileBuffer, progressMonitor);
+		return computeCollectedTextEdit(fileBuffer, progressMonitor);
+	}
+
+	/**
+	 * Computes the text edit collected by a {@link TextEditCollector}, whose children
+	 * are not created yet.
+	 *
+	 * @param fileBuffer the text file buffer to manipulate
+	 * @param progressMonitor the progress monitor
+	 * @return the text edit or <code>null</code> if no change is needed
+	 * @throws CoreException in case the computation failed
+	 * @since 3.6
+	 */
+	private MultiTextEditWithProgress computeCollectedTextEdit(ITextFileBuffer fileBuffer, IProgressMonitor progressMonitor) throws CoreException {
 		IDocument document= fileBuffer.getDocument();
+		if (!TextEditCollector.hasDefaultLineDelimiters(document))
+			return computeTextEditByLines(document, progressMonitor);
+
+		String text= TextEditCollector.getText(document);
+		int length= text.length();
+
+		progressMonitor= Progress.getMonitor(progressMonitor);
+		progressMonitor.beginTask(FileBuffersMessages.ConvertLineDelimitersOperation_task_generatingChanges, length / PROGRESS_CHUNK_SIZE + 1);
+		try {
+
+			TextEditCollector collector= new TextEditCollector(text, FileBuffersMessages.ConvertLineDelimitersOperation_task_applyingChanges);
+			int targetLength= fLineDelimiter.length();
+			int nextProgress= PROGRESS_CHUNK_SIZE;
+			for (int i= 0; i < length; i++) {
+				if (i >= nextProgress) {
+					if (progressMonitor.isCanceled())
+						throw new OperationCanceledException();
+					progressMonitor.worked(1);
+					nextProgress+= PROGRESS_CHUNK_SIZE;
+				}
+
+				char c= text.charAt(i);
+				if (c == '\r' || c == '\n') {
+					int delimiterLength= c == '\r' && i + 1 < length && text.charAt(i + 1) == '\n' ? 2 : 1;
+					if (delimiterLength != targetLength || !text.regionMatches(i, fLineDelimiter, 0, delimiterLength))
+						collector.replace(i, delimiterLength, fLineDelimiter);
+					i+= delimiterLength - 1;
+				}
+			}
+
+			return collector.getEdit();
+
+		} finally {
+			progressMonitor.done();
+		}
+	}
+
+	/**
+	 * Computes the text edit for a document with other than the default line delimiters,
+	 * using the line information of the document.
+	 *
+	 * @param document the document
+	 * @param progressMonitor the progress monitor
+	 * @return the text edit or <code>null</code> if no change is needed
+	 * @throws CoreException in case the computation failed
+	 * @since 3.6
+	 */
+	private MultiTextEditWithProgress computeTextEditByLines(IDocument document, IProgressMonitor progressMonitor) throws CoreException {
 		int lineCount= document.getNumberOfLines();
 
 		progressMonitor= Progress.getMonitor(progressMonitor);
 		progressMonitor.beginTask(FileBuffersMessages.ConvertLineDelimitersOperation_task_generatingChanges, lineCount);
 		try {
 
-			MultiTextEditWithProgress multiEdit= new MultiTextEditWithProgress(FileBuffersMessages.ConvertLineDelimitersOperation_task_applyingChanges);
+			TextEditCollector collector= new TextEditCollector(TextEditCollector.getText(document), FileBuffersMessages.ConvertLineDelimitersOperation_task_applyingChanges);
 
 			for (int i= 0; i < lineCount; i++) {
 				if (progressMonitor.isCanceled())
@@ -68,12 +152,12 @@ public class ConvertLineDelimitersOperation extends TextFileBufferOperation {
 				final String delimiter= document.getLineDelimiter(i);
 				if (delimiter != null && delimiter.length() > 0 && !delimiter.equals(fLineDelimiter)) {
 					IRegion region= document.getLineInformation(i);
-					multiEdit.addChild(new ReplaceEdit(region.getOffset() + region.getLength(), delimiter.length(), fLineDelimiter));
+					collector.replace(region.getOffset() + region.getLength(), delimiter.length(), fLineDelimiter);
 				}
 				progressMonitor.worked(1);
 			}
 
-			return multiEdit.getChildrenSize() <= 0 ? null : multiEdit;
+			return collector.getEdit();
 
 		} catch (BadLocationException x) {
 			throw new CoreException(new Status(IStatus.ERROR, FileBuffersPlugin.PLUGIN_ID, IFileBufferStatusCodes.CONTENT_CHANGE_FAILED, "", x)); //$NON-NLS-1$
@@ -86,4 +170,18 @@ public class ConvertLineDelimitersOperation extends TextFileBufferOperation {
 	protected DocumentRewriteSessionType getDocumentRewriteSessionType() {
 		return DocumentRewriteSessionType.SEQUENTIAL;
 	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Returns <code>true</code> for this class only. Subclasses may change how text edits
+	 * are computed and have to override this method to allow concurrent computation.
+	 * </p>
+	 *
+	 * @since 3.6
+	 */
+	@Override
+	protected boolean isConcurrentComputationSupported() {
+		return getClass() == ConvertLineDelimitersOperation.class;
+	}
 }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2007, 2015 IBM Corporation and others.
+ * Copyright (c) 2007, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -11,6 +11,8 @@
 package org.eclipse.core.filebuffers.manipulation;
 
 import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.eclipse.core.internal.filebuffers.FileBuffersPlugin;
 import org.eclipse.core.internal.filebuffers.Progress;
@@ -37,12 +39,21 @@ import org.eclipse.core.filebuffers.ITextFileBuffer;
 import org.eclipse.core.filebuffers.ITextFileBufferManager;
 import org.eclipse.core.filebuffers.LocationKind;
 
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentExtension4;
+
 
 /**
  * A <code>GenericFileBufferOperationRunner</code> executes
  * {@link org.eclipse.core.filebuffers.manipulation.IFileBufferOperation}.
  * The runner takes care of all aspects that are not operation specific.
  * <p>
+ * If the operation is a {@link TextFileBufferOperation} that supports the concurrent
+ * computation of its text edits, the runner computes the text edits of the file buffers
+ * that do not require a synchronization context in parallel and applies them one after
+ * the other. The file buffers are committed in batches.
+ * </p>
+ * <p>
  * This class is not intended to be subclassed. Clients instantiate this class.
  * </p>
  *
@@ -52,6 +63,18 @@ import org.eclipse.core.filebuffers.LocationKind;
  */
 public class GenericFileBufferOperationRunner {
 
+	/**
+	 * The number of file buffers whose text edits are computed before they are applied.
+	 * @since 3.6
+	 */
+	private static final int COMPUTE_BATCH_SIZE= 64;
+
+	/**
+	 * The number of file buffers committed at once.
+	 * @since 3.6
+	 */
+	private static final int COMMIT_BATCH_SIZE= 100;
+
 	/** The validation context */
 	private final Object fValidationContext;
 	/** The file buffer manager */
@@ -89,12 +112,14 @@ public class GenericFileBufferOperationRunner {
 		final int size= locations.length;
 		final IProgressMonitor progressMonitor= Progress.getMonitor(monitor);
 		progressMonitor.beginTask(operation.getOperationName(), size * 200);
+		boolean connected= false;
 		try {
 
 
 			IProgressMonitor subMonitor= Progress.getSubMonitor(progressMonitor, size * 10);
 			IFileBuffer[] fileBuffers= createFileBuffers(locations, subMonitor);
 			subMonitor.done();
+			connected= true;
 
 			IFileBuffer[] fileBuffers2Save= findFileBuffersToSave(fileBuffers);
 			subMonitor= Progress.getSubMonitor(progressMonitor, size * 10);
@@ -104,7 +129,10 @@ public class GenericFileBufferOperationRunner {
 				throw new OperationCanceledException();
 
 			IFileBuffer[] unsynchronizedFileBuffers= findUnsynchronizedFileBuffers(fileBuffers);
-			performOperation(unsynchronizedFileBuffers, operation, progressMonitor) ;
+			if (isConcurrentComputationSupported(operation))
+				performOperationConcurrently(unsynchronizedFileBuffers, (TextFileBufferOperation) operation, progressMonitor);
+			else
+				performOperation(unsynchronizedFileBuffers, operation, progressMonitor);
 
 			final IFileBuffer[] synchronizedFileBuffers= findSynchronizedFileBuffers(fileBuffers);
 			fIsCompleted= false;
@@ -149,14 +177,16 @@ public class GenericFileBufferOperationRunner {
 			}
 
 			subMonitor= Progress.getSubMonitor(progressMonitor, size * 80);
-			commit(fileBuffers2Save, subMonitor);
+			commitInBatches(fileBuffers2Save, subMonitor);
 			subMonitor.done();
 
 		} finally {
 			try {
-				IProgressMonitor subMonitor= Progress.getSubMonitor(progressMonitor, size * 10);
-				releaseFileBuffers(locations, subMonitor);
-				subMonitor.done();
+				if (connected) {
+					IProgressMonitor subMonitor= Progress.getSubMonitor(progressMonitor, size * 10);
+					releaseFileBuffers(locations, subMonitor);
+					subMonitor.done();
+				}
 			} finally {
 				progressMonitor.done();
 			}
@@ -195,6 +225,213 @@ public class GenericFileBufferOperationRunner {
 		}
 	}
 
+	/**
+	 * Tells whether the text edits of the given operation can be computed concurrently. This
+	 * requires that the operation supports it and does not override
+	 * {@link TextFileBufferOperation#run(IFileBuffer, IProgressMonitor)}, which the concurrent
+	 * computation bypasses.
+	 *
+	 * @param operation the operation
+	 * @return <code>true</code> if the text edits can be computed concurrently
+	 * @since 3.6
+	 */
+	private static boolean isConcurrentComputationSupported(IFileBufferOperation operation) {
+		if (!(operation instanceof TextFileBufferOperation) || !((TextFileBufferOperation) operation).isConcurrentComputationSupported())
+			return false;
+		try {
+			return operation.getClass().getMethod("run", IFileBuffer.class, IProgressMonitor.class).getDeclaringClass() == TextFileBufferOperation.class; //$NON-NLS-1$
+		} catch (NoSuchMethodException x) {
+			return false;
+		} catch (SecurityException x) {
+			return false;
+		}
+	}
+
+	/**
+	 * Performs the given operation on the given file buffers. The text edits are computed
+	 * in parallel for batches of file buffers and then applied one after the other, each
+	 * under the commit rule of its file buffer.
+	 *
+	 * @param fileBuffers the file buffers
+	 * @param operation the operation
+	 * @param progressMonitor the progress monitor
+	 * @throws CoreException if the operation fails for a file buffer
+	 * @throws OperationCanceledException if the progress monitor has been canceled
+	 * @since 3.6
+	 */
+	private void performOperationConcurrently(IFileBuffer[] fileBuffers, TextFileBufferOperation operation, IProgressMonitor progressMonitor) throws CoreException, OperationCanceledException {
+		for (int start= 0; start < fileBuffers.length; start+= COMPUTE_BATCH_SIZE) {
+			if (progressMonitor.isCanceled())
+				throw new OperationCanceledException();
+
+			int end= Math.min(start + COMPUTE_BATCH_SIZE, fileBuffers.length);
+			long[] modificationStamps= new long[end - start];
+			MultiTextEditWithProgress[] edits= computeTextEdits(fileBuffers, start, end, operation, modificationStamps, progressMonitor);
+			for (int i= start; i < end; i++) {
+				if (progressMonitor.isCanceled())
+					throw new OperationCanceledException();
+				IProgressMonitor subMonitor= Progress.getSubMonitor(progressMonitor, 100);
+				if (fileBuffers[i] instanceof ITextFileBuffer)
+					applyTextEdit((ITextFileBuffer) fileBuffers[i], operation, edits[i - start], modificationStamps[i - start], subMonitor);
+				subMonitor.done();
+			}
+		}
+	}
+
+	/**
+	 * Computes the text edits of the given range of file buffers in a number of jobs
+	 * bounded by the number of processors and in the calling thread. Only the calling
+	 * thread accesses the given progress monitor.
+	 *
+	 * @param fileBuffers the file buffers
+	 * @param start the index of the first file buffer
+	 * @param end the index after the last file buffer
+	 * @param operation the operation
+	 * @param modificationStamps the array receiving the modification stamps of the documents
+	 *            the text edits have been computed for
+	 * @param progressMonitor the progress monitor, only checked for cancellation
+	 * @return the text edits, <code>null</code> for file buffers that need no change
+	 * @throws CoreException if the computation fails for a file buffer
+	 * @throws OperationCanceledException if the progress monitor has been canceled
+	 * @since 3.6
+	 */
+	private MultiTextEditWithProgress[] computeTextEdits(final IFileBuffer[] fileBuffers, final int start, int end, final TextFileBufferOperation operation, final long[] modificationStamps, final IProgressMonitor progressMonitor) throws CoreException, OperationCanceledException {
+		final int count= end - start;
+		final MultiTextEditWithProgress[] edits= new MultiTextEditWithProgress[count];
+		final AtomicReference<Throwable> failure= new AtomicReference<>();
+		final AtomicInteger next= new AtomicInteger();
+		final Thread caller= Thread.currentThread();
+		// stops all computations on the first failure, forwards the cancellation of the calling thread's monitor
+		final IProgressMonitor computeMonitor= new NullProgressMonitor() {
+			@Override
+			public boolean isCanceled() {
+				if (!super.isCanceled() && Thread.currentThread() == caller && progressMonitor.isCanceled())
+					setCanceled(true);
+				return super.isCanceled();
+			}
+		};
+
+		final Runnable computer= new Runnable() {
+			@Override
+			public void run() {
+				int i;
+				while (!computeMonitor.isCanceled() && (i= next.getAndIncrement()) < count) {
+					IFileBuffer fileBuffer= fileBuffers[start + i];
+					if (!(fileBuffer instanceof ITextFileBuffer))
+						continue;
+					try {
+						ITextFileBuffer textFileBuffer= (ITextFileBuffer) fileBuffer;
+						modificationStamps[i]= getModificationStamp(textFileBuffer);
+						edits[i]= operation.computeTextEditToApply(textFileBuffer, computeMonitor);
+					} catch (OperationCanceledException x) {
+						// caused by the cancellation, reported below
+						computeMonitor.setCanceled(true);
+					} catch (Throwable x) {
+						// keep the first failure, the computations canceled by it fail as well
+						failure.compareAndSet(null, x);
+						computeMonitor.setCanceled(true);
+					}
+				}
+			}
+		};
+
+		Job[] jobs= new Job[Math.max(Math.min(Runtime.getRuntime().availableProcessors(), count) - 1, 0)];
+		for (int i= 0; i < jobs.length; i++) {
+			jobs[i]= new Job(operation.getOperationName()) {
+				@Override
+				protected IStatus run(IProgressMonitor jobMonitor) {
+					computer.run();
+					return Status.OK_STATUS;
+				}
+			};
+			jobs[i].setSystem(true);
+			jobs[i].schedule();
+		}
+
+		boolean interrupted= false;
+		try {
+			computer.run();
+		} finally {
+			// the jobs that are running share the text edits, wait for them in any case
+			for (int i= 0; i < jobs.length; i++) {
+				if (jobs[i].cancel())
+					continue;
+				while (true) {
+					try {
+						jobs[i].join();
+						break;
+					} catch (InterruptedException x) {
+						interrupted= true;
+					}
+				}
+			}
+			if (interrupted)
+				Thread.currentThread().interrupt();
+		}
+
+		Throwable firstFailure= failure.get();
+		if (firstFailure instanceof CoreException)
+			throw (CoreException) firstFailure;
+		if (firstFailure instanceof RuntimeException)
+			throw (RuntimeException) firstFailure;
+		if (firstFailure instanceof Error)
+			throw (Error) firstFailure;
+		if (computeMonitor.isCanceled())
+			throw new OperationCanceledException();
+
+		return edits;
+	}
+
+	/**
+	 * Applies the given text edit under the commit rule of the given file buffer. The text
+	 * edit is computed again if the document has been modified since it was computed.
+	 *
+	 * @param fileBuffer the file buffer
+	 * @param operation the operation
+	 * @param edit the text edit, <code>null</code> if no change is needed
+	 * @param modificationStamp the modification stamp of the document the text edit has been
+	 *            computed for
+	 * @param progressMonitor the progress monitor
+	 * @throws CoreException if the text edit cannot be computed or applied
+	 * @throws OperationCanceledException if the progress monitor has been canceled
+	 * @since 3.6
+	 */
+	private void applyTextEdit(ITextFileBuffer fileBuffer, TextFileBufferOperation operation, MultiTextEditWithProgress edit, long modificationStamp, IProgressMonitor progressMonitor) throws CoreException, OperationCanceledException {
+		ISchedulingRule rule= fileBuffer.computeCommitRule();
+		IJobManager manager= Job.getJobManager();
+		try {
+			manager.beginRule(rule, progressMonitor);
+
+			String name= fileBuffer.getLocation().lastSegment();
+			progressMonitor.beginTask(name, 100);
+			try {
+				long currentStamp= getModificationStamp(fileBuffer);
+				if (currentStamp == IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP || currentStamp != modificationStamp) {
+					IProgressMonitor subMonitor= Progress.getSubMonitor(progressMonitor, 10);
+					edit= operation.computeTextEditToApply(fileBuffer, subMonitor);
+					subMonitor.done();
+				}
+				if (edit != null) {
+					IProgressMonitor subMonitor= Progress.getSubMonitor(progressMonitor, 90);
+					operation.apply(fileBuffer, edit, subMonitor);
+					subMonitor.done();
+				}
+			} finally {
+				progressMonitor.done();
+			}
+
+		} finally {
+			manager.endRule(rule);
+		}
+	}
+
+	private static long getModificationStamp(ITextFileBuffer fileBuffer) {
+		IDocument document= fileBuffer.getDocument();
+		if (document instanceof IDocumentExtension4)
+			return ((IDocumentExtension4) document).getModificationStamp();
+		return IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP;
+	}
+
 	private void executeInContext(Runnable runnable) {
 		ITextFileBufferManager fileBufferManager= FileBuffers.getTextFileBufferManager();
 		fileBufferManager.execute(runnable);
@@ -221,21 +458,16 @@ public class GenericFileBufferOperationRunner {
 	private IFileBuffer[] createFileBuffers(IPath[] locations, IProgressMonitor progressMonitor) throws CoreException {
 		progressMonitor.beginTask(FileBuffersMessages.FileBufferOperationRunner_task_connecting, locations.length);
 		try {
+			// connects all or none of the locations, reading the files in parallel
+			IProgressMonitor subMonitor= Progress.getSubMonitor(progressMonitor, locations.length);
+			fFileBufferManager.connect(locations, LocationKind.NORMALIZE, subMonitor);
+			subMonitor.done();
+
 			IFileBuffer[] fileBuffers= new ITextFileBuffer[locations.length];
-			for (int i= 0; i < locations.length; i++) {
-				IProgressMonitor subMonitor= Progress.getSubMonitor(progressMonitor, 1);
-				fFileBufferManager.connect(locations[i], LocationKind.NORMALIZE, subMonitor);
-				subMonitor.done();
+			for (int i= 0; i < locations.length; i++)
 				fileBuffers[i]= fFileBufferManager.getFileBuffer(locations[i], LocationKind.NORMALIZE);
-			}
 			return fileBuffers;
 
-		} catch (CoreException x) {
-			try {
-				releaseFileBuffers(locations, new NullProgressMonitor());
-			} catch (CoreException e) {
-			}
-			throw x;
 		} finally {
 			progressMonitor.done();
 		}
@@ -273,6 +505,31 @@ public class GenericFileBufferOperationRunner {
 		return true;
 	}
 
+	/**
+	 * Commits the given file buffers in batches, so that the scheduling rule of each batch
+	 * is only held while that batch is committed.
+	 *
+	 * @param fileBuffers the file buffers to commit
+	 * @param progressMonitor the progress monitor
+	 * @throws CoreException if a file buffer cannot be committed
+	 * @since 3.6
+	 */
+	private void commitInBatches(IFileBuffer[] fileBuffers, IProgressMonitor progressMonitor) throws CoreException {
+		progressMonitor.beginTask(FileBuffersMessages.FileBufferOperationRunner_task_committing, fileBuffers.length);
+		try {
+			for (int start= 0; start < fileBuffers.length; start+= COMMIT_BATCH_SIZE) {
+				int length= Math.min(COMMIT_BATCH_SIZE, fileBuffers.length - start);
+				IFileBuffer[] batch= new IFileBuffer[length];
+				System.arraycopy(fileBuffers, start, batch, 0, length);
+				IProgressMonitor subMonitor= Progress.getSubMonitor(progressMonitor, length);
+				commit(batch, subMonitor);
+				subMonitor.done();
+			}
+		} finally {
+			progressMonitor.done();
+		}
+	}
+
 	protected ISchedulingRule computeCommitRule(IFileBuffer[] fileBuffers) {
 		ArrayList<ISchedulingRule> list= new ArrayList<>();
 		for (int i= 0; i < fileBuffers.length; i++) {
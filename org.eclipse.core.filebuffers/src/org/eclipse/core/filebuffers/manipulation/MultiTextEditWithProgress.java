@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2005 IBM Corporation and others.
+ * Copyright (c) 2000, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -49,6 +49,7 @@ public class MultiTextEditWithProgress extends MultiTextEdit {
 		fProgressMonitor= progressMonitor;
 		try {
 
+			prepare(document);
 			int count= getChildrenSize();
 			if ((style & TextEdit.UPDATE_REGIONS) != 0)
 				count= 2*count;
@@ -65,8 +66,21 @@ public class MultiTextEditWithProgress extends MultiTextEdit {
 		}
 	}
 
+	/**
+	 * Called before this edit is applied to the given document. Subclasses may
+	 * create their children depending on the document.
+	 *
+	 * @param document the document to which this edit is applied
+	 * @since 3.6
+	 */
+	void prepare(IDocument document) {
+	}
+
 	@Override
 	protected void childDocumentUpdated() {
+		// no progress is reported if applied through the methods inherited from TextEdit
+		if (fProgressMonitor == null)
+			return;
 		if (fProgressMonitor.isCanceled())
 			throw new OperationCanceledException();
 		fProgressMonitor.worked(1);
@@ -74,6 +88,9 @@ public class MultiTextEditWithProgress extends MultiTextEdit {
 
 	@Override
 	protected void childRegionUpdated() {
+		// no progress is reported if applied through the methods inherited from TextEdit
+		if (fProgressMonitor == null)
+			return;
 		if (fProgressMonitor.isCanceled())
 			throw new OperationCanceledException();
 		fProgressMonitor.worked(1);
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2008 IBM Corporation and others.
+ * Copyright (c) 2000, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -22,8 +22,6 @@ import org.eclipse.core.runtime.Status;
 import org.eclipse.core.filebuffers.IFileBufferStatusCodes;
 import org.eclipse.core.filebuffers.ITextFileBuffer;
 
-import org.eclipse.text.edits.DeleteEdit;
-
 import org.eclipse.jface.text.BadLocationException;
 import org.eclipse.jface.text.DocumentRewriteSessionType;
 import org.eclipse.jface.text.IDocument;
@@ -36,6 +34,12 @@ import org.eclipse.jface.text.IRegion;
  */
 public class RemoveTrailingWhitespaceOperation extends TextFileBufferOperation {
 
+	/**
+	 * The number of characters scanned per unit of work.
+	 * @since 3.6
+	 */
+	private static final int PROGRESS_CHUNK_SIZE= 64 * 1024;
+
 	/**
 	 * Creates a remove trailing whitespace operation.
 	 */
@@ -45,14 +49,101 @@ public class RemoveTrailingWhitespaceOperation extends TextFileBufferOperation {
 
 	@Override
 	protected MultiTextEditWithProgress computeTextEdit(ITextFileBuffer fileBuffer, IProgressMonitor progressMonitor) throws CoreException {
+		return TextEditCollector.createChildren(computeCollectedTextEdit(fileBuffer, progressMonitor));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Returns an edit that creates its children when it is applied, see
+	 * {@link TextEditCollector}. Subclasses get the edit computed by
+	 * {@link #computeTextEdit(ITextFileBuffer, IProgressMonitor)} since they may
+	 * override it.
+	 * </p>
+	 *
+	 * @since 3.6
+	 */
+	@Override
+	MultiTextEditWithProgress computeTextEditToApply(ITextFileBuffer fileBuffer, IProgressMonitor progressMonitor) throws CoreException {
+		if (getClass() != RemoveTrailingWhitespaceOperation.class)
+			return super.computeTextEditToApply(fileBuffer, progressMonitor);
+		return computeCollectedTextEdit(fileBuffer, progressMonitor);
+	}
+
+	/**
+	 * Computes the text edit collected by a {@link TextEditCollector}, whose children
+	 * are not created yet.
+	 *
+	 * @param fileBuffer the text file buffer to manipulate
+	 * @param progressMonitor the progress monitor
+	 * @return the text edit or <code>null</code> if no change is needed
+	 * @throws CoreException in case the computation failed
+	 * @since 3.6
+	 */
+	private MultiTextEditWithProgress computeCollectedTextEdit(ITextFileBuffer fileBuffer, IProgressMonitor progressMonitor) throws CoreException {
 		IDocument document= fileBuffer.getDocument();
+		if (!TextEditCollector.hasDefaultLineDelimiters(document))
+			return computeTextEditByLines(document, progressMonitor);
+
+		String text= TextEditCollector.getText(document);
+		int length= text.length();
+
+		progressMonitor= Progress.getMonitor(progressMonitor);
+		progressMonitor.beginTask(FileBuffersMessages.RemoveTrailingWhitespaceOperation_task_generatingChanges, length / PROGRESS_CHUNK_SIZE + 1);
+		try {
+
+			TextEditCollector collector= new TextEditCollector(text, FileBuffersMessages.RemoveTrailingWhitespaceOperation_task_applyingChanges);
+			int whitespaceStart= -1;
+			int nextProgress= PROGRESS_CHUNK_SIZE;
+			for (int i= 0; i <= length; i++) {
+				if (i >= nextProgress) {
+					if (progressMonitor.isCanceled())
+						throw new OperationCanceledException();
+					progressMonitor.worked(1);
+					nextProgress+= PROGRESS_CHUNK_SIZE;
+				}
+
+				// the end of the text ends the last line like a line delimiter
+				char c= i < length ? text.charAt(i) : '\n';
+				if (c == '\r' || c == '\n') {
+					if (whitespaceStart != -1) {
+						collector.replace(whitespaceStart, i - whitespaceStart, ""); //$NON-NLS-1$
+						whitespaceStart= -1;
+					}
+				} else if (Character.isWhitespace(c)) {
+					if (whitespaceStart == -1)
+						whitespaceStart= i;
+				} else {
+					whitespaceStart= -1;
+				}
+			}
+
+			return collector.getEdit();
+
+		} finally {
+			progressMonitor.done();
+		}
+	}
+
+	/**
+	 * Computes the text edit for a document with other than the default line delimiters,
+	 * using the line information of the document.
+	 *
+	 * @param document the document
+	 * @param progressMonitor the progress monitor
+	 * @return the text edit or <code>null</code> if no change is needed
+	 * @throws CoreException in case the computation failed
+	 * @since 3.6
+	 */
+	private MultiTextEditWithProgress computeTextEditByLines(IDocument document, IProgressMonitor progressMonitor) throws CoreException {
 		int lineCount= document.getNumberOfLines();
 
 		progressMonitor= Progress.getMonitor(progressMonitor);
 		progressMonitor.beginTask(FileBuffersMessages.RemoveTrailingWhitespaceOperation_task_generatingChanges, lineCount);
 		try {
 
-			MultiTextEditWithProgress multiEdit= new MultiTextEditWithProgress(FileBuffersMessages.RemoveTrailingWhitespaceOperation_task_applyingChanges);
+			String text= TextEditCollector.getText(document);
+			TextEditCollector collector= new TextEditCollector(text, FileBuffersMessages.RemoveTrailingWhitespaceOperation_task_applyingChanges);
 
 			for (int i= 0; i < lineCount; i++) {
 				if (progressMonitor.isCanceled())
@@ -65,14 +156,14 @@ public class RemoveTrailingWhitespaceOperation extends TextFileBufferOperation {
 				int lineStart= region.getOffset();
 				int lineExclusiveEnd= lineStart + region.getLength();
 				int j= lineExclusiveEnd -1;
-				while (j >= lineStart && Character.isWhitespace(document.getChar(j))) --j;
+				while (j >= lineStart && Character.isWhitespace(text.charAt(j))) --j;
 				++j;
 				if (j < lineExclusiveEnd)
-					multiEdit.addChild(new DeleteEdit(j, lineExclusiveEnd - j));
+					collector.replace(j, lineExclusiveEnd - j, ""); //$NON-NLS-1$
 				progressMonitor.worked(1);
 			}
 
-			return multiEdit.getChildrenSize() <= 0 ? null : multiEdit;
+			return collector.getEdit();
 
 		} catch (BadLocationException x) {
 			throw new CoreException(new Status(IStatus.ERROR, FileBuffersPlugin.PLUGIN_ID, IFileBufferStatusCodes.CONTENT_CHANGE_FAILED, "", x)); //$NON-NLS-1$
@@ -85,4 +176,18 @@ public class RemoveTrailingWhitespaceOperation extends TextFileBufferOperation {
 	protected DocumentRewriteSessionType getDocumentRewriteSessionType() {
 		return DocumentRewriteSessionType.SEQUENTIAL;
 	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Returns <code>true</code> for this class only. Subclasses may change how text edits
+	 * are computed and have to override this method to allow concurrent computation.
+	 * </p>
+	 *
+	 * @since 3.6
+	 */
+	@Override
+	protected boolean isConcurrentComputationSupported() {
+		return getClass() == RemoveTrailingWhitespaceOperation.class;
+	}
 }
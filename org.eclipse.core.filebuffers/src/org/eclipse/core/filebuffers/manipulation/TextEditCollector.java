@@ -0,0 +1,233 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.core.filebuffers.manipulation;
+
+import java.util.Arrays;
+
+import org.eclipse.text.edits.DeleteEdit;
+import org.eclipse.text.edits.ReplaceEdit;
+import org.eclipse.text.edits.TextEdit;
+
+import org.eclipse.jface.text.BadPositionCategoryException;
+import org.eclipse.jface.text.DefaultLineTracker;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentExtension5;
+
+
+/**
+ * Collects the changes found in one pass over the text of a document.
+ * <p>
+ * The changes are kept in a compact form until the children of the edit are created.
+ * Edits that are handed out by the operations get one child per change, see
+ * {@link #createChildren(MultiTextEditWithProgress)}. Edits that the operations apply
+ * themselves create their children only when they are applied. If the document has no
+ * positions at that time, all changes are merged into a single {@link ReplaceEdit} that
+ * replaces the range from the first to the last change with the new text, including the
+ * unchanged text between the changes. This keeps the edit tree and the undo information
+ * small for documents with many changes. Since there are no positions, no marker or
+ * annotation can lie between the changes and be deleted by the merged edit. Otherwise
+ * one edit is created per change, so that the positions are updated exactly.
+ * </p>
+ * <p>
+ * The decision is taken when the edit is applied, since the edit may be computed
+ * without holding the file buffer's commit rule while positions can be added until
+ * it is applied.
+ * </p>
+ * <p>
+ * Changes must be reported in ascending order and must not overlap.
+ * </p>
+ *
+ * @since 3.6
+ */
+final class TextEditCollector {
+
+	/**
+	 * Edit whose children are created from the collected changes when it is applied
+	 * or when they are requested by {@link TextEditCollector#createChildren(MultiTextEditWithProgress)}.
+	 */
+	private static final class CollectedEdit extends MultiTextEditWithProgress {
+
+		/** The text of the document the changes have been collected for. */
+		private String fText;
+		private int[] fOffsets;
+		private int[] fLengths;
+		private String[] fTexts;
+		private final int fCount;
+
+		CollectedEdit(String taskName, String text, int[] offsets, int[] lengths, String[] texts, int count) {
+			super(taskName);
+			fText= text;
+			fOffsets= offsets;
+			fLengths= lengths;
+			fTexts= texts;
+			fCount= count;
+		}
+
+		@Override
+		void prepare(IDocument document) {
+			if (fText != null)
+				createChildren(!hasPositions(document));
+		}
+
+		/**
+		 * Creates the children of this edit from the collected changes.
+		 *
+		 * @param merge <code>true</code> to create a single edit replacing the range from
+		 *            the first to the last change, <code>false</code> to create one edit
+		 *            per change
+		 */
+		void createChildren(boolean merge) {
+			if (merge) {
+				int start= fOffsets[0];
+				int end= start;
+				StringBuilder newText= new StringBuilder();
+				for (int i= 0; i < fCount; i++) {
+					newText.append(fText, end, fOffsets[i]);
+					newText.append(fTexts[i]);
+					end= fOffsets[i] + fLengths[i];
+				}
+				addChild(new ReplaceEdit(start, end - start, newText.toString()));
+			} else {
+				TextEdit[] children= new TextEdit[fCount];
+				for (int i= 0; i < fCount; i++) {
+					if (fTexts[i].length() == 0)
+						children[i]= new DeleteEdit(fOffsets[i], fLengths[i]);
+					else
+						children[i]= new ReplaceEdit(fOffsets[i], fLengths[i], fTexts[i]);
+				}
+				addSortedChildren(children);
+			}
+
+			fText= null;
+			fOffsets= null;
+			fLengths= null;
+			fTexts= null;
+		}
+	}
+
+	/** The text of the document. */
+	private final String fText;
+	/** The task name of the edit. */
+	private final String fTaskName;
+	/** The offsets of the changes. */
+	private int[] fOffsets= new int[16];
+	/** The lengths of the changes. */
+	private int[] fLengths= new int[16];
+	/** The replacement texts of the changes. */
+	private String[] fTexts= new String[16];
+	/** The number of changes. */
+	private int fCount;
+
+	/**
+	 * Creates a new collector for the given text.
+	 *
+	 * @param text the text of the document
+	 * @param taskName the task name of the edit
+	 */
+	TextEditCollector(String text, String taskName) {
+		fText= text;
+		fTaskName= taskName;
+	}
+
+	/**
+	 * Replaces the given range of the text.
+	 *
+	 * @param offset the offset of the range
+	 * @param length the length of the range
+	 * @param text the replacement text
+	 */
+	void replace(int offset, int length, String text) {
+		if (fCount == fOffsets.length) {
+			int capacity= fCount * 2;
+			fOffsets= Arrays.copyOf(fOffsets, capacity);
+			fLengths= Arrays.copyOf(fLengths, capacity);
+			fTexts= Arrays.copyOf(fTexts, capacity);
+		}
+		fOffsets[fCount]= offset;
+		fLengths[fCount]= length;
+		fTexts[fCount]= text;
+		fCount++;
+	}
+
+	/**
+	 * Returns the edit containing the collected changes. Its children are only
+	 * created when it is applied with
+	 * {@link MultiTextEditWithProgress#apply(IDocument, int, org.eclipse.core.runtime.IProgressMonitor)},
+	 * therefore the edit must not be handed out to clients without calling
+	 * {@link #createChildren(MultiTextEditWithProgress)} first.
+	 *
+	 * @return the edit, or <code>null</code> if there are no changes
+	 */
+	MultiTextEditWithProgress getEdit() {
+		if (fCount == 0)
+			return null;
+		return new CollectedEdit(fTaskName, fText, fOffsets, fLengths, fTexts, fCount);
+	}
+
+	/**
+	 * Creates one child per change for the given edit if it has been returned by
+	 * {@link #getEdit()}, so that the edit can be inspected and applied like any other
+	 * text edit.
+	 *
+	 * @param edit the edit, may be <code>null</code>
+	 * @return the given edit
+	 */
+	static MultiTextEditWithProgress createChildren(MultiTextEditWithProgress edit) {
+		if (edit instanceof CollectedEdit) {
+			CollectedEdit collectedEdit= (CollectedEdit) edit;
+			if (collectedEdit.fText != null)
+				collectedEdit.createChildren(false);
+		}
+		return edit;
+	}
+
+	/**
+	 * Returns the text of the given document. The text is shared with the document's
+	 * snapshot if the document supports snapshots.
+	 *
+	 * @param document the document
+	 * @return the text of the document
+	 */
+	static String getText(IDocument document) {
+		if (document instanceof IDocumentExtension5)
+			return ((IDocumentExtension5) document).getSnapshot().get();
+		return document.get();
+	}
+
+	/**
+	 * Tells whether the given document only knows the default line delimiters, i.e.
+	 * whether its lines can be found by scanning for <code>'\r'</code> and
+	 * <code>'\n'</code>.
+	 *
+	 * @param document the document
+	 * @return <code>true</code> if the document uses the default line delimiters
+	 */
+	static boolean hasDefaultLineDelimiters(IDocument document) {
+		String[] delimiters= document.getLegalLineDelimiters().clone();
+		String[] defaultDelimiters= DefaultLineTracker.DELIMITERS.clone();
+		Arrays.sort(delimiters);
+		Arrays.sort(defaultDelimiters);
+		return Arrays.equals(delimiters, defaultDelimiters);
+	}
+
+	private static boolean hasPositions(IDocument document) {
+		String[] categories= document.getPositionCategories();
+		for (int i= 0; i < categories.length; i++) {
+			try {
+				if (document.getPositions(categories[i]).length > 0)
+					return true;
+			} catch (BadPositionCategoryException x) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2015 IBM Corporation and others.
+ * Copyright (c) 2000, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -65,6 +65,45 @@ public abstract class TextFileBufferOperation implements IFileBufferOperation {
 	 */
 	protected abstract DocumentRewriteSessionType getDocumentRewriteSessionType();
 
+	/**
+	 * Tells whether {@link #computeTextEdit(ITextFileBuffer, IProgressMonitor)} can be
+	 * called concurrently for different text file buffers. If so, runners may compute the
+	 * text edits of several file buffers in parallel before applying them one after the
+	 * other.
+	 * <p>
+	 * The default implementation returns <code>false</code>. Subclasses whose computation
+	 * only reads the given file buffer may override. The edits are not computed
+	 * concurrently if a subclass overrides {@link #run(IFileBuffer, IProgressMonitor)}.
+	 * </p>
+	 *
+	 * @return <code>true</code> if text edits can be computed concurrently
+	 * @since 3.6
+	 */
+	protected boolean isConcurrentComputationSupported() {
+		return false;
+	}
+
+	/**
+	 * Computes the text edit that this operation and its runners apply to the given text
+	 * file buffer. Unlike the edit returned by
+	 * {@link #computeTextEdit(ITextFileBuffer, IProgressMonitor)}, the returned edit is
+	 * never handed out, so it may create its children only when it is applied.
+	 * <p>
+	 * The default implementation returns the edit computed by
+	 * {@link #computeTextEdit(ITextFileBuffer, IProgressMonitor)}.
+	 * </p>
+	 *
+	 * @param textFileBuffer the text file buffer to manipulate
+	 * @param progressMonitor the progress monitor
+	 * @return the text edit or <code>null</code> if no change is needed
+	 * @throws CoreException in case the computation failed
+	 * @throws OperationCanceledException in case the progress monitor has been set to canceled
+	 * @since 3.6
+	 */
+	MultiTextEditWithProgress computeTextEditToApply(ITextFileBuffer textFileBuffer, IProgressMonitor progressMonitor) throws CoreException, OperationCanceledException {
+		return computeTextEdit(textFileBuffer, progressMonitor);
+	}
+
 
 	private String fOperationName;
 	private DocumentRewriteSession fDocumentRewriteSession;
@@ -94,17 +133,12 @@ public abstract class TextFileBufferOperation implements IFileBufferOperation {
 			progressMonitor.beginTask(taskName, 100);
 			try {
 				IProgressMonitor subMonitor= Progress.getSubMonitor(progressMonitor, 10);
-				MultiTextEditWithProgress edit= computeTextEdit(textFileBuffer, subMonitor);
+				MultiTextEditWithProgress edit= computeTextEditToApply(textFileBuffer, subMonitor);
 				subMonitor.done();
 				if (edit != null) {
-					Map<String, IDocumentPartitioner> stateData= startRewriteSession(textFileBuffer);
-					try {
-						subMonitor= Progress.getSubMonitor(progressMonitor, 90);
-						applyTextEdit(textFileBuffer, edit, subMonitor);
-						subMonitor.done();
-					} finally {
-						stopRewriteSession(textFileBuffer, stateData);
-					}
+					subMonitor= Progress.getSubMonitor(progressMonitor, 90);
+					apply(textFileBuffer, edit, subMonitor);
+					subMonitor.done();
 				}
 			} finally {
 				progressMonitor.done();
@@ -112,6 +146,26 @@ public abstract class TextFileBufferOperation implements IFileBufferOperation {
 		}
 	}
 
+	/**
+	 * Applies the given text edit to the document of the given text file buffer inside a
+	 * rewrite session.
+	 *
+	 * @param textFileBuffer the text file buffer
+	 * @param edit the text edit computed for the text file buffer
+	 * @param progressMonitor the progress monitor
+	 * @throws CoreException in case the edit cannot be applied
+	 * @throws OperationCanceledException in case the progress monitor has been set to canceled
+	 * @since 3.6
+	 */
+	void apply(ITextFileBuffer textFileBuffer, MultiTextEditWithProgress edit, IProgressMonitor progressMonitor) throws CoreException, OperationCanceledException {
+		Map<String, IDocumentPartitioner> stateData= startRewriteSession(textFileBuffer);
+		try {
+			applyTextEdit(textFileBuffer, edit, progressMonitor);
+		} finally {
+			stopRewriteSession(textFileBuffer, stateData);
+		}
+	}
+
 	private Map<String, IDocumentPartitioner> startRewriteSession(ITextFileBuffer fileBuffer) {
 		Map<String, IDocumentPartitioner> stateData= null;
 
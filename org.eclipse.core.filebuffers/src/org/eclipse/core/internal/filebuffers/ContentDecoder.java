@@ -0,0 +1,126 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.core.internal.filebuffers;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.UnsupportedCharsetException;
+
+
+/**
+ * Decodes the content of a file into a string.
+ * <p>
+ * The bytes are decoded in large chunks directly into one character array that is
+ * sized from the length of the file and the average number of characters per byte of
+ * the encoding, so that the content is copied only once more, when the string is
+ * created. Malformed input and unmappable characters are replaced, like
+ * {@link java.io.InputStreamReader} does.
+ * </p>
+ *
+ * @since 3.6
+ */
+final class ContentDecoder {
+
+	/** The number of bytes read and decoded at once. */
+	private static final int CHUNK_SIZE= 64 * 1024;
+
+	/** The capacity used when the length of the file is not known. */
+	private static final int DEFAULT_CAPACITY= 16 * 1024;
+
+	/** The maximal size of an array. */
+	private static final int MAX_CAPACITY= Integer.MAX_VALUE - 8;
+
+	private ContentDecoder() {
+	}
+
+	/**
+	 * Reads the given stream to its end and decodes it with the given encoding.
+	 * The stream is not closed.
+	 *
+	 * @param stream the stream
+	 * @param encoding the name of the encoding
+	 * @param length the number of bytes expected in the stream, <code>0</code> or
+	 *            negative if not known
+	 * @return the decoded content
+	 * @throws IOException if the stream cannot be read or the encoding is not supported
+	 */
+	static String decode(InputStream stream, String encoding, long length) throws IOException {
+		CharsetDecoder decoder;
+		try {
+			decoder= Charset.forName(encoding).newDecoder();
+		} catch (UnsupportedCharsetException x) {
+			throw new UnsupportedEncodingException(encoding);
+		} catch (IllegalCharsetNameException x) {
+			throw new UnsupportedEncodingException(encoding);
+		}
+		decoder.onMalformedInput(CodingErrorAction.REPLACE);
+		decoder.onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+		int capacity= DEFAULT_CAPACITY;
+		if (length > 0)
+			capacity= (int) Math.min(MAX_CAPACITY, (long) Math.ceil(length * (double) decoder.averageCharsPerByte()) + 1);
+		CharBuffer chars= CharBuffer.allocate(capacity);
+
+		byte[] buffer= new byte[CHUNK_SIZE];
+		ByteBuffer bytes= ByteBuffer.wrap(buffer);
+		boolean endOfInput= false;
+		while (true) {
+			if (!endOfInput) {
+				int read= stream.read(buffer, bytes.position(), bytes.remaining());
+				if (read == -1)
+					endOfInput= true;
+				else
+					bytes.position(bytes.position() + read);
+			}
+
+			bytes.flip();
+			CoderResult result= decoder.decode(bytes, chars, endOfInput);
+			bytes.compact();
+			if (result.isOverflow()) {
+				chars= grow(chars, decoder.maxCharsPerByte() * bytes.position());
+			} else if (endOfInput) {
+				while (decoder.flush(chars).isOverflow())
+					chars= grow(chars, decoder.maxCharsPerByte());
+				break;
+			}
+		}
+
+		chars.flip();
+		return new String(chars.array(), 0, chars.limit());
+	}
+
+	/**
+	 * Returns a larger buffer with the content of the given buffer.
+	 *
+	 * @param chars the full buffer, in write mode
+	 * @param needed the number of characters that need to fit at least
+	 * @return the new buffer, in write mode
+	 * @throws IOException if the content would exceed the maximal size of an array
+	 */
+	private static CharBuffer grow(CharBuffer chars, float needed) throws IOException {
+		int capacity= chars.capacity();
+		if (capacity == MAX_CAPACITY)
+			throw new IOException(FileBuffersMessages.ContentDecoder_error_tooLarge);
+		long newCapacity= Math.max(capacity + (long) Math.ceil(needed) + 1, capacity + (capacity >> 1));
+		CharBuffer grown= CharBuffer.allocate((int) Math.min(MAX_CAPACITY, newCapacity));
+		chars.flip();
+		grown.put(chars);
+		return grown;
+	}
+}
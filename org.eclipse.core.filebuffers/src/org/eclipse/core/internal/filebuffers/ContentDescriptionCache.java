@@ -0,0 +1,204 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.core.internal.filebuffers;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.eclipse.core.filesystem.IFileInfo;
+import org.eclipse.core.filesystem.IFileStore;
+
+import org.eclipse.core.runtime.Platform;
+import org.eclipse.core.runtime.content.IContentDescription;
+import org.eclipse.core.runtime.content.IContentType;
+import org.eclipse.core.runtime.content.IContentTypeManager;
+import org.eclipse.core.runtime.content.IContentTypeManager.ContentTypeChangeEvent;
+import org.eclipse.core.runtime.content.IContentTypeManager.IContentTypeChangeListener;
+
+
+/**
+ * Caches the content descriptions of file stores: their charset, whether they start
+ * with a byte order mark and their content type. This allows file buffers to skip
+ * reading the beginning of a file store again as long as it has not changed.
+ * <p>
+ * The information is tagged with the last modification time and the length of the
+ * file store and only returned while both are the same. The cache is cleared when
+ * content types change. It keeps a limited number of entries and drops the least
+ * recently used ones first.
+ * </p>
+ * <p>
+ * The cache can be accessed from any thread.
+ * </p>
+ * <p>
+ * This cache is intentionally separate from the cache of binary files used by text
+ * searches in <code>org.eclipse.search</code>. File stores outside of the workspace
+ * have no modification stamp, so this cache is keyed by the file store and validated
+ * with its last modification time and length, whereas the search cache works on
+ * workspace files and their modification stamps. The two caches also hold different
+ * information, and sharing them would require new API in this bundle.
+ * </p>
+ *
+ * @since 3.6
+ */
+public final class ContentDescriptionCache {
+
+	/**
+	 * The content description of a file store in a given state. Instances are
+	 * immutable.
+	 */
+	public static final class ContentInfo {
+
+		/** The last modification time of the file store. */
+		private final long fLastModified;
+		/** The length of the file store. */
+		private final long fLength;
+		/** The charset detected from the content, <code>null</code> if none. */
+		private final String fCharset;
+		/** Tells whether the content starts with a byte order mark. */
+		private final boolean fHasBOM;
+		/** The content type, <code>null</code> if unknown. */
+		private final IContentType fContentType;
+
+		ContentInfo(IFileInfo fileInfo, IContentDescription description) {
+			fLastModified= fileInfo.getLastModified();
+			fLength= fileInfo.getLength();
+			fCharset= description != null ? description.getCharset() : null;
+			fHasBOM= description != null && description.getProperty(IContentDescription.BYTE_ORDER_MARK) != null;
+			fContentType= description != null ? description.getContentType() : null;
+		}
+
+		/**
+		 * Returns the charset detected from the content of the file store.
+		 *
+		 * @return the charset or <code>null</code> if the content does not specify one
+		 */
+		public String getCharset() {
+			return fCharset;
+		}
+
+		/**
+		 * Tells whether the content of the file store starts with a byte order mark.
+		 *
+		 * @return <code>true</code> if the content has a byte order mark
+		 */
+		public boolean hasByteOrderMark() {
+			return fHasBOM;
+		}
+
+		/**
+		 * Returns the content type of the file store.
+		 *
+		 * @return the content type or <code>null</code> if it is not known
+		 */
+		public IContentType getContentType() {
+			return fContentType;
+		}
+
+		/**
+		 * Tells whether this information is about the given state of the file store.
+		 *
+		 * @param fileInfo the information about the file store
+		 * @return <code>true</code> if the file store has not changed
+		 */
+		boolean isValid(IFileInfo fileInfo) {
+			return fLastModified == fileInfo.getLastModified() && fLength == fileInfo.getLength();
+		}
+	}
+
+	/** The maximal number of entries. */
+	private static final int MAX_ENTRIES= 10000;
+
+	/** The entries in access order, guarded by itself. */
+	private final Map<IFileStore, ContentInfo> fEntries= new LinkedHashMap<IFileStore, ContentInfo>(64, 0.75f, true) {
+		private static final long serialVersionUID= 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<IFileStore, ContentInfo> eldest) {
+			return size() > MAX_ENTRIES;
+		}
+	};
+
+	/** Clears the cache when content types change. */
+	private final IContentTypeChangeListener fContentTypeListener= new IContentTypeChangeListener() {
+		@Override
+		public void contentTypeChanged(ContentTypeChangeEvent event) {
+			clear();
+		}
+	};
+
+	/**
+	 * Creates a new cache that is cleared when content types change.
+	 */
+	ContentDescriptionCache() {
+		IContentTypeManager manager= Platform.getContentTypeManager();
+		if (manager != null)
+			manager.addContentTypeChangeListener(fContentTypeListener);
+	}
+
+	/**
+	 * Disposes this cache.
+	 */
+	void dispose() {
+		IContentTypeManager manager= Platform.getContentTypeManager();
+		if (manager != null)
+			manager.removeContentTypeChangeListener(fContentTypeListener);
+		clear();
+	}
+
+	/**
+	 * Returns the content description of the given file store in the given state.
+	 *
+	 * @param fileStore the file store
+	 * @param fileInfo the current information about the file store
+	 * @return the content information or <code>null</code> if there is none for the
+	 *         given state
+	 */
+	public ContentInfo get(IFileStore fileStore, IFileInfo fileInfo) {
+		if (!fileInfo.exists())
+			return null;
+		ContentInfo info;
+		synchronized (fEntries) {
+			info= fEntries.get(fileStore);
+		}
+		if (info == null || !info.isValid(fileInfo))
+			return null;
+		return info;
+	}
+
+	/**
+	 * Records the content description of the given file store in the given state. The
+	 * description is not recorded if the file store does not exist.
+	 *
+	 * @param fileStore the file store
+	 * @param fileInfo the information the file store had when it was described
+	 * @param description the content description or <code>null</code> if none could
+	 *            be found
+	 * @return the content information
+	 */
+	public ContentInfo put(IFileStore fileStore, IFileInfo fileInfo, IContentDescription description) {
+		ContentInfo info= new ContentInfo(fileInfo, description);
+		if (fileInfo.exists()) {
+			synchronized (fEntries) {
+				fEntries.put(fileStore, info);
+			}
+		}
+		return info;
+	}
+
+	/**
+	 * Removes all entries from this cache.
+	 */
+	public void clear() {
+		synchronized (fEntries) {
+			fEntries.clear();
+		}
+	}
+}
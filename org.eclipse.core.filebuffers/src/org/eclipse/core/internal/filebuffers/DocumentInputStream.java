@@ -0,0 +1,201 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.core.internal.filebuffers;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+
+import org.eclipse.jface.text.IDocument;
+
+
+/**
+ * An <code>InputStream</code> that returns the content of an <code>IDocument</code>
+ * encoded with a given encoder.
+ * <p>
+ * The content is read and encoded in chunks, i.e. the stream never holds a copy of the
+ * whole document content or of its encoded bytes. Like {@link DocumentReader}, the
+ * stream returns the document content as it was when the stream was created.
+ * </p>
+ * <p>
+ * If the encoder reports an error, {@link #read(byte[], int, int)} throws the
+ * corresponding {@link CharacterCodingException}. Use {@link #checkEncoding()} to find
+ * such errors before the stream is read.
+ * </p>
+ * <p>
+ * Note that {@link #close()} must be called to release any acquired resources.
+ * </p>
+ *
+ * @since 3.6
+ */
+class DocumentInputStream extends InputStream {
+
+	/** The number of characters encoded at once. */
+	private static final int CHUNK_SIZE= 8192;
+
+	/** The reader of the document. */
+	private final Reader fReader;
+	/** The encoder. */
+	private final CharsetEncoder fEncoder;
+	/** The byte order mark to write first, or <code>null</code> if none. */
+	private final byte[] fByteOrderMark;
+	/** The characters read but not yet encoded. */
+	private final CharBuffer fChars;
+	/** The bytes encoded but not yet returned, in read mode. */
+	private final ByteBuffer fBytes;
+	/** Tells whether the reader has reached the end of the document. */
+	private boolean fEndOfInput;
+	/** Tells whether all characters have been passed to the encoder. */
+	private boolean fEncoded;
+	/** Tells whether the encoder has been flushed. */
+	private boolean fFlushed;
+
+	/**
+	 * Creates a new stream that returns the given byte order mark followed by the
+	 * content of the given document encoded with the given encoder.
+	 *
+	 * @param document the document
+	 * @param encoder the encoder
+	 * @param byteOrderMark the byte order mark to write first, or <code>null</code> if none
+	 */
+	public DocumentInputStream(IDocument document, CharsetEncoder encoder, byte[] byteOrderMark) {
+		fReader= new DocumentReader(document);
+		fEncoder= encoder;
+		fByteOrderMark= byteOrderMark;
+		fChars= CharBuffer.allocate(CHUNK_SIZE);
+		int capacity= (int) Math.ceil(CHUNK_SIZE * encoder.maxBytesPerChar());
+		fBytes= ByteBuffer.allocate(Math.max(capacity, byteOrderMark != null ? byteOrderMark.length : 0));
+		rewind();
+	}
+
+	/**
+	 * Checks that the encoder reports no error for the content of this stream. The
+	 * content is encoded in chunks, the encoded bytes are discarded. Afterwards the
+	 * stream starts again at its beginning, so the checked content is exactly the
+	 * content that is returned, even if the document is modified concurrently.
+	 * <p>
+	 * Returns without encoding the content if the encoder's charset can represent
+	 * all Unicode characters. Must be called before the stream is read.
+	 * </p>
+	 *
+	 * @throws CharacterCodingException if the encoder reports an error
+	 */
+	void checkEncoding() throws CharacterCodingException {
+		if (fEncoder.charset().contains(StandardCharsets.UTF_8))
+			return;
+
+		try {
+			while (fill())
+				fBytes.position(fBytes.limit());
+			fReader.reset();
+		} catch (CharacterCodingException x) {
+			throw x;
+		} catch (IOException x) {
+			// cannot happen, the reader is open
+		}
+		rewind();
+	}
+
+	/**
+	 * Resets the encoder and the buffers so that the stream starts with the byte
+	 * order mark and the characters returned next by the reader.
+	 */
+	private void rewind() {
+		fEncoder.reset();
+		fChars.clear();
+		fChars.flip();
+		fBytes.clear();
+		if (fByteOrderMark != null)
+			fBytes.put(fByteOrderMark);
+		fBytes.flip();
+		fEndOfInput= false;
+		fEncoded= false;
+		fFlushed= false;
+	}
+
+	@Override
+	public int read() throws IOException {
+		if (!fill())
+			return -1;
+		return fBytes.get() & 0xFF;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (len == 0)
+			return 0;
+		if (!fill())
+			return -1;
+		int n= Math.min(len, fBytes.remaining());
+		fBytes.get(b, off, n);
+		return n;
+	}
+
+	@Override
+	public int available() {
+		return fBytes.remaining();
+	}
+
+	@Override
+	public void close() {
+		try {
+			fReader.close();
+		} catch (IOException x) {
+			// cannot happen
+		}
+	}
+
+	/**
+	 * Encodes the next chunk of characters if all encoded bytes have been returned.
+	 *
+	 * @return <code>true</code> if there are bytes to return, <code>false</code> at the end of the stream
+	 * @throws IOException if the document cannot be read or the encoder reports an error
+	 */
+	private boolean fill() throws IOException {
+		while (!fBytes.hasRemaining()) {
+			if (fFlushed)
+				return false;
+
+			fBytes.clear();
+			if (!fEncoded) {
+				if (!fEndOfInput && fChars.remaining() < CHUNK_SIZE / 2) {
+					fChars.compact();
+					int read= fReader.read(fChars.array(), fChars.arrayOffset() + fChars.position(), fChars.remaining());
+					if (read == -1)
+						fEndOfInput= true;
+					else
+						fChars.position(fChars.position() + read);
+					fChars.flip();
+				}
+
+				CoderResult result= fEncoder.encode(fChars, fBytes, fEndOfInput);
+				if (result.isError())
+					result.throwException();
+				fEncoded= fEndOfInput && result.isUnderflow();
+			}
+
+			if (fEncoded) {
+				CoderResult result= fEncoder.flush(fBytes);
+				if (result.isError())
+					result.throwException();
+				fFlushed= result.isUnderflow();
+			}
+			fBytes.flip();
+		}
+		return true;
+	}
+}
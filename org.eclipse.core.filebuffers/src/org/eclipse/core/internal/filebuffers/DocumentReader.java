@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2007 IBM Corporation and others.
+ * Copyright (c) 2000, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -100,6 +100,12 @@ class DocumentReader extends Reader {
 	/** The current offset. */
 	private int fOffset= 0;
 
+	/**
+	 * The marked offset.
+	 * @since 3.6
+	 */
+	private int fMark= 0;
+
 	/** The document. */
 	private IDocument fDocument;
 
@@ -156,18 +162,47 @@ class DocumentReader extends Reader {
 
 	@Override
 	public int read(char[] cbuf, int off, int len) throws IOException {
-		int i= 0;
-		try {
-			for (; i < len && fOffset < fLength; i++)
-				cbuf[off + i]=  fCharSequence.charAt(fOffset++);
-			if (i > 0)
-				return i;
-
-			return -1;
-		} catch (NullPointerException x) {
+		CharSequence sequence= fCharSequence;
+		if (sequence == null)
 			throw new IOException(FileBuffersMessages.DocumentInputStream_error_streamClosed);
+
+		int n= Math.min(len, fLength - fOffset);
+		if (n <= 0)
+			return len == 0 ? 0 : -1;
+
+		try {
+			// copy the characters in one chunk instead of accessing the document per character
+			sequence.subSequence(fOffset, fOffset + n).toString().getChars(0, n, cbuf, off);
 		} catch (IndexOutOfBoundsException x) {
-			return i-1;
+			return -1;
 		}
+		fOffset+= n;
+		return n;
+	}
+
+	@Override
+	public boolean markSupported() {
+		return true;
+	}
+
+	@Override
+	public void mark(int readAheadLimit) throws IOException {
+		if (fCharSequence == null)
+			throw new IOException(FileBuffersMessages.DocumentInputStream_error_streamClosed);
+		fMark= fOffset;
+	}
+
+	/**
+	 * Repositions this reader to the marked offset, or to the beginning if
+	 * it has not been marked. The reader returns the same content again.
+	 *
+	 * @throws IOException if the reader has been closed
+	 * @since 3.6
+	 */
+	@Override
+	public void reset() throws IOException {
+		if (fCharSequence == null)
+			throw new IOException(FileBuffersMessages.DocumentInputStream_error_streamClosed);
+		fOffset= fMark;
 	}
 }
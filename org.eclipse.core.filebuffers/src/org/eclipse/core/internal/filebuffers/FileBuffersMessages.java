@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2014 IBM Corporation and others.
+ * Copyright (c) 2000, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -44,6 +44,7 @@ final class FileBuffersMessages extends NLS {
 	public static String TextFileBufferManager_error_documentFactoryFailed;
 	public static String TextFileBufferManager_warning_documentSetupInstallsDefaultPartitioner;
 	public static String DocumentInputStream_error_streamClosed;
+	public static String ContentDecoder_error_tooLarge;
 
 	static {
 		NLS.initializeMessages(BUNDLE_NAME, FileBuffersMessages.class);
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2007 IBM Corporation and others.
+ * Copyright (c) 2000, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -11,6 +11,7 @@
 package org.eclipse.core.internal.filebuffers;
 
 import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
 
 import org.eclipse.core.runtime.Assert;
 import org.eclipse.core.runtime.Platform;
@@ -33,6 +34,11 @@ public class FileBuffersPlugin extends Plugin {
 	private static FileBuffersPlugin fgPlugin;
 	/** The file buffer manager */
 	private ITextFileBufferManager fTextFileBufferManager;
+	/**
+	 * The content description cache
+	 * @since 3.6
+	 */
+	private ContentDescriptionCache fContentDescriptionCache;
 
 	/**
 	 * Creates a plug-in instance.
@@ -66,4 +72,31 @@ public class FileBuffersPlugin extends Plugin {
 		}
 		return fTextFileBufferManager;
 	}
+
+	/**
+	 * Returns the cache of the content descriptions of file stores, which is shared by
+	 * all file store based file buffers.
+	 *
+	 * @return the content description cache
+	 * @since 3.6
+	 */
+	public synchronized ContentDescriptionCache getContentDescriptionCache() {
+		if (fContentDescriptionCache == null)
+			fContentDescriptionCache= new ContentDescriptionCache();
+		return fContentDescriptionCache;
+	}
+
+	@Override
+	public void stop(BundleContext context) throws Exception {
+		try {
+			synchronized (this) {
+				if (fContentDescriptionCache != null) {
+					fContentDescriptionCache.dispose();
+					fContentDescriptionCache= null;
+				}
+			}
+		} finally {
+			super.stop(context);
+		}
+	}
 }
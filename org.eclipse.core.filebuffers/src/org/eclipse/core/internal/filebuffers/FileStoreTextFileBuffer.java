@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2007, 2014 IBM Corporation and others.
+ * Copyright (c) 2007, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -11,16 +11,10 @@
  *******************************************************************************/
 package org.eclipse.core.internal.filebuffers;
 
-import java.io.BufferedReader;
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.Reader;
-import java.io.SequenceInputStream;
-import java.nio.ByteBuffer;
-import java.nio.CharBuffer;
 import java.nio.charset.CharacterCodingException;
 import java.nio.charset.Charset;
 import java.nio.charset.CharsetEncoder;
@@ -52,6 +46,8 @@ import org.eclipse.core.filebuffers.IPersistableAnnotationModel;
 import org.eclipse.core.filebuffers.ITextFileBuffer;
 import org.eclipse.core.filebuffers.LocationKind;
 
+import org.eclipse.core.internal.filebuffers.ContentDescriptionCache.ContentInfo;
+
 import org.eclipse.jface.text.DocumentEvent;
 import org.eclipse.jface.text.IDocument;
 import org.eclipse.jface.text.IDocumentListener;
@@ -77,14 +73,6 @@ public class FileStoreTextFileBuffer extends FileStoreFileBuffer implements ITex
 		}
 	}
 
-	/**
-	 * Reader chunk size.
-	 */
-	private static final int READER_CHUNK_SIZE= 2048;
-	/**
-	 * Buffer size.
-	 */
-	private static final int BUFFER_SIZE= 8 * READER_CHUNK_SIZE;
 	/**
 	 * Constant for representing the error status. This is considered a value object.
 	 */
@@ -182,8 +170,9 @@ public class FileStoreTextFileBuffer extends FileStoreFileBuffer implements ITex
 	}
 
 	private void setFileContents(InputStream stream, IProgressMonitor monitor) throws CoreException {
-		OutputStream out= fFileStore.openOutputStream(EFS.NONE, null);
+		OutputStream out= null;
 		try {
+			out= fFileStore.openOutputStream(EFS.NONE, null);
 			byte[] buffer= new byte[8192];
 			while (true) {
 				int bytesRead= -1;
@@ -206,7 +195,8 @@ public class FileStoreTextFileBuffer extends FileStoreFileBuffer implements ITex
 			} catch (IOException e) {
 			} finally {
 				try {
-					out.close();
+					if (out != null)
+						out.close();
 				} catch (IOException e) {
 				}
 			}
@@ -283,7 +273,6 @@ public class FileStoreTextFileBuffer extends FileStoreFileBuffer implements ITex
 	 */
 	@Override
 	public IContentType getContentType () throws CoreException {
-		InputStream stream= null;
 		try {
 			if (isDirty()) {
 				Reader reader= new DocumentReader(getDocument());
@@ -298,20 +287,42 @@ public class FileStoreTextFileBuffer extends FileStoreFileBuffer implements ITex
 					}
 				}
 			}
-			stream= fFileStore.openInputStream(EFS.NONE, null);
-			IContentDescription desc= Platform.getContentTypeManager().getDescriptionFor(stream, fFileStore.getName(), NO_PROPERTIES);
-			if (desc != null && desc.getContentType() != null)
-				return desc.getContentType();
-			return null;
+			return getContentInfo(fFileStore.fetchInfo()).getContentType();
 		} catch (IOException x) {
 			throw new CoreException(new Status(IStatus.ERROR, FileBuffersPlugin.PLUGIN_ID, IStatus.OK, NLSUtility.format(FileBuffersMessages.FileBuffer_error_queryContentDescription, fFileStore.toString()), x));
+		}
+	}
+
+	/**
+	 * Returns the content description of the file store. The file store is only read
+	 * if the shared content description cache has no description for its current last
+	 * modification time and length.
+	 *
+	 * @param fileInfo the current information about the file store
+	 * @return the content information
+	 * @throws CoreException if the file store cannot be read
+	 * @throws IOException if the content cannot be described
+	 * @since 3.6
+	 */
+	private ContentInfo getContentInfo(IFileInfo fileInfo) throws CoreException, IOException {
+		ContentDescriptionCache cache= FileBuffersPlugin.getDefault().getContentDescriptionCache();
+		ContentInfo info= cache.get(fFileStore, fileInfo);
+		if (info != null)
+			return info;
+
+		IContentDescription description;
+		InputStream stream= fFileStore.openInputStream(EFS.NONE, null);
+		try {
+			QualifiedName[] options= new QualifiedName[] { IContentDescription.CHARSET, IContentDescription.BYTE_ORDER_MARK };
+			description= Platform.getContentTypeManager().getDescriptionFor(stream, fFileStore.getName(), options);
 		} finally {
 			try {
-				if (stream != null)
-					stream.close();
-			} catch (IOException x) {
+				stream.close();
+			} catch (IOException ex) {
+				FileBuffersPlugin.getDefault().getLog().log(new Status(IStatus.ERROR, FileBuffersPlugin.PLUGIN_ID, IStatus.OK, FileBuffersMessages.JavaTextFileBuffer_error_closeStream, ex));
 			}
 		}
+		return cache.put(fFileStore, fileInfo, description);
 	}
 
 	@Override
@@ -357,30 +368,19 @@ public class FileStoreTextFileBuffer extends FileStoreFileBuffer implements ITex
 		fHasBOM= false;
 		fIsCacheUpdated= true;
 
-		InputStream stream= null;
 		try {
-			stream= getFileContents(fFileStore);
-			if (stream == null)
+			IFileInfo fileInfo= fFileStore.fetchInfo();
+			if (!fileInfo.exists())
 				return;
 
-			QualifiedName[] options= new QualifiedName[] { IContentDescription.CHARSET, IContentDescription.BYTE_ORDER_MARK };
-			IContentDescription description= Platform.getContentTypeManager().getDescriptionFor(stream, fFileStore.getName(), options);
-			if (description != null) {
-				fHasBOM= description.getProperty(IContentDescription.BYTE_ORDER_MARK) != null;
-				if (fEncoding == null)
-					fEncoding= description.getCharset();
-			}
+			ContentInfo info= getContentInfo(fileInfo);
+			fHasBOM= info.hasByteOrderMark();
+			if (fEncoding == null)
+				fEncoding= info.getCharset();
 		} catch (CoreException e) {
 			// do nothing
 		} catch (IOException e) {
 			// do nothing
-		} finally {
-			try {
-				if (stream != null)
-					stream.close();
-			} catch (IOException ex) {
-				FileBuffersPlugin.getDefault().getLog().log(new Status(IStatus.ERROR, FileBuffersPlugin.PLUGIN_ID, IStatus.OK, FileBuffersMessages.JavaTextFileBuffer_error_closeStream, ex));
-			}
 		}
 
 		// Use global default
@@ -415,81 +415,52 @@ public class FileStoreTextFileBuffer extends FileStoreFileBuffer implements ITex
 		encoder.onMalformedInput(CodingErrorAction.REPLACE);
 		encoder.onUnmappableCharacter(CodingErrorAction.REPORT);
 
-		byte[] bytes;
-		int bytesLength;
+		/*
+		 * XXX:
+		 * This is a workaround for a corresponding bug in Java readers and writer,
+		 * see http://developer.java.sun.com/developer/bugParade/bugs/4508058.html
+		 */
+		byte[] byteOrderMark= fHasBOM && CHARSET_UTF_8.equals(encoding) ? IContentDescription.BOM_UTF_8 : null;
 
+		// the content is encoded while it is written, the check covers the same content
+		DocumentInputStream stream= new DocumentInputStream(fDocument, encoder, byteOrderMark);
 		try {
-			ByteBuffer byteBuffer= encoder.encode(CharBuffer.wrap(fDocument.get()));
-			bytesLength= byteBuffer.limit();
-			if (byteBuffer.hasArray())
-				bytes= byteBuffer.array();
-			else {
-				bytes= new byte[bytesLength];
-				byteBuffer.get(bytes);
+			try {
+				stream.checkEncoding();
+			} catch (CharacterCodingException ex) {
+				Assert.isTrue(ex instanceof UnmappableCharacterException);
+				String message= NLSUtility.format(FileBuffersMessages.ResourceTextFileBuffer_error_charset_mapping_failed_message_arg, encoding);
+				IStatus s= new Status(IStatus.ERROR, FileBuffersPlugin.PLUGIN_ID, IFileBufferStatusCodes.CHARSET_MAPPING_FAILED, message, null);
+				throw new CoreException(s);
 			}
-		} catch (CharacterCodingException ex) {
-			Assert.isTrue(ex instanceof UnmappableCharacterException);
-			String message= NLSUtility.format(FileBuffersMessages.ResourceTextFileBuffer_error_charset_mapping_failed_message_arg, encoding);
-			IStatus s= new Status(IStatus.ERROR, FileBuffersPlugin.PLUGIN_ID, IFileBufferStatusCodes.CHARSET_MAPPING_FAILED, message, null);
-			throw new CoreException(s);
-		}
-
-		IFileInfo fileInfo= fFileStore.fetchInfo();
-		if (fileInfo != null && fileInfo.exists()) {
 
-			if (!overwrite)
-				checkSynchronizationState();
+			IFileInfo fileInfo= fFileStore.fetchInfo();
+			if (fileInfo != null && fileInfo.exists()) {
 
-			InputStream stream= new ByteArrayInputStream(bytes, 0, bytesLength);
+				if (!overwrite)
+					checkSynchronizationState();
 
-			/*
-			 * XXX:
-			 * This is a workaround for a corresponding bug in Java readers and writer,
-			 * see http://developer.java.sun.com/developer/bugParade/bugs/4508058.html
-			 */
-			if (fHasBOM && CHARSET_UTF_8.equals(encoding))
-				stream= new SequenceInputStream(new ByteArrayInputStream(IContentDescription.BOM_UTF_8), stream);
+				// here the file synchronizer should actually be removed and afterwards added again. However,
+				// we are already inside an operation, so the delta is sent AFTER we have added the listener
+				setFileContents(stream, monitor);
+				// set synchronization stamp to know whether the file synchronizer must become active
+				fSynchronizationStamp= fFileStore.fetchInfo().getLastModified();
 
+				if (fAnnotationModel instanceof IPersistableAnnotationModel) {
+					IPersistableAnnotationModel persistableModel= (IPersistableAnnotationModel) fAnnotationModel;
+					persistableModel.commit(fDocument);
+				}
 
-			// here the file synchronizer should actually be removed and afterwards added again. However,
-			// we are already inside an operation, so the delta is sent AFTER we have added the listener
-			setFileContents(stream, monitor);
-			// set synchronization stamp to know whether the file synchronizer must become active
-			fSynchronizationStamp= fFileStore.fetchInfo().getLastModified();
+			} else {
+				fFileStore.getParent().mkdir(EFS.NONE, null);
+				setFileContents(stream, monitor);
 
-			if (fAnnotationModel instanceof IPersistableAnnotationModel) {
-				IPersistableAnnotationModel persistableModel= (IPersistableAnnotationModel) fAnnotationModel;
-				persistableModel.commit(fDocument);
-			}
+				// set synchronization stamp to know whether the file synchronizer must become active
+				fSynchronizationStamp= fFileStore.fetchInfo().getLastModified();
 
-		} else {
-			fFileStore.getParent().mkdir(EFS.NONE, null);
-			OutputStream out= fFileStore.openOutputStream(EFS.NONE, null);
-			try {
-				/*
-				 * XXX:
-				 * This is a workaround for a corresponding bug in Java readers and writer,
-				 * see http://developer.java.sun.com/developer/bugParade/bugs/4508058.html
-				 */
-				if (fHasBOM && CHARSET_UTF_8.equals(encoding))
-					out.write(IContentDescription.BOM_UTF_8);
-
-				out.write(bytes, 0, bytesLength);
-				out.flush();
-				out.close();
-			} catch (IOException x) {
-				IStatus s= new Status(IStatus.ERROR, FileBuffersPlugin.PLUGIN_ID, IStatus.OK, x.getLocalizedMessage(), x);
-				throw new CoreException(s);
-			} finally {
-				try {
-					out.close();
-				} catch (IOException x) {
-				}
 			}
-
-			// set synchronization stamp to know whether the file synchronizer must become active
-			fSynchronizationStamp= fFileStore.fetchInfo().getLastModified();
-
+		} finally {
+			stream.close();
 		}
 	}
 
@@ -544,7 +515,6 @@ public class FileStoreTextFileBuffer extends FileStoreFileBuffer implements ITex
 		if (contentStream == null)
 			return;
 
-		Reader in= null;
 		try {
 
 			if (encoding == null)
@@ -556,25 +526,19 @@ public class FileStoreTextFileBuffer extends FileStoreFileBuffer implements ITex
 			 * see http://developer.java.sun.com/developer/bugParade/bugs/4508058.html
 			 */
 			if (hasBOM && CHARSET_UTF_8.equals(encoding)) {
+				byte[] bom= new byte[IContentDescription.BOM_UTF_8.length];
 				int n= 0;
 				do {
-					int bytes= contentStream.read(new byte[IContentDescription.BOM_UTF_8.length]);
+					// read only the rest of the BOM, the content starts right after it
+					int bytes= contentStream.read(bom, n, bom.length - n);
 					if (bytes == -1)
 						throw new IOException();
 					n += bytes;
-				} while (n < IContentDescription.BOM_UTF_8.length);
-			}
-
-			in= new BufferedReader(new InputStreamReader(contentStream, encoding), BUFFER_SIZE);
-			StringBuffer buffer= new StringBuffer(BUFFER_SIZE);
-			char[] readBuffer= new char[READER_CHUNK_SIZE];
-			int n= in.read(readBuffer);
-			while (n > 0) {
-				buffer.append(readBuffer, 0, n);
-				n= in.read(readBuffer);
+				} while (n < bom.length);
 			}
 
-			document.set(buffer.toString());
+			IFileInfo info= file.fetchInfo();
+			document.set(ContentDecoder.decode(contentStream, encoding, info != null ? info.getLength() : EFS.NONE));
 
 		} catch (IOException x) {
 			String msg= x.getMessage() == null ? "" : x.getMessage(); //$NON-NLS-1$
@@ -582,10 +546,7 @@ public class FileStoreTextFileBuffer extends FileStoreFileBuffer implements ITex
 			throw new CoreException(s);
 		} finally {
 			try {
-				if (in != null)
-					in.close();
-				else
-					contentStream.close();
+				contentStream.close();
 			} catch (IOException x) {
 			}
 		}
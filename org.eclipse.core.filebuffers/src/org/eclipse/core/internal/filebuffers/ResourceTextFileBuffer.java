@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2014 IBM Corporation and others.
+ * Copyright (c) 2000, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -10,15 +10,10 @@
  *******************************************************************************/
 package org.eclipse.core.internal.filebuffers;
 
-import java.io.BufferedReader;
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.Reader;
-import java.io.SequenceInputStream;
-import java.nio.ByteBuffer;
-import java.nio.CharBuffer;
+import java.net.URI;
 import java.nio.charset.CharacterCodingException;
 import java.nio.charset.Charset;
 import java.nio.charset.CharsetEncoder;
@@ -27,6 +22,9 @@ import java.nio.charset.IllegalCharsetNameException;
 import java.nio.charset.UnmappableCharacterException;
 import java.nio.charset.UnsupportedCharsetException;
 
+import org.eclipse.core.filesystem.EFS;
+import org.eclipse.core.filesystem.IFileInfo;
+
 import org.eclipse.core.runtime.Assert;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
@@ -77,14 +75,6 @@ public class ResourceTextFileBuffer extends ResourceFileBuffer implements ITextF
 		}
 	}
 
-	/**
-	 * Reader chunk size.
-	 */
-	static final private int READER_CHUNK_SIZE= 2048;
-	/**
-	 * Buffer size.
-	 */
-	static final private int BUFFER_SIZE= 8 * READER_CHUNK_SIZE;
 	/**
 	 * Qualified name for the encoding key.
 	 */
@@ -335,76 +325,73 @@ public class ResourceTextFileBuffer extends ResourceFileBuffer implements ITextF
 		encoder.onMalformedInput(CodingErrorAction.REPLACE);
 		encoder.onUnmappableCharacter(CodingErrorAction.REPORT);
 
-		InputStream stream;
-
-		try {
-			byte[] bytes;
-			ByteBuffer byteBuffer= encoder.encode(CharBuffer.wrap(fDocument.get()));
-			if (byteBuffer.hasArray())
-				bytes= byteBuffer.array();
-			else {
-				bytes= new byte[byteBuffer.limit()];
-				byteBuffer.get(bytes);
-			}
-			stream= new ByteArrayInputStream(bytes, 0, byteBuffer.limit());
-		} catch (CharacterCodingException ex) {
-			Assert.isTrue(ex instanceof UnmappableCharacterException);
-			String message= NLSUtility.format(FileBuffersMessages.ResourceTextFileBuffer_error_charset_mapping_failed_message_arg, encoding);
-			IStatus s= new Status(IStatus.ERROR, FileBuffersPlugin.PLUGIN_ID, IFileBufferStatusCodes.CHARSET_MAPPING_FAILED, message, ex);
-			throw new CoreException(s);
-		}
-
 		/*
 		 * XXX:
 		 * This is a workaround for a corresponding bug in Java readers and writer,
 		 * see http://developer.java.sun.com/developer/bugParade/bugs/4508058.html
 		 */
+		byte[] byteOrderMark= null;
 		if (fBOM == IContentDescription.BOM_UTF_8 && CHARSET_UTF_8.equals(encoding))
-			stream= new SequenceInputStream(new ByteArrayInputStream(IContentDescription.BOM_UTF_8), stream);
+			byteOrderMark= IContentDescription.BOM_UTF_8;
+		else if (fBOM == IContentDescription.BOM_UTF_16LE && CHARSET_UTF_16LE.equals(encoding))
+			byteOrderMark= IContentDescription.BOM_UTF_16LE;
 
-		if (fBOM == IContentDescription.BOM_UTF_16LE && CHARSET_UTF_16LE.equals(encoding))
-			stream= new SequenceInputStream(new ByteArrayInputStream(IContentDescription.BOM_UTF_16LE), stream);
+		// the content is encoded while it is written, the check covers the same content
+		DocumentInputStream stream= new DocumentInputStream(fDocument, encoder, byteOrderMark);
 
-		if (fFile.exists()) {
+		try {
+			try {
+				stream.checkEncoding();
+			} catch (CharacterCodingException ex) {
+				Assert.isTrue(ex instanceof UnmappableCharacterException);
+				String message= NLSUtility.format(FileBuffersMessages.ResourceTextFileBuffer_error_charset_mapping_failed_message_arg, encoding);
+				IStatus s= new Status(IStatus.ERROR, FileBuffersPlugin.PLUGIN_ID, IFileBufferStatusCodes.CHARSET_MAPPING_FAILED, message, ex);
+				throw new CoreException(s);
+			}
 
-			// here the file synchronizer should actually be removed and afterwards added again. However,
-			// we are already inside an operation, so the delta is sent AFTER we have added the listener
-			fFile.setContents(stream, overwrite, true, monitor);
-			// set synchronization stamp to know whether the file synchronizer must become active
+			if (fFile.exists()) {
 
-			if (fDocument instanceof IDocumentExtension4) {
-				fSynchronizationStamp= ((IDocumentExtension4)fDocument).getModificationStamp();
-				fFile.revertModificationStamp(fSynchronizationStamp);
-			} else
-				fSynchronizationStamp= fFile.getModificationStamp();
+				// here the file synchronizer should actually be removed and afterwards added again. However,
+				// we are already inside an operation, so the delta is sent AFTER we have added the listener
+				fFile.setContents(stream, overwrite, true, monitor);
+				// set synchronization stamp to know whether the file synchronizer must become active
 
-			if (fAnnotationModel instanceof IPersistableAnnotationModel) {
-				IPersistableAnnotationModel persistableModel= (IPersistableAnnotationModel) fAnnotationModel;
-				persistableModel.commit(fDocument);
-			}
+				if (fDocument instanceof IDocumentExtension4) {
+					fSynchronizationStamp= ((IDocumentExtension4)fDocument).getModificationStamp();
+					fFile.revertModificationStamp(fSynchronizationStamp);
+				} else
+					fSynchronizationStamp= fFile.getModificationStamp();
 
-		} else {
+				if (fAnnotationModel instanceof IPersistableAnnotationModel) {
+					IPersistableAnnotationModel persistableModel= (IPersistableAnnotationModel) fAnnotationModel;
+					persistableModel.commit(fDocument);
+				}
 
-			monitor= Progress.getMonitor(monitor);
-			try {
-				monitor.beginTask(FileBuffersMessages.ResourceTextFileBuffer_task_saving, 2);
-				ContainerCreator creator = new ContainerCreator(fFile.getWorkspace(), fFile.getParent().getFullPath());
-				IProgressMonitor subMonitor= new SubProgressMonitor(monitor, 1);
-				creator.createContainer(subMonitor);
-				subMonitor.done();
-
-				subMonitor= new SubProgressMonitor(monitor, 1);
-				fFile.create(stream, false, subMonitor);
-				subMonitor.done();
-
-			} finally {
-				monitor.done();
-			}
+			} else {
 
-			// set synchronization stamp to know whether the file synchronizer must become active
-			fSynchronizationStamp= fFile.getModificationStamp();
+				monitor= Progress.getMonitor(monitor);
+				try {
+					monitor.beginTask(FileBuffersMessages.ResourceTextFileBuffer_task_saving, 2);
+					ContainerCreator creator = new ContainerCreator(fFile.getWorkspace(), fFile.getParent().getFullPath());
+					IProgressMonitor subMonitor= new SubProgressMonitor(monitor, 1);
+					creator.createContainer(subMonitor);
+					subMonitor.done();
+
+					subMonitor= new SubProgressMonitor(monitor, 1);
+					fFile.create(stream, false, subMonitor);
+					subMonitor.done();
+
+				} finally {
+					monitor.done();
+				}
 
-			// TODO commit persistable annotation model
+				// set synchronization stamp to know whether the file synchronizer must become active
+				fSynchronizationStamp= fFile.getModificationStamp();
+
+				// TODO commit persistable annotation model
+			}
+		} finally {
+			stream.close();
 		}
 
 	}
@@ -510,6 +497,24 @@ public class ResourceTextFileBuffer extends ResourceFileBuffer implements ITextF
 		fManager.fireDirtyStateChanged(this, fCanBeSaved);
 	}
 
+	/**
+	 * Returns the length of the given file.
+	 *
+	 * @param file the file
+	 * @return the length in bytes, or {@link EFS#NONE} if it is not known
+	 */
+	private static long getFileLength(IFile file) {
+		URI uri= file.getLocationURI();
+		if (uri == null)
+			return EFS.NONE;
+		try {
+			IFileInfo info= EFS.getStore(uri).fetchInfo();
+			return info != null ? info.getLength() : EFS.NONE;
+		} catch (CoreException x) {
+			return EFS.NONE;
+		}
+	}
+
 	/**
 	 * Initializes the given document with the given stream using the given encoding.
 	 *
@@ -520,7 +525,6 @@ public class ResourceTextFileBuffer extends ResourceFileBuffer implements ITextF
 	 */
 	private void setDocumentContent(IDocument document, IFile file, String encoding) throws CoreException {
 		InputStream contentStream= file.getContents();
-		Reader in= null;
 		try {
 
 			if (encoding == null)
@@ -532,28 +536,23 @@ public class ResourceTextFileBuffer extends ResourceFileBuffer implements ITextF
 			 * see http://developer.java.sun.com/developer/bugParade/bugs/4508058.html
 			 */
 			if (fBOM != null && CHARSET_UTF_8.equals(encoding)) {
+				byte[] bom= new byte[IContentDescription.BOM_UTF_8.length];
 				int n= 0;
 				do {
-					int bytes= contentStream.read(new byte[IContentDescription.BOM_UTF_8.length]);
+					// read only the rest of the BOM, the content starts right after it
+					int bytes= contentStream.read(bom, n, bom.length - n);
 					if (bytes == -1)
 						throw new IOException();
 					n += bytes;
-				} while (n < IContentDescription.BOM_UTF_8.length);
+				} while (n < bom.length);
 			}
 
-			in= new BufferedReader(new InputStreamReader(contentStream, encoding), BUFFER_SIZE);
-			StringBuffer buffer= new StringBuffer(BUFFER_SIZE);
-			char[] readBuffer= new char[READER_CHUNK_SIZE];
-			int n= in.read(readBuffer);
-			while (n > 0) {
-				buffer.append(readBuffer, 0, n);
-				n= in.read(readBuffer);
-			}
+			String content= ContentDecoder.decode(contentStream, encoding, getFileLength(file));
 
 			if (document instanceof IDocumentExtension4)
-				((IDocumentExtension4)document).set(buffer.toString(), fFile.getModificationStamp());
+				((IDocumentExtension4)document).set(content, fFile.getModificationStamp());
 			else
-				document.set(buffer.toString());
+				document.set(content);
 
 		} catch (IOException x) {
 			String message= (x.getMessage() != null ? x.getMessage() : ""); //$NON-NLS-1$
@@ -561,10 +560,7 @@ public class ResourceTextFileBuffer extends ResourceFileBuffer implements ITextF
 			throw new CoreException(s);
 		} finally {
 			try {
-				if (in != null)
-					in.close();
-				else
-					contentStream.close();
+				contentStream.close();
 			} catch (IOException x) {
 			}
 		}
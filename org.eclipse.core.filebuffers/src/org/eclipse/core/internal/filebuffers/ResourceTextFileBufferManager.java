@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2007, 2011 IBM Corporation and others.
+ * Copyright (c) 2007, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -126,7 +126,7 @@ public class ResourceTextFileBufferManager extends TextFileBufferManager {
 		if (documentFromFactory != null)
 			document= documentFromFactory;
 		else
-			document= new SynchronizableDocument();
+			document= createSynchronizableDocument();
 
 		// Set the initial line delimiter
 		if (document instanceof IDocumentExtension4) {
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2010 IBM Corporation and others.
+ * Copyright (c) 2000, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -10,10 +10,14 @@
  *******************************************************************************/
 package org.eclipse.core.internal.filebuffers;
 
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
 import org.eclipse.jface.text.BadLocationException;
 import org.eclipse.jface.text.BadPartitioningException;
 import org.eclipse.jface.text.BadPositionCategoryException;
 import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.DocumentSnapshot;
 import org.eclipse.jface.text.DocumentRewriteSession;
 import org.eclipse.jface.text.DocumentRewriteSessionType;
 import org.eclipse.jface.text.IDocumentExtension4;
@@ -28,6 +32,17 @@ import org.eclipse.jface.text.Position;
  * <p>
  * Initially no locking takes place.
  * </p>
+ * <p>
+ * By default all accesses synchronize on the lock object. In read/write locking mode,
+ * only modifications synchronize on the lock object, and they additionally acquire the
+ * write lock of a read/write lock owned by the document. Read accesses acquire its read
+ * lock, i.e. they exclude modifications but not each other, so that threads reading the
+ * same document, such as reconcilers, scanners and searches, do not block each other.
+ * Note that in this mode synchronizing on the lock object still makes a sequence of
+ * modifications atomic, but no longer blocks read accesses of other threads in between.
+ * Read accesses that may modify internal state, i.e. partitioning queries and reads during
+ * a sequential rewrite, are exclusive in both modes.
+ * </p>
  *
  * @since 3.2
  */
@@ -35,6 +50,39 @@ public class SynchronizableDocument extends Document implements ISynchronizable
 
 	private Object fLockObject;
 
+	/**
+	 * The read/write lock, <code>null</code> if the document synchronizes all accesses on
+	 * the lock object.
+	 *
+	 * @since 3.6
+	 */
+	private final ReentrantReadWriteLock fReadWriteLock;
+
+	/**
+	 * The nesting depth of the sequential rewrites, modified while holding the write lock.
+	 *
+	 * @since 3.6
+	 */
+	private int fSequentialRewriteDepth;
+
+	/**
+	 * Creates a new empty document that synchronizes all accesses on its lock object.
+	 */
+	public SynchronizableDocument() {
+		this(false);
+	}
+
+	/**
+	 * Creates a new empty document.
+	 *
+	 * @param readWriteLocking <code>true</code> if read accesses should only exclude
+	 *            modifications instead of synchronizing on the lock object
+	 * @since 3.6
+	 */
+	public SynchronizableDocument(boolean readWriteLocking) {
+		fReadWriteLock= readWriteLocking ? new ReentrantReadWriteLock() : null;
+	}
+
 	@Override
 	public synchronized void setLockObject(Object lockObject) {
 		fLockObject= lockObject;
@@ -45,6 +93,70 @@ public class SynchronizableDocument extends Document implements ISynchronizable
 		return fLockObject;
 	}
 
+	/**
+	 * Tells whether this document is in read/write locking mode.
+	 *
+	 * @return <code>true</code> if read accesses only exclude modifications
+	 * @since 3.6
+	 */
+	public boolean isReadWriteLocking() {
+		return fReadWriteLock != null;
+	}
+
+	/**
+	 * Acquires the lock for a read access in read/write locking mode. Reads during a
+	 * sequential rewrite may modify the text store and therefore acquire the write lock,
+	 * unless the calling thread already holds the read lock. A read lock cannot be
+	 * upgraded, and the outer read access already excludes all modifications.
+	 * <p>
+	 * Callers must release the returned lock.
+	 * </p>
+	 *
+	 * @return the acquired lock, or <code>null</code> if the read access must synchronize
+	 *         on the lock object
+	 * @since 3.6
+	 */
+	private Lock lockForReading() {
+		if (fReadWriteLock == null)
+			return null;
+
+		Lock lock= fReadWriteLock.readLock();
+		lock.lock();
+		if (fSequentialRewriteDepth > 0 && fReadWriteLock.getReadHoldCount() == 1) {
+			lock.unlock();
+			lock= fReadWriteLock.writeLock();
+			lock.lock();
+		}
+		return lock;
+	}
+
+	/**
+	 * Acquires the write lock in read/write locking mode. Must be called while synchronized
+	 * on the lock object, and the returned lock must be released with {@link #unlock(Lock)}.
+	 *
+	 * @return the acquired lock, or <code>null</code> if not in read/write locking mode
+	 * @since 3.6
+	 */
+	private Lock lockForWriting() {
+		if (fReadWriteLock == null)
+			return null;
+
+		Lock lock= fReadWriteLock.writeLock();
+		lock.lock();
+		return lock;
+	}
+
+	/**
+	 * Releases the given lock.
+	 *
+	 * @param lock the lock, may be <code>null</code>
+	 * @since 3.6
+	 */
+	private static void unlock(Lock lock) {
+		if (lock != null)
+			lock.unlock();
+	}
+
 	/**
 	 * {@inheritDoc}
 	 * 
@@ -57,10 +169,17 @@ public class SynchronizableDocument extends Document implements ISynchronizable
 		Object lockObject= getLockObject();
 		if (lockObject == null) {
 			super.startSequentialRewrite(normalized);
+			fSequentialRewriteDepth++;
 			return;
 		}
 		synchronized (lockObject) {
-			super.startSequentialRewrite(normalized);
+			Lock lock= lockForWriting();
+			try {
+				super.startSequentialRewrite(normalized);
+				fSequentialRewriteDepth++;
+			} finally {
+				unlock(lock);
+			}
 		}
 	}
 
@@ -76,10 +195,19 @@ public class SynchronizableDocument extends Document implements ISynchronizable
 		Object lockObject= getLockObject();
 		if (lockObject == null) {
 			super.stopSequentialRewrite();
+			if (fSequentialRewriteDepth > 0)
+				fSequentialRewriteDepth--;
 			return;
 		}
 		synchronized (lockObject) {
-			super.stopSequentialRewrite();
+			Lock lock= lockForWriting();
+			try {
+				super.stopSequentialRewrite();
+				if (fSequentialRewriteDepth > 0)
+					fSequentialRewriteDepth--;
+			} finally {
+				unlock(lock);
+			}
 		}
 	}
 
@@ -90,7 +218,12 @@ public class SynchronizableDocument extends Document implements ISynchronizable
 			return super.startRewriteSession(sessionType);
 		}
 		synchronized (lockObject) {
-			return super.startRewriteSession(sessionType);
+			Lock lock= lockForWriting();
+			try {
+				return super.startRewriteSession(sessionType);
+			} finally {
+				unlock(lock);
+			}
 		}
 	}
 
@@ -102,7 +235,12 @@ public class SynchronizableDocument extends Document implements ISynchronizable
 			return;
 		}
 		synchronized (lockObject) {
-			super.stopRewriteSession(session);
+			Lock lock= lockForWriting();
+			try {
+				super.stopRewriteSession(session);
+			} finally {
+				unlock(lock);
+			}
 		}
 	}
 
@@ -112,8 +250,43 @@ public class SynchronizableDocument extends Document implements ISynchronizable
 		if (lockObject == null) {
 			return super.get();
 		}
-		synchronized (lockObject) {
+		Lock lock= lockForReading();
+		if (lock == null) {
+			synchronized (lockObject) {
+				return super.get();
+			}
+		}
+		try {
 			return super.get();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The snapshot is taken while holding the lock, if any. It can be read without it.
+	 * </p>
+	 *
+	 * @since 3.6
+	 */
+	@Override
+	public DocumentSnapshot getSnapshot() {
+		Object lockObject= getLockObject();
+		if (lockObject == null) {
+			return super.getSnapshot();
+		}
+		Lock lock= lockForReading();
+		if (lock == null) {
+			synchronized (lockObject) {
+				return super.getSnapshot();
+			}
+		}
+		try {
+			return super.getSnapshot();
+		} finally {
+			lock.unlock();
 		}
 	}
 
@@ -123,8 +296,16 @@ public class SynchronizableDocument extends Document implements ISynchronizable
 		if (lockObject == null) {
 			return super.get(offset, length);
 		}
-		synchronized (lockObject) {
+		Lock lock= lockForReading();
+		if (lock == null) {
+			synchronized (lockObject) {
+				return super.get(offset, length);
+			}
+		}
+		try {
 			return super.get(offset, length);
+		} finally {
+			lock.unlock();
 		}
 	}
 
@@ -134,8 +315,16 @@ public class SynchronizableDocument extends Document implements ISynchronizable
 		if (lockObject == null) {
 			return super.getChar(offset);
 		}
-		synchronized (lockObject) {
+		Lock lock= lockForReading();
+		if (lock == null) {
+			synchronized (lockObject) {
+				return super.getChar(offset);
+			}
+		}
+		try {
 			return super.getChar(offset);
+		} finally {
+			lock.unlock();
 		}
 	}
 
@@ -145,8 +334,16 @@ public class SynchronizableDocument extends Document implements ISynchronizable
 		if (lockObject == null) {
 			return super.getModificationStamp();
 		}
-		synchronized (lockObject) {
+		Lock lock= lockForReading();
+		if (lock == null) {
+			synchronized (lockObject) {
+				return super.getModificationStamp();
+			}
+		}
+		try {
 			return super.getModificationStamp();
+		} finally {
+			lock.unlock();
 		}
 	}
 
@@ -158,7 +355,12 @@ public class SynchronizableDocument extends Document implements ISynchronizable
 			return;
 		}
 		synchronized (lockObject) {
-			super.replace(offset, length, text);
+			Lock lock= lockForWriting();
+			try {
+				super.replace(offset, length, text);
+			} finally {
+				unlock(lock);
+			}
 		}
 	}
 
@@ -170,7 +372,12 @@ public class SynchronizableDocument extends Document implements ISynchronizable
 			return;
 		}
 		synchronized (lockObject) {
-			super.replace(offset, length, text, modificationStamp);
+			Lock lock= lockForWriting();
+			try {
+				super.replace(offset, length, text, modificationStamp);
+			} finally {
+				unlock(lock);
+			}
 		}
 	}
 
@@ -182,7 +389,12 @@ public class SynchronizableDocument extends Document implements ISynchronizable
 			return;
 		}
 		synchronized (lockObject) {
-			super.set(text);
+			Lock lock= lockForWriting();
+			try {
+				super.set(text);
+			} finally {
+				unlock(lock);
+			}
 		}
 	}
 
@@ -194,7 +406,12 @@ public class SynchronizableDocument extends Document implements ISynchronizable
 			return;
 		}
 		synchronized (lockObject) {
-			super.set(text, modificationStamp);
+			Lock lock= lockForWriting();
+			try {
+				super.set(text, modificationStamp);
+			} finally {
+				unlock(lock);
+			}
 		}
 	}
 
@@ -206,7 +423,12 @@ public class SynchronizableDocument extends Document implements ISynchronizable
 			return;
 		}
 		synchronized (lockObject) {
-			super.addPosition(category, position);
+			Lock lock= lockForWriting();
+			try {
+				super.addPosition(category, position);
+			} finally {
+				unlock(lock);
+			}
 		}
 	}
 
@@ -218,7 +440,29 @@ public class SynchronizableDocument extends Document implements ISynchronizable
 			return;
 		}
 		synchronized (lockObject) {
-			super.removePosition(category, position);
+			Lock lock= lockForWriting();
+			try {
+				super.removePosition(category, position);
+			} finally {
+				unlock(lock);
+			}
+		}
+	}
+
+	@Override
+	public void replacePositions(String category, Position[] positionsToRemove, Position[] positionsToAdd) throws BadLocationException, BadPositionCategoryException {
+		Object lockObject= getLockObject();
+		if (lockObject == null) {
+			super.replacePositions(category, positionsToRemove, positionsToAdd);
+			return;
+		}
+		synchronized (lockObject) {
+			Lock lock= lockForWriting();
+			try {
+				super.replacePositions(category, positionsToRemove, positionsToAdd);
+			} finally {
+				unlock(lock);
+			}
 		}
 	}
 
@@ -228,8 +472,16 @@ public class SynchronizableDocument extends Document implements ISynchronizable
 		if (lockObject == null) {
 			return super.getPositions(category);
 		}
-		synchronized (lockObject) {
+		Lock lock= lockForReading();
+		if (lock == null) {
+			synchronized (lockObject) {
+				return super.getPositions(category);
+			}
+		}
+		try {
 			return super.getPositions(category);
+		} finally {
+			lock.unlock();
 		}
 	}
 
@@ -239,8 +491,16 @@ public class SynchronizableDocument extends Document implements ISynchronizable
 		if (lockObject == null) {
 			return super.getPositions(category, offset, length, canStartBefore, canEndAfter);
 		}
-		synchronized (lockObject) {
+		Lock lock= lockForReading();
+		if (lock == null) {
+			synchronized (lockObject) {
+				return super.getPositions(category, offset, length, canStartBefore, canEndAfter);
+			}
+		}
+		try {
 			return super.getPositions(category, offset, length, canStartBefore, canEndAfter);
+		} finally {
+			lock.unlock();
 		}
 	}
 
@@ -251,7 +511,12 @@ public class SynchronizableDocument extends Document implements ISynchronizable
 			return super.computePartitioning(partitioning, offset, length, includeZeroLengthPartitions);
 		}
 		synchronized (lockObject) {
-			return super.computePartitioning(partitioning, offset, length, includeZeroLengthPartitions);
+			Lock lock= lockForWriting();
+			try {
+				return super.computePartitioning(partitioning, offset, length, includeZeroLengthPartitions);
+			} finally {
+				unlock(lock);
+			}
 		}
 	}
 
@@ -261,8 +526,16 @@ public class SynchronizableDocument extends Document implements ISynchronizable
 		if (lockObject == null) {
 			return super.getLineDelimiter(line);
 		}
-		synchronized (lockObject) {
+		Lock lock= lockForReading();
+		if (lock == null) {
+			synchronized (lockObject) {
+				return super.getLineDelimiter(line);
+			}
+		}
+		try {
 			return super.getLineDelimiter(line);
+		} finally {
+			lock.unlock();
 		}
 	}
 
@@ -272,8 +545,16 @@ public class SynchronizableDocument extends Document implements ISynchronizable
 		if (lockObject == null) {
 			return super.getDefaultLineDelimiter();
 		}
-		synchronized (lockObject) {
+		Lock lock= lockForReading();
+		if (lock == null) {
+			synchronized (lockObject) {
+				return super.getDefaultLineDelimiter();
+			}
+		}
+		try {
 			return super.getDefaultLineDelimiter();
+		} finally {
+			lock.unlock();
 		}
 	}
 
@@ -283,8 +564,16 @@ public class SynchronizableDocument extends Document implements ISynchronizable
 		if (lockObject == null) {
 			return super.getLineInformation(line);
 		}
-		synchronized (lockObject) {
+		Lock lock= lockForReading();
+		if (lock == null) {
+			synchronized (lockObject) {
+				return super.getLineInformation(line);
+			}
+		}
+		try {
 			return super.getLineInformation(line);
+		} finally {
+			lock.unlock();
 		}
 	}
 
@@ -294,8 +583,16 @@ public class SynchronizableDocument extends Document implements ISynchronizable
 		if (lockObject == null) {
 			return super.getLineInformationOfOffset(offset);
 		}
-		synchronized (lockObject) {
+		Lock lock= lockForReading();
+		if (lock == null) {
+			synchronized (lockObject) {
+				return super.getLineInformationOfOffset(offset);
+			}
+		}
+		try {
 			return super.getLineInformationOfOffset(offset);
+		} finally {
+			lock.unlock();
 		}
 	}
 
@@ -305,8 +602,16 @@ public class SynchronizableDocument extends Document implements ISynchronizable
 		if (lockObject == null) {
 			return super.getLineLength(line);
 		}
-		synchronized (lockObject) {
+		Lock lock= lockForReading();
+		if (lock == null) {
+			synchronized (lockObject) {
+				return super.getLineLength(line);
+			}
+		}
+		try {
 			return super.getLineLength(line);
+		} finally {
+			lock.unlock();
 		}
 	}
 
@@ -316,8 +621,16 @@ public class SynchronizableDocument extends Document implements ISynchronizable
 		if (lockObject == null) {
 			return super.getLineOffset(line);
 		}
-		synchronized (lockObject) {
+		Lock lock= lockForReading();
+		if (lock == null) {
+			synchronized (lockObject) {
+				return super.getLineOffset(line);
+			}
+		}
+		try {
 			return super.getLineOffset(line);
+		} finally {
+			lock.unlock();
 		}
 	}
 
@@ -327,8 +640,16 @@ public class SynchronizableDocument extends Document implements ISynchronizable
 		if (lockObject == null) {
 			return super.getLineOfOffset(pos);
 		}
-		synchronized (lockObject) {
+		Lock lock= lockForReading();
+		if (lock == null) {
+			synchronized (lockObject) {
+				return super.getLineOfOffset(pos);
+			}
+		}
+		try {
 			return super.getLineOfOffset(pos);
+		} finally {
+			lock.unlock();
 		}
 	}
 }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2012 IBM Corporation and others.
+ * Copyright (c) 2000, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -15,10 +15,14 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
 
 import org.eclipse.core.filesystem.EFS;
 import org.eclipse.core.filesystem.IFileInfo;
@@ -30,6 +34,7 @@ import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.ISafeRunnable;
+import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Platform;
 import org.eclipse.core.runtime.SafeRunner;
@@ -37,6 +42,7 @@ import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.content.IContentDescription;
 import org.eclipse.core.runtime.content.IContentType;
 import org.eclipse.core.runtime.content.IContentTypeManager;
+import org.eclipse.core.runtime.jobs.Job;
 
 import org.eclipse.core.filebuffers.IAnnotationModelFactory;
 import org.eclipse.core.filebuffers.IDocumentSetupParticipant;
@@ -66,10 +72,103 @@ public class TextFileBufferManager implements ITextFileBufferManager {
 		}
 	}
 
+	/**
+	 * Creates file buffers in parallel. The threads running the creator take the next
+	 * file buffer to create until all are created or the creator is stopped.
+	 *
+	 * @since 3.6
+	 */
+	private static final class FileBufferCreator implements Runnable {
+
+		private final IPath[] fLocations;
+		private final AbstractFileBuffer[] fFileBuffers;
+		/** Tells which file buffers have been created successfully. */
+		private final boolean[] fCreated;
+		/** The failures of the file buffers that could not be created. */
+		private final Throwable[] fFailures;
+		/** The index of the next file buffer to create. */
+		private final AtomicInteger fNext= new AtomicInteger();
+		/** The number of file buffers whose creation has finished. */
+		private final AtomicInteger fFinished= new AtomicInteger();
+		private volatile boolean fStopped;
+
+		FileBufferCreator(IPath[] locations, AbstractFileBuffer[] fileBuffers) {
+			fLocations= locations;
+			fFileBuffers= fileBuffers;
+			fCreated= new boolean[locations.length];
+			fFailures= new Throwable[locations.length];
+		}
+
+		@Override
+		public void run() {
+			while (createNext()) {
+				// continue
+			}
+		}
+
+		/**
+		 * Creates the next file buffer. Stops the creator if the creation fails.
+		 *
+		 * @return <code>false</code> if there is no more file buffer to create
+		 */
+		boolean createNext() {
+			if (fStopped)
+				return false;
+			int i= fNext.getAndIncrement();
+			if (i >= fLocations.length)
+				return false;
+
+			try {
+				fFileBuffers[i].create(fLocations[i], null);
+				fCreated[i]= true;
+			} catch (Throwable x) {
+				fFailures[i]= x;
+				fStopped= true;
+			} finally {
+				fFinished.incrementAndGet();
+			}
+			return true;
+		}
+
+		void stop() {
+			fStopped= true;
+		}
+
+		int getFinishedCount() {
+			return fFinished.get();
+		}
+	}
+
+	/**
+	 * The maximal number of threads, including the calling thread, that read files in
+	 * {@link #connect(IPath[], LocationKind, IProgressMonitor)}.
+	 *
+	 * @since 3.6
+	 */
+	private static final int MAX_CONNECT_THREADS= 4;
+
+	/**
+	 * Tells whether the documents created by default are in read/write locking mode.
+	 *
+	 * @since 3.6
+	 */
+	private static final boolean READ_WRITE_LOCKING= Boolean.getBoolean("org.eclipse.core.filebuffers/readWriteLocking"); //$NON-NLS-1$
+
 	protected static final IContentType TEXT_CONTENT_TYPE= Platform.getContentTypeManager().getContentType(IContentTypeManager.CT_TEXT);
 
-	private Map<IPath, AbstractFileBuffer> fFilesBuffers= new HashMap<>();
-	private Map<IFileStore, FileStoreFileBuffer> fFileStoreFileBuffers= new HashMap<>();
+	/**
+	 * The file buffers by location. The map is read without locking. A file buffer is
+	 * registered exactly as long as it has connections, which are counted while its entry
+	 * is locked by the map. The first connection is added before the file buffer is
+	 * registered and the last one is removed after it has been unregistered, so that the
+	 * file buffer's connection hooks never run inside the map and may call back into
+	 * this manager.
+	 */
+	private final ConcurrentMap<IPath, AbstractFileBuffer> fFilesBuffers= new ConcurrentHashMap<>();
+	/**
+	 * The file buffers by file store, maintained like {@link #fFilesBuffers}.
+	 */
+	private final ConcurrentMap<IFileStore, FileStoreFileBuffer> fFileStoreFileBuffers= new ConcurrentHashMap<>();
 	private List<IFileBufferListener> fFileBufferListeners= new ArrayList<>();
 	protected ExtensionsRegistry fRegistry;
 	private ISynchronizationContext fSynchronizationContext;
@@ -96,69 +195,205 @@ public class TextFileBufferManager implements ITextFileBufferManager {
 		if (locationKind == LocationKind.NORMALIZE)
 			location= normalizeLocation(location);
 
-		AbstractFileBuffer fileBuffer= null;
-		synchronized (fFilesBuffers) {
-			fileBuffer= internalGetFileBuffer(location);
-			if (fileBuffer != null)  {
-				fileBuffer.connect();
-				return;
-			}
-		}
+		if (connectRegistered(fFilesBuffers, location) != null)
+			return;
 
-		fileBuffer= createFileBuffer(location, locationKind);
+		AbstractFileBuffer fileBuffer= createFileBuffer(location, locationKind);
 		if (fileBuffer == null)
 			throw new CoreException(new Status(IStatus.ERROR, FileBuffersPlugin.PLUGIN_ID, IFileBufferStatusCodes.CREATION_FAILED, FileBuffersMessages.FileBufferManager_error_canNotCreateFilebuffer, null));
 
 		fileBuffer.create(location, monitor);
 
-		synchronized (fFilesBuffers) {
-			AbstractFileBuffer oldFileBuffer= internalGetFileBuffer(location);
-			if (oldFileBuffer != null) {
-				fileBuffer.disconnect();
-				fileBuffer.dispose();
-				oldFileBuffer.connect();
-				return;
-			}
-			fileBuffer.connect();
-			fFilesBuffers.put(location, fileBuffer);
+		if (register(fFilesBuffers, location, fileBuffer, 1) != fileBuffer) {
+			// another thread has registered a file buffer for the location in the meantime
+			fileBuffer.disconnect();
+			fileBuffer.dispose();
+			return;
 		}
 
-		// Do notification outside synchronized block
+		// Do notification outside of the registry update
 		fireBufferCreated(fileBuffer);
 	}
 
 	@Override
-	public void connectFileStore(IFileStore fileStore, IProgressMonitor monitor) throws CoreException {
-		Assert.isLegal(fileStore != null);
+	public void connect(IPath[] locations, LocationKind locationKind, IProgressMonitor monitor) throws CoreException {
+		Assert.isNotNull(locations);
+		monitor= Progress.getMonitor(monitor);
+		monitor.beginTask(FileBuffersMessages.ResourceFileBuffer_task_creatingFileBuffer, locations.length);
+
+		// the locations connected so far, disconnected again if not all locations can be connected
+		List<IPath> connected= new ArrayList<>(locations.length);
+		AbstractFileBuffer[] fileBuffers= null;
+		boolean[] unused= null;
+		try {
+			// connect the existing file buffers and count the connections of the others
+			Map<IPath, int[]> pending= new LinkedHashMap<>();
+			for (int i= 0; i < locations.length; i++) {
+				IPath location= locations[i];
+				Assert.isNotNull(location);
+				if (locationKind == LocationKind.NORMALIZE)
+					location= normalizeLocation(location);
+
+				if (connectRegistered(fFilesBuffers, location) != null) {
+					connected.add(location);
+				} else {
+					int[] count= pending.get(location);
+					if (count == null)
+						pending.put(location, new int[] { 1 });
+					else
+						count[0]++;
+				}
+			}
+			monitor.worked(locations.length - pending.size());
+
+			IPath[] paths= pending.keySet().toArray(new IPath[pending.size()]);
+			fileBuffers= new AbstractFileBuffer[paths.length];
+			for (int i= 0; i < paths.length; i++) {
+				fileBuffers[i]= createFileBuffer(paths[i], locationKind);
+				if (fileBuffers[i] == null)
+					throw new CoreException(new Status(IStatus.ERROR, FileBuffersPlugin.PLUGIN_ID, IFileBufferStatusCodes.CREATION_FAILED, FileBuffersMessages.FileBufferManager_error_canNotCreateFilebuffer, null));
+			}
 
-		FileStoreFileBuffer fileBuffer= null;
-		synchronized (fFileStoreFileBuffers) {
-			fileBuffer= internalGetFileBuffer(fileStore);
-			if (fileBuffer != null)  {
-				fileBuffer.connect();
-				return;
+			FileBufferCreator creator= new FileBufferCreator(paths, fileBuffers);
+			unused= creator.fCreated;
+			createFileBuffers(creator, monitor);
+
+			List<AbstractFileBuffer> createdFileBuffers= new ArrayList<>(paths.length);
+			for (int i= 0; i < paths.length; i++) {
+				int connections= pending.get(paths[i])[0];
+				if (register(fFilesBuffers, paths[i], fileBuffers[i], connections) == fileBuffers[i]) {
+					createdFileBuffers.add(fileBuffers[i]);
+					unused[i]= false;
+				}
+				for (int j= 0; j < connections; j++)
+					connected.add(paths[i]);
+			}
+
+			// Do notification outside of the registry update
+			for (int i= 0; i < createdFileBuffers.size(); i++)
+				fireBufferCreated(createdFileBuffers.get(i));
+
+			connected= null;
+
+		} finally {
+			// dispose the file buffers that have been created but are not used
+			if (unused != null) {
+				for (int i= 0; i < unused.length; i++) {
+					if (unused[i]) {
+						try {
+							fileBuffers[i].disconnect();
+						} catch (CoreException x) {
+							// ignore, the file buffer is disposed anyway
+						}
+						fileBuffers[i].dispose();
+					}
+				}
+			}
+
+			if (connected != null) {
+				for (int i= 0; i < connected.size(); i++) {
+					try {
+						disconnect(connected.get(i), locationKind, null);
+					} catch (CoreException x) {
+						// ignore, the original exception is reported
+					}
+				}
+			}
+
+			monitor.done();
+		}
+	}
+
+	/**
+	 * Runs the given creator in a bounded number of jobs and in the calling
+	 * thread, and waits until all file buffers have been created or the
+	 * creation failed or has been canceled.
+	 *
+	 * @param creator the creator
+	 * @param monitor the progress monitor
+	 * @throws CoreException if a file buffer could not be created
+	 * @throws OperationCanceledException if the monitor has been canceled
+	 * @since 3.6
+	 */
+	private void createFileBuffers(final FileBufferCreator creator, IProgressMonitor monitor) throws CoreException {
+		int count= creator.fLocations.length;
+		int jobCount= Math.min(count, Math.min(MAX_CONNECT_THREADS, Runtime.getRuntime().availableProcessors()));
+		Job[] jobs= new Job[Math.max(jobCount - 1, 0)];
+		for (int i= 0; i < jobs.length; i++) {
+			jobs[i]= new Job(FileBuffersMessages.ResourceFileBuffer_task_creatingFileBuffer) {
+				@Override
+				protected IStatus run(IProgressMonitor jobMonitor) {
+					creator.run();
+					return Status.OK_STATUS;
+				}
+			};
+			jobs[i].setSystem(true);
+			jobs[i].schedule();
+		}
+
+		int reported= 0;
+		boolean interrupted= false;
+		try {
+			while (!monitor.isCanceled() && creator.createNext()) {
+				int finished= creator.getFinishedCount();
+				monitor.worked(finished - reported);
+				reported= finished;
 			}
+		} finally {
+			creator.stop();
+			// wait for the running jobs in any case, they use the file buffers
+			for (int i= 0; i < jobs.length; i++) {
+				if (jobs[i].cancel())
+					continue;
+				while (true) {
+					try {
+						jobs[i].join();
+						break;
+					} catch (InterruptedException x) {
+						interrupted= true;
+					}
+				}
+			}
+			if (interrupted)
+				Thread.currentThread().interrupt();
+		}
+		monitor.worked(creator.getFinishedCount() - reported);
+
+		for (int i= 0; i < count; i++) {
+			Throwable failure= creator.fFailures[i];
+			if (failure instanceof CoreException)
+				throw (CoreException) failure;
+			if (failure instanceof RuntimeException)
+				throw (RuntimeException) failure;
+			if (failure instanceof Error)
+				throw (Error) failure;
 		}
 
-		fileBuffer= createFileBuffer(fileStore);
+		if (monitor.isCanceled())
+			throw new OperationCanceledException();
+	}
+
+	@Override
+	public void connectFileStore(IFileStore fileStore, IProgressMonitor monitor) throws CoreException {
+		Assert.isLegal(fileStore != null);
+
+		if (connectRegistered(fFileStoreFileBuffers, fileStore) != null)
+			return;
+
+		FileStoreFileBuffer fileBuffer= createFileBuffer(fileStore);
 		if (fileBuffer == null)
 			throw new CoreException(new Status(IStatus.ERROR, FileBuffersPlugin.PLUGIN_ID, IFileBufferStatusCodes.CREATION_FAILED, FileBuffersMessages.FileBufferManager_error_canNotCreateFilebuffer, null));
 
 		fileBuffer.create(fileStore, monitor);
 
-		synchronized (fFileStoreFileBuffers) {
-			AbstractFileBuffer oldFileBuffer= internalGetFileBuffer(fileStore);
-			if (oldFileBuffer != null) {
-				fileBuffer.disconnect();
-				fileBuffer.dispose();
-				oldFileBuffer.connect();
-				return;
-			}
-			fileBuffer.connect();
-			fFileStoreFileBuffers.put(fileStore, fileBuffer);
+		if (register(fFileStoreFileBuffers, fileStore, fileBuffer, 1) != fileBuffer) {
+			// another thread has registered a file buffer for the file store in the meantime
+			fileBuffer.disconnect();
+			fileBuffer.dispose();
+			return;
 		}
 
-		// Do notification outside synchronized block
+		// Do notification outside of the registry update
 		fireBufferCreated(fileBuffer);
 	}
 
@@ -186,20 +421,11 @@ public class TextFileBufferManager implements ITextFileBufferManager {
 		if (locationKind == LocationKind.NORMALIZE)
 			location= normalizeLocation(location);
 
-		AbstractFileBuffer fileBuffer;
-		synchronized (fFilesBuffers) {
-			fileBuffer= internalGetFileBuffer(location);
-			if (fileBuffer == null)
-				return;
-
-			fileBuffer.disconnect();
-			if (!fileBuffer.isDisconnected())
-				return;
-
-			fFilesBuffers.remove(location);
-		}
+		AbstractFileBuffer fileBuffer= disconnectRegistered(fFilesBuffers, location);
+		if (fileBuffer == null)
+			return;
 
-		// Do notification outside synchronized block
+		// Do notification outside of the registry update
 		fireBufferDisposed(fileBuffer);
 		fileBuffer.dispose();
 	}
@@ -208,20 +434,11 @@ public class TextFileBufferManager implements ITextFileBufferManager {
 	public void disconnectFileStore(IFileStore fileStore, IProgressMonitor monitor) throws CoreException {
 		Assert.isLegal(fileStore != null);
 
-		AbstractFileBuffer fileBuffer;
-		synchronized (fFileStoreFileBuffers) {
-			fileBuffer= internalGetFileBuffer(fileStore);
-			if (fileBuffer == null)
-				return;
-
-			fileBuffer.disconnect();
-			if (!fileBuffer.isDisconnected())
-				return;
-
-			fFileStoreFileBuffers.remove(fileStore);
-		}
+		AbstractFileBuffer fileBuffer= disconnectRegistered(fFileStoreFileBuffers, fileStore);
+		if (fileBuffer == null)
+			return;
 
-		// Do notification outside synchronized block
+		// Do notification outside of the registry update
 		fireBufferDisposed(fileBuffer);
 		fileBuffer.dispose();
 	}
@@ -338,15 +555,106 @@ public class TextFileBufferManager implements ITextFileBufferManager {
 	}
 
 	private AbstractFileBuffer internalGetFileBuffer(IPath location) {
-		synchronized (fFilesBuffers) {
-			return fFilesBuffers.get(location);
-		}
+		if (location == null)
+			return null;
+		return fFilesBuffers.get(location);
 	}
 
 	private FileStoreFileBuffer internalGetFileBuffer(IFileStore fileStore) {
-		synchronized (fFileStoreFileBuffers) {
-			return fFileStoreFileBuffers.get(fileStore);
-		}
+		return fFileStoreFileBuffers.get(fileStore);
+	}
+
+	/**
+	 * Connects the file buffer registered for the given key, if any. A registered file
+	 * buffer is already connected, so its connection hook is not run.
+	 *
+	 * @param fileBuffers the registry
+	 * @param key the key of the file buffer
+	 * @return the connected file buffer or <code>null</code> if no file buffer is
+	 *         registered for the key
+	 * @since 3.6
+	 */
+	private static <K, V extends AbstractFileBuffer> V connectRegistered(ConcurrentMap<K, V> fileBuffers, K key) {
+		return fileBuffers.computeIfPresent(key, new BiFunction<K, V, V>() {
+			@Override
+			public V apply(K k, V fileBuffer) {
+				fileBuffer.connect();
+				return fileBuffer;
+			}
+		});
+	}
+
+	/**
+	 * Registers the given file buffer for the given key unless another file buffer is
+	 * already registered for it, and connects the registered file buffer the given
+	 * number of times.
+	 * <p>
+	 * The given file buffer is connected once before, outside of the registry, so that its
+	 * connection hook does not run while the entry is locked. If another file buffer is
+	 * registered, the caller has to disconnect and dispose the given one.
+	 * </p>
+	 *
+	 * @param fileBuffers the registry
+	 * @param key the key of the file buffer
+	 * @param fileBuffer the file buffer to register
+	 * @param connections the number of connections to add
+	 * @return the registered file buffer, i.e. the given one if there was none before
+	 * @since 3.6
+	 */
+	private static <K, V extends AbstractFileBuffer> V register(ConcurrentMap<K, V> fileBuffers, K key, final V fileBuffer, final int connections) {
+		fileBuffer.connect();
+		return fileBuffers.compute(key, new BiFunction<K, V, V>() {
+			@Override
+			public V apply(K k, V registered) {
+				if (registered == null) {
+					for (int i= 1; i < connections; i++)
+						fileBuffer.connect();
+					return fileBuffer;
+				}
+				for (int i= 0; i < connections; i++)
+					registered.connect();
+				return registered;
+			}
+		});
+	}
+
+	/**
+	 * Disconnects the file buffer registered for the given key, if any, and removes it
+	 * from the registry if it has no more connections. The last connection is removed
+	 * after the file buffer has been unregistered, so that its disconnection hook does
+	 * not run while the entry is locked.
+	 *
+	 * @param fileBuffers the registry
+	 * @param key the key of the file buffer
+	 * @return the removed file buffer or <code>null</code> if no file buffer has been
+	 *         removed
+	 * @throws CoreException if disconnecting the file buffer fails
+	 * @since 3.6
+	 */
+	private static <K, V extends AbstractFileBuffer> AbstractFileBuffer disconnectRegistered(ConcurrentMap<K, V> fileBuffers, K key) throws CoreException {
+		final AbstractFileBuffer[] removed= new AbstractFileBuffer[1];
+		final CoreException[] failure= new CoreException[1];
+		fileBuffers.computeIfPresent(key, new BiFunction<K, V, V>() {
+			@Override
+			public V apply(K k, V fileBuffer) {
+				if (!fileBuffer.isShared()) {
+					removed[0]= fileBuffer;
+					return null;
+				}
+				try {
+					// not the last connection, the disconnection hook is not run
+					fileBuffer.disconnect();
+				} catch (CoreException x) {
+					failure[0]= x;
+				}
+				return fileBuffer;
+			}
+		});
+		if (failure[0] != null)
+			throw failure[0];
+		if (removed[0] != null)
+			removed[0].disconnect();
+		return removed[0];
 	}
 
 	/**
@@ -374,11 +682,7 @@ public class TextFileBufferManager implements ITextFileBufferManager {
 	@Override
 	public ITextFileBuffer getTextFileBuffer(IDocument document) {
 		Assert.isLegal(document != null);
-		Iterator<AbstractFileBuffer> iter;
-		synchronized (fFilesBuffers) {
-			iter= new ArrayList<>(fFilesBuffers.values()).iterator();
-		}
-
+		Iterator<? extends AbstractFileBuffer> iter= fFilesBuffers.values().iterator();
 		while (iter.hasNext()) {
 			Object buffer= iter.next();
 			if (buffer instanceof ITextFileBuffer) {
@@ -390,9 +694,7 @@ public class TextFileBufferManager implements ITextFileBufferManager {
 				}
 			}
 		}
-		synchronized (fFileStoreFileBuffers) {
-			iter= new ArrayList<AbstractFileBuffer>(fFileStoreFileBuffers.values()).iterator();
-		}
+		iter= fFileStoreFileBuffers.values().iterator();
 		while (iter.hasNext()) {
 			Object buffer= iter.next();
 			if (buffer instanceof ITextFileBuffer) {
@@ -408,18 +710,14 @@ public class TextFileBufferManager implements ITextFileBufferManager {
 
 	@Override
 	public IFileBuffer[] getFileBuffers() {
-		synchronized (fFilesBuffers) {
-			Collection<AbstractFileBuffer> values= fFilesBuffers.values();
-			return values.toArray(new IFileBuffer[values.size()]);
-		}
+		Collection<AbstractFileBuffer> values= fFilesBuffers.values();
+		return values.toArray(new IFileBuffer[values.size()]);
 	}
 
 	@Override
 	public IFileBuffer[] getFileStoreFileBuffers() {
-		synchronized (fFileStoreFileBuffers) {
-			Collection<FileStoreFileBuffer> values= fFileStoreFileBuffers.values();
-			return values.toArray(new IFileBuffer[values.size()]);
-		}
+		Collection<FileStoreFileBuffer> values= fFileStoreFileBuffers.values();
+		return values.toArray(new IFileBuffer[values.size()]);
 	}
 
 	@Override
@@ -438,6 +736,22 @@ public class TextFileBufferManager implements ITextFileBufferManager {
 		return createEmptyDocument(location, LocationKind.NORMALIZE);
 	}
 
+	/**
+	 * Creates the document used for a location without a contributed document factory.
+	 * <p>
+	 * The document is in read/write locking mode if the system property
+	 * <code>org.eclipse.core.filebuffers/readWriteLocking</code> is <code>true</code>.
+	 * Subclasses may override to decide differently.
+	 * </p>
+	 *
+	 * @return the new document
+	 * @see SynchronizableDocument#SynchronizableDocument(boolean)
+	 * @since 3.6
+	 */
+	protected IDocument createSynchronizableDocument() {
+		return new SynchronizableDocument(READ_WRITE_LOCKING);
+	}
+
 	@Override
 	public IDocument createEmptyDocument(final IPath location, final LocationKind locationKind) {
 		IDocument documentFromFactory= createDocumentFromFactory(location, locationKind);
@@ -445,7 +759,7 @@ public class TextFileBufferManager implements ITextFileBufferManager {
 		if (documentFromFactory != null)
 			document= documentFromFactory;
 		else
-			document= new SynchronizableDocument();
+			document= createSynchronizableDocument();
 
 		if (location == null)
 			return document;
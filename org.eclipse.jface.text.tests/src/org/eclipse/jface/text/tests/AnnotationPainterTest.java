@@ -0,0 +1,272 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jface.text.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.custom.StyleRange;
+import org.eclipse.swt.custom.StyledText;
+import org.eclipse.swt.graphics.Color;
+import org.eclipse.swt.graphics.GC;
+import org.eclipse.swt.graphics.Rectangle;
+import org.eclipse.swt.layout.FillLayout;
+import org.eclipse.swt.widgets.Canvas;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.Shell;
+
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.IPainter;
+import org.eclipse.jface.text.Position;
+import org.eclipse.jface.text.Region;
+import org.eclipse.jface.text.TextPresentation;
+import org.eclipse.jface.text.source.Annotation;
+import org.eclipse.jface.text.source.AnnotationModel;
+import org.eclipse.jface.text.source.AnnotationPainter;
+import org.eclipse.jface.text.source.AnnotationPainter.IDrawingStrategy;
+import org.eclipse.jface.text.source.AnnotationPainter.ITextStyleStrategy;
+import org.eclipse.jface.text.source.IAnnotationAccess;
+import org.eclipse.jface.text.source.IAnnotationAccessExtension;
+import org.eclipse.jface.text.source.IAnnotationModel;
+import org.eclipse.jface.text.source.ISourceViewer;
+import org.eclipse.jface.text.source.SourceViewer;
+
+/**
+ * Tests the incremental updates of the decorations of the {@link AnnotationPainter}.
+ *
+ * @since 3.11
+ */
+public class AnnotationPainterTest {
+
+	private static final String DRAWN= "org.eclipse.jface.text.tests.drawn"; //$NON-NLS-1$
+
+	private static final String HIGHLIGHTED= "org.eclipse.jface.text.tests.highlighted"; //$NON-NLS-1$
+
+	/**
+	 * Annotation access for annotations without super types.
+	 */
+	private static class AnnotationAccess implements IAnnotationAccess, IAnnotationAccessExtension {
+		@Override
+		public Object getType(Annotation annotation) {
+			return annotation.getType();
+		}
+		@Override
+		public boolean isMultiLine(Annotation annotation) {
+			return true;
+		}
+		@Override
+		public boolean isTemporary(Annotation annotation) {
+			return !annotation.isPersistent();
+		}
+		@Override
+		public String getTypeLabel(Annotation annotation) {
+			return null;
+		}
+		@Override
+		public int getLayer(Annotation annotation) {
+			return 0;
+		}
+		@Override
+		public void paint(Annotation annotation, GC gc, Canvas canvas, Rectangle bounds) {
+		}
+		@Override
+		public boolean isPaintable(Annotation annotation) {
+			return false;
+		}
+		@Override
+		public boolean isSubtype(Object annotationType, Object potentialSupertype) {
+			return annotationType.equals(potentialSupertype);
+		}
+		@Override
+		public Object[] getSupertypes(Object annotationType) {
+			return new Object[] { annotationType };
+		}
+	}
+
+	/**
+	 * Drawing strategy that records the annotations for which a redraw is requested, i.e.
+	 * which are drawn without a graphics context.
+	 */
+	private static class DrawingStrategy implements IDrawingStrategy {
+		final List<Annotation> fRequested= new ArrayList<>();
+		@Override
+		public void draw(Annotation annotation, GC gc, StyledText textWidget, int offset, int length, Color color) {
+			if (gc == null)
+				fRequested.add(annotation);
+		}
+	}
+
+	/**
+	 * Text style strategy that records the styled ranges.
+	 */
+	private static class TextStyleStrategy implements ITextStyleStrategy {
+		final List<StyleRange> fStyled= new ArrayList<>();
+		@Override
+		public void applyTextStyle(StyleRange styleRange, Color annotationColor) {
+			fStyled.add(styleRange);
+		}
+	}
+
+	private Shell fShell;
+
+	private Document fDocument;
+
+	private AnnotationModel fModel;
+
+	private AnnotationPainter fPainter;
+
+	private DrawingStrategy fDrawingStrategy;
+
+	private TextStyleStrategy fTextStyleStrategy;
+
+
+	@Before
+	public void setUp() {
+		StringBuffer buffer= new StringBuffer();
+		for (int i= 0; i < 10; i++)
+			buffer.append("line ").append(i).append('\n'); //$NON-NLS-1$
+		fDocument= new Document(buffer.toString());
+		fModel= new AnnotationModel();
+		fModel.connect(fDocument);
+
+		fShell= new Shell();
+		fShell.setLayout(new FillLayout());
+		SourceViewer viewer= new SourceViewer(fShell, null, SWT.NONE);
+		viewer.setDocument(fDocument);
+		fShell.setSize(400, 400);
+		fShell.open();
+
+		// give the painter the model itself, so that it receives the model's incremental events
+		fPainter= new AnnotationPainter(viewer, new AnnotationAccess()) {
+			@Override
+			protected IAnnotationModel findAnnotationModel(ISourceViewer sourceViewer) {
+				return fModel;
+			}
+		};
+		Color color= fShell.getDisplay().getSystemColor(SWT.COLOR_RED);
+		fDrawingStrategy= new DrawingStrategy();
+		fPainter.addDrawingStrategy(DRAWN, fDrawingStrategy);
+		fPainter.addAnnotationType(DRAWN, DRAWN);
+		fPainter.setAnnotationTypeColor(DRAWN, color);
+		fTextStyleStrategy= new TextStyleStrategy();
+		fPainter.addTextStyleStrategy(HIGHLIGHTED, fTextStyleStrategy);
+		fPainter.addAnnotationType(HIGHLIGHTED, HIGHLIGHTED);
+		fPainter.setAnnotationTypeColor(HIGHLIGHTED, color);
+		fPainter.paint(IPainter.CONFIGURATION);
+		processEvents();
+	}
+
+	@After
+	public void tearDown() {
+		fPainter.deactivate(false);
+		fPainter.dispose();
+		fShell.dispose();
+		fModel.disconnect(fDocument);
+	}
+
+	private void processEvents() {
+		Display display= fShell.getDisplay();
+		while (display.readAndDispatch()) {
+			// process pending updates
+		}
+	}
+
+	private Position getLine(int line) throws BadLocationException {
+		return new Position(fDocument.getLineOffset(line), 4);
+	}
+
+	private Annotation addAnnotation(String type, int line) throws BadLocationException {
+		Annotation annotation= new Annotation(type, false, null);
+		fModel.addAnnotation(annotation, getLine(line));
+		processEvents();
+		return annotation;
+	}
+
+	private List<StyleRange> applyTextPresentation(int line) throws BadLocationException {
+		fTextStyleStrategy.fStyled.clear();
+		fPainter.applyTextPresentation(new TextPresentation(new Region(fDocument.getLineOffset(line), fDocument.getLineLength(line)), 10));
+		return fTextStyleStrategy.fStyled;
+	}
+
+	@Test
+	public void testAddAnnotation() throws BadLocationException {
+		Annotation annotation= addAnnotation(DRAWN, 1);
+		assertTrue(fDrawingStrategy.fRequested.contains(annotation));
+	}
+
+	@Test
+	public void testRemoveAnnotation() throws BadLocationException {
+		Annotation annotation= addAnnotation(DRAWN, 1);
+		fDrawingStrategy.fRequested.clear();
+
+		fModel.removeAnnotation(annotation);
+		processEvents();
+		assertTrue(fDrawingStrategy.fRequested.contains(annotation));
+
+		// the painter has forgotten the decoration
+		fDrawingStrategy.fRequested.clear();
+		fPainter.paint(IPainter.CONFIGURATION);
+		assertFalse(fDrawingStrategy.fRequested.contains(annotation));
+	}
+
+	@Test
+	public void testChangeAnnotation() throws BadLocationException {
+		Annotation annotation= addAnnotation(DRAWN, 1);
+		fDrawingStrategy.fRequested.clear();
+
+		fModel.modifyAnnotationPosition(annotation, getLine(3));
+		processEvents();
+		assertTrue(fDrawingStrategy.fRequested.contains(annotation));
+	}
+
+	@Test
+	public void testChangeAnnotationRedrawsChangedRangeOnly() throws BadLocationException {
+		Annotation changed= addAnnotation(DRAWN, 1);
+		Annotation unchanged= addAnnotation(DRAWN, 6);
+		fDrawingStrategy.fRequested.clear();
+
+		fModel.modifyAnnotationPosition(changed, getLine(2));
+		processEvents();
+		assertTrue(fDrawingStrategy.fRequested.contains(changed));
+		assertFalse(fDrawingStrategy.fRequested.contains(unchanged));
+	}
+
+	@Test
+	public void testHighlightedAnnotations() throws BadLocationException {
+		Annotation first= addAnnotation(HIGHLIGHTED, 1);
+		addAnnotation(HIGHLIGHTED, 6);
+
+		// only the highlighted decorations in the region are applied
+		List<StyleRange> styled= applyTextPresentation(1);
+		assertEquals(1, styled.size());
+		assertEquals(fDocument.getLineOffset(1), styled.get(0).start);
+
+		fModel.modifyAnnotationPosition(first, getLine(2));
+		processEvents();
+		assertEquals(0, applyTextPresentation(1).size());
+		assertEquals(1, applyTextPresentation(2).size());
+
+		fModel.removeAnnotation(first);
+		processEvents();
+		assertEquals(0, applyTextPresentation(2).size());
+		assertEquals(1, applyTextPresentation(6).size());
+	}
+}
@@ -34,6 +34,9 @@ import org.eclipse.jface.text.tests.rules.WordRuleTest;
 		TextPresentationTest.class,
 		DefaultUndoManagerTest.class,
 		TextViewerTest.class,
+		OverviewRulerTest.class,
+		AnnotationPainterTest.class,
+		LineNumberChangeRulerColumnTest.class,
 		TextViewerUndoManagerTest.class,
 		DefaultPairMatcherTest.class,
 		DefaultPairMatcherTest2.class,
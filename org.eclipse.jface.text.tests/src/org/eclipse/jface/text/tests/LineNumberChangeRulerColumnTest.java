@@ -0,0 +1,198 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jface.text.tests;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.graphics.Color;
+import org.eclipse.swt.graphics.RGB;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.Shell;
+
+import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.source.AnnotationModel;
+import org.eclipse.jface.text.source.AnnotationModelEvent;
+import org.eclipse.jface.text.source.CompositeRuler;
+import org.eclipse.jface.text.source.IChangeRulerColumn;
+import org.eclipse.jface.text.source.ILineDiffInfo;
+import org.eclipse.jface.text.source.ILineDiffer;
+import org.eclipse.jface.text.source.ISharedTextColors;
+import org.eclipse.jface.text.source.LineNumberChangeRulerColumn;
+import org.eclipse.jface.text.source.SourceViewer;
+
+/**
+ * Tests the quick diff line infos cached by the {@link LineNumberChangeRulerColumn}.
+ *
+ * @since 3.11
+ */
+public class LineNumberChangeRulerColumnTest {
+
+	/**
+	 * Line differ returning the infos set by the test and counting the queries.
+	 */
+	private static class TestDiffer extends AnnotationModel implements ILineDiffer {
+		final Map<Integer, Integer> fChangeTypes= new HashMap<>();
+		int fQueries;
+
+		@Override
+		public ILineDiffInfo getLineInfo(int line) {
+			fQueries++;
+			final Integer changeType= fChangeTypes.get(Integer.valueOf(line));
+			return new ILineDiffInfo() {
+				@Override
+				public int getRemovedLinesBelow() {
+					return 0;
+				}
+				@Override
+				public int getRemovedLinesAbove() {
+					return 0;
+				}
+				@Override
+				public int getChangeType() {
+					return changeType != null ? changeType.intValue() : UNCHANGED;
+				}
+				@Override
+				public boolean hasChanges() {
+					return changeType != null;
+				}
+				@Override
+				public String[] getOriginalText() {
+					return new String[0];
+				}
+			};
+		}
+
+		void setChangeType(int line, int changeType) {
+			fChangeTypes.put(Integer.valueOf(line), Integer.valueOf(changeType));
+		}
+
+		void fireChanged() {
+			fireModelChanged(new AnnotationModelEvent(this, true));
+		}
+
+		@Override
+		public void revertLine(int line) {
+		}
+		@Override
+		public void revertBlock(int line) {
+		}
+		@Override
+		public void revertSelection(int line, int nLines) {
+		}
+		@Override
+		public int restoreAfterLine(int line) {
+			return 0;
+		}
+	}
+
+	/**
+	 * Column giving access to the displayed strings.
+	 */
+	private static class TestColumn extends LineNumberChangeRulerColumn {
+		TestColumn(ISharedTextColors sharedColors) {
+			super(sharedColors);
+		}
+
+		String getDisplayString(int line) {
+			return createDisplayString(line);
+		}
+	}
+
+	/**
+	 * Colors taken from the display, not to be disposed.
+	 */
+	private static class SharedTextColors implements ISharedTextColors {
+		@Override
+		public Color getColor(RGB rgb) {
+			return Display.getDefault().getSystemColor(SWT.COLOR_RED);
+		}
+		@Override
+		public void dispose() {
+		}
+	}
+
+	private Shell fShell;
+
+	private Document fDocument;
+
+	private TestDiffer fDiffer;
+
+	private TestColumn fColumn;
+
+
+	@Before
+	public void setUp() {
+		fDocument= new Document("line 0\nline 1\nline 2\nline 3\n"); //$NON-NLS-1$
+		fDiffer= new TestDiffer();
+		AnnotationModel model= new AnnotationModel();
+		model.addAnnotationModel(IChangeRulerColumn.QUICK_DIFF_MODEL_ID, fDiffer);
+
+		fShell= new Shell();
+		fShell.setSize(300, 300);
+		CompositeRuler ruler= new CompositeRuler();
+		fColumn= new TestColumn(new SharedTextColors());
+		fColumn.showLineNumbers(false);
+		fColumn.setDisplayMode(true);
+		ruler.addDecorator(0, fColumn);
+		SourceViewer viewer= new SourceViewer(fShell, ruler, SWT.NONE);
+		viewer.getControl().setSize(300, 300);
+		viewer.setDocument(fDocument);
+		fColumn.setModel(model);
+		fShell.open();
+	}
+
+	@After
+	public void tearDown() {
+		fShell.dispose();
+	}
+
+	private void paint() {
+		fColumn.redraw();
+		Display display= fShell.getDisplay();
+		while (display.readAndDispatch()) {
+			// process pending paints
+		}
+	}
+
+	@Test
+	public void testCachedLineInfos() throws Exception {
+		fDiffer.setChangeType(1, ILineDiffInfo.CHANGED);
+		paint();
+		assertEquals("~", fColumn.getDisplayString(1)); //$NON-NLS-1$
+
+		// painting again does not query the differ for the visible lines
+		int queries= fDiffer.fQueries;
+		paint();
+		assertEquals("~", fColumn.getDisplayString(1)); //$NON-NLS-1$
+		assertEquals(queries, fDiffer.fQueries);
+
+		// a change of the differ is shown
+		fDiffer.setChangeType(1, ILineDiffInfo.ADDED);
+		fDiffer.fireChanged();
+		paint();
+		assertEquals("+", fColumn.getDisplayString(1)); //$NON-NLS-1$
+
+		// a change of the document is shown even if the differ has not fired yet
+		fDiffer.setChangeType(2, ILineDiffInfo.CHANGED);
+		fDocument.replace(fDocument.getLineOffset(2), 0, "x"); //$NON-NLS-1$
+		paint();
+		assertEquals("~", fColumn.getDisplayString(2)); //$NON-NLS-1$
+		assertEquals(" ", fColumn.getDisplayString(3)); //$NON-NLS-1$
+	}
+}
@@ -0,0 +1,213 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jface.text.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.graphics.Color;
+import org.eclipse.swt.graphics.GC;
+import org.eclipse.swt.graphics.RGB;
+import org.eclipse.swt.graphics.Rectangle;
+import org.eclipse.swt.layout.FillLayout;
+import org.eclipse.swt.widgets.Canvas;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.Event;
+import org.eclipse.swt.widgets.Shell;
+
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.Position;
+import org.eclipse.jface.text.TextViewer;
+import org.eclipse.jface.text.source.Annotation;
+import org.eclipse.jface.text.source.AnnotationModel;
+import org.eclipse.jface.text.source.AnnotationModelEvent;
+import org.eclipse.jface.text.source.IAnnotationAccess;
+import org.eclipse.jface.text.source.IAnnotationAccessExtension;
+import org.eclipse.jface.text.source.IAnnotationModel;
+import org.eclipse.jface.text.source.IAnnotationModelListener;
+import org.eclipse.jface.text.source.IAnnotationModelListenerExtension;
+import org.eclipse.jface.text.source.ISharedTextColors;
+import org.eclipse.jface.text.source.OverviewRuler;
+
+/**
+ * Tests the annotations cached by the {@link OverviewRuler}.
+ *
+ * @since 3.11
+ */
+public class OverviewRulerTest {
+
+	private static final String TYPE= "org.eclipse.jface.text.tests.overview"; //$NON-NLS-1$
+
+	private static final String LABEL= "Overview"; //$NON-NLS-1$
+
+	/**
+	 * Annotation access for annotations of one type.
+	 */
+	private static class AnnotationAccess implements IAnnotationAccess, IAnnotationAccessExtension {
+		@Override
+		public Object getType(Annotation annotation) {
+			return annotation.getType();
+		}
+		@Override
+		public boolean isMultiLine(Annotation annotation) {
+			return true;
+		}
+		@Override
+		public boolean isTemporary(Annotation annotation) {
+			return !annotation.isPersistent();
+		}
+		@Override
+		public String getTypeLabel(Annotation annotation) {
+			return LABEL;
+		}
+		@Override
+		public int getLayer(Annotation annotation) {
+			return 0;
+		}
+		@Override
+		public void paint(Annotation annotation, GC gc, Canvas canvas, Rectangle bounds) {
+		}
+		@Override
+		public boolean isPaintable(Annotation annotation) {
+			return false;
+		}
+		@Override
+		public boolean isSubtype(Object annotationType, Object potentialSupertype) {
+			return annotationType.equals(potentialSupertype);
+		}
+		@Override
+		public Object[] getSupertypes(Object annotationType) {
+			return new Object[] { annotationType };
+		}
+	}
+
+	/**
+	 * Colors taken from the display, not to be disposed.
+	 */
+	private static class SharedTextColors implements ISharedTextColors {
+		@Override
+		public Color getColor(RGB rgb) {
+			return Display.getDefault().getSystemColor(SWT.COLOR_RED);
+		}
+		@Override
+		public void dispose() {
+		}
+	}
+
+	private Shell fShell;
+
+	private Document fDocument;
+
+	private AnnotationModel fModel;
+
+	private OverviewRuler fRuler;
+
+
+	@Before
+	public void setUp() {
+		fDocument= new Document("line 1\nline 2\nline 3\nline 4\n"); //$NON-NLS-1$
+		fModel= new AnnotationModel();
+		fModel.connect(fDocument);
+
+		fShell= new Shell();
+		fShell.setLayout(new FillLayout());
+		TextViewer viewer= new TextViewer(fShell, SWT.NONE);
+		viewer.setDocument(fDocument);
+		fRuler= new OverviewRuler(new AnnotationAccess(), 12, new SharedTextColors());
+		fRuler.addAnnotationType(TYPE);
+		fRuler.addHeaderAnnotationType(TYPE);
+		fRuler.setAnnotationTypeLayer(TYPE, 1);
+		fRuler.setAnnotationTypeColor(TYPE, fShell.getDisplay().getSystemColor(SWT.COLOR_RED));
+		fRuler.createControl(fShell, viewer);
+		fShell.setSize(200, 200);
+		fShell.open();
+	}
+
+	@After
+	public void tearDown() {
+		fShell.dispose();
+		fModel.disconnect(fDocument);
+	}
+
+	private void processEvents() {
+		Display display= fShell.getDisplay();
+		while (display.readAndDispatch()) {
+			// process pending updates
+		}
+	}
+
+	/**
+	 * Returns the tool tip of the ruler's header, which counts the cached annotations.
+	 *
+	 * @return the tool tip text of the header
+	 */
+	private String getHeaderToolTip() {
+		processEvents();
+		fRuler.getHeaderControl().setToolTipText(null);
+		fRuler.getHeaderControl().notifyListeners(SWT.MouseEnter, new Event());
+		return fRuler.getHeaderControl().getToolTipText();
+	}
+
+	private static String toolTip(int count) {
+		return LABEL + ": " + count; //$NON-NLS-1$
+	}
+
+	@Test
+	public void testCachedAnnotations() throws BadLocationException {
+		fRuler.setModel(fModel);
+		Annotation first= new Annotation(TYPE, false, null);
+		fModel.addAnnotation(first, new Position(0, 4));
+		assertEquals(toolTip(1), getHeaderToolTip());
+
+		Annotation second= new Annotation(TYPE, false, null);
+		fModel.addAnnotation(second, new Position(fDocument.getLineOffset(2), 4));
+		assertEquals(toolTip(2), getHeaderToolTip());
+
+		fModel.removeAnnotation(first);
+		assertEquals(toolTip(1), getHeaderToolTip());
+
+		fModel.removeAllAnnotations();
+		assertNull(getHeaderToolTip());
+	}
+
+	@Test
+	public void testInvalidEvent() {
+		final Annotation first= new Annotation(TYPE, false, null);
+		final Annotation second= new Annotation(TYPE, false, null);
+		// registered before the ruler, so that the ruler receives the event removing the
+		// first annotation only after the model has been changed again
+		class Listener implements IAnnotationModelListener, IAnnotationModelListenerExtension {
+			@Override
+			public void modelChanged(IAnnotationModel model) {
+			}
+			@Override
+			public void modelChanged(AnnotationModelEvent event) {
+				Annotation[] removed= event.getRemovedAnnotations();
+				if (removed.length == 1 && removed[0] == first)
+					fModel.addAnnotation(second, new Position(fDocument.getLength() - 4, 4));
+			}
+		}
+		fModel.addAnnotationModelListener(new Listener());
+		fRuler.setModel(fModel);
+
+		fModel.addAnnotation(first, new Position(0, 4));
+		assertEquals(toolTip(1), getHeaderToolTip());
+
+		fModel.removeAnnotation(first);
+		assertEquals(toolTip(1), getHeaderToolTip());
+	}
+}
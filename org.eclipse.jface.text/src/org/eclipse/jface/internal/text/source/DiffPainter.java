@@ -10,6 +10,8 @@
  *******************************************************************************/
 package org.eclipse.jface.internal.text.source;
 
+import java.util.Arrays;
+
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.custom.StyledText;
 import org.eclipse.swt.events.DisposeEvent;
@@ -23,6 +25,8 @@ import org.eclipse.swt.widgets.Display;
 
 import org.eclipse.core.runtime.Assert;
 
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentExtension4;
 import org.eclipse.jface.text.ITextViewer;
 import org.eclipse.jface.text.JFaceTextUtil;
 import org.eclipse.jface.text.source.CompositeRuler;
@@ -52,10 +56,24 @@ public final class DiffPainter {
 	private class AnnotationListener implements IAnnotationModelListener {
 		@Override
 		public void modelChanged(IAnnotationModel model) {
+			fDifferGeneration++;
 			postRedraw();
 		}
 	}
 
+	/** Flag of a cached line info, set for every line whose info has been computed. */
+	private static final int CACHED= 1;
+	/** Flag of a cached line info, set if the differ has no info for the line. */
+	private static final int NO_INFO= 1 << 1;
+	/** Flag of a cached line info, set if the line has been added. */
+	private static final int ADDED= 1 << 2;
+	/** Flag of a cached line info, set if the line has been changed. */
+	private static final int CHANGED= 1 << 3;
+	/** Flag of a cached line info, set if lines have been removed above the line. */
+	private static final int REMOVED_ABOVE= 1 << 4;
+	/** Flag of a cached line info, set if lines have been removed below the line. */
+	private static final int REMOVED_BELOW= 1 << 5;
+
 	/** The vertical ruler column that delegates painting to this painter. */
 	private final IVerticalRulerColumn fColumn;
 	/** The parent ruler. */
@@ -82,6 +100,39 @@ public final class DiffPainter {
 	private final AnnotationListener fAnnotationListener= new AnnotationListener();
 	/** The shared color provider, possibly <code>null</code>. */
 	private final ISharedTextColors fSharedColors;
+	/**
+	 * The cached shaded colors for added and changed lines, <code>null</code> if not yet computed.
+	 * @since 3.11
+	 */
+	private Color fShadedAddedColor, fShadedChangedColor;
+	/**
+	 * The cached infos of the lines starting at {@link #fFirstCachedLine}, as a combination of
+	 * the <code>CACHED</code>, <code>NO_INFO</code>, <code>ADDED</code>, <code>CHANGED</code>,
+	 * <code>REMOVED_ABOVE</code> and <code>REMOVED_BELOW</code> flags, or <code>0</code> if the
+	 * info of a line has not been computed yet. Only accessed in the UI thread.
+	 * @since 3.11
+	 */
+	private int[] fCachedLineInfos= new int[0];
+	/**
+	 * The first line of {@link #fCachedLineInfos}.
+	 * @since 3.11
+	 */
+	private int fFirstCachedLine;
+	/**
+	 * Incremented whenever the line differ changes.
+	 * @since 3.11
+	 */
+	private volatile int fDifferGeneration;
+	/**
+	 * The value of {@link #fDifferGeneration} when the cached line infos were computed.
+	 * @since 3.11
+	 */
+	private int fCachedGeneration= -1;
+	/**
+	 * The modification stamp of the document when the cached line infos were computed.
+	 * @since 3.11
+	 */
+	private long fCachedModificationStamp= IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP;
 
 	/**
 	 * Creates a new diff painter for a vertical ruler column.
@@ -132,6 +183,8 @@ public final class DiffPainter {
 	 */
 	public void setBackground(Color background) {
 		fBackground= background;
+		fShadedAddedColor= null;
+		fShadedChangedColor= null;
 	}
 
 	/**
@@ -152,6 +205,7 @@ public final class DiffPainter {
 		final int lastLine= end(visibleModelLines);
 		final int width= getWidth();
 		final Color deletionColor= getDeletionColor();
+		cacheLineInfos(visibleModelLines.getStartLine(), visibleModelLines.getNumberOfLines());
 		for (int line= visibleModelLines.getStartLine(); line < lastLine; line++) {
 			paintLine(line, gc, width, deletionColor);
 		}
@@ -217,9 +271,9 @@ public final class DiffPainter {
 		if (widgetLine == -1)
 			return;
 
-		ILineDiffInfo info= getDiffInfo(line);
+		int info= getLineInfo(line);
 
-		if (info != null) {
+		if ((info & NO_INFO) == 0) {
 			int y= fWidget.getLinePixel(widgetLine);
 			int lineHeight = JFaceTextUtil.computeLineHeight(fWidget, widgetLine);
 
@@ -230,13 +284,11 @@ public final class DiffPainter {
 			}
 
 			/* Deletion Indicator: Simply a horizontal line */
-			int delBefore= info.getRemovedLinesAbove();
-			int delBelow= info.getRemovedLinesBelow();
-			if (delBefore > 0 || delBelow > 0) {
+			if ((info & (REMOVED_ABOVE | REMOVED_BELOW)) != 0) {
 				gc.setForeground(deletionColor);
-				if (delBefore > 0)
+				if ((info & REMOVED_ABOVE) != 0)
 					gc.drawLine(0, y, width, y);
-				if (delBelow > 0)
+				if ((info & REMOVED_BELOW) != 0)
 					gc.drawLine(0, y + lineHeight - 1, width, y + lineHeight - 1);
 			}
 		}
@@ -245,26 +297,122 @@ public final class DiffPainter {
 	/**
 	 * Returns whether the line background differs from the default.
 	 *
-	 * @param info the info being queried
+	 * @param info the cached line info being queried
 	 * @return <code>true</code> if <code>info</code> describes either a changed or an added
 	 *         line.
 	 */
-	private boolean hasSpecialColor(ILineDiffInfo info) {
-		return info.getChangeType() == ILineDiffInfo.ADDED || info.getChangeType() == ILineDiffInfo.CHANGED;
+	private boolean hasSpecialColor(int info) {
+		return (info & (ADDED | CHANGED)) != 0;
+	}
+
+	/**
+	 * Makes the line info cache cover the given lines. The infos of lines that were cached
+	 * before are kept unless the line differ has changed since.
+	 *
+	 * @param firstLine the first line to cache
+	 * @param numberOfLines the number of lines to cache
+	 * @since 3.11
+	 */
+	private void cacheLineInfos(int firstLine, int numberOfLines) {
+		validateLineInfos();
+
+		int[] infos= fCachedLineInfos;
+		if (firstLine == fFirstCachedLine && numberOfLines == infos.length)
+			return;
+
+		int[] newInfos= numberOfLines == infos.length ? infos : new int[numberOfLines];
+		int from= Math.max(firstLine, fFirstCachedLine);
+		int to= Math.min(firstLine + numberOfLines, fFirstCachedLine + infos.length);
+		if (from < to) {
+			System.arraycopy(infos, from - fFirstCachedLine, newInfos, from - firstLine, to - from);
+			Arrays.fill(newInfos, 0, from - firstLine, 0);
+			Arrays.fill(newInfos, to - firstLine, numberOfLines, 0);
+		} else {
+			Arrays.fill(newInfos, 0);
+		}
+		fCachedLineInfos= newInfos;
+		fFirstCachedLine= firstLine;
+	}
+
+	/**
+	 * Clears the cached line infos if the line differ or the document have changed since they
+	 * were computed.
+	 * <p>
+	 * All cached infos are cleared, not only those of the changed lines: the events of the line
+	 * differ do not tell which lines have changed, and re-diffing a change may alter the infos
+	 * of lines before and after the edited ones. Since only the visible lines are cached, this
+	 * costs at most one query per visible line, i.e. what a single paint cost without the cache.
+	 * The cache pays off for the paints between changes, e.g. when scrolling or when other
+	 * columns request a redraw.
+	 * </p>
+	 *
+	 * @since 3.11
+	 */
+	private void validateLineInfos() {
+		int generation= fDifferGeneration;
+		long stamp= IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP;
+		IDocument document= fViewer != null ? fViewer.getDocument() : null;
+		if (document instanceof IDocumentExtension4)
+			stamp= ((IDocumentExtension4) document).getModificationStamp();
+
+		if (generation != fCachedGeneration || stamp != fCachedModificationStamp || stamp == IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP) {
+			fCachedGeneration= generation;
+			fCachedModificationStamp= stamp;
+			Arrays.fill(fCachedLineInfos, 0);
+		}
 	}
 
 	/**
-	 * Retrieves the <code>ILineDiffInfo</code> for <code>line</code> from the model. There are
-	 * optimizations for direct access and sequential access patterns.
+	 * Returns the diff info for <code>line</code>, from the cache if possible.
 	 *
 	 * @param line the line we want the info for.
-	 * @return the <code>ILineDiffInfo</code> for <code>line</code>, or <code>null</code>.
+	 * @return the info as a combination of the <code>NO_INFO</code>, <code>ADDED</code>,
+	 *         <code>CHANGED</code>, <code>REMOVED_ABOVE</code> and <code>REMOVED_BELOW</code>
+	 *         flags
+	 * @since 3.11
+	 */
+	private int getLineInfo(int line) {
+		validateLineInfos();
+
+		int index= line - fFirstCachedLine;
+		if (index < 0 || index >= fCachedLineInfos.length)
+			return computeLineInfo(line);
+
+		int info= fCachedLineInfos[index];
+		if (info == 0) {
+			info= computeLineInfo(line);
+			fCachedLineInfos[index]= info;
+		}
+		return info;
+	}
+
+	/**
+	 * Retrieves the <code>ILineDiffInfo</code> for <code>line</code> from the model and
+	 * converts it to the flags stored in the line info cache.
+	 *
+	 * @param line the line we want the info for.
+	 * @return the flags for <code>line</code>
+	 * @since 3.11
 	 */
-	private ILineDiffInfo getDiffInfo(int line) {
-		if (fLineDiffer != null)
-			return fLineDiffer.getLineInfo(line);
+	private int computeLineInfo(int line) {
+		ILineDiffInfo info= fLineDiffer != null ? fLineDiffer.getLineInfo(line) : null;
+		if (info == null)
+			return CACHED | NO_INFO;
 
-		return null;
+		int flags= CACHED;
+		switch (info.getChangeType()) {
+			case ILineDiffInfo.ADDED:
+				flags|= ADDED;
+				break;
+			case ILineDiffInfo.CHANGED:
+				flags|= CHANGED;
+				break;
+		}
+		if (info.getRemovedLinesAbove() > 0)
+			flags|= REMOVED_ABOVE;
+		if (info.getRemovedLinesBelow() > 0)
+			flags|= REMOVED_BELOW;
+		return flags;
 	}
 
 	/**
@@ -279,19 +427,20 @@ public final class DiffPainter {
 	/**
 	 * Returns the color for the given line diff info.
 	 *
-	 * @param info the <code>ILineDiffInfo</code> being queried
+	 * @param info the cached line info being queried
 	 * @return the correct background color for the line type being described by <code>info</code>
 	 */
-	private Color getColor(ILineDiffInfo info) {
-		Assert.isTrue(info != null && info.getChangeType() != ILineDiffInfo.UNCHANGED);
+	private Color getColor(int info) {
+		Assert.isTrue(hasSpecialColor(info));
 		Color ret= null;
-		switch (info.getChangeType()) {
-			case ILineDiffInfo.CHANGED:
-				ret= getShadedColor(fChangedColor);
-				break;
-			case ILineDiffInfo.ADDED:
-				ret= getShadedColor(fAddedColor);
-				break;
+		if ((info & CHANGED) != 0) {
+			if (fShadedChangedColor == null)
+				fShadedChangedColor= getShadedColor(fChangedColor);
+			ret= fShadedChangedColor;
+		} else {
+			if (fShadedAddedColor == null)
+				fShadedAddedColor= getShadedColor(fAddedColor);
+			ret= fShadedAddedColor;
 		}
 		return ret == null ? getBackground() : ret;
 	}
@@ -349,6 +498,7 @@ public final class DiffPainter {
 				if (fLineDiffer != null)
 					((IAnnotationModel) fLineDiffer).removeAnnotationModelListener(fAnnotationListener);
 				fLineDiffer= (ILineDiffer) differ;
+				fDifferGeneration++;
 				if (fLineDiffer != null)
 					((IAnnotationModel) fLineDiffer).addAnnotationModelListener(fAnnotationListener);
 			}
@@ -417,6 +567,7 @@ public final class DiffPainter {
 	 */
 	public void setAddedColor(Color addedColor) {
 		fAddedColor= addedColor;
+		fShadedAddedColor= null;
 	}
 
 	/**
@@ -427,6 +578,7 @@ public final class DiffPainter {
 	 */
 	public void setChangedColor(Color changedColor) {
 		fChangedColor= changedColor;
+		fShadedChangedColor= null;
 	}
 
 	/**
@@ -456,25 +608,11 @@ public final class DiffPainter {
 	 * @return the display character for <code>line</code>
 	 */
 	public String getDisplayCharacter(int line) {
-		return getDisplayCharacter(getDiffInfo(line));
-	}
-
-	/**
-	 * Returns the character to display in character display mode for the given
-	 * <code>ILineDiffInfo</code>
-	 *
-	 * @param info the <code>ILineDiffInfo</code> being queried
-	 * @return the character indication for <code>info</code>
-	 */
-	private String getDisplayCharacter(ILineDiffInfo info) {
-		if (info == null)
-			return " "; //$NON-NLS-1$
-		switch (info.getChangeType()) {
-			case ILineDiffInfo.CHANGED:
-				return "~"; //$NON-NLS-1$
-			case ILineDiffInfo.ADDED:
-				return "+"; //$NON-NLS-1$
-		}
+		int info= getLineInfo(line);
+		if ((info & CHANGED) != 0)
+			return "~"; //$NON-NLS-1$
+		if ((info & ADDED) != 0)
+			return "+"; //$NON-NLS-1$
 		return " "; //$NON-NLS-1$
 	}
 
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2015 IBM Corporation and others.
+ * Copyright (c) 2000, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -11,16 +11,14 @@
  *******************************************************************************/
 package org.eclipse.jface.text.source;
 
+import java.util.AbstractMap;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collection;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.Set;
 
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.SWTException;
@@ -552,161 +550,162 @@ public class AnnotationPainter implements IPainter, PaintListener, IAnnotationMo
 		int drawRangeStart= Integer.MAX_VALUE;
 		int drawRangeEnd= -1;
 
-		Map<Annotation, Decoration> decorationsMap;
-		Map<Annotation, Decoration> highlightedDecorationsMap;
-
-		// Clone decoration maps
-		synchronized (fDecorationMapLock) {
-			decorationsMap= new HashMap<>(fDecorationsMap);
-		}
-		synchronized (fHighlightedDecorationsMapLock) {
-			highlightedDecorationsMap= new HashMap<>(fHighlightedDecorationsMap);
-		}
-
 		boolean isWorldChange= false;
 
-		Iterator<Annotation> e;
+		// the decorations to clear, they are drawn after the locks have been released
+		List<Entry<Annotation, Decoration>> clearedDecorations= new ArrayList<>();
+
+		/*
+		 * The decorations are computed without holding the locks, only the maps are updated
+		 * while holding them. This is called in the UI thread only, so no other update can
+		 * interfere. The decoration map lock is always acquired first.
+		 */
 		if (event == null || event.isWorldChange()) {
 			isWorldChange= true;
 
 			if (DEBUG && event == null)
 				System.out.println("AP: INTERNAL CHANGE"); //$NON-NLS-1$
 
-			Iterator<Entry<Annotation, Decoration>> iter= decorationsMap.entrySet().iterator();
-			while (iter.hasNext()) {
-				Entry<Annotation, Decoration> entry= iter.next();
-				Annotation annotation= entry.getKey();
-				Decoration decoration= entry.getValue();
-				drawDecoration(decoration, null, annotation, clippingRegion, document);
+			Map<Annotation, Decoration> decorationsMap= new HashMap<>();
+			Map<Annotation, Decoration> highlightedDecorationsMap= new HashMap<>();
+			Iterator<Annotation> e= fModel.getAnnotationIterator();
+			while (e.hasNext()) {
+				Annotation annotation= e.next();
+				Decoration pp= getDecoration(annotation, null);
+				if (pp != null) {
+					if (pp.fPaintingStrategy instanceof IDrawingStrategy) {
+						decorationsMap.put(annotation, pp);
+						drawRangeStart= Math.min(drawRangeStart, pp.fPosition.offset);
+						drawRangeEnd= Math.max(drawRangeEnd, pp.fPosition.offset + pp.fPosition.length);
+					} else if (pp.fPaintingStrategy instanceof ITextStyleStrategy) {
+						highlightedDecorationsMap.put(annotation, pp);
+						highlightAnnotationRangeStart= Math.min(highlightAnnotationRangeStart, pp.fPosition.offset);
+						highlightAnnotationRangeEnd= Math.max(highlightAnnotationRangeEnd, pp.fPosition.offset + pp.fPosition.length);
+					}
+				}
 			}
 
-			decorationsMap.clear();
-
-			highlightedDecorationsMap.clear();
-
-			e= fModel.getAnnotationIterator();
-
+			synchronized (fDecorationMapLock) {
+				synchronized (fHighlightedDecorationsMapLock) {
+					if (fDecorationsMap == null || fHighlightedDecorationsMap == null)
+						return;
+					clearedDecorations.addAll(fDecorationsMap.entrySet());
+					fDecorationsMap= decorationsMap;
+					fHighlightedDecorationsMap= highlightedDecorationsMap;
+				}
+			}
 
 		} else {
 
-			// Remove annotations
 			Annotation[] removedAnnotations= event.getRemovedAnnotations();
-			for (int i= 0, length= removedAnnotations.length; i < length; i++) {
-				Annotation annotation= removedAnnotations[i];
-				Decoration decoration= highlightedDecorationsMap.remove(annotation);
-				if (decoration != null) {
-					Position position= decoration.fPosition;
-					if (position != null) {
-						highlightAnnotationRangeStart= Math.min(highlightAnnotationRangeStart, position.offset);
-						highlightAnnotationRangeEnd= Math.max(highlightAnnotationRangeEnd, position.offset + position.length);
-					}
-				}
-				decoration= decorationsMap.remove(annotation);
-				if (decoration != null) {
-					drawDecoration(decoration, null, annotation, clippingRegion, document);
-					Position position= decoration.fPosition;
-					if (position != null) {
-						drawRangeStart= Math.min(drawRangeStart, position.offset);
-						drawRangeEnd= Math.max(drawRangeEnd, position.offset + position.length);
-					}
-				}
-
-			}
-
-			// Update existing annotations
 			Annotation[] changedAnnotations= event.getChangedAnnotations();
-			for (int i= 0, length= changedAnnotations.length; i < length; i++) {
-				Annotation annotation= changedAnnotations[i];
-
-				boolean isHighlighting= false;
+			Annotation[] addedAnnotations= event.getAddedAnnotations();
 
-				Decoration decoration= highlightedDecorationsMap.get(annotation);
+			// Compute the decorations of the changed and added annotations
+			Decoration[] changedDecorations= new Decoration[changedAnnotations.length];
+			Position[] changedPositions= new Position[changedAnnotations.length];
+			for (int i= 0; i < changedAnnotations.length; i++) {
+				Annotation annotation= changedAnnotations[i];
+				changedDecorations[i]= getDecoration(annotation, null);
+				changedPositions[i]= changedDecorations[i] != null ? changedDecorations[i].fPosition : fModel.getPosition(annotation);
+			}
+			Decoration[] addedDecorations= new Decoration[addedAnnotations.length];
+			for (int i= 0; i < addedAnnotations.length; i++)
+				addedDecorations[i]= getDecoration(addedAnnotations[i], null);
 
-				if (decoration != null) {
-					isHighlighting= true;
-					// The call below updates the decoration - no need to create new decoration
-					decoration= getDecoration(annotation, decoration);
-					if (decoration == null) {
-						Decoration removedDecoration= highlightedDecorationsMap.remove(annotation);
-						if (removedDecoration != null) {
-							highlightAnnotationRangeStart= Math.min(highlightAnnotationRangeStart, removedDecoration.fPosition.offset);
-							highlightAnnotationRangeEnd= Math.max(highlightAnnotationRangeEnd, removedDecoration.fPosition.offset + removedDecoration.fPosition.length);
+			synchronized (fDecorationMapLock) {
+				synchronized (fHighlightedDecorationsMapLock) {
+					Map<Annotation, Decoration> decorationsMap= fDecorationsMap;
+					Map<Annotation, Decoration> highlightedDecorationsMap= fHighlightedDecorationsMap;
+					if (decorationsMap == null || highlightedDecorationsMap == null)
+						return;
+
+					// Remove annotations
+					for (int i= 0; i < removedAnnotations.length; i++) {
+						Annotation annotation= removedAnnotations[i];
+						Decoration decoration= highlightedDecorationsMap.remove(annotation);
+						if (decoration != null) {
+							Position position= decoration.fPosition;
+							if (position != null) {
+								highlightAnnotationRangeStart= Math.min(highlightAnnotationRangeStart, position.offset);
+								highlightAnnotationRangeEnd= Math.max(highlightAnnotationRangeEnd, position.offset + position.length);
+							}
+						}
+						decoration= decorationsMap.remove(annotation);
+						if (decoration != null) {
+							clearedDecorations.add(new AbstractMap.SimpleImmutableEntry<>(annotation, decoration));
+							Position position= decoration.fPosition;
+							if (position != null) {
+								drawRangeStart= Math.min(drawRangeStart, position.offset);
+								drawRangeEnd= Math.max(drawRangeEnd, position.offset + position.length);
+							}
 						}
 					}
 
-				} else {
-					decoration= getDecoration(annotation, decoration);
-					if (decoration != null && decoration.fPaintingStrategy instanceof ITextStyleStrategy) {
-						highlightedDecorationsMap.put(annotation, decoration);
-						isHighlighting= true;
-					}
-				}
-
-				boolean usesDrawingStrategy= !isHighlighting && decoration != null;
-
-				Position position= null;
-				if (decoration == null)
-					position= fModel.getPosition(annotation);
-				else
-					position= decoration.fPosition;
+					// Update existing annotations
+					for (int i= 0; i < changedAnnotations.length; i++) {
+						Annotation annotation= changedAnnotations[i];
+						Decoration decoration= changedDecorations[i];
+						Position position= changedPositions[i];
+						boolean isValid= position != null && !position.isDeleted();
+
+						if (decoration != null && decoration.fPaintingStrategy instanceof ITextStyleStrategy) {
+							highlightedDecorationsMap.put(annotation, decoration);
+							if (isValid) {
+								highlightAnnotationRangeStart= Math.min(highlightAnnotationRangeStart, position.offset);
+								highlightAnnotationRangeEnd= Math.max(highlightAnnotationRangeEnd, position.offset + position.length);
+							}
+						} else {
+							Decoration removedDecoration= highlightedDecorationsMap.remove(annotation);
+							if (removedDecoration != null) {
+								highlightAnnotationRangeStart= Math.min(highlightAnnotationRangeStart, removedDecoration.fPosition.offset);
+								highlightAnnotationRangeEnd= Math.max(highlightAnnotationRangeEnd, removedDecoration.fPosition.offset + removedDecoration.fPosition.length);
+							}
+						}
 
-				if (position != null && !position.isDeleted()) {
-					if (isHighlighting) {
-						highlightAnnotationRangeStart= Math.min(highlightAnnotationRangeStart, position.offset);
-						highlightAnnotationRangeEnd= Math.max(highlightAnnotationRangeEnd, position.offset + position.length);
-					}
-					if (usesDrawingStrategy) {
-						drawRangeStart= Math.min(drawRangeStart, position.offset);
-						drawRangeEnd= Math.max(drawRangeEnd, position.offset + position.length);
-					}
-				} else {
-					Decoration removedDecoration= highlightedDecorationsMap.remove(annotation);
-					if (removedDecoration != null) {
-						highlightAnnotationRangeStart= Math.min(highlightAnnotationRangeStart, removedDecoration.fPosition.offset);
-						highlightAnnotationRangeEnd= Math.max(highlightAnnotationRangeEnd, removedDecoration.fPosition.offset + removedDecoration.fPosition.length);
+						Decoration oldDecoration;
+						if (decoration != null && decoration.fPaintingStrategy instanceof IDrawingStrategy) {
+							oldDecoration= decorationsMap.put(annotation, decoration);
+							if (isValid) {
+								drawRangeStart= Math.min(drawRangeStart, position.offset);
+								drawRangeEnd= Math.max(drawRangeEnd, position.offset + position.length);
+							}
+						} else {
+							oldDecoration= decorationsMap.remove(annotation);
+						}
+						if (oldDecoration != null)
+							clearedDecorations.add(new AbstractMap.SimpleImmutableEntry<>(annotation, oldDecoration));
 					}
-				}
 
-				if (usesDrawingStrategy) {
-					Decoration oldDecoration= decorationsMap.get(annotation);
-					if (oldDecoration != null) {
-						drawDecoration(oldDecoration, null, annotation, clippingRegion, document);
-						if (decoration != null)
-							decorationsMap.put(annotation, decoration);
-						else
-							decorationsMap.remove(annotation);
+					// Add new annotations
+					for (int i= 0; i < addedAnnotations.length; i++) {
+						Annotation annotation= addedAnnotations[i];
+						Decoration pp= addedDecorations[i];
+						if (pp != null) {
+							if (pp.fPaintingStrategy instanceof IDrawingStrategy) {
+								decorationsMap.put(annotation, pp);
+								drawRangeStart= Math.min(drawRangeStart, pp.fPosition.offset);
+								drawRangeEnd= Math.max(drawRangeEnd, pp.fPosition.offset + pp.fPosition.length);
+							} else if (pp.fPaintingStrategy instanceof ITextStyleStrategy) {
+								highlightedDecorationsMap.put(annotation, pp);
+								highlightAnnotationRangeStart= Math.min(highlightAnnotationRangeStart, pp.fPosition.offset);
+								highlightAnnotationRangeEnd= Math.max(highlightAnnotationRangeEnd, pp.fPosition.offset + pp.fPosition.length);
+							}
+						}
 					}
 				}
 			}
-
-			e= Arrays.asList(event.getAddedAnnotations()).iterator();
 		}
 
-		// Add new annotations
-		while (e.hasNext()) {
-			Annotation annotation= e.next();
-			Decoration pp= getDecoration(annotation, null);
-			if (pp != null) {
-				if (pp.fPaintingStrategy instanceof IDrawingStrategy) {
-					decorationsMap.put(annotation, pp);
-					drawRangeStart= Math.min(drawRangeStart, pp.fPosition.offset);
-					drawRangeEnd= Math.max(drawRangeEnd, pp.fPosition.offset + pp.fPosition.length);
-				} else if (pp.fPaintingStrategy instanceof ITextStyleStrategy) {
-					highlightedDecorationsMap.put(annotation, pp);
-					highlightAnnotationRangeStart= Math.min(highlightAnnotationRangeStart, pp.fPosition.offset);
-					highlightAnnotationRangeEnd= Math.max(highlightAnnotationRangeEnd, pp.fPosition.offset + pp.fPosition.length);
-				}
-
-			}
+		for (Iterator<Entry<Annotation, Decoration>> iter= clearedDecorations.iterator(); iter.hasNext();) {
+			Entry<Annotation, Decoration> entry= iter.next();
+			drawDecoration(entry.getValue(), null, entry.getKey(), clippingRegion, document);
 		}
 
 		synchronized (fDecorationMapLock) {
-			fDecorationsMap= decorationsMap;
 			updateDrawRanges(drawRangeStart, drawRangeEnd, isWorldChange);
 		}
-
 		synchronized (fHighlightedDecorationsMapLock) {
-			fHighlightedDecorationsMap= highlightedDecorationsMap;
 			updateHighlightRanges(highlightAnnotationRangeStart, highlightAnnotationRangeEnd, isWorldChange);
 		}
 	}
@@ -976,17 +975,12 @@ public class AnnotationPainter implements IPainter, PaintListener, IAnnotationMo
 
 	@Override
 	public void applyTextPresentation(TextPresentation tp) {
-		Set<Entry<Annotation, Decoration>> decorations;
-
-		synchronized (fHighlightedDecorationsMapLock) {
-			if (fHighlightedDecorationsMap == null || fHighlightedDecorationsMap.isEmpty())
-				return;
-
-			decorations= new HashSet<>(fHighlightedDecorationsMap.entrySet());
-		}
-
 		IRegion region= tp.getExtent();
 
+		List<Entry<Annotation, Decoration>> decorations= getDecorations(true, region.getOffset(), region.getLength());
+		if (decorations.isEmpty())
+			return;
+
 		if (DEBUG)
 			System.out.println("AP: applying text presentation offset: " + region.getOffset() + ", length= " + region.getLength()); //$NON-NLS-1$ //$NON-NLS-2$
 
@@ -1361,12 +1355,7 @@ public class AnnotationPainter implements IPainter, PaintListener, IAnnotationMo
 
 		final GC gc= event != null ? event.gc : null;
 
-		// Clone decorations
-		Collection<Entry<Annotation, Decoration>> decorations;
-		synchronized (fDecorationMapLock) {
-			decorations= new ArrayList<>(fDecorationsMap.size());
-			decorations.addAll(fDecorationsMap.entrySet());
-		}
+		List<Entry<Annotation, Decoration>> decorations= getDecorations(false, vOffset, vLength);
 
 		/*
 		 * Create a new list of annotations to be drawn, since removing from decorations is more
@@ -1398,6 +1387,62 @@ public class AnnotationPainter implements IPainter, PaintListener, IAnnotationMo
 		}
 	}
 
+	/**
+	 * Returns the decorations that touch or overlap the given region. If the annotation model
+	 * supports region queries, only the decorations of the annotations which the model reports
+	 * for the region are looked up, instead of checking all decorations.
+	 *
+	 * @param highlighted <code>true</code> for the highlighted decorations, <code>false</code>
+	 *            for the decorations drawn by a drawing strategy
+	 * @param offset the offset of the region
+	 * @param length the length of the region
+	 * @return the decorations in the region
+	 * @since 3.11
+	 */
+	private List<Entry<Annotation, Decoration>> getDecorations(boolean highlighted, int offset, int length) {
+		Object lock= highlighted ? fHighlightedDecorationsMapLock : fDecorationMapLock;
+		synchronized (lock) {
+			Map<Annotation, Decoration> decorationsMap= highlighted ? fHighlightedDecorationsMap : fDecorationsMap;
+			if (decorationsMap == null || decorationsMap.isEmpty())
+				return new ArrayList<>(0);
+		}
+
+		// query the model without holding the lock; extend the region to get the touching annotations
+		List<Annotation> candidates= null;
+		IAnnotationModel model= fModel;
+		if (model instanceof IAnnotationModelExtension2) {
+			int start= Math.max(0, offset - 1);
+			Iterator<Annotation> iter= ((IAnnotationModelExtension2) model).getAnnotationIterator(start, offset + length + 1 - start, true, true);
+			candidates= new ArrayList<>();
+			while (iter.hasNext())
+				candidates.add(iter.next());
+		}
+
+		List<Entry<Annotation, Decoration>> decorations= new ArrayList<>();
+		synchronized (lock) {
+			Map<Annotation, Decoration> decorationsMap= highlighted ? fHighlightedDecorationsMap : fDecorationsMap;
+			if (decorationsMap == null)
+				return decorations;
+
+			if (candidates == null || candidates.size() > decorationsMap.size()) {
+				for (Iterator<Entry<Annotation, Decoration>> iter= decorationsMap.entrySet().iterator(); iter.hasNext();) {
+					Entry<Annotation, Decoration> entry= iter.next();
+					Position p= entry.getValue().fPosition;
+					if (regionsTouchOrOverlap(p.getOffset(), p.getLength(), offset, length))
+						decorations.add(entry);
+				}
+			} else {
+				for (Iterator<Annotation> iter= candidates.iterator(); iter.hasNext();) {
+					Annotation annotation= iter.next();
+					Decoration decoration= decorationsMap.get(annotation);
+					if (decoration != null && regionsTouchOrOverlap(decoration.fPosition.getOffset(), decoration.fPosition.getLength(), offset, length))
+						decorations.add(new AbstractMap.SimpleImmutableEntry<>(annotation, decoration));
+				}
+			}
+		}
+		return decorations;
+	}
+
 	private void drawDecoration(Decoration pp, GC gc, Annotation annotation, IRegion clippingRegion, IDocument document) {
 		if (clippingRegion == null)
 			return;
@@ -1411,6 +1456,9 @@ public class AnnotationPainter implements IPainter, PaintListener, IAnnotationMo
 		int clippingLength= clippingRegion.getLength();
 
 		Position p= pp.fPosition;
+		if (!regionsTouchOrOverlap(p.getOffset(), p.getLength(), clippingOffset, clippingLength))
+			return;
+
 		try {
 
 			int startLine= document.getLineOfOffset(p.getOffset());
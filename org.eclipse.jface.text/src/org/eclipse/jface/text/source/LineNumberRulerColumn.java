@@ -419,6 +419,27 @@ public class LineNumberRulerColumn implements IVerticalRulerColumn {
 	};
 	/* @since 3.2 */
 	private MouseHandler fMouseHandler;
+	/**
+	 * The font whose baseline is cached in {@link #fFontBaseline}.
+	 * @since 3.11
+	 */
+	private Font fBaselineFont;
+	/**
+	 * The cached baseline of {@link #fBaselineFont}.
+	 * @since 3.11
+	 */
+	private int fFontBaseline;
+	/**
+	 * The model line currently painted by {@link #doPaint(GC, ILineRange)}, or <code>-1</code>.
+	 * @since 3.11
+	 */
+	private int fPaintedLine= -1;
+	/**
+	 * The widget line and its offset of the model line currently painted by
+	 * {@link #doPaint(GC, ILineRange)}.
+	 * @since 3.11
+	 */
+	private int fPaintedWidgetLine, fPaintedWidgetLineOffset;
 
 
 	/**
@@ -665,6 +686,7 @@ public class LineNumberRulerColumn implements IVerticalRulerColumn {
 			fBuffer.dispose();
 			fBuffer= null;
 		}
+		fBaselineFont= null;
 	}
 
 	/**
@@ -758,7 +780,15 @@ public class LineNumberRulerColumn implements IVerticalRulerColumn {
 
 			final int offsetAtLine= fCachedTextWidget.getOffsetAtLine(widgetLine);
 			int lineHeight= fCachedTextWidget.getLineHeight(offsetAtLine);
-			paintLine(line, y, lineHeight, gc, display);
+			// remember the line mapping, so that paintLine does not have to compute it again
+			fPaintedLine= line;
+			fPaintedWidgetLine= widgetLine;
+			fPaintedWidgetLineOffset= offsetAtLine;
+			try {
+				paintLine(line, y, lineHeight, gc, display);
+			} finally {
+				fPaintedLine= -1;
+			}
 
 			// increment y position
 			if (!isWrapActive) {
@@ -816,12 +846,20 @@ public class LineNumberRulerColumn implements IVerticalRulerColumn {
 		 * line numbers, since font styles (bold, italics...) can have larger
 		 * font metrics than the simple font used for the numbers.
 		 */
-		int offset= fCachedTextWidget.getOffsetAtLine(widgetLine);
+		int offset;
+		if (fPaintedLine != -1 && widgetLine == fPaintedWidgetLine)
+			offset= fPaintedWidgetLineOffset;
+		else
+			offset= fCachedTextWidget.getOffsetAtLine(widgetLine);
 		int widgetBaseline= fCachedTextWidget.getBaseline(offset);
 
-		FontMetrics fm= gc.getFontMetrics();
-		int fontBaseline= fm.getAscent() + fm.getLeading();
-		int baselineBias= widgetBaseline - fontBaseline;
+		Font font= gc.getFont();
+		if (!font.equals(fBaselineFont)) {
+			FontMetrics fm= gc.getFontMetrics();
+			fFontBaseline= fm.getAscent() + fm.getLeading();
+			fBaselineFont= font;
+		}
+		int baselineBias= widgetBaseline - fFontBaseline;
 		return Math.max(0, baselineBias);
 	}
 
@@ -837,7 +875,7 @@ public class LineNumberRulerColumn implements IVerticalRulerColumn {
 	 * @since 3.0
 	 */
 	protected void paintLine(int line, int y, int lineheight, GC gc, Display display) {
-		int widgetLine= JFaceTextUtil.modelLineToWidgetLine(fCachedTextViewer, line);
+		int widgetLine= line == fPaintedLine ? fPaintedWidgetLine : JFaceTextUtil.modelLineToWidgetLine(fCachedTextViewer, line);
 
 		String s= createDisplayString(line);
 		int indentation= fIndentation[s.length()];
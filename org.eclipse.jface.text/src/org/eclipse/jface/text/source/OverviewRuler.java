@@ -11,9 +11,12 @@
 package org.eclipse.jface.text.source;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -82,7 +85,14 @@ public class OverviewRuler implements IOverviewRulerExtension, IOverviewRuler {
 		 */
 		@Override
 		public void textChanged(TextEvent e) {
-			if (fTextViewer != null && e.getDocumentEvent() == null && e.getViewerRedrawState()) {
+			if (fTextViewer == null)
+				return;
+
+			// annotations only move to other rows if lines are added or removed
+			if (e.getDocumentEvent() == null || containsLineDelimiter(e.getText()) || containsLineDelimiter(e.getReplacedText()))
+				invalidateCachedAnnotations();
+
+			if (e.getDocumentEvent() == null && e.getViewerRedrawState()) {
 				// handle only changes of visible document
 				redraw();
 			}
@@ -90,19 +100,26 @@ public class OverviewRuler implements IOverviewRulerExtension, IOverviewRuler {
 
 		@Override
 		public void modelChanged(IAnnotationModel model) {
+			invalidateCachedAnnotations();
 			update();
 		}
 
 		@Override
 		public void modelChanged(AnnotationModelEvent event) {
-			if (!event.isValid())
+			if (!event.isValid()) {
+				// the model changed again, the event does not tell which annotations to update
+				invalidateCachedAnnotations();
 				return;
+			}
 
 			if (event.isWorldChange()) {
+				invalidateCachedAnnotations();
 				update();
 				return;
 			}
 
+			invalidateCachedAnnotations(event);
+
 			Annotation[] annotations= event.getAddedAnnotations();
 			int length= annotations.length;
 			for (int i= 0; i < length; i++) {
@@ -194,7 +211,7 @@ public class OverviewRuler implements IOverviewRulerExtension, IOverviewRuler {
 
 				fNext= next;
 				Object annotationType= next.getType();
-				if (fType == null || fType.equals(annotationType) || !fConfiguredAnnotationTypes.contains(annotationType) && isSubtype(annotationType)) {
+				if (fType == null || isShownAs(annotationType, fType)) {
 					if (temp && pers) return;
 					if (pers && next.isPersistent()) return;
 					if (temp && !next.isPersistent()) return;
@@ -203,14 +220,6 @@ public class OverviewRuler implements IOverviewRulerExtension, IOverviewRuler {
 			fNext= null;
 		}
 
-		private boolean isSubtype(Object annotationType) {
-			if (fAnnotationAccess instanceof  IAnnotationAccessExtension) {
-				IAnnotationAccessExtension extension= (IAnnotationAccessExtension) fAnnotationAccess;
-				return extension.isSubtype(annotationType, fType);
-			}
-			return fType.equals(annotationType);
-		}
-
 		@Override
 		public boolean hasNext() {
 			return fNext != null;
@@ -378,11 +387,80 @@ public class OverviewRuler implements IOverviewRulerExtension, IOverviewRuler {
 	        visibleLines= bottomIndex - topIndex;
 	        invisibleLines= maxLines - visibleLines;
 		}
+
+		/**
+		 * Tells whether the given widget infos map the lines of the text widget to the same
+		 * vertical positions in the overview ruler as these widget infos.
+		 * 
+		 * @param infos the widget infos to compare with, may be <code>null</code>
+		 * @return <code>true</code> if the mapping is the same
+		 * @since 3.11
+		 */
+		boolean hasSameMapping(WidgetInfos infos) {
+			return infos != null && maxLines == infos.maxLines && thumbHeight == infos.thumbHeight
+					&& visibleLines == infos.visibleLines && invisibleLines == infos.invisibleLines
+					&& writable == infos.writable && bounds.equals(infos.bounds);
+		}
+	}
+
+	/**
+	 * An annotation cached by the overview ruler, together with the rows in which it is drawn.
+	 * 
+	 * @since 3.11
+	 */
+	static class CachedAnnotation {
+		/** The type of the annotation when it was cached. */
+		final Object type;
+		/** Whether the annotation was persistent when it was cached. */
+		final boolean persistent;
+		/** The rows of the annotation, see {@link Rows}, or <code>-1</code> if it is not drawn. */
+		final long rows;
+
+		CachedAnnotation(Object type, boolean persistent, long rows) {
+			this.type= type;
+			this.persistent= persistent;
+			this.rows= rows;
+		}
+	}
+
+	/**
+	 * The rows of the overview ruler in which the annotations of one type and persistence
+	 * are drawn. Each range of rows is encoded as <code>y &lt;&lt; 32 | height</code> and
+	 * drawn once, no matter how many annotations it represents.
+	 * 
+	 * @since 3.11
+	 */
+	static class Rows {
+		/** Maps a range of rows to the number of annotations drawn in it. */
+		final Map<Long, int[]> counts= new LinkedHashMap<>();
+
+		void add(long rows) {
+			Long key= Long.valueOf(rows);
+			int[] count= counts.get(key);
+			if (count == null)
+				counts.put(key, new int[] { 1 });
+			else
+				count[0]++;
+		}
+
+		void remove(long rows) {
+			Long key= Long.valueOf(rows);
+			int[] count= counts.get(key);
+			if (count != null && --count[0] == 0)
+				counts.remove(key);
+		}
 	}
 
 	private static final boolean DEBUG_DRAW= false;
 	private static final boolean DEBUG_COMPUTE_Y= false;
 	private static final boolean DEBUG_TO_DOCUMENT_LINE_NUMBER= false;
+
+	/**
+	 * The number of changed annotations after which all annotations are cached again
+	 * instead of updating the cached annotations.
+	 * @since 3.11
+	 */
+	private static final int MAX_CHANGED_ANNOTATIONS= 10000;
 	
 	private static final int INSET= 2;
 	private static final int ANNOTATION_HEIGHT= 4;
@@ -456,10 +534,43 @@ public class OverviewRuler implements IOverviewRulerExtension, IOverviewRuler {
 	 */
 	private Map<Object, Boolean> fAllowedHeaderAnnotationTypes= new HashMap<>();
 	/**
-	 * The cached annotations.
+	 * The cached annotations. Only accessed in the UI thread.
 	 * @since 3.0
 	 */
-	private List<Annotation> fCachedAnnotations= new ArrayList<>();
+	private Map<Annotation, CachedAnnotation> fCachedAnnotations= new LinkedHashMap<>();
+	/**
+	 * The rows of the cached annotations, by annotation type. The first element of each
+	 * array holds the rows of the persistent annotations, the second the rows of the
+	 * temporary annotations. Only accessed in the UI thread.
+	 * @since 3.11
+	 */
+	private Map<Object, Rows[]> fCachedRows= new LinkedHashMap<>();
+	/**
+	 * The widget infos used to compute the cached rows.
+	 * @since 3.11
+	 */
+	private WidgetInfos fCachedWidgetInfos;
+	/**
+	 * The number of lines of the document when the rows were computed.
+	 * @since 3.11
+	 */
+	private int fCachedNumberOfLines= -1;
+	/**
+	 * Lock for the changes to be applied to the cached annotations.
+	 * @since 3.11
+	 */
+	private final Object fChangedAnnotationsLock= new Object();
+	/**
+	 * Whether all annotations have to be cached again. Guarded by {@link #fChangedAnnotationsLock}.
+	 * @since 3.11
+	 */
+	private boolean fAreCachedAnnotationsInvalid= true;
+	/**
+	 * The annotations that have been added, removed or changed since the annotations were
+	 * cached. Guarded by {@link #fChangedAnnotationsLock}.
+	 * @since 3.11
+	 */
+	private Set<Annotation> fChangedAnnotations= new LinkedHashSet<>();
 
 	/**
 	 * Redraw runnable lock
@@ -552,6 +663,7 @@ public class OverviewRuler implements IOverviewRulerExtension, IOverviewRuler {
 				fModel.removeAnnotationModelListener(fInternalListener);
 
 			fModel= model;
+			invalidateCachedAnnotations();
 
 			if (fModel != null)
 				fModel.addAnnotationModelListener(fInternalListener);
@@ -668,6 +780,9 @@ public class OverviewRuler implements IOverviewRulerExtension, IOverviewRuler {
 		fAnnotationTypes2Colors.clear();
 		fAnnotationsSortedByLayer.clear();
 		fLayersSortedByLayer.clear();
+		fCachedAnnotations.clear();
+		fCachedRows.clear();
+		fCachedWidgetInfos= null;
 	}
 
 	/**
@@ -697,9 +812,10 @@ public class OverviewRuler implements IOverviewRulerExtension, IOverviewRuler {
 			gc.setBackground(fCanvas.getBackground());
 			gc.fillRectangle(0, 0, size.x, size.y);
 
-			cacheAnnotations();
+			WidgetInfos infos= new WidgetInfos(fTextViewer.getTextWidget(), fCanvas);
+			cacheAnnotations(infos);
 
-			doPaint(gc);
+			doPaint(gc, infos);
 
 		} finally {
 			gc.dispose();
@@ -708,34 +824,146 @@ public class OverviewRuler implements IOverviewRulerExtension, IOverviewRuler {
 		dest.drawImage(fBuffer, 0, 0);
 	}
 
-	private void cacheAnnotations() {
-		fCachedAnnotations.clear();
-		if (fModel != null) {
+	/**
+	 * Marks all cached annotations as invalid.
+	 * 
+	 * @since 3.11
+	 */
+	private void invalidateCachedAnnotations() {
+		synchronized (fChangedAnnotationsLock) {
+			fAreCachedAnnotationsInvalid= true;
+			fChangedAnnotations.clear();
+		}
+	}
+
+	/**
+	 * Marks the annotations added, removed or changed by the given event as invalid.
+	 * 
+	 * @param event the annotation model event
+	 * @since 3.11
+	 */
+	private void invalidateCachedAnnotations(AnnotationModelEvent event) {
+		Annotation[] added= event.getAddedAnnotations();
+		Annotation[] removed= event.getRemovedAnnotations();
+		Annotation[] changed= event.getChangedAnnotations();
+		synchronized (fChangedAnnotationsLock) {
+			if (fAreCachedAnnotationsInvalid)
+				return;
+
+			fChangedAnnotations.addAll(Arrays.asList(added));
+			fChangedAnnotations.addAll(Arrays.asList(removed));
+			fChangedAnnotations.addAll(Arrays.asList(changed));
+			if (fChangedAnnotations.size() > MAX_CHANGED_ANNOTATIONS) {
+				fAreCachedAnnotationsInvalid= true;
+				fChangedAnnotations.clear();
+			}
+		}
+	}
+
+	/**
+	 * Updates the cached annotations and their rows. All annotations are cached again if
+	 * the cached annotations are invalid or if the mapping of lines to rows has changed,
+	 * otherwise only the changed annotations are updated.
+	 * 
+	 * @param infos the current widget infos
+	 */
+	private void cacheAnnotations(WidgetInfos infos) {
+		IDocument document= fTextViewer.getDocument();
+		int numberOfLines= document != null ? document.getNumberOfLines() : -1;
+
+		boolean isInvalid;
+		Set<Annotation> changedAnnotations;
+		synchronized (fChangedAnnotationsLock) {
+			isInvalid= fAreCachedAnnotationsInvalid;
+			changedAnnotations= fChangedAnnotations;
+			fAreCachedAnnotationsInvalid= false;
+			fChangedAnnotations= new LinkedHashSet<>();
+		}
+
+		if (fModel == null || document == null) {
+			fCachedAnnotations.clear();
+			fCachedRows.clear();
+			fCachedWidgetInfos= null;
+			return;
+		}
+
+		if (isInvalid || numberOfLines != fCachedNumberOfLines || !infos.hasSameMapping(fCachedWidgetInfos)) {
+			fCachedAnnotations.clear();
+			fCachedRows.clear();
+			fCachedWidgetInfos= infos;
+			fCachedNumberOfLines= numberOfLines;
+
 			Iterator<Annotation> iter= fModel.getAnnotationIterator();
-			while (iter.hasNext()) {
+			while (iter.hasNext())
+				cacheAnnotation(iter.next(), infos);
+
+		} else {
+			for (Iterator<Annotation> iter= changedAnnotations.iterator(); iter.hasNext();) {
 				Annotation annotation= iter.next();
+				uncacheAnnotation(annotation);
+				cacheAnnotation(annotation, infos);
+			}
+		}
+	}
 
-				if (annotation.isMarkedDeleted())
-					continue;
+	/**
+	 * Adds the given annotation to the cached annotations if it is shown in this ruler.
+	 * 
+	 * @param annotation the annotation
+	 * @param infos the current widget infos
+	 * @since 3.11
+	 */
+	private void cacheAnnotation(Annotation annotation, WidgetInfos infos) {
+		if (annotation.isMarkedDeleted())
+			return;
 
-				if (skip(annotation.getType()))
-					continue;
+		Object type= annotation.getType();
+		if (skip(type))
+			return;
+
+		Position p= fModel.getPosition(annotation);
+		if (p == null)
+			return;
 
-				fCachedAnnotations.add(annotation);
+		boolean persistent= annotation.isPersistent();
+		long rows= computeRows(p, infos);
+		fCachedAnnotations.put(annotation, new CachedAnnotation(type, persistent, rows));
+		if (rows != -1) {
+			Rows[] typeRows= fCachedRows.get(type);
+			if (typeRows == null) {
+				typeRows= new Rows[] { new Rows(), new Rows() };
+				fCachedRows.put(type, typeRows);
 			}
+			typeRows[persistent ? 0 : 1].add(rows);
 		}
 	}
 
 	/**
-	 * Draws this overview ruler.
-	 *
-	 * @param gc the GC to draw into
+	 * Removes the given annotation from the cached annotations.
+	 * 
+	 * @param annotation the annotation
+	 * @since 3.11
 	 */
-	private void doPaint(GC gc) {
+	private void uncacheAnnotation(Annotation annotation) {
+		CachedAnnotation cached= fCachedAnnotations.remove(annotation);
+		if (cached == null || cached.rows == -1)
+			return;
 
-		Rectangle r= new Rectangle(0, 0, 0, 0);
-		int yy, hh= ANNOTATION_HEIGHT;
+		Rows[] typeRows= fCachedRows.get(cached.type);
+		if (typeRows != null)
+			typeRows[cached.persistent ? 0 : 1].remove(cached.rows);
+	}
 
+	/**
+	 * Computes the rows in which an annotation at the given position is drawn.
+	 * 
+	 * @param p the position of the annotation
+	 * @param infos the current widget infos
+	 * @return the rows, encoded as <code>y &lt;&lt; 32 | height</code>, or <code>-1</code>
+	 *         if the annotation is not visible
+	 * @since 3.11
+	 */
+	private long computeRows(Position p, WidgetInfos infos) {
 		IDocument document= fTextViewer.getDocument();
 		StyledText textWidget= fTextViewer.getTextWidget();
 		ITextViewerExtension5 extension= null;
@@ -745,8 +973,109 @@ public class OverviewRuler implements IOverviewRulerExtension, IOverviewRuler {
 		else
 			visible= fTextViewer.getVisibleRegion(); // legacy support
 
-		WidgetInfos infos= null;
-		
+		if (visible != null && !p.overlapsWith(visible.getOffset(), visible.getLength()))
+			return -1;
+
+		int annotationOffset= p.getOffset();
+		int annotationLength= p.getLength();
+		IRegion widgetRegion= null;
+		if (visible != null) {
+			annotationOffset= Math.max(p.getOffset(), visible.getOffset());
+			int annotationEnd= Math.min(p.getOffset() + p.getLength(), visible.getOffset() + visible.getLength());
+			annotationLength= annotationEnd - annotationOffset;
+		} else {
+			widgetRegion= extension.modelRange2WidgetRange(new Region(annotationOffset, annotationLength));
+			if (widgetRegion == null)
+				return -1;
+		}
+
+		try {
+			int startOffset= visible != null ? annotationOffset - visible.getOffset() : widgetRegion.getOffset();
+			int startLine= textWidget.getLineAtOffset(startOffset);
+
+			int yy= computeY(startLine, infos);
+			int hh= ANNOTATION_HEIGHT;
+
+			if (ANNOTATION_HEIGHT_SCALABLE) {
+				int numberOfLines= document.getNumberOfLines(annotationOffset, annotationLength);
+				// don't count empty trailing line
+				IRegion lastLine= document.getLineInformationOfOffset(annotationOffset + annotationLength);
+				if (lastLine.getOffset() == annotationOffset + annotationLength) {
+					numberOfLines--;
+				}
+				if (numberOfLines > 1) {
+					int yy2= computeY(startLine + numberOfLines - 1, infos);
+					hh= Math.max(yy2 - yy, ANNOTATION_HEIGHT);
+				}
+			}
+			return (long) yy << 32 | hh;
+		} catch (BadLocationException x) {
+			return -1;
+		}
+	}
+
+	/**
+	 * Tells whether annotations of the given type are drawn as annotations of the given
+	 * configured type.
+	 * 
+	 * @param annotationType the type of an annotation
+	 * @param type the configured annotation type
+	 * @return <code>true</code> if annotations of <code>annotationType</code> are shown
+	 *         with the color and layer of <code>type</code>
+	 * @since 3.11
+	 */
+	private boolean isShownAs(Object annotationType, Object type) {
+		return type.equals(annotationType) || !fConfiguredAnnotationTypes.contains(annotationType) && isSubtype(annotationType, type);
+	}
+
+	/**
+	 * Tells whether the given annotation type is a subtype of the given type.
+	 * 
+	 * @param annotationType the annotation type
+	 * @param type the potential super type
+	 * @return <code>true</code> if <code>annotationType</code> is a subtype of <code>type</code>
+	 * @since 3.11
+	 */
+	private boolean isSubtype(Object annotationType, Object type) {
+		if (fAnnotationAccess instanceof  IAnnotationAccessExtension) {
+			IAnnotationAccessExtension extension= (IAnnotationAccessExtension) fAnnotationAccess;
+			return extension.isSubtype(annotationType, type);
+		}
+		return type.equals(annotationType);
+	}
+
+	/**
+	 * Tells whether the given text contains a line delimiter of the viewer's document.
+	 * 
+	 * @param text the text, may be <code>null</code>
+	 * @return <code>true</code> if the text contains a line delimiter or is unknown
+	 * @since 3.11
+	 */
+	private boolean containsLineDelimiter(String text) {
+		IDocument document= fTextViewer != null ? fTextViewer.getDocument() : null;
+		if (text == null || document == null)
+			return true;
+
+		String[] delimiters= document.getLegalLineDelimiters();
+		for (int i= 0; i < delimiters.length; i++) {
+			if (text.indexOf(delimiters[i]) != -1)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Draws this overview ruler. Each range of rows of the cached annotations is drawn once
+	 * per annotation type and persistence, no matter how many annotations share it.
+	 *
+	 * @param gc the GC to draw into
+	 * @param infos the current widget infos
+	 */
+	private void doPaint(GC gc, WidgetInfos infos) {
+
+		Rectangle r= new Rectangle(INSET, 0, infos.bounds.width - (2 * INSET), 0);
+		int yy, hh;
+
 		for (Iterator<Object> iterator= fAnnotationsSortedByLayer.iterator(); iterator.hasNext();) {
 			Object annotationType= iterator.next();
 
@@ -759,57 +1088,17 @@ public class OverviewRuler implements IOverviewRulerExtension, IOverviewRuler {
 				Color fill= null;
 				Color stroke= null;
 
-				Iterator<Annotation> e= new FilterIterator(annotationType, style[t], fCachedAnnotations.iterator());
-				while (e.hasNext()) {
-					Annotation a= e.next();
-					Position p= fModel.getPosition(a);
-
-					if (p == null)
+				for (Iterator<Map.Entry<Object, Rows[]>> e= fCachedRows.entrySet().iterator(); e.hasNext();) {
+					Map.Entry<Object, Rows[]> entry= e.next();
+					if (!isShownAs(entry.getKey(), annotationType))
 						continue;
-					if (visible != null && !p.overlapsWith(visible.getOffset(), visible.getLength()))
-						continue;
-
-					int annotationOffset= p.getOffset();
-					int annotationLength= p.getLength();
-					IRegion widgetRegion= null;
-					if (visible != null) {
-						annotationOffset= Math.max(p.getOffset(), visible.getOffset());
-						int annotationEnd= Math.min(p.getOffset() + p.getLength(), visible.getOffset() + visible.getLength());
-						annotationLength= annotationEnd - annotationOffset;
-					} else {
-						widgetRegion= extension.modelRange2WidgetRange(new Region(annotationOffset, annotationLength));
-						if (widgetRegion == null)
-							continue;
-					}
-					
-					if (infos == null) {
-						infos= new WidgetInfos(textWidget, fCanvas);
-						r.x= INSET;
-						r.width= infos.bounds.width - (2 * INSET);
-					}
 
-					try {
-						int startOffset= visible != null ? annotationOffset - visible.getOffset() : widgetRegion.getOffset();
-						int startLine= textWidget.getLineAtOffset(startOffset);
-						
-						yy= computeY(startLine, infos);
-						
-						if (ANNOTATION_HEIGHT_SCALABLE) {
-							int numberOfLines= document.getNumberOfLines(annotationOffset, annotationLength);
-							// don't count empty trailing line
-							IRegion lastLine= document.getLineInformationOfOffset(annotationOffset + annotationLength);
-							if (lastLine.getOffset() == annotationOffset + annotationLength) {
-								numberOfLines--;
-							}
-							if (numberOfLines > 1) {
-								int yy2= computeY(startLine + numberOfLines - 1, infos);
-								hh= Math.max(yy2 - yy, ANNOTATION_HEIGHT);
-							} else {
-								hh= ANNOTATION_HEIGHT;
-							}
-						}
+					for (Iterator<Long> rows= entry.getValue()[t].counts.keySet().iterator(); rows.hasNext();) {
+						long key= rows.next().longValue();
+						yy= (int) (key >> 32);
+						hh= (int) key;
 						fAnnotationHeight= hh;
-						
+
 						if (!areColorsComputed) {
 							stroke= getStrokeColor(annotationType, style[t] == FilterIterator.TEMPORARY);
 							fill= fUseSaturatedColors ? stroke : getFillColor(annotationType, style[t] == FilterIterator.TEMPORARY);
@@ -830,7 +1119,6 @@ public class OverviewRuler implements IOverviewRulerExtension, IOverviewRuler {
 							gc.setLineWidth(0); // NOTE: 0 means width is 1 but with optimized performance
 							gc.drawRectangle(r);
 						}
-					} catch (BadLocationException x) {
 					}
 				}
 			}
@@ -838,8 +1126,6 @@ public class OverviewRuler implements IOverviewRulerExtension, IOverviewRuler {
 		
 		if (DEBUG_DRAW) {
 			// draw debugging guides (boundaries):
-			if (infos == null)
-				infos= new WidgetInfos(textWidget, fCanvas);
 			gc.setForeground(gc.getDevice().getSystemColor(SWT.COLOR_DARK_MAGENTA));
 			yy= infos.thumbHeight / 2;
 			gc.drawLine(0, yy, infos.bounds.x/2, yy);
@@ -1174,6 +1460,7 @@ public class OverviewRuler implements IOverviewRulerExtension, IOverviewRuler {
 			fConfiguredAnnotationTypes.add(annotationType);
 			fAllowedAnnotationTypes.clear();
 		}
+		invalidateCachedAnnotations();
 	}
 
 	@Override
@@ -1182,6 +1469,7 @@ public class OverviewRuler implements IOverviewRulerExtension, IOverviewRuler {
 			fConfiguredAnnotationTypes.remove(annotationType);
 			fAllowedAnnotationTypes.clear();
 		}
+		invalidateCachedAnnotations();
 	}
 
 	@Override
@@ -1467,7 +1755,7 @@ public class OverviewRuler implements IOverviewRulerExtension, IOverviewRuler {
 			if (skipInHeader(annotationType) || skip(annotationType))
 				continue;
 
-			Iterator<Annotation> e= new FilterIterator(annotationType, FilterIterator.PERSISTENT | FilterIterator.TEMPORARY | FilterIterator.IGNORE_BAGS, fCachedAnnotations.iterator());
+			Iterator<Annotation> e= new FilterIterator(annotationType, FilterIterator.PERSISTENT | FilterIterator.TEMPORARY | FilterIterator.IGNORE_BAGS, fCachedAnnotations.keySet().iterator());
 			while (e.hasNext()) {
 				if (e.next() != null) {
 					colorType= annotationType;
@@ -1517,7 +1805,7 @@ public class OverviewRuler implements IOverviewRulerExtension, IOverviewRuler {
 			int count= 0;
 			String annotationTypeLabel= null;
 
-			Iterator<Annotation> e= new FilterIterator(annotationType, FilterIterator.PERSISTENT | FilterIterator.TEMPORARY | FilterIterator.IGNORE_BAGS, fCachedAnnotations.iterator());
+			Iterator<Annotation> e= new FilterIterator(annotationType, FilterIterator.PERSISTENT | FilterIterator.TEMPORARY | FilterIterator.IGNORE_BAGS, fCachedAnnotations.keySet().iterator());
 			while (e.hasNext()) {
 				Annotation annotation= e.next();
 				if (annotation != null) {
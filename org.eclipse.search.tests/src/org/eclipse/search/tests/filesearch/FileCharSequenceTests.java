@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2013 IBM Corporation and others.
+ * Copyright (c) 2000, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -74,6 +74,41 @@ public class FileCharSequenceTests {
 		testForEncoding(buf, encoding);
 	}
 
+	@Test
+	public void testSharedBufferPool() throws Exception {
+		StringBuffer buf1= new StringBuffer();
+		for (int i= 0; i < FileCharSequenceProvider.BUFFER_SIZE / 10; i++) {
+			buf1.append(TEST_CONTENT);
+		}
+		StringBuffer buf2= new StringBuffer();
+		for (int i= 0; i < 100; i++) {
+			buf2.append(TEST_CONTENT);
+		}
+		IFolder folder= ResourceHelper.createFolder(fProject.getFolder("folder1"));
+		IFile file1= ResourceHelper.createFile(folder, "file1", buf1.toString(), "UTF-8");
+		IFile file2= ResourceHelper.createFile(folder, "file2", buf2.toString(), "UTF-8");
+
+		FileCharSequenceProvider.BufferPool pool= new FileCharSequenceProvider.BufferPool(2);
+		FileCharSequenceProvider provider1= new FileCharSequenceProvider(pool);
+		FileCharSequenceProvider provider2= new FileCharSequenceProvider(pool);
+		for (int i= 0; i < 3; i++) {
+			CharSequence cs1= provider1.newCharSequence(file1);
+			try {
+				assertEquals("file1", cs1, buf1);
+			} finally {
+				provider1.releaseCharSequence(cs1);
+			}
+			CharSequence cs2= provider2.newCharSequence(file2);
+			try {
+				assertEquals("file2", cs2, buf2);
+			} finally {
+				provider2.releaseCharSequence(cs2);
+			}
+		}
+		Assert.assertTrue(pool.getReusedCount() > 0);
+		Assert.assertTrue(pool.getAllocatedCount() <= 2 * 3);
+	}
+
 	private void testForEncoding(CharSequence buf, String encoding) throws CoreException, IOException {
 		IFolder folder= ResourceHelper.createFolder(fProject.getFolder("folder1"));
 		IFile file1= ResourceHelper.createFile(folder, "file1", buf.toString(), encoding);
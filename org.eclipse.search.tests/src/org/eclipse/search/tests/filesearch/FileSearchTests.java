@@ -13,8 +13,13 @@
 package org.eclipse.search.tests.filesearch;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.regex.Pattern;
 
@@ -36,6 +41,7 @@ import org.eclipse.search.core.text.TextSearchEngine;
 import org.eclipse.search.core.text.TextSearchMatchAccess;
 import org.eclipse.search.core.text.TextSearchRequestor;
 import org.eclipse.search.core.text.TextSearchScope;
+import org.eclipse.search.internal.core.text.TextSearchBinaryFileCache;
 import org.eclipse.search.internal.core.text.PatternConstructor;
 import org.eclipse.search.internal.ui.SearchPlugin;
 import org.eclipse.search.tests.ResourceHelper;
@@ -60,10 +66,28 @@ public class FileSearchTests {
 
 		protected List<TestResult> fResult;
 
+		protected List<IFile> fBinaryFiles;
+
+		private boolean fSearchBinaryFiles;
+
 		public TestResultCollector() {
 			reset();
 		}
 
+		@Override
+		public boolean reportBinaryFile(IFile file) {
+			fBinaryFiles.add(file);
+			return fSearchBinaryFiles;
+		}
+
+		public void setSearchBinaryFiles(boolean searchBinaryFiles) {
+			fSearchBinaryFiles= searchBinaryFiles;
+		}
+
+		public List<IFile> getBinaryFiles() {
+			return fBinaryFiles;
+		}
+
 		public TestResult[] getResults() {
 			return fResult.toArray(new TestResult[fResult.size()]);
 		}
@@ -74,6 +98,7 @@ public class FileSearchTests {
 
 		public void reset() {
 			fResult= new ArrayList<>();
+			fBinaryFiles= Collections.synchronizedList(new ArrayList<IFile>());
 		}
 
 	}
@@ -500,6 +525,50 @@ public class FileSearchTests {
 		assertEquals("Number of total results", 1, results.length);
 	}
 	
+	@Test
+	public void testBinaryFilesSerial() throws Exception {
+		testBinaryFiles(new SerialTestResultCollector());
+	}
+
+	@Test
+	public void testBinaryFilesParallel() throws Exception {
+		testBinaryFiles(new ParallelTestResultCollector());
+	}
+
+	private void testBinaryFiles(TestResultCollector collector) throws Exception {
+		IFolder folder= ResourceHelper.createFolder(fProject.getFolder("folder1"));
+		IFile binaryFile= ResourceHelper.createFile(folder, "binary", "hello\0world");
+		ResourceHelper.createFile(folder, "text", "hello world");
+		TextSearchBinaryFileCache cache= SearchPlugin.getDefault().getTextSearchBinaryFileCache();
+		cache.clear();
+
+		Pattern searchPattern= PatternConstructor.createPattern("hello", false, false);
+		String[] fileNamePatterns= { "*" };
+
+		TestResult[] results= performSearch(collector, fileNamePatterns, searchPattern);
+		assertEquals("Number of total results", 1, results.length);
+		assertEquals(Collections.singletonList(binaryFile), collector.getBinaryFiles());
+		assertTrue(cache.isBinary(binaryFile.getFullPath(), binaryFile.getModificationStamp(), binaryFile.getCharset()));
+
+		// a file known to be binary is still reported and searched if requested
+		results= performSearch(collector, fileNamePatterns, searchPattern);
+		assertEquals("Number of total results", 1, results.length);
+		assertEquals(Collections.singletonList(binaryFile), collector.getBinaryFiles());
+
+		collector.setSearchBinaryFiles(true);
+		results= performSearch(collector, fileNamePatterns, searchPattern);
+		assertEquals("Number of total results", 2, results.length);
+		assertEquals(Collections.singletonList(binaryFile), collector.getBinaryFiles());
+		collector.setSearchBinaryFiles(false);
+
+		// a file that is no longer binary is searched again
+		binaryFile.setContents(new ByteArrayInputStream("hello again".getBytes(StandardCharsets.UTF_8)), true, false, null);
+		assertFalse(cache.isBinary(binaryFile.getFullPath(), binaryFile.getModificationStamp(), binaryFile.getCharset()));
+		results= performSearch(collector, fileNamePatterns, searchPattern);
+		assertEquals("Number of total results", 2, results.length);
+		assertTrue(collector.getBinaryFiles().isEmpty());
+	}
+
 	private TestResult[] performSearch(TestResultCollector collector, String[] fileNamePatterns, Pattern searchPattern) {
 		collector.reset();
 		FileTextSearchScope scope= FileTextSearchScope.newSearchScope(new IResource[] {fProject}, fileNamePatterns, false);
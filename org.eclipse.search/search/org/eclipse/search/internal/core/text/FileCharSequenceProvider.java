@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2010 IBM Corporation and others.
+ * Copyright (c) 2000, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -14,7 +14,9 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
+import java.util.ArrayDeque;
 import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.content.IContentDescription;
@@ -29,8 +31,96 @@ public class FileCharSequenceProvider {
 	private static int NUMBER_OF_BUFFERS= 3;
 	public static int BUFFER_SIZE= 2 << 18; // public for testing
 
+	/**
+	 * A bounded pool of the character arrays that the sequences use as buffers. A pool
+	 * can be shared by the providers of several threads, so that a search allocates
+	 * buffers only for the files it reads at the same time, instead of for every file.
+	 *
+	 * @since 3.11
+	 */
+	public static final class BufferPool {
+
+		/** The maximal number of pooled buffers. */
+		private final int fMaxSize;
+		/** The pooled buffers, guarded by itself. */
+		private final ArrayDeque<char[]> fBuffers= new ArrayDeque<>();
+		/** The number of buffers allocated by this pool. */
+		private final AtomicInteger fAllocatedCount= new AtomicInteger();
+		/** The number of times a buffer has been reused. */
+		private final AtomicInteger fReusedCount= new AtomicInteger();
+
+		/**
+		 * Creates a new pool that keeps the buffers of the given number of sequences.
+		 *
+		 * @param numberOfSequences the number of sequences used at the same time
+		 */
+		public BufferPool(int numberOfSequences) {
+			fMaxSize= Math.max(1, numberOfSequences) * NUMBER_OF_BUFFERS;
+		}
+
+		char[] acquire() {
+			synchronized (fBuffers) {
+				char[] buffer;
+				while ((buffer= fBuffers.poll()) != null) {
+					if (buffer.length == BUFFER_SIZE) {
+						fReusedCount.incrementAndGet();
+						return buffer;
+					}
+				}
+			}
+			fAllocatedCount.incrementAndGet();
+			return new char[BUFFER_SIZE];
+		}
+
+		void release(char[] buffer) {
+			if (buffer.length != BUFFER_SIZE)
+				return;
+			synchronized (fBuffers) {
+				if (fBuffers.size() < fMaxSize)
+					fBuffers.push(buffer);
+			}
+		}
+
+		/**
+		 * Returns the number of buffers that have been allocated by this pool.
+		 *
+		 * @return the number of allocated buffers
+		 */
+		public int getAllocatedCount() {
+			return fAllocatedCount.get();
+		}
+
+		/**
+		 * Returns the number of times a pooled buffer has been reused.
+		 *
+		 * @return the number of reuses
+		 */
+		public int getReusedCount() {
+			return fReusedCount.get();
+		}
+	}
+
+	private final BufferPool fBufferPool;
+
 	private FileCharSequence fReused= null;
 
+	/**
+	 * Creates a provider with its own buffer pool.
+	 */
+	public FileCharSequenceProvider() {
+		this(new BufferPool(1));
+	}
+
+	/**
+	 * Creates a provider that takes the buffers from the given pool.
+	 *
+	 * @param bufferPool the buffer pool
+	 * @since 3.11
+	 */
+	public FileCharSequenceProvider(BufferPool bufferPool) {
+		fBufferPool= bufferPool;
+	}
+
 	public CharSequence newCharSequence(IFile file) throws CoreException, IOException {
 		if (fReused == null) {
 			return new FileCharSequence(file);
@@ -140,8 +230,8 @@ public class FileCharSequenceProvider {
 		private Buffer fNext;
 		private Buffer fPrevious;
 
-		public Buffer() {
-			fBuf= new char[BUFFER_SIZE];
+		public Buffer(char[] buf) {
+			fBuf= buf;
 			reset();
 			fNext= this;
 			fPrevious= this;
@@ -169,8 +259,8 @@ public class FileCharSequenceProvider {
 			}
 
 			int charsRead= res;
-			while (charsRead < BUFFER_SIZE) {
-				res= reader.read(fBuf, charsRead, BUFFER_SIZE - charsRead);
+			while (charsRead < fBuf.length) {
+				res= reader.read(fBuf, charsRead, fBuf.length - charsRead);
 				if (res == -1) {
 					fOffset= pos;
 					fLength= charsRead;
@@ -179,7 +269,7 @@ public class FileCharSequenceProvider {
 				charsRead+= res;
 			}
 			fOffset= pos;
-			fLength= BUFFER_SIZE;
+			fLength= fBuf.length;
 			return false;
 		}
 
@@ -355,7 +445,7 @@ public class FileCharSequenceProvider {
 		private Buffer findBufferToUse() {
 			if (fNumberOfBuffers < NUMBER_OF_BUFFERS) {
 				fNumberOfBuffers++;
-				Buffer newBuffer= new Buffer();
+				Buffer newBuffer= new Buffer(fBufferPool.acquire());
 				if (fMostCurrentBuffer == null) {
 					fMostCurrentBuffer= newBuffer;
 					return newBuffer;
@@ -458,7 +548,26 @@ public class FileCharSequenceProvider {
 		}
 
 		public void close() throws IOException {
-			clearReader();
+			try {
+				clearReader();
+			} finally {
+				releaseBuffers();
+			}
+		}
+
+		/**
+		 * Returns the buffers of this sequence to the pool.
+		 */
+		private void releaseBuffers() {
+			Buffer curr= fMostCurrentBuffer;
+			if (curr != null) {
+				do {
+					fBufferPool.release(curr.fBuf);
+					curr= curr.getNext();
+				} while (curr != fMostCurrentBuffer);
+			}
+			fMostCurrentBuffer= null;
+			fNumberOfBuffers= 0;
 		}
 
 		@Override
@@ -0,0 +1,144 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.search.internal.core.text;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.Platform;
+import org.eclipse.core.runtime.content.IContentTypeManager;
+import org.eclipse.core.runtime.content.IContentTypeManager.ContentTypeChangeEvent;
+import org.eclipse.core.runtime.content.IContentTypeManager.IContentTypeChangeListener;
+
+import org.eclipse.core.resources.IResource;
+
+
+/**
+ * Remembers the workspace files that text searches have found to be binary, so that later
+ * searches can skip them without reading them again as long as they have not changed.
+ * <p>
+ * A file is only known to be binary for the modification stamp it had and the charset
+ * it was read with. Text files are not recorded as they are the normal case, which
+ * keeps the cache small during large searches. The cache is cleared when content types
+ * change. It keeps a limited number of entries and drops the least recently used ones
+ * first.
+ * </p>
+ * <p>
+ * The cache can be accessed from any thread.
+ * </p>
+ * <p>
+ * This cache is intentionally separate from the cache of content descriptions of file
+ * stores in <code>org.eclipse.core.filebuffers</code>. It only records a binary flag for
+ * workspace files, validated with their modification stamp and charset, and is only
+ * used by text searches. The file buffer cache is internal to that bundle.
+ * </p>
+ *
+ * @since 3.11
+ */
+public final class TextSearchBinaryFileCache {
+
+	/**
+	 * The state in which a file has been found to be binary.
+	 */
+	private static final class Entry {
+
+		private final long fModificationStamp;
+		private final String fCharset;
+
+		Entry(long modificationStamp, String charset) {
+			fModificationStamp= modificationStamp;
+			fCharset= charset;
+		}
+	}
+
+	/** The maximal number of entries. */
+	private static final int MAX_ENTRIES= 10000;
+
+	/** The entries in access order, guarded by itself. */
+	private final Map<IPath, Entry> fEntries= new LinkedHashMap<IPath, Entry>(64, 0.75f, true) {
+		private static final long serialVersionUID= 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<IPath, Entry> eldest) {
+			return size() > MAX_ENTRIES;
+		}
+	};
+
+	/** Clears the cache when content types change. */
+	private final IContentTypeChangeListener fContentTypeListener= new IContentTypeChangeListener() {
+		@Override
+		public void contentTypeChanged(ContentTypeChangeEvent event) {
+			clear();
+		}
+	};
+
+	/**
+	 * Creates a new cache that is cleared when content types change.
+	 */
+	public TextSearchBinaryFileCache() {
+		IContentTypeManager manager= Platform.getContentTypeManager();
+		if (manager != null)
+			manager.addContentTypeChangeListener(fContentTypeListener);
+	}
+
+	/**
+	 * Disposes this cache.
+	 */
+	public void dispose() {
+		IContentTypeManager manager= Platform.getContentTypeManager();
+		if (manager != null)
+			manager.removeContentTypeChangeListener(fContentTypeListener);
+		clear();
+	}
+
+	/**
+	 * Tells whether the given file has been found to be binary in the given state.
+	 *
+	 * @param path the full path of the file
+	 * @param modificationStamp the current modification stamp of the file
+	 * @param charset the charset with which the file is read
+	 * @return <code>true</code> if the file is known to be binary
+	 */
+	public boolean isBinary(IPath path, long modificationStamp, String charset) {
+		if (modificationStamp == IResource.NULL_STAMP)
+			return false;
+		Entry entry;
+		synchronized (fEntries) {
+			entry= fEntries.get(path);
+		}
+		return entry != null && entry.fModificationStamp == modificationStamp && entry.fCharset.equals(charset);
+	}
+
+	/**
+	 * Records that the given file is binary in the given state.
+	 *
+	 * @param path the full path of the file
+	 * @param modificationStamp the modification stamp the file had when it was read
+	 * @param charset the charset with which the file was read
+	 */
+	public void putBinary(IPath path, long modificationStamp, String charset) {
+		if (modificationStamp == IResource.NULL_STAMP || charset == null)
+			return;
+		synchronized (fEntries) {
+			fEntries.put(path, new Entry(modificationStamp, charset));
+		}
+	}
+
+	/**
+	 * Removes all entries from this cache.
+	 */
+	public void clear() {
+		synchronized (fEntries) {
+			fEntries.clear();
+		}
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2015 IBM Corporation and others.
+ * Copyright (c) 2000, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -47,6 +47,7 @@ import org.eclipse.core.filebuffers.ITextFileBufferManager;
 import org.eclipse.core.filebuffers.LocationKind;
 
 import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentExtension5;
 
 import org.eclipse.ui.IEditorInput;
 import org.eclipse.ui.IEditorPart;
@@ -146,6 +147,7 @@ public class TextSearchVisitor {
 		private final int fEnd;
 		private final Map<IFile, IDocument> fDocumentsInEditors;
 		private ReusableMatchAccess fReusableMatchAccess;
+		private final FileCharSequenceProvider fFileCharSequenceProvider;
 
 		/**
 		 * Searches for matches in a set of files.
@@ -162,6 +164,7 @@ public class TextSearchVisitor {
 			fBegin = begin;
 			fEnd = end;
 			fDocumentsInEditors = documentsInEditors;
+			fFileCharSequenceProvider= new FileCharSequenceProvider(fBufferPool);
 		}
 
 		@Override
@@ -185,7 +188,7 @@ public class TextSearchVisitor {
 			// methods to the TextSearchJob class.
 			ReusableMatchAccess matchAccess= getReusableMatchAccess();
 			Matcher matcher= fSearchPattern.pattern().length() == 0 ? null : fSearchPattern.matcher(""); //$NON-NLS-1$
-			FileCharSequenceProvider fileCharSequenceProvider= new FileCharSequenceProvider();
+			FileCharSequenceProvider fileCharSequenceProvider= fFileCharSequenceProvider;
 
 			try {
 				if (!fCollector.acceptFile(file) || matcher == null) {
@@ -195,16 +198,32 @@ public class TextSearchVisitor {
 				IDocument document= getOpenDocument(file, getDocumentsInEditors());
 
 				if (document != null) {
-					DocumentCharSequence documentCharSequence= new DocumentCharSequence(document);
+					CharSequence documentCharSequence;
+					if (document instanceof IDocumentExtension5) {
+						// search a consistent version of the document without locking it for every character
+						documentCharSequence= ((IDocumentExtension5) document).getSnapshot();
+					} else {
+						documentCharSequence= new DocumentCharSequence(document);
+					}
 					// assume all documents are non-binary
 					locateMatches(file, documentCharSequence, matcher, matchAccess, monitor);
 				} else {
 					CharSequence seq= null;
 					try {
-						seq= fileCharSequenceProvider.newCharSequence(file);
-						if (hasBinaryContent(seq, file) && !fCollector.reportBinaryFile(file)) {
+						// don't read files again that earlier searches found to be binary
+						long modificationStamp= file.getModificationStamp();
+						String charset= file.getCharset();
+						boolean knownBinary= fBinaryFileCache.isBinary(file.getFullPath(), modificationStamp, charset);
+						if (knownBinary && !fCollector.reportBinaryFile(file)) {
 							return Status.OK_STATUS;
 						}
+						seq= fileCharSequenceProvider.newCharSequence(file);
+						if (!knownBinary && hasBinaryContent(seq, file)) {
+							fBinaryFileCache.putBinary(file.getFullPath(), modificationStamp, charset);
+							if (!fCollector.reportBinaryFile(file)) {
+								return Status.OK_STATUS;
+							}
+						}
 						locateMatches(file, seq, matcher, matchAccess, monitor);
 					} catch (FileCharSequenceProvider.FileCharSequenceException e) {
 						e.throwWrappedException();
@@ -277,6 +296,16 @@ public class TextSearchVisitor {
 
 	private boolean fIsLightweightAutoRefresh;
 
+	/**
+	 * The cache of the files found to be binary by searches.
+	 */
+	private final TextSearchBinaryFileCache fBinaryFileCache;
+
+	/**
+	 * The pool of the buffers used to read files, shared by the jobs of a search.
+	 */
+	private FileCharSequenceProvider.BufferPool fBufferPool;
+
 	public TextSearchVisitor(TextSearchRequestor collector, Pattern searchPattern) {
 		fCollector= collector;
 		fStatus= new MultiStatus(NewSearchUI.PLUGIN_ID, IStatus.OK, SearchMessages.TextSearchEngine_statusMessage, null);
@@ -284,6 +313,8 @@ public class TextSearchVisitor {
 		fSearchPattern= searchPattern;
 
 		fIsLightweightAutoRefresh= Platform.getPreferencesService().getBoolean(ResourcesPlugin.PI_RESOURCES, ResourcesPlugin.PREF_LIGHTWEIGHT_AUTO_REFRESH, false, null);
+
+		fBinaryFileCache= SearchPlugin.getDefault().getTextSearchBinaryFileCache();
 	}
 
 	public IStatus search(IFile[] files, IProgressMonitor monitor) {
@@ -300,6 +331,7 @@ public class TextSearchVisitor {
 			jobCount= (files.length + FILES_PER_JOB - 1) / FILES_PER_JOB;
 		}
 		final JobGroup jobGroup= new TextSearchJobGroup("Text Search", maxThreads, jobCount); //$NON-NLS-1$
+		fBufferPool= new FileCharSequenceProvider.BufferPool(maxThreads);
 		long startTime= TRACING ? System.currentTimeMillis() : 0;
 
 		Job monitorUpdateJob= new Job(SearchMessages.TextSearchVisitor_progress_updating_job) {
@@ -376,6 +408,9 @@ public class TextSearchVisitor {
 				Object[] args= { new Integer(fNumberOfScannedFiles), new Integer(jobCount), new Integer(NUMBER_OF_LOGICAL_THREADS), new Long(System.currentTimeMillis() - startTime) };
 				System.out.println(Messages.format(
 						"[TextSearch] Search duration for {0} files in {1} jobs using {2} threads: {3}ms", args)); //$NON-NLS-1$
+				Object[] bufferArgs= { new Integer(fBufferPool.getAllocatedCount()), new Integer(fBufferPool.getReusedCount()) };
+				System.out.println(Messages.format(
+						"[TextSearch] Buffers allocated: {0}, reused: {1}", bufferArgs)); //$NON-NLS-1$
 			}
 	   }
 	}
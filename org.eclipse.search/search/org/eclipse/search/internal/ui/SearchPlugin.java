@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2013 IBM Corporation and others.
+ * Copyright (c) 2000, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -41,6 +41,7 @@ import org.eclipse.ui.IWorkbenchPage;
 import org.eclipse.ui.IWorkbenchWindow;
 import org.eclipse.ui.plugin.AbstractUIPlugin;
 
+import org.eclipse.search.internal.core.text.TextSearchBinaryFileCache;
 import org.eclipse.search.internal.core.text.TextSearchEngineRegistry;
 import org.eclipse.search.internal.ui.util.ExceptionHandler;
 import org.eclipse.search.ui.IContextMenuConstants;
@@ -89,6 +90,11 @@ public class SearchPlugin extends AbstractUIPlugin {
 	private List<SorterDescriptor> fSorterDescriptors;
 	private TextSearchEngineRegistry fTextSearchEngineRegistry;
 	private TextSearchQueryProviderRegistry fTextSearchQueryProviderRegistry;
+	/**
+	 * The cache of the files found to be binary by searches.
+	 * @since 3.11
+	 */
+	private TextSearchBinaryFileCache fBinaryFileCache;
 
 	public SearchPlugin() {
 		super();
@@ -210,6 +216,12 @@ public class SearchPlugin extends AbstractUIPlugin {
 	public void stop(BundleContext context) throws Exception {
 		InternalSearchUI.shutdown();
 		disposeOldSearchManager();
+		synchronized (this) {
+			if (fBinaryFileCache != null) {
+				fBinaryFileCache.dispose();
+				fBinaryFileCache= null;
+			}
+		}
 		super.stop(context);
 		fgSearchPlugin= null;
 	}
@@ -319,6 +331,18 @@ public class SearchPlugin extends AbstractUIPlugin {
         return fTextSearchQueryProviderRegistry;
     }
 
+	/**
+	 * Returns the cache of the files that searches have found to be binary.
+	 *
+	 * @return the binary file cache of text searches
+	 * @since 3.11
+	 */
+	public synchronized TextSearchBinaryFileCache getTextSearchBinaryFileCache() {
+		if (fBinaryFileCache == null)
+			fBinaryFileCache= new TextSearchBinaryFileCache();
+		return fBinaryFileCache;
+	}
+
 	/**
 	 * Creates all necessary sorter description nodes.
 	 * @param elements the configuration elements
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2007, 2015 IBM Corporation and others.
+ * Copyright (c) 2007, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -17,6 +17,8 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
 
 import org.junit.After;
 import org.junit.Before;
@@ -274,4 +276,75 @@ public class AnnotationModelExtension2Test {
 		assertPermutations(true, true, expected);
 	}
 
+	@Test
+	public void testRandomRegions() throws Exception {
+		Random random= new Random(31);
+		StringBuffer content= new StringBuffer();
+		for (int i= 0; i < 200; i++)
+			content.append("line ").append(i).append('\n');
+		fDocument.set(content.toString());
+
+		// the annotations in the order in which they have been added, the model does not define an order
+		List<Annotation> annotations= new ArrayList<>();
+		for (int run= 0; run < 30; run++) {
+			for (int i= 0; i < 50; i++) {
+				int offset= random.nextInt(fDocument.getLength());
+				int length= random.nextInt(10) == 0 ? random.nextInt(fDocument.getLength() - offset) : random.nextInt(Math.min(20, fDocument.getLength() - offset));
+				Annotation annotation= new Annotation(false);
+				fNewInnerModel.addAnnotation(annotation, new Position(offset, length));
+				annotations.add(annotation);
+			}
+			for (Iterator<Annotation> iterator= annotations.iterator(); iterator.hasNext();) {
+				Annotation annotation= iterator.next();
+				if (random.nextInt(5) == 0) {
+					fNewInnerModel.removeAnnotation(annotation);
+					iterator.remove();
+				}
+			}
+			int editOffset= random.nextInt(fDocument.getLength());
+			fDocument.replace(editOffset, random.nextInt(Math.min(30, fDocument.getLength() - editOffset)), "edit\n");
+
+			for (int i= 0; i < 20; i++) {
+				int offset= random.nextInt(fDocument.getLength());
+				int length= random.nextInt(Math.min(100, fDocument.getLength() - offset));
+				for (int j= 0; j < 4; j++)
+					assertRegion(offset, length, (j & 1) != 0, (j & 2) != 0);
+			}
+		}
+	}
+
+	private void assertRegion(int offset, int length, boolean canStartBefore, boolean canEndAfter) {
+		List<Annotation> expected= new ArrayList<>();
+		Position region= new Position(offset, length);
+		Iterator<Annotation> iterator= fNewInnerModel.getAnnotationIterator();
+		while (iterator.hasNext()) {
+			Annotation annotation= iterator.next();
+			Position position= fNewInnerModel.getPosition(annotation);
+			int start= position.getOffset(), last= start + position.getLength() - (position.getLength() > 0 ? 1 : 0);
+			boolean inside;
+			if (canStartBefore && canEndAfter)
+				inside= region.overlapsWith(start, position.getLength());
+			else if (canStartBefore)
+				inside= region.includes(last);
+			else if (canEndAfter)
+				inside= region.includes(start);
+			else
+				inside= region.includes(start) && region.includes(last);
+			if (inside)
+				expected.add(annotation);
+		}
+
+		List<Annotation> actual= new ArrayList<>();
+		int previousOffset= -1;
+		iterator= fNewInnerModel.getAnnotationIterator(offset, length, canStartBefore, canEndAfter);
+		while (iterator.hasNext()) {
+			Annotation annotation= iterator.next();
+			int annotationOffset= fNewInnerModel.getPosition(annotation).getOffset();
+			assertTrue(previousOffset <= annotationOffset);
+			previousOffset= annotationOffset;
+			actual.add(annotation);
+		}
+
+		assertEquals(expected.toArray(new Annotation[expected.size()]), actual.toArray(new Annotation[actual.size()]), fNewInnerModel, fNewInnerModel, fNewInnerModel);
+	}
 }
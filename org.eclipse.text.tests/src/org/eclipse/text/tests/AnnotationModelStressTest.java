@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2007, 2015 IBM Corporation and others.
+ * Copyright (c) 2007, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -15,7 +15,12 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Random;
 
 import org.junit.After;
@@ -23,10 +28,13 @@ import org.junit.Before;
 import org.junit.Test;
 
 import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.IDocument;
 import org.eclipse.jface.text.Position;
 import org.eclipse.jface.text.source.Annotation;
 import org.eclipse.jface.text.source.AnnotationModel;
 import org.eclipse.jface.text.source.IAnnotationModel;
+import org.eclipse.jface.text.source.IAnnotationModelExtension;
+import org.eclipse.jface.text.source.IAnnotationModelListener;
 
 /**
  * @since 3.4
@@ -1478,4 +1486,107 @@ public class AnnotationModelStressTest {
 		}
 	}
 
+	@Test
+	public void testStressTestReplace() throws Exception {
+		final int[] events= new int[1];
+		fAnnotationModel.addAnnotationModelListener(new IAnnotationModelListener() {
+			@Override
+			public void modelChanged(IAnnotationModel model) {
+				events[0]++;
+			}
+		});
+		events[0]= 0;
+
+		ArrayList<AnnotationData> added= new ArrayList<>();
+		int replaces= 0;
+		int i= 0;
+		while (i < RANDOM_ANNOTATIONS.length) {
+			// replace the oldest annotations with the next batch, one replace per model
+			for (int number= 0; number < 3; number++) {
+				ArrayList<Annotation> toRemove= new ArrayList<>();
+				for (Iterator<AnnotationData> iter= added.iterator(); iter.hasNext() && toRemove.size() < 40;) {
+					AnnotationData data= iter.next();
+					if (data.annotationNumber == number) {
+						toRemove.add(data.annotation);
+						iter.remove();
+					}
+				}
+
+				Map<Annotation, Position> toAdd= new HashMap<>();
+				for (int j= i; j < Math.min(i + 150, RANDOM_ANNOTATIONS.length); j++) {
+					AnnotationData data= RANDOM_ANNOTATIONS[j];
+					if (data.annotationNumber == number) {
+						data.annotation= new Annotation(false);
+						data.position= new Position(data.offset, data.length);
+						toAdd.put(data.annotation, data.position);
+						added.add(data);
+					}
+				}
+
+				if (!toRemove.isEmpty() || !toAdd.isEmpty()) {
+					IAnnotationModelExtension model= (IAnnotationModelExtension) getModel(number);
+					model.replaceAnnotations(toRemove.toArray(new Annotation[toRemove.size()]), toAdd);
+					replaces++;
+				}
+			}
+			i+= 150;
+
+			assertEquals(replaces, events[0]);
+			assertExist(added);
+			assertExistNew(added);
+		}
+
+		while (added.size() > 0) {
+			assertRemove(added);
+			assertExistNew(added);
+		}
+	}
+
+	@Test
+	public void testConcurrentReplace() throws Exception {
+		final int threadCount= 4;
+		final int annotationCount= 20;
+		final IAnnotationModelExtension model= (IAnnotationModelExtension) fInnerModel1;
+		final List<Throwable> errors= Collections.synchronizedList(new ArrayList<Throwable>());
+		Thread[] threads= new Thread[threadCount];
+		for (int t= 0; t < threadCount; t++) {
+			final Random random= new Random(t);
+			threads[t]= new Thread() {
+				@Override
+				public void run() {
+					try {
+						Annotation[] previous= new Annotation[0];
+						for (int run= 0; run < 200; run++) {
+							Map<Annotation, Position> toAdd= new HashMap<>();
+							for (int i= 0; i < annotationCount; i++) {
+								int offset= random.nextInt(RANDOM_CONTENT.length());
+								int length= random.nextInt(Math.min(10, RANDOM_CONTENT.length() - offset) + 1);
+								toAdd.put(new Annotation(false), new Position(offset, length));
+							}
+							model.replaceAnnotations(previous, toAdd);
+							previous= toAdd.keySet().toArray(new Annotation[toAdd.size()]);
+						}
+					} catch (Throwable x) {
+						errors.add(x);
+					}
+				}
+			};
+		}
+		for (int t= 0; t < threadCount; t++)
+			threads[t].start();
+		for (int t= 0; t < threadCount; t++)
+			threads[t].join();
+
+		assertTrue(errors.toString(), errors.isEmpty());
+
+		Position[] positions= fDocument.getPositions(IDocument.DEFAULT_CATEGORY);
+		assertEquals(threadCount * annotationCount, positions.length);
+		Map<Position, Position> documentPositions= new IdentityHashMap<>();
+		for (int i= 0; i < positions.length; i++)
+			documentPositions.put(positions[i], positions[i]);
+		int count= 0;
+		for (Iterator<Annotation> iter= fInnerModel1.getAnnotationIterator(); iter.hasNext(); count++)
+			assertNotNull(documentPositions.get(fInnerModel1.getPosition(iter.next())));
+		assertEquals(threadCount * annotationCount, count);
+	}
 }
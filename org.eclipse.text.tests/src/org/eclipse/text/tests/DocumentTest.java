@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2010 IBM Corporation and others.
+ * Copyright (c) 2000, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -11,7 +11,15 @@
 package org.eclipse.text.tests;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
 
 import org.junit.After;
 import org.junit.Before;
@@ -20,7 +28,14 @@ import org.junit.Test;
 import org.eclipse.jface.text.BadLocationException;
 import org.eclipse.jface.text.BadPositionCategoryException;
 import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.DocumentEvent;
+import org.eclipse.jface.text.DocumentRewriteSession;
+import org.eclipse.jface.text.DocumentRewriteSessionType;
+import org.eclipse.jface.text.DocumentSnapshot;
 import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentExtension4;
+import org.eclipse.jface.text.IDocumentListener;
+import org.eclipse.jface.text.IDocumentListenerExtension;
 import org.eclipse.jface.text.Position;
 
 
@@ -468,4 +483,307 @@ public class DocumentTest {
 
 		checkPositions(positions);
 	}
+
+	@Test
+	public void testRewriteSessionSummary() throws BadLocationException {
+		final int[] changes= new int[2];
+		final DocumentEvent[] summary= new DocumentEvent[1];
+		class SummaryListener implements IDocumentListener, IDocumentListenerExtension {
+			@Override
+			public void documentAboutToBeChanged(DocumentEvent event) {
+				changes[0]++;
+			}
+			@Override
+			public void documentChanged(DocumentEvent event) {
+				changes[0]++;
+			}
+			@Override
+			public void documentChangedInRewriteSession(DocumentEvent event) {
+				assertNull(summary[0]);
+				summary[0]= new DocumentEvent(event.getDocument(), event.getOffset(), event.getLength(), event.getText());
+			}
+		}
+		fDocument.addDocumentListener(new SummaryListener());
+		fDocument.addDocumentListener(new IDocumentListener() {
+			@Override
+			public void documentAboutToBeChanged(DocumentEvent event) {
+			}
+			@Override
+			public void documentChanged(DocumentEvent event) {
+				changes[1]++;
+			}
+		});
+
+		String original= fDocument.get();
+		DocumentRewriteSession session= ((Document) fDocument).startRewriteSession(DocumentRewriteSessionType.UNRESTRICTED);
+		fDocument.replace(73, 0, "\t");
+		fDocument.replace(100, 5, "");
+		fDocument.replace(40, 2, "abc");
+		fDocument.replace(130, 3, "xy");
+		assertNull(summary[0]);
+		((Document) fDocument).stopRewriteSession(session);
+
+		assertEquals(0, changes[0]);
+		assertEquals(4, changes[1]);
+		assertEquals(40, summary[0].getOffset());
+		assertEquals(96, summary[0].getLength());
+		Document expected= new Document(original);
+		expected.replace(summary[0].getOffset(), summary[0].getLength(), summary[0].getText());
+		assertEquals(expected.get(), fDocument.get());
+
+		session= ((Document) fDocument).startRewriteSession(DocumentRewriteSessionType.UNRESTRICTED);
+		summary[0]= null;
+		((Document) fDocument).stopRewriteSession(session);
+		assertNull(summary[0]);
+
+		fDocument.replace(0, 1, "");
+		assertEquals(2, changes[0]);
+	}
+
+	/**
+	 * Listener counting the individual events and the summaries it receives.
+	 */
+	private static class CountingSummaryListener implements IDocumentListener, IDocumentListenerExtension {
+		int fAboutToBeChanged;
+		int fChanged;
+		int fSummaries;
+
+		@Override
+		public void documentAboutToBeChanged(DocumentEvent event) {
+			fAboutToBeChanged++;
+		}
+		@Override
+		public void documentChanged(DocumentEvent event) {
+			fChanged++;
+		}
+		@Override
+		public void documentChangedInRewriteSession(DocumentEvent event) {
+			fSummaries++;
+		}
+	}
+
+	@Test
+	public void testSmallRewriteSessionNotSummarized() throws BadLocationException {
+		CountingSummaryListener listener= new CountingSummaryListener();
+		fDocument.addDocumentListener(listener);
+
+		DocumentRewriteSession session= ((Document) fDocument).startRewriteSession(DocumentRewriteSessionType.UNRESTRICTED_SMALL);
+		fDocument.replace(10, 0, "a");
+		fDocument.replace(20, 1, "b");
+		((Document) fDocument).stopRewriteSession(session);
+
+		assertEquals(2, listener.fAboutToBeChanged);
+		assertEquals(2, listener.fChanged);
+		assertEquals(0, listener.fSummaries);
+	}
+
+	@Test
+	public void testRewriteSessionSummaryWithStoppedNotification() throws BadLocationException {
+		CountingSummaryListener listener= new CountingSummaryListener();
+		fDocument.addDocumentListener(listener);
+		final int[] changes= new int[1];
+		fDocument.addDocumentListener(new IDocumentListener() {
+			@Override
+			public void documentAboutToBeChanged(DocumentEvent event) {
+			}
+			@Override
+			public void documentChanged(DocumentEvent event) {
+				changes[0]++;
+			}
+		});
+
+		String original= fDocument.get();
+		fDocument.stopListenerNotification();
+		DocumentRewriteSession session= ((Document) fDocument).startRewriteSession(DocumentRewriteSessionType.SEQUENTIAL);
+		fDocument.replace(10, 0, "a");
+		fDocument.replace(20, 1, "b");
+		((Document) fDocument).stopRewriteSession(session);
+		assertEquals(1, listener.fSummaries);
+		fDocument.resumeListenerNotification();
+
+		// the delayed event is covered by the summary
+		assertEquals(0, listener.fAboutToBeChanged);
+		assertEquals(0, listener.fChanged);
+		assertEquals(1, listener.fSummaries);
+		assertEquals(1, changes[0]);
+
+		// a delayed event outside of the session is sent as usual
+		fDocument.stopListenerNotification();
+		fDocument.replace(0, 0, "c");
+		fDocument.resumeListenerNotification();
+		assertEquals(1, listener.fAboutToBeChanged);
+		assertEquals(1, listener.fChanged);
+		assertEquals(1, listener.fSummaries);
+		assertEquals(original.length() + 2, fDocument.getLength());
+	}
+
+	@Test
+	public void testSnapshot() throws Exception {
+		DocumentSnapshot snapshot= fDocument.getSnapshot();
+		assertSame(snapshot, fDocument.getSnapshot());
+		assertEquals(fDocument.getModificationStamp(), snapshot.getModificationStamp());
+		assertEquals(fDocument.get(), snapshot.get());
+		assertEquals(fDocument.getNumberOfLines(), snapshot.getNumberOfLines());
+		for (int line= 0; line < fDocument.getNumberOfLines(); line++) {
+			assertEquals(fDocument.getLineOffset(line), snapshot.getLineInformation(line).getOffset());
+			assertEquals(fDocument.getLineInformation(line).getLength(), snapshot.getLineInformation(line).getLength());
+			assertEquals(fDocument.getLineDelimiter(line), snapshot.getLineDelimiter(line));
+		}
+		assertEquals(fDocument.getLineOfOffset(50), snapshot.getLineOfOffset(50));
+
+		String original= fDocument.get();
+		fDocument.replace(10, 5, "snapshot\n");
+		assertEquals(original, snapshot.get());
+		assertEquals(original.length(), snapshot.length());
+		assertEquals(original.charAt(12), snapshot.charAt(12));
+
+		DocumentSnapshot newSnapshot= fDocument.getSnapshot();
+		assertNotSame(snapshot, newSnapshot);
+		assertEquals(fDocument.get(), newSnapshot.get());
+		assertEquals(fDocument.getModificationStamp(), newSnapshot.getModificationStamp());
+		assertEquals(fDocument.getNumberOfLines(), newSnapshot.getNumberOfLines());
+
+		try {
+			newSnapshot.get(newSnapshot.getLength(), 1);
+			fail();
+		} catch (BadLocationException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testSnapshotDuringModification() throws Exception {
+		final boolean[] modify= new boolean[1];
+		final Document document= new Document("content") {
+			@Override
+			public String get() {
+				String content= super.get();
+				if (modify[0]) {
+					// simulates a modification by another thread while the content is read
+					modify[0]= false;
+					try {
+						replace(0, 0, "new ");
+					} catch (BadLocationException e) {
+						throw new IllegalStateException(e);
+					}
+				}
+				return content;
+			}
+		};
+
+		modify[0]= true;
+		DocumentSnapshot snapshot= document.getSnapshot();
+		assertEquals("content", snapshot.get());
+		assertEquals(IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP, snapshot.getModificationStamp());
+
+		// the snapshot taken during the modification is not shared
+		DocumentSnapshot newSnapshot= document.getSnapshot();
+		assertNotSame(snapshot, newSnapshot);
+		assertEquals("new content", newSnapshot.get());
+		assertEquals(document.getModificationStamp(), newSnapshot.getModificationStamp());
+		assertSame(newSnapshot, document.getSnapshot());
+	}
+
+	@Test
+	public void testReplacePositions() throws Exception {
+		// the positions of both documents correspond to each other by index in these lists
+		Document expected= new Document(fDocument.get());
+		Document actual= new Document(fDocument.get());
+		List<Position> expectedPositions= new ArrayList<>();
+		List<Position> actualPositions= new ArrayList<>();
+		Random random= new Random(1);
+
+		for (int run= 0; run < 20; run++) {
+			int removeCount= random.nextInt(actualPositions.size() + 1);
+			Position[] toRemove= new Position[removeCount];
+			for (int i= 0; i < removeCount; i++) {
+				int index= random.nextInt(actualPositions.size());
+				expected.removePosition(expectedPositions.remove(index));
+				toRemove[i]= actualPositions.remove(index);
+			}
+
+			Position[] toAdd= new Position[random.nextBoolean() ? random.nextInt(10) : random.nextInt(100)];
+			for (int i= 0; i < toAdd.length; i++) {
+				int offset= random.nextInt(actual.getLength() / 10) * 10;
+				int length= random.nextInt(3) * 5;
+				Position position= new Position(offset, length);
+				expected.addPosition(position);
+				expectedPositions.add(position);
+				toAdd[i]= new Position(offset, length);
+				actualPositions.add(toAdd[i]);
+			}
+
+			actual.replacePositions(IDocument.DEFAULT_CATEGORY, toRemove, toAdd);
+
+			assertSamePositions(expectedPositions, actualPositions, expected.getPositions(IDocument.DEFAULT_CATEGORY), actual.getPositions(IDocument.DEFAULT_CATEGORY));
+			for (int i= 0; i < 10; i++) {
+				int offset= random.nextInt(actual.getLength() - 1);
+				int length= 1 + random.nextInt(actual.getLength() - offset - 1);
+				for (int j= 0; j < 4; j++) {
+					boolean canStartBefore= (j & 1) != 0, canEndAfter= (j & 2) != 0;
+					assertSamePositions(expectedPositions, actualPositions,
+							expected.getPositions(IDocument.DEFAULT_CATEGORY, offset, length, canStartBefore, canEndAfter),
+							actual.getPositions(IDocument.DEFAULT_CATEGORY, offset, length, canStartBefore, canEndAfter));
+				}
+			}
+		}
+
+		Position[] before= actual.getPositions(IDocument.DEFAULT_CATEGORY);
+		try {
+			actual.replacePositions(IDocument.DEFAULT_CATEGORY, before, new Position[] { new Position(0, 1), new Position(0, actual.getLength() + 1) });
+			fail();
+		} catch (BadLocationException e) {
+			// the document must not have been modified
+			checkPositions(before, actual.getPositions(IDocument.DEFAULT_CATEGORY));
+		}
+	}
+
+	@Test
+	public void testZeroLengthPositionsAtBoundary() throws Exception {
+		Document document= new Document("0123456789");
+		List<Position> positions= new ArrayList<>();
+		for (int offset= 0; offset < 10; offset++) {
+			Position position= new Position(offset, 1);
+			document.addPosition(position);
+			positions.add(position);
+		}
+		// zero-length positions at the end of each position of length 1
+		for (int offset= 1; offset <= 10; offset++) {
+			Position position= new Position(offset, 0);
+			document.addPosition(position);
+			positions.add(position);
+		}
+
+		for (int offset= 0; offset < 10; offset++) {
+			for (int length= 1; offset + length <= 10; length++) {
+				// positions ending in the region, a zero-length position ends at its offset
+				List<Position> expected= new ArrayList<>();
+				for (int i= 0; i < positions.size(); i++) {
+					Position position= positions.get(i);
+					int end= position.length == 0 ? position.offset : position.offset + position.length - 1;
+					if (end >= offset && end < offset + length)
+						expected.add(position);
+				}
+
+				Position[] actual= document.getPositions(IDocument.DEFAULT_CATEGORY, offset, length, true, false);
+				assertEquals("region " + offset + "/" + length, expected.size(), actual.length);
+				for (int i= 0; i < actual.length; i++)
+					assertTrue("region " + offset + "/" + length, indexOf(expected, actual[i]) != -1);
+			}
+		}
+	}
+
+	private static void assertSamePositions(List<Position> expectedPositions, List<Position> actualPositions, Position[] expected, Position[] actual) {
+		assertEquals(expected.length, actual.length);
+		for (int i= 0; i < expected.length; i++)
+			assertTrue(actualPositions.get(indexOf(expectedPositions, expected[i])) == actual[i]);
+	}
+
+	private static int indexOf(List<Position> positions, Position position) {
+		for (int i= 0; i < positions.size(); i++) {
+			if (positions.get(i) == position)
+				return i;
+		}
+		return -1;
+	}
 }
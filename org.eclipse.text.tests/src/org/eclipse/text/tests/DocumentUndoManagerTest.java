@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2010 IBM Corporation and others.
+ * Copyright (c) 2009, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -18,6 +18,7 @@ import org.eclipse.text.edits.DeleteEdit;
 import org.eclipse.text.edits.MultiTextEdit;
 import org.eclipse.text.edits.TextEdit;
 import org.eclipse.text.undo.DocumentUndoManager;
+import org.eclipse.text.undo.DocumentUndoManagerRegistry;
 import org.eclipse.text.undo.IDocumentUndoManager;
 
 import org.eclipse.jface.text.BadLocationException;
@@ -400,6 +401,77 @@ public class DocumentUndoManagerTest extends TestCase {
 
 	}
 
+	public void testUndoMemoryBudget() throws BadLocationException {
+		final IDocument document1= new Document("first");
+		final IDocument document2= new Document("second");
+		DocumentUndoManagerRegistry.connect(document1);
+		DocumentUndoManagerRegistry.connect(document2);
+		try {
+			IDocumentUndoManager undoManager1= DocumentUndoManagerRegistry.getDocumentUndoManager(document1);
+			fUndoManager= DocumentUndoManagerRegistry.getDocumentUndoManager(document2);
+			undoManager1.connect(this);
+			fUndoManager.connect(this);
+
+			document1.replace(0, 5, createRandomString(1000));
+			document2.replace(0, 6, createRandomString(1000));
+
+			long usage1= DocumentUndoManagerRegistry.getUndoMemoryUsage(document1);
+			long usage2= DocumentUndoManagerRegistry.getUndoMemoryUsage(document2);
+			assertTrue(usage1 >= 2000);
+			assertTrue(usage2 >= 2000);
+			assertEquals(usage1 + usage2, DocumentUndoManagerRegistry.getUndoMemoryUsage());
+
+			// the least recently edited document loses its history first
+			DocumentUndoManagerRegistry.setUndoMemoryBudget(usage2);
+			assertEquals(0, DocumentUndoManagerRegistry.getUndoMemoryUsage(document1));
+			assertEquals(usage2, DocumentUndoManagerRegistry.getUndoMemoryUsage(document2));
+			assertFalse(undoManager1.undoable());
+			assertTrue(fUndoManager.undoable());
+
+			// the most recent change is kept even if it exceeds the budget
+			DocumentUndoManagerRegistry.setUndoMemoryBudget(0);
+			assertTrue(fUndoManager.undoable());
+
+			undoManager1.disconnect(this);
+		} finally {
+			DocumentUndoManagerRegistry.setUndoMemoryBudget(DocumentUndoManagerRegistry.UNLIMITED_UNDO_MEMORY_BUDGET);
+			DocumentUndoManagerRegistry.disconnect(document1);
+			DocumentUndoManagerRegistry.disconnect(document2);
+		}
+	}
+
+	public void testUndoMemoryBudgetTyping() throws BadLocationException {
+		final IDocument document1= new Document("first");
+		final IDocument document2= new Document("second");
+		DocumentUndoManagerRegistry.connect(document1);
+		DocumentUndoManagerRegistry.connect(document2);
+		try {
+			IDocumentUndoManager undoManager1= DocumentUndoManagerRegistry.getDocumentUndoManager(document1);
+			fUndoManager= DocumentUndoManagerRegistry.getDocumentUndoManager(document2);
+			undoManager1.connect(this);
+			fUndoManager.connect(this);
+
+			document1.replace(0, 5, createRandomString(1000));
+			document2.replace(document2.getLength(), 0, "x");
+			DocumentUndoManagerRegistry.setUndoMemoryBudget(DocumentUndoManagerRegistry.getUndoMemoryUsage());
+			assertTrue(undoManager1.undoable());
+
+			// typing grows the current change in place
+			for (int i= 0; i < 200; i++)
+				document2.replace(document2.getLength(), 0, "x");
+
+			assertEquals(0, DocumentUndoManagerRegistry.getUndoMemoryUsage(document1));
+			assertFalse(undoManager1.undoable());
+			assertTrue(fUndoManager.undoable());
+
+			undoManager1.disconnect(this);
+		} finally {
+			DocumentUndoManagerRegistry.setUndoMemoryBudget(DocumentUndoManagerRegistry.UNLIMITED_UNDO_MEMORY_BUDGET);
+			DocumentUndoManagerRegistry.disconnect(document1);
+			DocumentUndoManagerRegistry.disconnect(document2);
+		}
+	}
+
 	private static String createRandomString(int length) {
 		final StringBuffer buffer= new StringBuffer();
 
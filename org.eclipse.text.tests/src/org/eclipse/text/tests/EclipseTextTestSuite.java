@@ -36,6 +36,7 @@ import org.eclipse.text.tests.templates.TemplatesTestSuite;
 		TextEditTests.class,
 		GapTextTest.class,
 		GapTextStoreTest.class,
+		SequentialRewriteTextStoreTest.class,
 		ChildDocumentTest.class,
 		ProjectionTestSuite.class,
 		LinkTestSuite.class,
@@ -0,0 +1,81 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.text.tests;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import org.eclipse.jface.text.GapTextStore;
+import org.eclipse.jface.text.ITextStore;
+import org.eclipse.jface.text.SequentialRewriteTextStore;
+
+/**
+ * Tests for {@link SequentialRewriteTextStore}.
+ *
+ * @since 3.11
+ */
+@SuppressWarnings("deprecation")
+public class SequentialRewriteTextStoreTest extends TextStoreTest {
+
+	@Override
+	protected ITextStore createTextStore() {
+		return new SequentialRewriteTextStore(new GapTextStore());
+	}
+
+	@Test
+	public void testRandomReadsDuringSequentialRewrite() {
+		Random random= new Random(1234);
+		StringBuffer buffer= new StringBuffer();
+		for (int i= 0; i < 1000; i++)
+			buffer.append((char) ('a' + random.nextInt(26)));
+
+		ITextStore expected= new GapTextStore();
+		expected.set(buffer.toString());
+		GapTextStore source= new GapTextStore();
+		source.set(buffer.toString());
+		SequentialRewriteTextStore store= new SequentialRewriteTextStore(source);
+
+		// rewrite forward from the middle and backward from the middle
+		int forward= 500;
+		int backward= 500;
+		for (int i= 0; i < 200; i++) {
+			String text= Integer.toString(i);
+			if (i % 2 == 0) {
+				int length= random.nextInt(3);
+				store.replace(forward, length, text);
+				expected.replace(forward, length, text);
+				forward+= text.length() + random.nextInt(3);
+			} else {
+				int length= Math.min(random.nextInt(3), backward);
+				backward-= length + random.nextInt(2);
+				backward= Math.max(backward, 0);
+				store.replace(backward, length, text);
+				expected.replace(backward, length, text);
+				forward+= text.length() - length;
+			}
+
+			assertEquals(expected.getLength(), store.getLength());
+			for (int j= 0; j < 20; j++) {
+				int offset= random.nextInt(expected.getLength());
+				assertEquals(expected.get(offset), store.get(offset));
+				int length= Math.min(random.nextInt(4), expected.getLength() - offset);
+				assertEquals(expected.get(offset, length), store.get(offset, length));
+			}
+		}
+
+		assertEquals(expected.get(0, expected.getLength()), store.get(0, store.getLength()));
+		ITextStore committed= store.getSourceStore();
+		assertEquals(expected.get(0, expected.getLength()), committed.get(0, committed.getLength()));
+	}
+}
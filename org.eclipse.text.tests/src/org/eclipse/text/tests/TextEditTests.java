@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2015 IBM Corporation and others.
+ * Copyright (c) 2000, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -16,6 +16,7 @@ import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Random;
 
 import org.junit.After;
 import org.junit.Assert;
@@ -39,7 +40,9 @@ import org.eclipse.text.edits.TextEditCopier;
 import org.eclipse.text.edits.UndoEdit;
 
 import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.DocumentEvent;
 import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentListener;
 import org.eclipse.jface.text.IRegion;
 
 public class TextEditTests {
@@ -307,6 +310,144 @@ public class TextEditTests {
 		compare(org, copy);
 	}
 
+	@Test
+	public void testCopy3() throws Exception {
+		MultiTextEdit root= new MultiTextEdit();
+		TextEdit e1= new InsertEdit(2, "yy");
+		TextEdit e2= new DeleteEdit(4, 2);
+		root.addChild(e1);
+		root.addChild(e2);
+		TextEditCopier copier= new TextEditCopier(root);
+		TextEdit copy= copier.perform();
+		assertSame(copy, copier.getCopy(root));
+		assertSame(copy.getChildren()[0], copier.getCopy(e1));
+		assertSame(copy.getChildren()[1], copier.getCopy(e2));
+		assertNull(copier.getCopy(new InsertEdit(2, "yy")));
+	}
+
+	@Test
+	public void testAddChildrenSorted() throws Exception {
+		TextEdit[] edits= new TextEdit[1000];
+		for (int i= 0; i < edits.length; i++)
+			edits[i]= i % 2 == 0 ? new InsertEdit(i / 2, "x") : new ReplaceEdit(i / 2, 1, "y");
+		fRoot.addChildren(edits);
+		Assert.assertEquals(edits.length, fRoot.getChildrenSize());
+		TextEdit[] children= fRoot.getChildren();
+		for (int i= 0; i < edits.length; i++)
+			assertSame(edits[i], children[i]);
+
+		boolean exception= false;
+		try {
+			fRoot.addChildren(new TextEdit[] { new InsertEdit(501, "z"), new ReplaceEdit(100, 2, "z") });
+		} catch (MalformedTreeException e) {
+			exception= true;
+		}
+		assertTrue(exception);
+	}
+
+	@Test
+	public void testAddSortedChildren() throws Exception {
+		fRoot.addChild(new InsertEdit(0, "a"));
+		TextEdit[] edits= new TextEdit[1000];
+		for (int i= 0; i < edits.length; i++)
+			edits[i]= i % 2 == 0 ? new InsertEdit(i / 2, "x") : new ReplaceEdit(i / 2, 1, "y");
+		fRoot.addSortedChildren(edits);
+		Assert.assertEquals(edits.length + 1, fRoot.getChildrenSize());
+		TextEdit[] children= fRoot.getChildren();
+		for (int i= 0; i < edits.length; i++) {
+			assertSame(edits[i], children[i + 1]);
+			assertSame(fRoot, edits[i].getParent());
+		}
+
+		// unsorted edits are rejected and none of them is added
+		TextEdit first= new InsertEdit(600, "z");
+		TextEdit second= new ReplaceEdit(550, 2, "z");
+		boolean exception= false;
+		try {
+			fRoot.addSortedChildren(new TextEdit[] { first, second });
+		} catch (MalformedTreeException e) {
+			exception= true;
+		}
+		assertTrue(exception);
+		Assert.assertEquals(edits.length + 1, fRoot.getChildrenSize());
+		assertNull(first.getParent());
+
+		// edits in front of the existing children are rejected
+		exception= false;
+		try {
+			fRoot.addSortedChildren(new TextEdit[] { new ReplaceEdit(10, 2, "z") });
+		} catch (MalformedTreeException e) {
+			exception= true;
+		}
+		assertTrue(exception);
+
+		String text= "";
+		for (int i= 0; i < 600; i++)
+			text+= "-";
+		Document document= new Document(text);
+		fRoot.apply(document);
+		Assert.assertTrue(document.get().startsWith("axyxyxy"));
+	}
+
+	@Test
+	public void testAddSortedChildrenTwice() throws Exception {
+		TextEdit a= new InsertEdit(5, "a");
+		TextEdit b= new InsertEdit(5, "b");
+		boolean exception= false;
+		try {
+			fRoot.addSortedChildren(new TextEdit[] { a, b, a });
+		} catch (MalformedTreeException e) {
+			exception= true;
+		}
+		assertTrue(exception);
+		assertFalse(fRoot.hasChildren());
+		assertNull(a.getParent());
+		assertNull(b.getParent());
+
+		fRoot.addSortedChildren(new TextEdit[] { a, b });
+		Assert.assertEquals(2, fRoot.getChildrenSize());
+	}
+
+	@Test
+	public void testAddSortedChildrenToUndoEdit() throws Exception {
+		fRoot.addChild(new InsertEdit(0, "x"));
+		UndoEdit undo= fRoot.apply(fDocument);
+		int size= undo.getChildrenSize();
+		// behind the existing children of the undo edit
+		TextEdit child= new InsertEdit(1, "y");
+		boolean exception= false;
+		try {
+			undo.addSortedChildren(new TextEdit[] { child });
+		} catch (MalformedTreeException e) {
+			exception= true;
+		}
+		assertTrue(exception);
+		Assert.assertEquals(size, undo.getChildrenSize());
+		assertNull(child.getParent());
+	}
+
+	@Test
+	public void testAddSortedChildrenChecksTrees() throws Exception {
+		TextEdit deleted= new InsertEdit(3, "x");
+		TextEdit delete= new DeleteEdit(2, 3);
+		delete.addChild(deleted);
+		delete.apply(fDocument);
+		assertTrue(deleted.isDeleted());
+
+		// the deleted edit is found below the added edit
+		TextEdit sibling= new InsertEdit(0, "y");
+		boolean exception= false;
+		try {
+			fRoot.addSortedChildren(new TextEdit[] { sibling, delete });
+		} catch (MalformedTreeException e) {
+			exception= true;
+		}
+		assertTrue(exception);
+		assertFalse(fRoot.hasChildren());
+		assertNull(sibling.getParent());
+		assertNull(delete.getParent());
+	}
+
 	private List<TextEdit> flatten(TextEdit edit) {
 		List<TextEdit> result= new ArrayList<>();
 		flatten(result, edit);
@@ -1390,6 +1531,92 @@ public class TextEditTests {
 		assertEquals(result, 2, 1);
 	}
 
+	@Test
+	public void testBulkUpdate() throws Exception {
+		TextEdit e1= new InsertEdit(2, "yy");
+		TextEdit e2= new InsertEdit(2, "xx");
+		TextEdit e3= new ReplaceEdit(2, 3, "3456");
+		TextEdit e4= new DeleteEdit(7, 2);
+		fRoot.addChild(e1);
+		fRoot.addChild(e2);
+		fRoot.addChild(e3);
+		fRoot.addChild(e4);
+		final int[] changes= new int[1];
+		fDocument.addDocumentListener(new IDocumentListener() {
+			@Override
+			public void documentAboutToBeChanged(DocumentEvent event) {
+			}
+			@Override
+			public void documentChanged(DocumentEvent event) {
+				changes[0]++;
+			}
+		});
+		int style= TextEdit.CREATE_UNDO | TextEdit.UPDATE_REGIONS | TextEdit.BULK_UPDATE;
+		UndoEdit undo= fRoot.apply(fDocument, style);
+		Assert.assertEquals("Document changes", 1, changes[0]);
+		assertEquals(fRoot, 2, 10);
+		assertEquals(e1, 2, 2);
+		assertEquals(e2, 4, 2);
+		assertEquals(e3, 6, 4);
+		assertEquals(e4, 12, 0);
+		Assert.assertEquals("Buffer content", "01yyxx3456569", fDocument.get());
+
+		UndoEdit redo= undo.apply(fDocument, style);
+		assertBufferContent();
+		undo= redo.apply(fDocument, style);
+		Assert.assertEquals("Buffer content redo", "01yyxx3456569", fDocument.get());
+		undo.apply(fDocument, style);
+		assertBufferContent();
+		Assert.assertEquals("Document changes", 4, changes[0]);
+	}
+
+	@Test
+	public void testBulkUpdateRandom() throws Exception {
+		Random random= new Random(4711);
+		StringBuffer buffer= new StringBuffer();
+		for (int i= 0; i < 2000; i++)
+			buffer.append((char) ('a' + random.nextInt(26)));
+		String original= buffer.toString();
+
+		MultiTextEdit root= new MultiTextEdit();
+		int offset= 0;
+		while (offset < original.length()) {
+			int length= Math.min(random.nextInt(4), original.length() - offset);
+			String text= original.substring(offset, offset + length).toUpperCase() + random.nextInt(100);
+			switch (random.nextInt(3)) {
+				case 0:
+					root.addChild(new InsertEdit(offset, text));
+					break;
+				case 1:
+					root.addChild(new DeleteEdit(offset, length));
+					break;
+				default:
+					root.addChild(new ReplaceEdit(offset, length, text));
+			}
+			offset+= length + random.nextInt(5);
+		}
+		MultiTextEdit bulkRoot= (MultiTextEdit) root.copy();
+
+		IDocument document= new Document(original);
+		IDocument bulkDocument= new Document(original);
+		UndoEdit undo= root.apply(document);
+		UndoEdit bulkUndo= bulkRoot.apply(bulkDocument, TextEdit.CREATE_UNDO | TextEdit.UPDATE_REGIONS | TextEdit.BULK_UPDATE);
+		Assert.assertEquals("Buffer content", document.get(), bulkDocument.get());
+		assertEquals(bulkRoot, root.getOffset(), root.getLength());
+		TextEdit[] children= root.getChildren();
+		TextEdit[] bulkChildren= bulkRoot.getChildren();
+		for (int i= 0; i < children.length; i++)
+			assertEquals(bulkChildren[i], children[i].getOffset(), children[i].getLength());
+
+		String modified= document.get();
+		UndoEdit redo= bulkUndo.apply(document, TextEdit.CREATE_UNDO | TextEdit.BULK_UPDATE);
+		undo.apply(bulkDocument);
+		Assert.assertEquals("Buffer content restored", original, document.get());
+		Assert.assertEquals("Buffer content restored", original, bulkDocument.get());
+		redo.apply(document, TextEdit.BULK_UPDATE);
+		Assert.assertEquals("Buffer content redo", modified, document.get());
+	}
+
 	private void doUndoRedo(UndoEdit undo, String redoResult) throws Exception {
 		UndoEdit redo= undo.apply(fDocument);
 		assertBufferContent();
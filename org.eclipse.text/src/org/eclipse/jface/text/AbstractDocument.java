@@ -14,7 +14,9 @@ package org.eclipse.jface.text;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -31,7 +33,8 @@ import org.eclipse.core.runtime.SafeRunner;
  * interfaces {@link org.eclipse.jface.text.IDocumentExtension},
  * {@link org.eclipse.jface.text.IDocumentExtension2},
  * {@link org.eclipse.jface.text.IDocumentExtension3},
- * {@link org.eclipse.jface.text.IDocumentExtension4}, as well as
+ * {@link org.eclipse.jface.text.IDocumentExtension4},
+ * {@link org.eclipse.jface.text.IDocumentExtension5}, as well as
  * {@link org.eclipse.jface.text.IRepairableDocument}.
  * <p>
  *
@@ -54,7 +57,7 @@ import org.eclipse.core.runtime.SafeRunner;
  * @see org.eclipse.jface.text.ITextStore
  * @see org.eclipse.jface.text.ILineTracker
  */
-public abstract class AbstractDocument implements IDocument, IDocumentExtension, IDocumentExtension2, IDocumentExtension3, IDocumentExtension4, IRepairableDocument, IRepairableDocumentExtension {
+public abstract class AbstractDocument implements IDocument, IDocumentExtension, IDocumentExtension2, IDocumentExtension3, IDocumentExtension4, IDocumentExtension5, IRepairableDocument, IRepairableDocumentExtension {
 
 	/**
 	 * Tells whether this class is in debug mode.
@@ -62,6 +65,38 @@ public abstract class AbstractDocument implements IDocument, IDocumentExtension,
 	 */
 	private static final boolean DEBUG= false;
 
+	/**
+	 * The number of positions from which {@link #replacePositions(String, Position[], Position[])}
+	 * updates the position lists in one pass instead of position by position.
+	 *
+	 * @since 3.6
+	 */
+	private static final int BULK_POSITION_UPDATE_THRESHOLD= 16;
+
+	/**
+	 * Orders positions by offset.
+	 *
+	 * @since 3.6
+	 */
+	private static final Comparator<Position> OFFSET_COMPARATOR= new Comparator<Position>() {
+		@Override
+		public int compare(Position p1, Position p2) {
+			return Integer.compare(p1.offset, p2.offset);
+		}
+	};
+
+	/**
+	 * Orders positions by their end position, like the end positions lists.
+	 *
+	 * @since 3.6
+	 */
+	private static final Comparator<Position> END_OFFSET_COMPARATOR= new Comparator<Position>() {
+		@Override
+		public int compare(Position p1, Position p2) {
+			return Integer.compare(getEndOffset(p1), getEndOffset(p2));
+		}
+	};
+
 
 	/**
 	 * Inner class to bundle a registered post notification replace operation together with its
@@ -161,6 +196,43 @@ public abstract class AbstractDocument implements IDocument, IDocumentExtension,
 	 * @since 3.1
 	 */
 	private List<IDocumentRewriteSessionListener> fDocumentRewriteSessionListeners;
+	/**
+	 * The offset of the region changed during the active rewrite session or
+	 * <code>-1</code> if the session did not change the document yet.
+	 * @since 3.6
+	 */
+	private int fSessionChangeOffset= -1;
+	/**
+	 * The end offset of the region changed during the active rewrite session, in
+	 * the document as it was before the session.
+	 * @since 3.6
+	 */
+	private int fSessionChangeOriginalEnd;
+	/**
+	 * The end offset of the region changed during the active rewrite session, in
+	 * the current document.
+	 * @since 3.6
+	 */
+	private int fSessionChangeEnd;
+	/**
+	 * Tells whether listeners implementing {@link IDocumentListenerExtension} receive a
+	 * summary of the active rewrite session instead of the individual document events.
+	 * @since 3.6
+	 */
+	private boolean fSummarizesRewriteSession;
+	/**
+	 * Tells whether the deferred document event is covered by the summary of a rewrite
+	 * session and hence must not be sent to listeners implementing
+	 * {@link IDocumentListenerExtension} again.
+	 * @since 3.6
+	 */
+	private boolean fDeferredEventSummarized;
+	/**
+	 * Tells whether a document event covered by the summary of a rewrite session is
+	 * being sent.
+	 * @since 3.6
+	 */
+	private boolean fFiringSummarizedEvent;
 	/**
 	 * The current modification stamp.
 	 * @since 3.1
@@ -176,6 +248,12 @@ public abstract class AbstractDocument implements IDocument, IDocumentExtension,
 	 * @since 3.1
 	 */
 	private String fInitialLineDelimiter;
+	/**
+	 * The snapshot of the current content, <code>null</code> if none has been
+	 * taken since the last modification.
+	 * @since 3.6
+	 */
+	private DocumentSnapshot fSnapshot;
 
 
 	/**
@@ -263,6 +341,7 @@ public abstract class AbstractDocument implements IDocument, IDocumentExtension,
 	 */
 	protected void setTextStore(ITextStore store) {
 		fStore= store;
+		fSnapshot= null;
 	}
 
 	/**
@@ -355,7 +434,7 @@ public abstract class AbstractDocument implements IDocument, IDocumentExtension,
 		List<Position> endPositions= fEndPositions.get(category);
 		if (endPositions == null)
 			throw new BadPositionCategoryException();
-		endPositions.add(computeIndexInPositionList(endPositions, position.offset + position.length - 1, false), position);
+		endPositions.add(computeIndexInPositionList(endPositions, getEndOffset(position), false), position);
 	}
 
 	@Override
@@ -505,7 +584,16 @@ public abstract class AbstractDocument implements IDocument, IDocumentExtension,
 	 * @since 3.4
 	 */
 	private int getOffset(boolean orderedByOffset, Position position) {
-		if (orderedByOffset || position.getLength() == 0)
+		if (orderedByOffset)
+			return position.getOffset();
+		return getEndOffset(position);
+	}
+
+	/*
+	 * @since 3.6
+	 */
+	private static int getEndOffset(Position position) {
+		if (position.getLength() == 0)
 			return position.getOffset();
 		return position.getOffset() + position.getLength() - 1;
 	}
@@ -606,6 +694,8 @@ public abstract class AbstractDocument implements IDocument, IDocumentExtension,
 	 */
 	protected void fireDocumentAboutToBeChanged(DocumentEvent event) {
 
+		fSnapshot= null;
+
 		// IDocumentExtension
 		if (fReentranceCount == 0)
 			flushPostNotificationChanges();
@@ -628,6 +718,8 @@ public abstract class AbstractDocument implements IDocument, IDocumentExtension,
 		}
 
 		for (IDocumentListener listener : fPrenotifiedDocumentListeners) {
+			if (skipsRewriteSessionEvents(listener))
+				continue;
 			try {
 				listener.documentAboutToBeChanged(event);
 			} catch (Exception ex) {
@@ -636,6 +728,8 @@ public abstract class AbstractDocument implements IDocument, IDocumentExtension,
 		}
 
 		for (IDocumentListener listener : fDocumentListeners) {
+			if (skipsRewriteSessionEvents(listener))
+				continue;
 			try {
 				listener.documentAboutToBeChanged(event);
 			} catch (Exception ex) {
@@ -731,6 +825,8 @@ public abstract class AbstractDocument implements IDocument, IDocumentExtension,
 			fireDocumentPartitioningChanged(p);
 
 		for (IDocumentListener listener : fPrenotifiedDocumentListeners) {
+			if (skipsRewriteSessionEvents(listener))
+				continue;
 			try {
 				listener.documentChanged(event);
 			} catch (Exception ex) {
@@ -739,6 +835,8 @@ public abstract class AbstractDocument implements IDocument, IDocumentExtension,
 		}
 
 		for (IDocumentListener listener : fDocumentListeners) {
+			if (skipsRewriteSessionEvents(listener))
+				continue;
 			try {
 				listener.documentChanged(event);
 			} catch (Exception ex) {
@@ -764,12 +862,18 @@ public abstract class AbstractDocument implements IDocument, IDocumentExtension,
 	 * @param event the document event to be sent out
 	 */
 	protected void fireDocumentChanged(DocumentEvent event) {
+		fSnapshot= null;
 		updateDocumentStructures(event);
 
-		if (fStoppedListenerNotification == 0)
+		if (fSummarizesRewriteSession)
+			recordRewriteSessionChange(event);
+
+		if (fStoppedListenerNotification == 0) {
 			doFireDocumentChanged(event);
-		else
+		} else {
 			fDeferredDocumentEvent= event;
+			fDeferredEventSummarized= fSummarizesRewriteSession;
+		}
 	}
 
 	@Override
@@ -957,6 +1061,40 @@ public abstract class AbstractDocument implements IDocument, IDocumentExtension,
 		return getStore().get(0, getLength());
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The snapshot is shared until the document is modified. Its text is shared with the
+	 * text store if the store supports it, e.g. as long as a {@link CopyOnWriteTextStore}
+	 * has not been modified.
+	 * </p>
+	 * <p>
+	 * If the document is modified while the snapshot is taken, the snapshot is not shared
+	 * and its modification stamp is {@link IDocumentExtension4#UNKNOWN_MODIFICATION_STAMP}.
+	 * </p>
+	 *
+	 * @since 3.6
+	 */
+	@Override
+	public DocumentSnapshot getSnapshot() {
+		DocumentSnapshot snapshot= fSnapshot;
+		if (snapshot == null) {
+			long stamp= getModificationStamp();
+			String content= get();
+			String[] delimiters= getLegalLineDelimiters();
+			if (stamp != getModificationStamp()) {
+				// the content does not necessarily correspond to either stamp
+				return new DocumentSnapshot(content, delimiters, IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP);
+			}
+			snapshot= new DocumentSnapshot(content, delimiters, stamp);
+			fSnapshot= snapshot;
+			// a modification may have cleared the snapshot before it was set
+			if (stamp != getModificationStamp() && fSnapshot == snapshot)
+				fSnapshot= null;
+		}
+		return snapshot;
+	}
+
 	@Override
 	public String get(int pos, int length) throws BadLocationException {
 		int myLength= getLength();
@@ -1011,7 +1149,7 @@ public abstract class AbstractDocument implements IDocument, IDocumentExtension,
 		int size= positions.size();
 
 		//Assume position is somewhere near it was before
-		int index= computeIndexInPositionList(positions, orderedByOffset ? position.offset : position.offset + position.length - 1, orderedByOffset);
+		int index= computeIndexInPositionList(positions, getOffset(orderedByOffset, position), orderedByOffset);
 		if (index < size && positions.get(index) == position) {
 			positions.remove(index);
 			return;
@@ -1046,6 +1184,134 @@ public abstract class AbstractDocument implements IDocument, IDocumentExtension,
 		}
 	}
 
+	/**
+	 * Removes and adds positions of the given category in one operation. The result is the
+	 * same as removing the positions to remove one by one and then adding the positions to
+	 * add one by one, but large numbers of positions are sorted and merged into the
+	 * position lists of the category in one linear pass instead of being inserted
+	 * individually.
+	 * <p>
+	 * Either all or none of the positions are added: if one of the positions to add is not
+	 * a valid document position, the document is not modified.
+	 * </p>
+	 *
+	 * @param category the category of the positions
+	 * @param positionsToRemove the positions to remove, may be <code>null</code>
+	 * @param positionsToAdd the positions to add, may be <code>null</code>
+	 * @throws BadLocationException if one of the positions to add is not a valid document
+	 *             position
+	 * @throws BadPositionCategoryException if the category is undefined in this document
+	 * @since 3.6
+	 */
+	public void replacePositions(String category, Position[] positionsToRemove, Position[] positionsToAdd) throws BadLocationException, BadPositionCategoryException {
+
+		if (category == null)
+			throw new BadPositionCategoryException();
+
+		List<Position> list= fPositions.get(category);
+		List<Position> endPositions= fEndPositions.get(category);
+		if (list == null || endPositions == null)
+			throw new BadPositionCategoryException();
+
+		if (positionsToAdd != null) {
+			int length= getLength();
+			for (int i= 0; i < positionsToAdd.length; i++) {
+				Position position= positionsToAdd[i];
+				if ((0 > position.offset) || (0 > position.length) || (position.offset + position.length > length))
+					throw new BadLocationException();
+			}
+		}
+
+		if (positionsToRemove != null && positionsToRemove.length > 0) {
+			if (positionsToRemove.length < BULK_POSITION_UPDATE_THRESHOLD) {
+				for (int i= 0; i < positionsToRemove.length; i++) {
+					Position position= positionsToRemove[i];
+					if (position != null) {
+						removeFromPositionsList(list, position, true);
+						removeFromPositionsList(endPositions, position, false);
+					}
+				}
+			} else {
+				Map<Position, Position> removed= new IdentityHashMap<>(positionsToRemove.length);
+				for (int i= 0; i < positionsToRemove.length; i++) {
+					if (positionsToRemove[i] != null)
+						removed.put(positionsToRemove[i], positionsToRemove[i]);
+				}
+				removeFromPositionsList(list, removed);
+				removeFromPositionsList(endPositions, removed);
+			}
+		}
+
+		if (positionsToAdd != null && positionsToAdd.length > 0) {
+			if (positionsToAdd.length < BULK_POSITION_UPDATE_THRESHOLD) {
+				for (int i= 0; i < positionsToAdd.length; i++) {
+					Position position= positionsToAdd[i];
+					list.add(computeIndexInPositionList(list, position.offset), position);
+					endPositions.add(computeIndexInPositionList(endPositions, getEndOffset(position), false), position);
+				}
+			} else {
+				// a position added one by one becomes the first of all positions with the same key,
+				// reversing before the stable sort keeps that order
+				int count= positionsToAdd.length;
+				Position[] sorted= new Position[count];
+				for (int i= 0; i < count; i++)
+					sorted[i]= positionsToAdd[count - 1 - i];
+
+				Arrays.sort(sorted, OFFSET_COMPARATOR);
+				mergeIntoPositionsList(list, sorted, true);
+				Arrays.sort(sorted, END_OFFSET_COMPARATOR);
+				mergeIntoPositionsList(endPositions, sorted, false);
+			}
+		}
+	}
+
+	/**
+	 * Removes the given positions from the given list of positions based on identity
+	 * in one pass.
+	 *
+	 * @param positions a list of positions
+	 * @param removed the positions to remove, mapped to themselves
+	 * @since 3.6
+	 */
+	private static void removeFromPositionsList(List<Position> positions, Map<Position, Position> removed) {
+		int size= positions.size();
+		int kept= 0;
+		for (int i= 0; i < size; i++) {
+			Position position= positions.get(i);
+			if (!removed.containsKey(position)) {
+				if (kept != i)
+					positions.set(kept, position);
+				kept++;
+			}
+		}
+		positions.subList(kept, size).clear();
+	}
+
+	/**
+	 * Merges sorted positions into the given list of positions. Each position is inserted
+	 * in front of all positions in the list with the same or a greater offset or end
+	 * position, like {@link #computeIndexInPositionList(List, int, boolean)} does for a
+	 * single position.
+	 *
+	 * @param positions the list of positions
+	 * @param sorted the positions to insert, sorted by the order of <code>positions</code>
+	 * @param orderedByOffset <code>true</code> if ordered by offset, false if ordered by end position
+	 * @since 3.6
+	 */
+	private void mergeIntoPositionsList(List<Position> positions, Position[] sorted, boolean orderedByOffset) {
+		int i= positions.size() - 1;
+		// grow the list, all elements are overwritten from the end
+		positions.addAll(Arrays.asList(sorted));
+		int k= positions.size() - 1;
+		int j= sorted.length - 1;
+		while (j >= 0) {
+			if (i >= 0 && getOffset(orderedByOffset, positions.get(i)) >= getOffset(orderedByOffset, sorted[j]))
+				positions.set(k--, positions.get(i--));
+			else
+				positions.set(k--, sorted[j--]);
+		}
+	}
+
 	@Override
 	public void removePositionCategory(String category) throws BadPositionCategoryException {
 
@@ -1300,7 +1566,15 @@ public abstract class AbstractDocument implements IDocument, IDocumentExtension,
 		if (fDeferredDocumentEvent != null) {
 			DocumentEvent event= fDeferredDocumentEvent;
 			fDeferredDocumentEvent= null;
-			doFireDocumentChanged(event);
+			// the listeners receiving session summaries have been or will be informed by the summary
+			boolean firingSummarizedEvent= fFiringSummarizedEvent;
+			fFiringSummarizedEvent= fDeferredEventSummarized;
+			fDeferredEventSummarized= false;
+			try {
+				doFireDocumentChanged(event);
+			} finally {
+				fFiringSummarizedEvent= firingSummarizedEvent;
+			}
 		}
 	}
 
@@ -1454,6 +1728,10 @@ public abstract class AbstractDocument implements IDocument, IDocumentExtension,
 
 
 		fDocumentRewriteSession= new DocumentRewriteSession(sessionType);
+		fSessionChangeOffset= -1;
+		fSummarizesRewriteSession= DocumentRewriteSessionType.UNRESTRICTED == sessionType
+				|| DocumentRewriteSessionType.SEQUENTIAL == sessionType
+				|| DocumentRewriteSessionType.STRICTLY_SEQUENTIAL == sessionType;
 		if (DEBUG)
 			System.out.println("AbstractDocument: Starting rewrite session: " + fDocumentRewriteSession); //$NON-NLS-1$
 
@@ -1514,10 +1792,99 @@ public abstract class AbstractDocument implements IDocument, IDocumentExtension,
 			stopRewriteSessionOnPartitioners(fDocumentRewriteSession);
 
 			fDocumentRewriteSession= null;
+			fSummarizesRewriteSession= false;
+			fireRewriteSessionChangeSummary();
 			fireRewriteSessionChanged(new DocumentRewriteSessionEvent(this, session, DocumentRewriteSessionEvent.SESSION_STOP));
 		}
 	}
 
+	/**
+	 * Tells whether the given listener must not be informed about individual document
+	 * changes because a rewrite session of type {@link DocumentRewriteSessionType#UNRESTRICTED},
+	 * {@link DocumentRewriteSessionType#SEQUENTIAL} or
+	 * {@link DocumentRewriteSessionType#STRICTLY_SEQUENTIAL} is active, or the change
+	 * happened in such a session, and the listener receives a summary of the session's
+	 * changes instead.
+	 *
+	 * @param listener the document listener
+	 * @return <code>true</code> if the listener must not be informed
+	 * @since 3.6
+	 */
+	private boolean skipsRewriteSessionEvents(IDocumentListener listener) {
+		return (fSummarizesRewriteSession || fFiringSummarizedEvent) && listener instanceof IDocumentListenerExtension;
+	}
+
+	/**
+	 * Merges the given document change into the region changed during the active
+	 * rewrite session.
+	 *
+	 * @param event the document event describing the change
+	 * @since 3.6
+	 */
+	private void recordRewriteSessionChange(DocumentEvent event) {
+		int offset= event.getOffset();
+		int end= offset + event.getLength();
+		int textLength= event.getText() == null ? 0 : event.getText().length();
+
+		if (fSessionChangeOffset == -1) {
+			fSessionChangeOffset= offset;
+			fSessionChangeOriginalEnd= end;
+			fSessionChangeEnd= end;
+		} else {
+			fSessionChangeOffset= Math.min(fSessionChangeOffset, offset);
+			if (end > fSessionChangeEnd) {
+				// the part behind the changed region is unchanged since the session started
+				fSessionChangeOriginalEnd= end - (fSessionChangeEnd - fSessionChangeOriginalEnd);
+				fSessionChangeEnd= end;
+			}
+		}
+		fSessionChangeEnd += textLength - event.getLength();
+	}
+
+	/**
+	 * Sends the merged changes of the rewrite session that has just been stopped to all
+	 * document listeners implementing {@link IDocumentListenerExtension}.
+	 *
+	 * @since 3.6
+	 */
+	private void fireRewriteSessionChangeSummary() {
+		if (fSessionChangeOffset == -1)
+			return;
+
+		int offset= fSessionChangeOffset;
+		int length= fSessionChangeOriginalEnd - offset;
+		int end= fSessionChangeEnd;
+		fSessionChangeOffset= -1;
+
+		DocumentEvent event;
+		try {
+			event= new DocumentEvent(this, offset, length, get(offset, end - offset));
+		} catch (BadLocationException x) {
+			log(x);
+			return;
+		}
+
+		for (IDocumentListener listener : fPrenotifiedDocumentListeners) {
+			if (listener instanceof IDocumentListenerExtension) {
+				try {
+					((IDocumentListenerExtension) listener).documentChangedInRewriteSession(event);
+				} catch (Exception ex) {
+					log(ex);
+				}
+			}
+		}
+
+		for (IDocumentListener listener : fDocumentListeners) {
+			if (listener instanceof IDocumentListenerExtension) {
+				try {
+					((IDocumentListenerExtension) listener).documentChangedInRewriteSession(event);
+				} catch (Exception ex) {
+					log(ex);
+				}
+			}
+		}
+	}
+
 	/**
 	 * Stops the given rewrite session.
 	 *
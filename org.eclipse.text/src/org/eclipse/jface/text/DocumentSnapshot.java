@@ -0,0 +1,262 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jface.text;
+
+import java.util.Arrays;
+
+import org.eclipse.core.runtime.Assert;
+
+
+/**
+ * An immutable version of the content of a document, tagged with the modification
+ * stamp the document had when the snapshot was taken.
+ * <p>
+ * A snapshot can be read from any thread without locking the document it was taken
+ * from and is not affected by later modifications of that document. The text of the
+ * snapshot is shared with the document where possible. The line structure is only
+ * computed when it is first queried, i.e. in the thread reading the snapshot.
+ * </p>
+ * <p>
+ * Snapshots implement {@link CharSequence} so that they can directly be searched with
+ * regular expressions.
+ * </p>
+ * <p>
+ * This class is not intended to be subclassed.
+ * </p>
+ *
+ * @see IDocumentExtension5#getSnapshot()
+ * @since 3.6
+ * @noextend This class is not intended to be subclassed by clients.
+ */
+public final class DocumentSnapshot implements CharSequence {
+
+	/** The content. */
+	private final String fContent;
+	/** The legal line delimiters. */
+	private final String[] fLegalLineDelimiters;
+	/** The modification stamp of the document when the snapshot was taken. */
+	private final long fModificationStamp;
+	/** The line structure of the content, <code>null</code> until it is queried. */
+	private volatile ILineTracker fLineTracker;
+
+	/**
+	 * Creates a new snapshot.
+	 *
+	 * @param content the content of the document
+	 * @param legalLineDelimiters the legal line delimiters of the document
+	 * @param modificationStamp the modification stamp of the document or
+	 *            {@link IDocumentExtension4#UNKNOWN_MODIFICATION_STAMP}
+	 */
+	public DocumentSnapshot(String content, String[] legalLineDelimiters, long modificationStamp) {
+		Assert.isNotNull(content);
+		Assert.isTrue(legalLineDelimiters != null && legalLineDelimiters.length > 0);
+		fContent= content;
+		fLegalLineDelimiters= TextUtilities.copy(legalLineDelimiters);
+		fModificationStamp= modificationStamp;
+	}
+
+	/**
+	 * Returns the modification stamp the document had when this snapshot was taken.
+	 *
+	 * @return the modification stamp or
+	 *         {@link IDocumentExtension4#UNKNOWN_MODIFICATION_STAMP}
+	 * @see IDocumentExtension4#getModificationStamp()
+	 */
+	public long getModificationStamp() {
+		return fModificationStamp;
+	}
+
+	/**
+	 * Returns the legal line delimiters of the document.
+	 *
+	 * @return the legal line delimiters
+	 * @see IDocument#getLegalLineDelimiters()
+	 */
+	public String[] getLegalLineDelimiters() {
+		return TextUtilities.copy(fLegalLineDelimiters);
+	}
+
+	/**
+	 * Returns the content of this snapshot.
+	 *
+	 * @return the content
+	 * @see IDocument#get()
+	 */
+	public String get() {
+		return fContent;
+	}
+
+	/**
+	 * Returns the text of the given range of this snapshot.
+	 *
+	 * @param offset the offset of the range
+	 * @param length the length of the range
+	 * @return the text of the range
+	 * @throws BadLocationException if the range is invalid in this snapshot
+	 * @see IDocument#get(int, int)
+	 */
+	public String get(int offset, int length) throws BadLocationException {
+		if (offset < 0 || length < 0 || offset + length > fContent.length())
+			throw new BadLocationException();
+		return fContent.substring(offset, offset + length);
+	}
+
+	/**
+	 * Returns the character at the given offset.
+	 *
+	 * @param offset the offset
+	 * @return the character at the offset
+	 * @throws BadLocationException if the offset is invalid in this snapshot
+	 * @see IDocument#getChar(int)
+	 */
+	public char getChar(int offset) throws BadLocationException {
+		if (offset < 0 || offset >= fContent.length())
+			throw new BadLocationException();
+		return fContent.charAt(offset);
+	}
+
+	/**
+	 * Returns the number of characters of this snapshot.
+	 *
+	 * @return the number of characters
+	 * @see IDocument#getLength()
+	 */
+	public int getLength() {
+		return fContent.length();
+	}
+
+	/**
+	 * Returns the number of lines of this snapshot.
+	 *
+	 * @return the number of lines
+	 * @see IDocument#getNumberOfLines()
+	 */
+	public int getNumberOfLines() {
+		return getLineTracker().getNumberOfLines();
+	}
+
+	/**
+	 * Returns the number of the line at the given offset.
+	 *
+	 * @param offset the offset
+	 * @return the number of the line
+	 * @throws BadLocationException if the offset is invalid in this snapshot
+	 * @see IDocument#getLineOfOffset(int)
+	 */
+	public int getLineOfOffset(int offset) throws BadLocationException {
+		return getLineTracker().getLineNumberOfOffset(offset);
+	}
+
+	/**
+	 * Returns the offset of the given line.
+	 *
+	 * @param line the line
+	 * @return the offset of the line
+	 * @throws BadLocationException if the line is invalid in this snapshot
+	 * @see IDocument#getLineOffset(int)
+	 */
+	public int getLineOffset(int line) throws BadLocationException {
+		return getLineTracker().getLineOffset(line);
+	}
+
+	/**
+	 * Returns the length of the given line including its delimiter.
+	 *
+	 * @param line the line
+	 * @return the length of the line
+	 * @throws BadLocationException if the line is invalid in this snapshot
+	 * @see IDocument#getLineLength(int)
+	 */
+	public int getLineLength(int line) throws BadLocationException {
+		return getLineTracker().getLineLength(line);
+	}
+
+	/**
+	 * Returns the region of the given line without its delimiter.
+	 *
+	 * @param line the line
+	 * @return the region of the line
+	 * @throws BadLocationException if the line is invalid in this snapshot
+	 * @see IDocument#getLineInformation(int)
+	 */
+	public IRegion getLineInformation(int line) throws BadLocationException {
+		return getLineTracker().getLineInformation(line);
+	}
+
+	/**
+	 * Returns the region of the line at the given offset without its delimiter.
+	 *
+	 * @param offset the offset
+	 * @return the region of the line
+	 * @throws BadLocationException if the offset is invalid in this snapshot
+	 * @see IDocument#getLineInformationOfOffset(int)
+	 */
+	public IRegion getLineInformationOfOffset(int offset) throws BadLocationException {
+		return getLineTracker().getLineInformationOfOffset(offset);
+	}
+
+	/**
+	 * Returns the delimiter of the given line.
+	 *
+	 * @param line the line
+	 * @return the delimiter of the line or <code>null</code> if the line is not
+	 *         delimited
+	 * @throws BadLocationException if the line is invalid in this snapshot
+	 * @see IDocument#getLineDelimiter(int)
+	 */
+	public String getLineDelimiter(int line) throws BadLocationException {
+		return getLineTracker().getLineDelimiter(line);
+	}
+
+	@Override
+	public int length() {
+		return fContent.length();
+	}
+
+	@Override
+	public char charAt(int index) {
+		return fContent.charAt(index);
+	}
+
+	@Override
+	public CharSequence subSequence(int start, int end) {
+		return fContent.subSequence(start, end);
+	}
+
+	@Override
+	public String toString() {
+		return fContent;
+	}
+
+	/**
+	 * Returns the line tracker of this snapshot, computing the line structure on the
+	 * first call.
+	 *
+	 * @return the line tracker
+	 */
+	private ILineTracker getLineTracker() {
+		ILineTracker tracker= fLineTracker;
+		if (tracker == null) {
+			synchronized (this) {
+				tracker= fLineTracker;
+				if (tracker == null) {
+					if (Arrays.equals(fLegalLineDelimiters, DefaultLineTracker.DELIMITERS))
+						tracker= new DefaultLineTracker();
+					else
+						tracker= new ConfigurableLineTracker(fLegalLineDelimiters);
+					tracker.set(fContent);
+					fLineTracker= tracker;
+				}
+			}
+		}
+		return tracker;
+	}
+}
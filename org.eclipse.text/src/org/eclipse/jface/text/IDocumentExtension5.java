@@ -0,0 +1,38 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jface.text;
+
+
+/**
+ * Extension interface for {@link org.eclipse.jface.text.IDocument}. It adds the
+ * concept of document snapshots: immutable versions of the document content that
+ * background jobs, such as reconcilers, differs or searches, can read without
+ * locking the document and without copying it themselves.
+ *
+ * @see org.eclipse.jface.text.DocumentSnapshot
+ * @since 3.6
+ */
+public interface IDocumentExtension5 {
+
+	/**
+	 * Returns an immutable snapshot of the current content of this document.
+	 * <p>
+	 * Documents share the snapshot between all callers as long as the document is not
+	 * modified, i.e. taking a snapshot of an unmodified document is cheap. Callers that
+	 * need a consistent view of a document that may be modified by other threads should
+	 * take the snapshot while holding the document's lock, if any, but can read it after
+	 * releasing the lock.
+	 * </p>
+	 *
+	 * @return the snapshot of the current content
+	 */
+	DocumentSnapshot getSnapshot();
+}
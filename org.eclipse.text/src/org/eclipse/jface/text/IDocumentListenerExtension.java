@@ -0,0 +1,59 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jface.text;
+
+/**
+ * Extension interface to {@link org.eclipse.jface.text.IDocumentListener}.
+ * <p>
+ * Allows a document listener to opt out of the individual document events sent
+ * while a {@link DocumentRewriteSession} of type
+ * {@link DocumentRewriteSessionType#UNRESTRICTED},
+ * {@link DocumentRewriteSessionType#SEQUENTIAL} or
+ * {@link DocumentRewriteSessionType#STRICTLY_SEQUENTIAL} is active. Instead,
+ * the listener receives a single event that summarizes all changes of the
+ * session once it has been stopped. Sessions of type
+ * {@link DocumentRewriteSessionType#UNRESTRICTED_SMALL} are too small to
+ * benefit from this and keep sending the individual document events.
+ * Listeners doing expensive work per change, such as reconcilers or differs,
+ * can use this to skip per-edit work during bulk modifications.
+ * </p>
+ * <p>
+ * This extension is only honored by documents based on {@link AbstractDocument}.
+ * Other documents keep sending the individual document events.
+ * </p>
+ *
+ * @see org.eclipse.jface.text.IDocumentListener
+ * @see org.eclipse.jface.text.IDocumentExtension4#startRewriteSession(DocumentRewriteSessionType)
+ * @since 3.6
+ */
+public interface IDocumentListenerExtension {
+
+	/**
+	 * Signals that a rewrite session modified the document. The event replaces the
+	 * region described by its offset and length in the document as it was before
+	 * the session with the event's text. The region covers all changes of the
+	 * session, i.e. it is the smallest region containing all of them.
+	 * <p>
+	 * This method is called once after the session has been stopped and before
+	 * the <code>SESSION_STOP</code> event is sent to the rewrite session
+	 * listeners. It is not called if the session did not change the document.
+	 * {@link IDocumentListener#documentAboutToBeChanged(DocumentEvent)} and
+	 * {@link IDocumentListener#documentChanged(DocumentEvent)} are not called
+	 * for changes performed while the session is active. This also holds for a
+	 * change whose notification has been delayed by
+	 * {@link IDocumentExtension#stopListenerNotification()} beyond the end of
+	 * the session.
+	 * </p>
+	 *
+	 * @param event the event describing the merged changes of the rewrite session
+	 */
+	void documentChangedInRewriteSession(DocumentEvent event);
+}
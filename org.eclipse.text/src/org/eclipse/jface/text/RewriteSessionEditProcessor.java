@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2006, 2008 IBM Corporation and others.
+ * Copyright (c) 2006, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -74,8 +74,8 @@ public final class RewriteSessionEditProcessor extends TextEditProcessor {
 	 * @param root the root of the text edit tree describing the modifications. By passing a text
 	 *        edit a a text edit processor the ownership of the edit is transfered to the text edit
 	 *        processors. Clients must not modify the edit (e.g adding new children) any longer.
-	 * @param style {@link TextEdit#NONE}, {@link TextEdit#CREATE_UNDO} or
-	 *        {@link TextEdit#UPDATE_REGIONS})
+	 * @param style {@link TextEdit#NONE} or a combination of {@link TextEdit#CREATE_UNDO},
+	 *        {@link TextEdit#UPDATE_REGIONS} and {@link TextEdit#BULK_UPDATE}
 	 */
 	public RewriteSessionEditProcessor(IDocument document, TextEdit root, int style) {
 		super(document, root, style);
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2015 IBM Corporation and others.
+ * Copyright (c) 2000, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -11,15 +11,16 @@
 package org.eclipse.jface.text;
 
 
-import java.util.Iterator;
-import java.util.LinkedList;
-
-
 /**
  * A text store that optimizes a given source text store for sequential rewriting.
  * While rewritten it keeps a list of replace command that serve as patches for
  * the source store. Only on request, the source store is indeed manipulated
  * by applying the patch commands to the source text store.
+ * <p>
+ * The replace commands are kept in arrays that grow at both ends, together with the
+ * accumulated length change up to each command. Reads at arbitrary offsets locate the
+ * affected command by binary search and committing the commands is a single pass over
+ * the source store.</p>
  *
  * @since 2.0
  * @deprecated since 3.3 as {@link GapTextStore} performs better even for sequential rewrite scenarios
@@ -27,25 +28,27 @@ import java.util.LinkedList;
 @Deprecated
 public class SequentialRewriteTextStore implements ITextStore {
 
+	/** The initial capacity of the replace command arrays. */
+	private static final int INITIAL_CAPACITY= 16;
+
+	/** The offsets of the buffered replacements in the source store. */
+	private int[] fOffsets;
+	/** The lengths of the buffered replacements in the source store. */
+	private int[] fLengths;
+	/** The texts of the buffered replacements. */
+	private String[] fTexts;
 	/**
-	 * A buffered replace command.
+	 * The accumulated length changes of the buffered replacements, relative to
+	 * {@link #fBase}: the length change caused by all replacements up to and including
+	 * the replacement at index <code>i</code> is <code>fDeltas[i] - fBase</code>.
 	 */
-	private static class Replace {
-		public int newOffset;
-		public final int offset;
-		public final int length;
-		public final String text;
-
-		public Replace(int offset, int newOffset, int length, String text) {
-			this.newOffset= newOffset;
-			this.offset= offset;
-			this.length= length;
-			this.text= text;
-		}
-	}
-
-	/** The list of buffered replacements. */
-	private LinkedList<Replace> fReplaceList;
+	private int[] fDeltas;
+	/** The base of the accumulated length changes. */
+	private int fBase;
+	/** The index of the first buffered replacement. */
+	private int fFirst;
+	/** The index after the last buffered replacement. */
+	private int fEnd;
 	/** The source text store */
 	private ITextStore fSource;
 	/** A flag to enforce sequential access. */
@@ -58,8 +61,8 @@ public class SequentialRewriteTextStore implements ITextStore {
 	 * @param source the source text store
 	 */
 	public SequentialRewriteTextStore(ITextStore source) {
-		fReplaceList= new LinkedList<>();
 		fSource= source;
+		allocate(INITIAL_CAPACITY);
 	}
 
 	/**
@@ -77,29 +80,19 @@ public class SequentialRewriteTextStore implements ITextStore {
 		if (text == null)
 			text= ""; //$NON-NLS-1$
 
-		if (fReplaceList.size() == 0) {
-			fReplaceList.add(new Replace(offset, offset, length, text));
+		if (isEmpty()) {
+			addLast(offset, length, text);
 
 		} else {
-			Replace firstReplace= fReplaceList.getFirst();
-			Replace lastReplace= fReplaceList.getLast();
+			int last= fEnd - 1;
 
 			// backward
-			if (offset + length <= firstReplace.newOffset) {
-				int delta= text.length() - length;
-				if (delta != 0) {
-					for (Iterator<Replace> i= fReplaceList.iterator(); i.hasNext(); ) {
-						Replace replace= i.next();
-						replace.newOffset += delta;
-					}
-				}
-
-				fReplaceList.addFirst(new Replace(offset, offset, length, text));
+			if (offset + length <= getNewOffset(fFirst)) {
+				addFirst(offset, length, text);
 
 			// forward
-			} else if (offset >= lastReplace.newOffset + lastReplace.text.length()) {
-				int delta= getDelta(lastReplace);
-				fReplaceList.add(new Replace(offset - delta, offset, length, text));
+			} else if (offset >= getNewEnd(last)) {
+				addLast(offset - getDeltaAfter(last), length, text);
 
 			} else if (ASSERT_SEQUENTIALITY) {
 				throw new IllegalArgumentException();
@@ -114,122 +107,81 @@ public class SequentialRewriteTextStore implements ITextStore {
 	@Override
 	public void set(String text) {
 		fSource.set(text);
-		fReplaceList.clear();
+		clear();
 	}
 
 	@Override
 	public String get(int offset, int length) {
 
-		if (fReplaceList.isEmpty())
+		if (isEmpty())
 			return fSource.get(offset, length);
 
-
-		Replace firstReplace= fReplaceList.getFirst();
-		Replace lastReplace= fReplaceList.getLast();
+		int last= fEnd - 1;
 
 		// before
-		if (offset + length <= firstReplace.newOffset) {
+		if (offset + length <= getNewOffset(fFirst)) {
 			return fSource.get(offset, length);
 
 			// after
-		} else if (offset >= lastReplace.newOffset + lastReplace.text.length()) {
-			int delta= getDelta(lastReplace);
-			return fSource.get(offset - delta, length);
+		} else if (offset >= getNewEnd(last)) {
+			return fSource.get(offset - getDeltaAfter(last), length);
 
 		} else if (ASSERT_SEQUENTIALITY) {
 			throw new IllegalArgumentException();
 
 		} else {
 
-			int delta= 0;
-			for (Iterator<Replace> i= fReplaceList.iterator(); i.hasNext(); ) {
-				Replace replace= i.next();
-
-				if (offset + length < replace.newOffset) {
-					return fSource.get(offset - delta, length);
+			int index= findReplace(offset);
+			if (index != -1) {
+				int newOffset= getNewOffset(index);
+				int newEnd= newOffset + fTexts[index].length();
 
-				} else if (offset >= replace.newOffset && offset + length <= replace.newOffset + replace.text.length()) {
-					return replace.text.substring(offset - replace.newOffset, offset - replace.newOffset + length);
+				if (offset + length <= newEnd)
+					return fTexts[index].substring(offset - newOffset, offset - newOffset + length);
 
-				} else if (offset >= replace.newOffset + replace.text.length()) {
-					delta= getDelta(replace);
-					continue;
-
-				} else {
-					commit();
-					return fSource.get(offset, length);
-				}
+				// between this and the next replacement
+				if (offset >= newEnd && offset + length <= getNewOffset(index + 1))
+					return fSource.get(offset - getDeltaAfter(index), length);
 			}
 
-			return fSource.get(offset - delta, length);
+			commit();
+			return fSource.get(offset, length);
 		}
 
 	}
 
-	/**
-	 * Returns the difference between the offset in the source store and the "same" offset in the
-	 * rewrite store after the replace operation.
-	 *
-	 * @param replace the replace command
-	 * @return the difference
-	 */
-	private static final int getDelta(Replace replace) {
-		return replace.newOffset - replace.offset + replace.text.length() - replace.length;
-	}
-
 	@Override
 	public char get(int offset) {
-		if (fReplaceList.isEmpty())
+		if (isEmpty())
 			return fSource.get(offset);
 
-		Replace firstReplace= fReplaceList.getFirst();
-		Replace lastReplace= fReplaceList.getLast();
-
-		// before
-		if (offset < firstReplace.newOffset) {
+		int index= findReplace(offset);
+		if (index == -1)
 			return fSource.get(offset);
 
-			// after
-		} else if (offset >= lastReplace.newOffset + lastReplace.text.length()) {
-			int delta= getDelta(lastReplace);
-			return fSource.get(offset - delta);
+		int newOffset= getNewOffset(index);
+		if (offset < newOffset + fTexts[index].length())
+			return fTexts[index].charAt(offset - newOffset);
 
-		} else if (ASSERT_SEQUENTIALITY) {
-			throw new IllegalArgumentException();
-
-		} else {
-
-			int delta= 0;
-			for (Iterator<Replace> i= fReplaceList.iterator(); i.hasNext(); ) {
-				Replace replace= i.next();
-
-				if (offset < replace.newOffset)
-					return fSource.get(offset - delta);
-
-				else if (offset < replace.newOffset + replace.text.length())
-					return replace.text.charAt(offset - replace.newOffset);
-
-				delta= getDelta(replace);
-			}
-
-			return fSource.get(offset - delta);
-		}
+		return fSource.get(offset - getDeltaAfter(index));
 	}
 
 	@Override
 	public int getLength() {
-		if (fReplaceList.isEmpty())
+		if (isEmpty())
 			return fSource.getLength();
 
-		Replace lastReplace= fReplaceList.getLast();
-		return fSource.getLength() + getDelta(lastReplace);
+		return fSource.getLength() + getDeltaAfter(fEnd - 1);
 	}
 
 	/**
 	 * Disposes this rewrite store.
 	 */
 	public void dispose() {
-		fReplaceList= null;
+		fOffsets= null;
+		fLengths= null;
+		fTexts= null;
+		fDeltas= null;
 		fSource= null;
 	}
 
@@ -238,25 +190,156 @@ public class SequentialRewriteTextStore implements ITextStore {
 	 */
 	private void commit() {
 
-		if (fReplaceList.isEmpty())
+		if (isEmpty())
 			return;
 
-		StringBuffer buffer= new StringBuffer();
-
-		int delta= 0;
-		for (Iterator<Replace> i= fReplaceList.iterator(); i.hasNext(); ) {
-			Replace replace= i.next();
+		StringBuilder buffer= new StringBuilder(getLength());
 
-			int offset= buffer.length() - delta;
-			buffer.append(fSource.get(offset, replace.offset - offset));
-			buffer.append(replace.text);
-			delta= getDelta(replace);
+		int offset= 0;
+		for (int i= fFirst; i < fEnd; i++) {
+			buffer.append(fSource.get(offset, fOffsets[i] - offset));
+			buffer.append(fTexts[i]);
+			offset= fOffsets[i] + fLengths[i];
 		}
-
-		int offset= buffer.length() - delta;
 		buffer.append(fSource.get(offset, fSource.getLength() - offset));
 
 		fSource.set(buffer.toString());
-		fReplaceList.clear();
+		clear();
+	}
+
+	/**
+	 * Returns whether there are no buffered replace commands.
+	 *
+	 * @return <code>true</code> if there are no buffered replace commands
+	 */
+	private boolean isEmpty() {
+		return fFirst == fEnd;
+	}
+
+	/**
+	 * Removes all buffered replace commands.
+	 */
+	private void clear() {
+		for (int i= fFirst; i < fEnd; i++)
+			fTexts[i]= null;
+		fFirst= fEnd= fTexts.length / 2;
+		fBase= 0;
+	}
+
+	/**
+	 * Returns the difference between the offset in the source store and the "same" offset in the
+	 * rewrite store after the replace operation at the given index.
+	 *
+	 * @param index the index of the replace command
+	 * @return the difference
+	 */
+	private int getDeltaAfter(int index) {
+		return fDeltas[index] - fBase;
+	}
+
+	/**
+	 * Returns the offset of the replace command at the given index in the rewrite store.
+	 *
+	 * @param index the index of the replace command
+	 * @return the offset in the rewrite store
+	 */
+	private int getNewOffset(int index) {
+		return fOffsets[index] + getDeltaAfter(index) - fTexts[index].length() + fLengths[index];
+	}
+
+	/**
+	 * Returns the end offset of the text of the replace command at the given index in the
+	 * rewrite store.
+	 *
+	 * @param index the index of the replace command
+	 * @return the exclusive end offset in the rewrite store
+	 */
+	private int getNewEnd(int index) {
+		return fOffsets[index] + getDeltaAfter(index) + fLengths[index];
+	}
+
+	/**
+	 * Returns the index of the last replace command which starts at or before the given
+	 * offset of the rewrite store.
+	 *
+	 * @param offset the offset in the rewrite store
+	 * @return the index of the replace command or <code>-1</code> if all replace commands
+	 *         start after the given offset
+	 */
+	private int findReplace(int offset) {
+		int low= fFirst;
+		int high= fEnd - 1;
+		while (low <= high) {
+			int mid= (low + high) >>> 1;
+			if (getNewOffset(mid) <= offset)
+				low= mid + 1;
+			else
+				high= mid - 1;
+		}
+		return high >= fFirst ? high : -1;
+	}
+
+	/**
+	 * Buffers a replace command in front of all other replace commands.
+	 *
+	 * @param offset the offset in the source store
+	 * @param length the length in the source store
+	 * @param text the replacement text
+	 */
+	private void addFirst(int offset, int length, String text) {
+		if (fFirst == 0)
+			allocate(2 * fTexts.length);
+		int delta= text.length() - length;
+		fFirst--;
+		fOffsets[fFirst]= offset;
+		fLengths[fFirst]= length;
+		fTexts[fFirst]= text;
+		fDeltas[fFirst]= fBase;
+		fBase-= delta;
+	}
+
+	/**
+	 * Buffers a replace command after all other replace commands.
+	 *
+	 * @param offset the offset in the source store
+	 * @param length the length in the source store
+	 * @param text the replacement text
+	 */
+	private void addLast(int offset, int length, String text) {
+		if (fEnd == fTexts.length)
+			allocate(2 * fTexts.length);
+		int delta= text.length() - length;
+		fOffsets[fEnd]= offset;
+		fLengths[fEnd]= length;
+		fTexts[fEnd]= text;
+		fDeltas[fEnd]= (isEmpty() ? fBase : fDeltas[fEnd - 1]) + delta;
+		fEnd++;
+	}
+
+	/**
+	 * Reallocates the replace command arrays with the given capacity, centering the
+	 * buffered replace commands.
+	 *
+	 * @param capacity the new capacity
+	 */
+	private void allocate(int capacity) {
+		int size= fEnd - fFirst;
+		int first= (capacity - size) / 2;
+		int[] offsets= new int[capacity];
+		int[] lengths= new int[capacity];
+		String[] texts= new String[capacity];
+		int[] deltas= new int[capacity];
+		if (size > 0) {
+			System.arraycopy(fOffsets, fFirst, offsets, first, size);
+			System.arraycopy(fLengths, fFirst, lengths, first, size);
+			System.arraycopy(fTexts, fFirst, texts, first, size);
+			System.arraycopy(fDeltas, fFirst, deltas, first, size);
+		}
+		fOffsets= offsets;
+		fLengths= lengths;
+		fTexts= texts;
+		fDeltas= deltas;
+		fFirst= first;
+		fEnd= first + size;
 	}
 }
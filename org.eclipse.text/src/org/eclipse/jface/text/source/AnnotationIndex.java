@@ -0,0 +1,290 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jface.text.source;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import org.eclipse.jface.text.Position;
+
+
+/**
+ * Index of the annotations of an {@link AnnotationModel} for region queries as specified
+ * by {@link IAnnotationModelExtension2#getAnnotationIterator(int, int, boolean, boolean)}.
+ * <p>
+ * The annotations are sorted by the offsets of their positions. On top of that, an
+ * implicit binary tree stores the maximal end offset of each range of annotations, so
+ * that queries for annotations which may start before the region only descend into
+ * ranges that reach the region. A query takes logarithmic time plus time proportional
+ * to the number of annotations it returns, and does not copy any annotations.
+ * </p>
+ * <p>
+ * The index is immutable and only valid as long as the positions of the annotations do
+ * not change. The model discards it when annotations are added, removed or moved, and
+ * {@link #refresh() refreshes} it when the document changes.
+ * </p>
+ * <p>
+ * The index is not updated incrementally: the first query after a document change
+ * re-reads all positions, which takes time linear in the number of annotations, and
+ * sorts them again if the change reordered them. Position updaters of the document
+ * and clients may change any position, so there is no cheaper way to tell which
+ * positions have moved.
+ * </p>
+ *
+ * @since 3.6
+ */
+final class AnnotationIndex {
+
+	/** The annotations, sorted by offset. */
+	private final Annotation[] fAnnotations;
+	/** The positions of the annotations. */
+	private final Position[] fPositions;
+	/** The offsets of the positions at the time the index was built. */
+	private final int[] fOffsets;
+	/**
+	 * The tree of maximal end offsets. Node <code>i</code> has the children <code>2i</code>
+	 * and <code>2i + 1</code>, the leaves start at index <code>fLeafCount</code>.
+	 */
+	private final int[] fMaxEnds;
+	/** The number of leaves of the tree, a power of two. */
+	private final int fLeafCount;
+
+	/**
+	 * Creates an index of the given annotations.
+	 *
+	 * @param annotations the annotations and their positions
+	 * @return the index
+	 */
+	static AnnotationIndex create(Map<Annotation, Position> annotations) {
+		int size= annotations.size();
+		Annotation[] unsortedAnnotations= new Annotation[size];
+		Position[] unsortedPositions= new Position[size];
+		int i= 0;
+		for (Map.Entry<Annotation, Position> entry : annotations.entrySet()) {
+			Position position= entry.getValue();
+			if (position != null) {
+				unsortedAnnotations[i]= entry.getKey();
+				unsortedPositions[i]= position;
+				i++;
+			}
+		}
+		return new AnnotationIndex(unsortedAnnotations, unsortedPositions, i);
+	}
+
+	/**
+	 * Creates an index of the same annotations as this index for the current positions of
+	 * the annotations. This is cheaper than creating a new index as long as the document
+	 * changes did not reorder the positions, but still reads the positions of all
+	 * annotations.
+	 *
+	 * @return the new index
+	 */
+	AnnotationIndex refresh() {
+		return new AnnotationIndex(fAnnotations, fPositions, fAnnotations.length);
+	}
+
+	/**
+	 * Creates an index. The given arrays are used by the index if the positions are sorted,
+	 * and must not be modified afterwards.
+	 *
+	 * @param annotations the annotations
+	 * @param positions the positions of the annotations
+	 * @param size the number of annotations in the arrays
+	 */
+	private AnnotationIndex(Annotation[] annotations, Position[] positions, int size) {
+		int[] offsets= new int[size];
+		boolean sorted= true;
+		for (int i= 0; i < size; i++) {
+			offsets[i]= positions[i].getOffset();
+			if (i > 0 && offsets[i] < offsets[i - 1])
+				sorted= false;
+		}
+
+		if (!sorted) {
+			long[] keys= new long[size];
+			for (int i= 0; i < size; i++)
+				keys[i]= ((long) offsets[i] << 32) | i;
+			Arrays.sort(keys);
+
+			Annotation[] sortedAnnotations= new Annotation[size];
+			Position[] sortedPositions= new Position[size];
+			for (int i= 0; i < size; i++) {
+				int index= (int) keys[i];
+				sortedAnnotations[i]= annotations[index];
+				sortedPositions[i]= positions[index];
+				offsets[i]= (int) (keys[i] >> 32);
+			}
+			annotations= sortedAnnotations;
+			positions= sortedPositions;
+		} else if (annotations.length != size) {
+			annotations= Arrays.copyOf(annotations, size);
+			positions= Arrays.copyOf(positions, size);
+		}
+
+		fAnnotations= annotations;
+		fPositions= positions;
+		fOffsets= offsets;
+		fLeafCount= Integer.highestOneBit(Math.max(size, 1) * 2 - 1);
+		fMaxEnds= new int[2 * fLeafCount];
+		for (int i= 0; i < size; i++)
+			fMaxEnds[fLeafCount + i]= offsets[i] + positions[i].getLength();
+		Arrays.fill(fMaxEnds, fLeafCount + size, 2 * fLeafCount, Integer.MIN_VALUE);
+		for (int node= fLeafCount - 1; node > 0; node--)
+			fMaxEnds[node]= Math.max(fMaxEnds[2 * node], fMaxEnds[2 * node + 1]);
+	}
+
+	/**
+	 * Returns an iterator over the annotations inside the given region, in the order of
+	 * their offsets.
+	 *
+	 * @param offset the start of the region
+	 * @param length the length of the region
+	 * @param canStartBefore include annotations starting before the region
+	 * @param canEndAfter include annotations ending after the region
+	 * @return the iterator
+	 * @see IAnnotationModelExtension2#getAnnotationIterator(int, int, boolean, boolean)
+	 */
+	Iterator<Annotation> iterator(int offset, int length, boolean canStartBefore, boolean canEndAfter) {
+		return new QueryIterator(offset, length, canStartBefore, canEndAfter);
+	}
+
+	/**
+	 * Tells whether the given range is inside the given region, as specified by
+	 * {@link IAnnotationModelExtension2#getAnnotationIterator(int, int, boolean, boolean)}.
+	 *
+	 * @param region the region
+	 * @param start the start of the range
+	 * @param length the length of the range
+	 * @param canStartBefore whether the range may start before the region
+	 * @param canEndAfter whether the range may end after the region
+	 * @return <code>true</code> if the range is inside the region
+	 */
+	static boolean isWithinRegion(Position region, int start, int length, boolean canStartBefore, boolean canEndAfter) {
+		if (canStartBefore && canEndAfter)
+			return region.overlapsWith(start, length);
+		else if (canStartBefore)
+			return region.includes(start + length - (length > 0 ? 1 : 0));
+		else if (canEndAfter)
+			return region.includes(start);
+		else
+			return region.includes(start) && region.includes(start + length - (length > 0 ? 1 : 0));
+	}
+
+	/**
+	 * Returns the index of the first annotation whose offset is greater than or equal to
+	 * the given offset.
+	 *
+	 * @param offset the offset
+	 * @return the index, or the number of annotations if there is none
+	 */
+	private int lowerBound(int offset) {
+		int low= 0, high= fOffsets.length;
+		while (low < high) {
+			int mid= (low + high) >>> 1;
+			if (fOffsets[mid] < offset)
+				low= mid + 1;
+			else
+				high= mid;
+		}
+		return low;
+	}
+
+	/**
+	 * Iterates over the annotations inside a region.
+	 * <p>
+	 * If annotations may not start before the region, the candidates are the annotations
+	 * with an offset inside the region. Otherwise the tree is traversed depth-first,
+	 * skipping the ranges of annotations that start after the region or end before it.
+	 * </p>
+	 */
+	private final class QueryIterator implements Iterator<Annotation> {
+
+		private final Position fRegion;
+		private final boolean fCanStartBefore;
+		private final boolean fCanEndAfter;
+		/** The index of the first annotation starting after the region. */
+		private final int fEnd;
+		/** The next candidate index when scanning. */
+		private int fIndex;
+		/** The nodes still to visit when traversing the tree. */
+		private int[] fStack;
+		private int fStackSize;
+		private Annotation fNext;
+
+		QueryIterator(int offset, int length, boolean canStartBefore, boolean canEndAfter) {
+			fRegion= new Position(offset, length);
+			fCanStartBefore= canStartBefore;
+			fCanEndAfter= canEndAfter;
+			fEnd= lowerBound(offset + length + 1);
+			if (canStartBefore) {
+				fStack= new int[2 * Integer.numberOfTrailingZeros(fLeafCount) + 2];
+				fStack[fStackSize++]= 1;
+			} else {
+				fIndex= lowerBound(offset);
+			}
+			fNext= findNext();
+		}
+
+		@Override
+		public boolean hasNext() {
+			return fNext != null;
+		}
+
+		@Override
+		public Annotation next() {
+			if (fNext == null)
+				throw new NoSuchElementException();
+
+			Annotation result= fNext;
+			fNext= findNext();
+			return result;
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+
+		private Annotation findNext() {
+			int index;
+			while ((index= nextCandidate()) != -1) {
+				Position position= fPositions[index];
+				if (isWithinRegion(fRegion, position.getOffset(), position.getLength(), fCanStartBefore, fCanEndAfter))
+					return fAnnotations[index];
+			}
+			return null;
+		}
+
+		private int nextCandidate() {
+			if (!fCanStartBefore)
+				return fIndex < fEnd ? fIndex++ : -1;
+
+			int regionStart= fRegion.getOffset();
+			while (fStackSize > 0) {
+				int node= fStack[--fStackSize];
+				if (fMaxEnds[node] < regionStart)
+					continue;
+				int span= fLeafCount / Integer.highestOneBit(node);
+				int first= node * span - fLeafCount;
+				if (first >= fEnd)
+					continue;
+				if (span == 1)
+					return first;
+				// visit the left child first to return the annotations in offset order
+				fStack[fStackSize++]= 2 * node + 1;
+				fStack[fStackSize++]= 2 * node;
+			}
+			return -1;
+		}
+	}
+}
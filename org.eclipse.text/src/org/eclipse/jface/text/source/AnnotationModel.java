@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2015 IBM Corporation and others.
+ * Copyright (c) 2000, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -12,7 +12,6 @@
 package org.eclipse.jface.text.source;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.IdentityHashMap;
 import java.util.Iterator;
@@ -118,67 +117,7 @@ public class AnnotationModel implements IAnnotationModel, IAnnotationModelExtens
 		}
 
 		private boolean isWithinRegion(int start, int length) {
-			if (fCanStartBefore && fCanEndAfter)
-				return fRegion.overlapsWith(start, length);
-			else if (fCanStartBefore)
-				return fRegion.includes(start + length - (length > 0 ? 1 : 0));
-			else if (fCanEndAfter)
-				return fRegion.includes(start);
-			else
-				return fRegion.includes(start) && fRegion.includes(start + length - (length > 0 ? 1 : 0));
-		}
-	}
-
-	/**
-	 * An iterator iteration over a Positions and mapping positions to
-	 * annotations using a provided map if the provided map contains the element.
-	 *
-	 * @since 3.4
-	 */
-	private static final class AnnotationsInterator implements Iterator<Annotation> {
-
-		private Annotation fNext;
-		private final Position[] fPositions;
-		private int fIndex;
-		private final Map<Position, Annotation> fMap;
-
-		/**
-		 * @param positions positions to iterate over
-		 * @param map a map to map positions to annotations
-		 */
-		public AnnotationsInterator(Position[] positions, Map<Position, Annotation> map) {
-			fPositions= positions;
-			fIndex= 0;
-			fMap= map;
-			fNext= findNext();
-		}
-
-		@Override
-		public boolean hasNext() {
-			return fNext != null;
-		}
-
-		@Override
-		public Annotation next() {
-			Annotation result= fNext;
-			fNext= findNext();
-			return result;
-		}
-
-		@Override
-		public void remove() {
-			throw new UnsupportedOperationException();
-		}
-
-		private Annotation findNext() {
-			while (fIndex < fPositions.length) {
-				Position position= fPositions[fIndex];
-				fIndex++;
-				if (fMap.containsKey(position))
-					return fMap.get(position);
-			}
-
-			return null;
+			return AnnotationIndex.isWithinRegion(fRegion, start, length, fCanStartBefore, fCanEndAfter);
 		}
 	}
 
@@ -253,17 +192,67 @@ public class AnnotationModel implements IAnnotationModel, IAnnotationModelExtens
 		}
 	}
 
+	/**
+	 * The positions added to and removed from a document while a batch of position
+	 * updates is running. Only accessed by the thread running the batch.
+	 *
+	 * @since 3.6
+	 */
+	private static final class PositionBatch {
+
+		/** The thread running the batch. */
+		final Thread fThread= Thread.currentThread();
+		/** The document whose positions are updated. */
+		final AbstractDocument fDocument;
+		/** The positions to add in the order in which they have been added, may contain removed ones. */
+		private final List<Position> fAdditions= new ArrayList<>();
+		/** The positions still to add, by identity. */
+		private final Map<Position, Position> fPendingAdditions= new IdentityHashMap<>();
+		/** The positions to remove. */
+		private final List<Position> fRemovals= new ArrayList<>();
+
+		PositionBatch(AbstractDocument document) {
+			fDocument= document;
+		}
+
+		void add(Position position) {
+			if (fPendingAdditions.put(position, position) == null)
+				fAdditions.add(position);
+		}
+
+		void remove(Position position) {
+			if (fPendingAdditions.remove(position) == null)
+				fRemovals.add(position);
+		}
+
+		void apply() {
+			if (fPendingAdditions.isEmpty() && fRemovals.isEmpty())
+				return;
+
+			Position[] toAdd= new Position[fPendingAdditions.size()];
+			int count= 0;
+			for (Iterator<Position> e= fAdditions.iterator(); e.hasNext();) {
+				Position position= e.next();
+				if (fPendingAdditions.remove(position) != null)
+					toAdd[count++]= position;
+			}
+			Position[] toRemove= fRemovals.toArray(new Position[fRemovals.size()]);
+			try {
+				fDocument.replacePositions(IDocument.DEFAULT_CATEGORY, toRemove, toAdd);
+			} catch (BadLocationException x) {
+				// cannot happen, the positions have been checked when they were added
+			} catch (BadPositionCategoryException x) {
+				// ignore, like IDocument#addPosition(Position) does
+			}
+		}
+	}
+
 	/**
 	 * The list of managed annotations
 	 * @deprecated since 3.0 use <code>getAnnotationMap</code> instead
 	 */
 	@Deprecated
 	protected Map<Annotation, Position> fAnnotations;
-	/**
-	 * The map which maps {@link Position} to {@link Annotation}.
-	 * @since 3.4
-	 **/
-	private IdentityHashMap<Position, Annotation> fPositions;
 	/** The list of annotation model listeners */
 	protected ArrayList<IAnnotationModelListener> fAnnotationModelListeners;
 	/** The document connected with this model */
@@ -294,6 +283,34 @@ public class AnnotationModel implements IAnnotationModel, IAnnotationModelExtens
 	 * @since 3.0
 	 */
 	private Object fModificationStamp= new Object();
+	/**
+	 * The running batch of position updates, or <code>null</code>. Only set while the
+	 * thread running the batch holds the lock object.
+	 * @since 3.6
+	 */
+	private volatile PositionBatch fPositionBatch;
+	/**
+	 * The index for region queries, or <code>null</code> if it has to be rebuilt
+	 * because annotations have been added, removed or moved. Guarded by <code>fIndexLock</code>.
+	 * @since 3.6
+	 */
+	private AnnotationIndex fIndex;
+	/**
+	 * Whether the index is up to date, <code>false</code> if the document has changed
+	 * since it was built. Guarded by <code>fIndexLock</code>.
+	 * @since 3.6
+	 */
+	private boolean fIndexCurrent;
+	/**
+	 * Incremented whenever the index becomes outdated. Guarded by <code>fIndexLock</code>.
+	 * @since 3.6
+	 */
+	private int fIndexGeneration;
+	/**
+	 * The lock for the index.
+	 * @since 3.6
+	 */
+	private final Object fIndexLock= new Object();
 
 	/**
 	 * Creates a new annotation model. The annotation is empty, i.e. does not
@@ -301,7 +318,6 @@ public class AnnotationModel implements IAnnotationModel, IAnnotationModelExtens
 	 */
 	public AnnotationModel() {
 		fAnnotations= new AnnotationMap(10);
-		fPositions= new IdentityHashMap<>(10);
 		fAnnotationModelListeners= new ArrayList<>(2);
 
 		fDocumentListener= new IDocumentListener() {
@@ -313,6 +329,10 @@ public class AnnotationModel implements IAnnotationModel, IAnnotationModelExtens
 			@Override
 			public void documentChanged(DocumentEvent event) {
 				fDocumentChanged= true;
+				synchronized (fIndexLock) {
+					fIndexCurrent= false;
+					fIndexGeneration++;
+				}
 			}
 		};
 	}
@@ -375,6 +395,11 @@ public class AnnotationModel implements IAnnotationModel, IAnnotationModelExtens
 	/**
 	 * Replaces the given annotations in this model and if advised fires a
 	 * model change event.
+	 * <p>
+	 * If the model is connected to an {@link AbstractDocument}, the positions of
+	 * the annotations are removed from and added to the document in one pass, see
+	 * {@link AbstractDocument#replacePositions(String, Position[], Position[])}.
+	 * </p>
 	 *
 	 * @param annotationsToRemove the annotations to be removed
 	 * @param annotationsToAdd the annotations to be added
@@ -386,18 +411,26 @@ public class AnnotationModel implements IAnnotationModel, IAnnotationModelExtens
 	 */
 	protected void replaceAnnotations(Annotation[] annotationsToRemove, Map<? extends Annotation, ? extends Position> annotationsToAdd, boolean fireModelChanged) throws BadLocationException {
 
-		if (annotationsToRemove != null) {
-			for (int i= 0, length= annotationsToRemove.length; i < length; i++)
-				removeAnnotation(annotationsToRemove[i], false);
-		}
+		synchronized (getLockObject()) {
+			PositionBatch batch= startPositionBatch();
+			try {
+				if (annotationsToRemove != null) {
+					for (int i= 0, length= annotationsToRemove.length; i < length; i++)
+						removeAnnotation(annotationsToRemove[i], false);
+				}
 
-		if (annotationsToAdd != null) {
-			Iterator<? extends Entry<? extends Annotation, ? extends Position>> iter= annotationsToAdd.entrySet().iterator();
-			while (iter.hasNext()) {
-				Map.Entry<? extends Annotation, ? extends Position> mapEntry= iter.next();
-				Annotation annotation= mapEntry.getKey();
-				Position position= mapEntry.getValue();
-				addAnnotation(annotation, position, false);
+				if (annotationsToAdd != null) {
+					Iterator<? extends Entry<? extends Annotation, ? extends Position>> iter= annotationsToAdd.entrySet().iterator();
+					while (iter.hasNext()) {
+						Map.Entry<? extends Annotation, ? extends Position> mapEntry= iter.next();
+						Annotation annotation= mapEntry.getKey();
+						Position position= mapEntry.getValue();
+						addAnnotation(annotation, position, false);
+					}
+				}
+			} finally {
+				if (batch != null)
+					stopPositionBatch(batch);
 			}
 		}
 
@@ -421,7 +454,7 @@ public class AnnotationModel implements IAnnotationModel, IAnnotationModelExtens
 
 			addPosition(fDocument, position);
 			fAnnotations.put(annotation, position);
-			fPositions.put(position, annotation);
+			invalidateIndex();
 			synchronized (getLockObject()) {
 				getAnnotationModelEvent().annotationAdded(annotation);
 			}
@@ -454,7 +487,15 @@ public class AnnotationModel implements IAnnotationModel, IAnnotationModelExtens
 	 * @throws BadLocationException if the position is not a valid document position
 	 */
 	protected void addPosition(IDocument document, Position position) throws BadLocationException {
-		if (document != null)
+		if (document == null)
+			return;
+
+		PositionBatch batch= getPositionBatch(document);
+		if (batch != null) {
+			if ((0 > position.offset) || (0 > position.length) || (position.offset + position.length > document.getLength()))
+				throw new BadLocationException();
+			batch.add(position);
+		} else
 			document.addPosition(position);
 	}
 
@@ -468,23 +509,89 @@ public class AnnotationModel implements IAnnotationModel, IAnnotationModelExtens
 	 * @since 3.0
 	 */
 	protected void removePosition(IDocument document, Position position) {
-		if (document != null)
+		if (document == null)
+			return;
+
+		PositionBatch batch= getPositionBatch(document);
+		if (batch != null)
+			batch.remove(position);
+		else
 			document.removePosition(position);
 	}
 
+	/**
+	 * Starts collecting the positions added to and removed from the connected document
+	 * by {@link #addPosition(IDocument, Position)} and {@link #removePosition(IDocument, Position)}
+	 * in the current thread, so that {@link #stopPositionBatch(PositionBatch)} can update the
+	 * document positions in one pass instead of inserting and removing them one by one.
+	 * <p>
+	 * The caller must hold the lock object until the batch has been stopped. This keeps other
+	 * threads from modifying this model in the meantime and, if the lock object is shared with a
+	 * synchronizable document, from modifying the document while the added positions are not
+	 * yet updated by it.
+	 * </p>
+	 *
+	 * @return the started batch which must be stopped, or <code>null</code> if a batch is already
+	 *         running or the document does not support bulk updates
+	 * @since 3.6
+	 */
+	private PositionBatch startPositionBatch() {
+		if (fPositionBatch != null || !(fDocument instanceof AbstractDocument))
+			return null;
+
+		PositionBatch batch= new PositionBatch((AbstractDocument) fDocument);
+		fPositionBatch= batch;
+		return batch;
+	}
+
+	/**
+	 * Applies the collected position updates to the document and ends the batch.
+	 *
+	 * @param batch the batch returned by {@link #startPositionBatch()}
+	 * @since 3.6
+	 */
+	private void stopPositionBatch(PositionBatch batch) {
+		fPositionBatch= null;
+		batch.apply();
+	}
+
+	/**
+	 * Returns the batch collecting the position updates of the given document in the current
+	 * thread.
+	 *
+	 * @param document the document
+	 * @return the running batch, or <code>null</code> if the positions of the document have to
+	 *         be updated directly
+	 * @since 3.6
+	 */
+	private PositionBatch getPositionBatch(IDocument document) {
+		PositionBatch batch= fPositionBatch;
+		if (batch != null && batch.fThread == Thread.currentThread() && batch.fDocument == document)
+			return batch;
+		return null;
+	}
+
 	@Override
 	public void connect(IDocument document) {
 		Assert.isTrue(fDocument == null || fDocument == document);
 
 		if (fDocument == null) {
 			fDocument= document;
-			Iterator<Position> e= getAnnotationMap().valuesIterator();
-			while (e.hasNext())
+			synchronized (getLockObject()) {
+				PositionBatch batch= startPositionBatch();
 				try {
-					addPosition(document, e.next());
-				} catch (BadLocationException x) {
-					// ignore invalid position
+					Iterator<Position> e= getAnnotationMap().valuesIterator();
+					while (e.hasNext())
+						try {
+							addPosition(document, e.next());
+						} catch (BadLocationException x) {
+							// ignore invalid position
+						}
+				} finally {
+					if (batch != null)
+						stopPositionBatch(batch);
 				}
+			}
 		}
 
 		++ fOpenConnections;
@@ -529,10 +636,18 @@ public class AnnotationModel implements IAnnotationModel, IAnnotationModelExtens
 			disconnected();
 			document.removeDocumentListener(fDocumentListener);
 
-			Iterator<Position> e= getAnnotationMap().valuesIterator();
-			while (e.hasNext()) {
-				Position p= e.next();
-				removePosition(document, p);
+			synchronized (getLockObject()) {
+				PositionBatch batch= startPositionBatch();
+				try {
+					Iterator<Position> e= getAnnotationMap().valuesIterator();
+					while (e.hasNext()) {
+						Position p= e.next();
+						removePosition(document, p);
+					}
+				} finally {
+					if (batch != null)
+						stopPositionBatch(batch);
+				}
 			}
 			fDocument= null;
 		}
@@ -604,9 +719,17 @@ public class AnnotationModel implements IAnnotationModel, IAnnotationModelExtens
 	 */
 	protected void removeAnnotations(List<? extends Annotation> annotations, boolean fireModelChanged, boolean modelInitiated) {
 		if (annotations.size() > 0) {
-			Iterator<? extends Annotation> e= annotations.iterator();
-			while (e.hasNext())
-				removeAnnotation(e.next(), false);
+			synchronized (getLockObject()) {
+				PositionBatch batch= startPositionBatch();
+				try {
+					Iterator<? extends Annotation> e= annotations.iterator();
+					while (e.hasNext())
+						removeAnnotation(e.next(), false);
+				} finally {
+					if (batch != null)
+						stopPositionBatch(batch);
+				}
+			}
 
 			if (fireModelChanged)
 				fireModelChanged();
@@ -704,18 +827,64 @@ public class AnnotationModel implements IAnnotationModel, IAnnotationModelExtens
 	 * @since 3.4
 	 */
 	private Iterator<Annotation> getRegionAnnotationIterator(int offset, int length, boolean canStartBefore, boolean canEndAfter) {
-		if (!(fDocument instanceof AbstractDocument))
+		if (fDocument == null)
 			return new RegionIterator(getAnnotationIterator(true), this, offset, length, canStartBefore, canEndAfter);
 
-		AbstractDocument document= (AbstractDocument) fDocument;
 		cleanup(true);
+		return getIndex().iterator(offset, length, canStartBefore, canEndAfter);
+	}
 
-		try {
-			Position[] positions= document.getPositions(IDocument.DEFAULT_CATEGORY, offset, length, canStartBefore, canEndAfter);
-			return new AnnotationsInterator(positions, fPositions);
-		} catch (BadPositionCategoryException e) {
-			// can happen if e.g. the document doesn't contain such a category, or when removed in a different thread
-			return Collections.<Annotation>emptyList().iterator();
+	/**
+	 * Returns the index for region queries. The index is rebuilt if annotations have been
+	 * added or removed since it was last built, and refreshed with the current positions
+	 * if the document has changed.
+	 * <p>
+	 * Both take time linear in the number of annotations, so the first query after each
+	 * document change costs as much as one scan over all annotations. Only the following
+	 * queries up to the next change are answered in logarithmic time.
+	 * </p>
+	 *
+	 * @return the index
+	 * @since 3.6
+	 */
+	private AnnotationIndex getIndex() {
+		AnnotationIndex index;
+		int generation;
+		synchronized (fIndexLock) {
+			index= fIndex;
+			if (index != null && fIndexCurrent)
+				return index;
+			generation= fIndexGeneration;
+		}
+
+		if (index != null) {
+			index= index.refresh();
+		} else {
+			synchronized (getLockObject()) {
+				index= AnnotationIndex.create(getAnnotationMap());
+			}
+		}
+
+		synchronized (fIndexLock) {
+			// do not keep the index if it has become outdated while it was built
+			if (generation == fIndexGeneration) {
+				fIndex= index;
+				fIndexCurrent= true;
+			}
+		}
+		return index;
+	}
+
+	/**
+	 * Discards the index for region queries after annotations have been added, removed
+	 * or moved.
+	 *
+	 * @since 3.6
+	 */
+	private void invalidateIndex() {
+		synchronized (fIndexLock) {
+			fIndex= null;
+			fIndexGeneration++;
 		}
 	}
 
@@ -785,20 +954,28 @@ public class AnnotationModel implements IAnnotationModel, IAnnotationModelExtens
 	protected void removeAllAnnotations(boolean fireModelChanged) {
 
 		if (fDocument != null) {
-			Iterator<Annotation> e= getAnnotationMap().keySetIterator();
-			while (e.hasNext()) {
-				Annotation a= e.next();
-				Position p= fAnnotations.get(a);
-				removePosition(fDocument, p);
-//				p.delete();
-				synchronized (getLockObject()) {
-					getAnnotationModelEvent().annotationRemoved(a, p);
+			synchronized (getLockObject()) {
+				PositionBatch batch= startPositionBatch();
+				try {
+					Iterator<Annotation> e= getAnnotationMap().keySetIterator();
+					while (e.hasNext()) {
+						Annotation a= e.next();
+						Position p= fAnnotations.get(a);
+						removePosition(fDocument, p);
+//						p.delete();
+						synchronized (getLockObject()) {
+							getAnnotationModelEvent().annotationRemoved(a, p);
+						}
+					}
+				} finally {
+					if (batch != null)
+						stopPositionBatch(batch);
 				}
 			}
 		}
 
 		fAnnotations.clear();
-		fPositions.clear();
+		invalidateIndex();
 
 		if (fireModelChanged)
 			fireModelChanged();
@@ -827,7 +1004,7 @@ public class AnnotationModel implements IAnnotationModel, IAnnotationModelExtens
 			}
 
 			fAnnotations.remove(annotation);
-			fPositions.remove(p);
+			invalidateIndex();
 			synchronized (getLockObject()) {
 				getAnnotationModelEvent().annotationRemoved(annotation, p);
 			}
@@ -874,6 +1051,7 @@ public class AnnotationModel implements IAnnotationModel, IAnnotationModelExtens
 					} catch (BadLocationException e) {
 						// ignore invalid position
 					}
+					invalidateIndex();
 				}
 				synchronized (getLockObject()) {
 					getAnnotationModelEvent().annotationChanged(annotation);
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2015 IBM Corporation and others.
+ * Copyright (c) 2000, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -98,6 +98,22 @@ public abstract class TextEdit {
 	 */
 	public static final int UPDATE_REGIONS= 1 << 1;
 
+	/**
+	 * Flag indicating that an edit tree consisting of a <code>MultiTextEdit</code>
+	 * whose children are only <code>InsertEdit</code>s, <code>DeleteEdit</code>s
+	 * and <code>ReplaceEdit</code>s without children may be applied to a document
+	 * by one single replace of the range covered by the children. The resulting
+	 * document content, undo edit and edit regions are the same as without this
+	 * flag, but document listeners are notified only once and positions inside the
+	 * covered range are updated as for any replace of that range. Trees not
+	 * matching the above shape are executed as usual.
+	 * <p>
+	 * This flag is meant for applying edit trees with very many children.</p>
+	 *
+	 * @since 3.6
+	 */
+	public static final int BULK_UPDATE= 1 << 2;
+
 	private static class InsertionComparator implements Comparator<TextEdit> {
 		@Override
 		public int compare(TextEdit edit1, TextEdit edit2) throws MalformedTreeException {
@@ -341,10 +357,115 @@ public abstract class TextEdit {
 	 *  the given edits can't be added to this edit.
 	 *
 	 * @see #addChild(TextEdit)
+	 * @see #addSortedChildren(TextEdit[])
 	 */
 	public final void addChildren(TextEdit[] edits) throws MalformedTreeException {
 		for (int i= 0; i < edits.length; i++) {
 			internalAdd(edits[i]);
+			if (i == 0 && fChildren instanceof ArrayList)
+				((ArrayList<TextEdit>) fChildren).ensureCapacity(fChildren.size() + edits.length - 1);
+		}
+	}
+
+	/**
+	 * Adds the given edits, which are sorted by offset, to this edit.
+	 * <p>
+	 * The edits must not overlap each other and must all lie behind the
+	 * existing children of this edit, i.e. they must be given in the order
+	 * in which {@link #addChildren(TextEdit[])} would insert them. The edits
+	 * and the trees below them are validated in one sweep over their nodes,
+	 * where each edit is only checked against its parent and its predecessor,
+	 * and the edits are appended to the children at once. Adding them
+	 * therefore takes time linear in the size of the added trees. If any of
+	 * the edits can't be added, none of them is added.</p>
+	 *
+	 * @param edits the text edits to add, sorted by offset
+	 * @exception MalformedTreeException is thrown if one of
+	 *  the given edits can't be added to this edit, or if the edits
+	 *  are not sorted or overlap
+	 *
+	 * @see #addChildren(TextEdit[])
+	 * @since 3.6
+	 */
+	public final void addSortedChildren(TextEdit[] edits) throws MalformedTreeException {
+		checkCanAdd();
+		TextEdit previous= fChildren != null && !fChildren.isEmpty() ? fChildren.get(fChildren.size() - 1) : null;
+		int added= 0;
+		try {
+			for (; added < edits.length; added++) {
+				TextEdit child= edits[added];
+				child.aboutToBeAdded(this);
+				checkSortedChild(this, previous, child);
+				checkSortedTree(child);
+				// setting the parent right away detects edits given twice
+				child.internalSetParent(this);
+				previous= child;
+			}
+		} finally {
+			if (added < edits.length) {
+				for (int i= 0; i < added; i++)
+					edits[i].internalSetParent(null);
+			}
+		}
+
+		if (edits.length == 0)
+			return;
+		if (fChildren == null)
+			fChildren= new ArrayList<>(edits.length);
+		else if (fChildren instanceof ArrayList)
+			((ArrayList<TextEdit>) fChildren).ensureCapacity(fChildren.size() + edits.length);
+		for (int i= 0; i < edits.length; i++)
+			fChildren.add(edits[i]);
+	}
+
+	/**
+	 * Checks that the given edit can be appended to the children of the given
+	 * parent behind the given predecessor.
+	 *
+	 * @param parent the parent edit
+	 * @param previous the preceding sibling or <code>null</code> if none
+	 * @param child the edit to check
+	 * @exception MalformedTreeException if the edit can't be appended
+	 */
+	private static void checkSortedChild(TextEdit parent, TextEdit previous, TextEdit child) throws MalformedTreeException {
+		if (child.isDeleted())
+			throw new MalformedTreeException(parent, child, TextEditMessages.getString("TextEdit.deleted_edit")); //$NON-NLS-1$
+		if (!parent.covers(child))
+			throw new MalformedTreeException(parent, child, TextEditMessages.getString("TextEdit.range_outside")); //$NON-NLS-1$
+		if (child.getParent() != null || previous != null && previous.getExclusiveEnd() > child.getOffset())
+			throw new MalformedTreeException(parent, child, TextEditMessages.getString("TextEdit.overlapping")); //$NON-NLS-1$
+	}
+
+	/**
+	 * Checks the tree below the given edit in one sweep over its nodes.
+	 *
+	 * @param root the root of the tree to check
+	 * @exception MalformedTreeException if the tree is not valid
+	 */
+	private static void checkSortedTree(TextEdit root) throws MalformedTreeException {
+		List<TextEdit> parents= null;
+		TextEdit parent= root;
+		while (parent != null) {
+			List<TextEdit> children= parent.fChildren;
+			if (children != null) {
+				TextEdit previous= null;
+				for (int i= 0, size= children.size(); i < size; i++) {
+					TextEdit child= children.get(i);
+					if (child.isDeleted())
+						throw new MalformedTreeException(parent, child, TextEditMessages.getString("TextEdit.deleted_edit")); //$NON-NLS-1$
+					if (!parent.covers(child))
+						throw new MalformedTreeException(parent, child, TextEditMessages.getString("TextEdit.range_outside")); //$NON-NLS-1$
+					if (child.getParent() != parent || previous != null && previous.getExclusiveEnd() > child.getOffset())
+						throw new MalformedTreeException(parent, child, TextEditMessages.getString("TextEdit.overlapping")); //$NON-NLS-1$
+					if (child.fChildren != null) {
+						if (parents == null)
+							parents= new ArrayList<>();
+						parents.add(child);
+					}
+					previous= child;
+				}
+			}
+			parent= parents == null || parents.isEmpty() ? null : parents.remove(parents.size() - 1);
 		}
 	}
 
@@ -690,7 +811,8 @@ public abstract class TextEdit {
 	 *
 	 * @param document the document to be manipulated
 	 * @param style flags controlling the execution of the edit tree. Valid
-	 *  flags are: <code>CREATE_UNDO</code> and </code>UPDATE_REGIONS</code>.
+	 *  flags are: <code>CREATE_UNDO</code>, </code>UPDATE_REGIONS</code> and
+	 *  <code>BULK_UPDATE</code>.
 	 * @return a undo edit, if <code>CREATE_UNDO</code> is specified. Otherwise
 	 *  <code>null</code> is returned.
 	 *
@@ -767,7 +889,16 @@ public abstract class TextEdit {
 		fChildren= children;
 	}
 
+	/**
+	 * Hook called before children are added to this edit.
+	 *
+	 * @exception MalformedTreeException if this edit can't have children
+	 */
+	void checkCanAdd() throws MalformedTreeException {
+	}
+
 	void internalAdd(TextEdit child) throws MalformedTreeException {
+		checkCanAdd();
 		child.aboutToBeAdded(this);
 		if (child.isDeleted())
 			throw new MalformedTreeException(this, child, TextEditMessages.getString("TextEdit.deleted_edit")); //$NON-NLS-1$
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2007 IBM Corporation and others.
+ * Copyright (c) 2000, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -11,7 +11,7 @@
 package org.eclipse.text.edits;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -29,7 +29,12 @@ import org.eclipse.core.runtime.Assert;
 public final class TextEditCopier {
 
 	private TextEdit fEdit;
-	private Map<TextEdit, TextEdit> fCopies;
+	/** The original edits, in the order in which they have been copied. */
+	private List<TextEdit> fOriginals;
+	/** The copies, in the same order as the originals. */
+	private List<TextEdit> fCopies;
+	/** The map from original to copied edits, created on demand. */
+	private Map<TextEdit, TextEdit> fCopyMap;
 
 	/**
 	 * Constructs a new <code>TextEditCopier</code> for the
@@ -44,7 +49,8 @@ public final class TextEditCopier {
 		super();
 		Assert.isNotNull(edit);
 		fEdit= edit;
-		fCopies= new HashMap<>();
+		fOriginals= new ArrayList<>();
+		fCopies= new ArrayList<>();
 	}
 
 	/**
@@ -55,9 +61,8 @@ public final class TextEditCopier {
 	public TextEdit perform() {
 		TextEdit result= doCopy(fEdit);
 		if (result != null) {
-			for (Iterator<TextEdit> iter= fCopies.keySet().iterator(); iter.hasNext();) {
-				TextEdit edit= iter.next();
-				edit.postProcessCopy(this);
+			for (int i= 0; i < fOriginals.size(); i++) {
+				fOriginals.get(i).postProcessCopy(this);
 			}
 		}
 		return result;
@@ -73,7 +78,14 @@ public final class TextEditCopier {
 	 */
 	public TextEdit getCopy(TextEdit original) {
 		Assert.isNotNull(original);
-		return fCopies.get(original);
+		if (fCopyMap == null) {
+			// most edits don't ask for copies, hence the map is only built when needed
+			fCopyMap= new IdentityHashMap<>(fOriginals.size());
+			for (int i= 0; i < fOriginals.size(); i++) {
+				fCopyMap.put(fOriginals.get(i), fCopies.get(i));
+			}
+		}
+		return fCopyMap.get(original);
 	}
 
 	//---- helper methods --------------------------------------------
@@ -95,6 +107,8 @@ public final class TextEditCopier {
 	}
 
 	private void addCopy(TextEdit original, TextEdit copy) {
-		fCopies.put(original, copy);
+		fOriginals.add(original);
+		fCopies.add(copy);
+		fCopyMap= null;
 	}
 }
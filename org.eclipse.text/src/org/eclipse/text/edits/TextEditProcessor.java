@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2015 IBM Corporation and others.
+ * Copyright (c) 2000, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -53,7 +53,8 @@ public class TextEditProcessor {
 	 *  text edit processors. Clients must not modify the edit
 	 *  (e.g adding new children) any longer.
 	 *
-	 * @param style {@link TextEdit#NONE}, {@link TextEdit#CREATE_UNDO} or {@link TextEdit#UPDATE_REGIONS})
+	 * @param style {@link TextEdit#NONE} or a combination of {@link TextEdit#CREATE_UNDO},
+	 *  {@link TextEdit#UPDATE_REGIONS} and {@link TextEdit#BULK_UPDATE}
 	 */
 	public TextEditProcessor(IDocument document, TextEdit root, int style) {
 		this(document, root, style, false);
@@ -111,6 +112,7 @@ public class TextEditProcessor {
 	 * @return the style bits
 	 * @see TextEdit#CREATE_UNDO
 	 * @see TextEdit#UPDATE_REGIONS
+	 * @see TextEdit#BULK_UPDATE
 	 */
 	public int getStyle() {
 		return fStyle;
@@ -186,6 +188,12 @@ public class TextEditProcessor {
 	//---- execution --------------------------------------------------------------------
 
 	UndoEdit executeDo() throws BadLocationException {
+		if (bulkUpdate() && fRoot.getClass() == MultiTextEdit.class && fRoot.hasChildren() && considersAllEdits()) {
+			BulkReplace replace= BulkReplace.create(fRoot.internalGetChildren());
+			if (replace != null)
+				return executeBulkDo(replace);
+		}
+
 		UndoCollector collector= new UndoCollector(fRoot);
 		try {
 			if (createUndo())
@@ -214,6 +222,12 @@ public class TextEditProcessor {
 	}
 
 	UndoEdit executeUndo() throws BadLocationException {
+		if (bulkUpdate() && fRoot.hasChildren()) {
+			BulkReplace replace= BulkReplace.create(fRoot.internalGetChildren());
+			if (replace != null)
+				return executeBulkUndo(replace);
+		}
+
 		UndoCollector collector= new UndoCollector(fRoot);
 		try {
 			if (createUndo())
@@ -228,6 +242,212 @@ public class TextEditProcessor {
 		return collector.undo;
 	}
 
+	//---- bulk execution ----------------------------------------------------------------
+
+	/**
+	 * Tells whether this processor considers the root edit and all its children.
+	 *
+	 * @return <code>true</code> if all edits are considered
+	 * @see #considerEdit(TextEdit)
+	 * @since 3.6
+	 */
+	private boolean considersAllEdits() {
+		if (!considerEdit(fRoot))
+			return false;
+		List<TextEdit> children= fRoot.internalGetChildren();
+		for (int i= 0; i < children.size(); i++) {
+			if (!considerEdit(children.get(i)))
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Executes the children of the root edit with one single document replace and
+	 * updates the edits and computes the undo edit the same way as
+	 * {@link #executeDo()} does.
+	 *
+	 * @param replace the bulk replace describing the children
+	 * @return the undo edit or <code>null</code> if no undo is to be created
+	 * @throws BadLocationException if the edits cannot be applied to the document
+	 * @since 3.6
+	 */
+	private UndoEdit executeBulkDo(BulkReplace replace) throws BadLocationException {
+		int rootOffset= fRoot.getOffset();
+		int rootLength= fRoot.getLength();
+		UndoEdit undo= createUndo() ? new UndoEdit() : null;
+		int delta= replace.perform(fDocument, undo);
+
+		List<TextEdit> children= fRoot.internalGetChildren();
+		int size= children.size();
+		for (int i= 0; i < size; i++) {
+			TextEdit child= children.get(i);
+			child.fDelta= replace.getText(size - 1 - i).length() - child.getLength();
+			if (child.fDelta != 0)
+				child.adjustLength(child.fDelta);
+		}
+		if (delta != 0)
+			fRoot.adjustLength(delta);
+		fRoot.fDelta= 0;
+
+		if (updateRegions()) {
+			int accumulatedDelta= 0;
+			for (int i= 0; i < size; i++) {
+				TextEdit child= children.get(i);
+				child.adjustOffset(accumulatedDelta);
+				accumulatedDelta+= child.fDelta;
+			}
+		}
+
+		if (undo != null)
+			undo.defineRegion(rootOffset, rootLength + delta);
+		return undo;
+	}
+
+	/**
+	 * Executes the children of the root undo edit with one single document replace.
+	 *
+	 * @param replace the bulk replace describing the children
+	 * @return the undo edit or <code>null</code> if no undo is to be created
+	 * @throws BadLocationException if the edits cannot be applied to the document
+	 * @since 3.6
+	 */
+	private UndoEdit executeBulkUndo(BulkReplace replace) throws BadLocationException {
+		UndoEdit undo= createUndo() ? new UndoEdit() : null;
+		int delta= replace.perform(fDocument, undo);
+		if (undo != null)
+			undo.defineRegion(fRoot.getOffset(), fRoot.getLength() + delta);
+		return undo;
+	}
+
+	/**
+	 * A sequence of replace operations which can be performed with one single document
+	 * replace. The operations are given in the order in which they would be performed
+	 * one after the other, each one in the coordinates of the document as it was left by
+	 * its predecessors. This is possible if the operations are ordered either front to
+	 * back or back to front.
+	 *
+	 * @since 3.6
+	 */
+	private static final class BulkReplace {
+
+		private final int[] fOffsets;
+		private final int[] fLengths;
+		private final String[] fTexts;
+		/** The offsets in the document as it was before the first operation. */
+		private int[] fOriginalOffsets;
+		private boolean fFrontToBack;
+
+		/**
+		 * Creates a bulk replace for the given edits.
+		 *
+		 * @param edits the edits, which are performed from the last to the first one
+		 * @return the bulk replace or <code>null</code> if the edits cannot be performed
+		 *  with a single replace
+		 */
+		static BulkReplace create(List<TextEdit> edits) {
+			int size= edits.size();
+			BulkReplace result= new BulkReplace(size);
+			for (int i= 0; i < size; i++) {
+				TextEdit edit= edits.get(size - 1 - i);
+				if (edit.hasChildren())
+					return null;
+				if (edit instanceof ReplaceEdit)
+					result.fTexts[i]= ((ReplaceEdit) edit).getText();
+				else if (edit instanceof InsertEdit)
+					result.fTexts[i]= ((InsertEdit) edit).getText();
+				else if (edit instanceof DeleteEdit)
+					result.fTexts[i]= ""; //$NON-NLS-1$
+				else
+					return null;
+				result.fOffsets[i]= edit.getOffset();
+				result.fLengths[i]= edit.getLength();
+			}
+			if (result.computeOriginalOffsets(true) || result.computeOriginalOffsets(false))
+				return result;
+			return null;
+		}
+
+		private BulkReplace(int size) {
+			fOffsets= new int[size];
+			fLengths= new int[size];
+			fTexts= new String[size];
+		}
+
+		String getText(int index) {
+			return fTexts[index];
+		}
+
+		private boolean computeOriginalOffsets(boolean frontToBack) {
+			int[] result= new int[fOffsets.length];
+			int delta= 0;
+			for (int i= 0; i < fOffsets.length; i++) {
+				if (frontToBack) {
+					result[i]= fOffsets[i] - delta;
+					if (i > 0 && result[i] < result[i - 1] + fLengths[i - 1])
+						return false;
+					delta+= fTexts[i].length() - fLengths[i];
+				} else {
+					result[i]= fOffsets[i];
+					if (i > 0 && fOffsets[i] + fLengths[i] > fOffsets[i - 1])
+						return false;
+				}
+			}
+			fOriginalOffsets= result;
+			fFrontToBack= frontToBack;
+			return true;
+		}
+
+		/**
+		 * Performs the operations and records their undo in the given undo edit, as if
+		 * they were performed one after the other.
+		 *
+		 * @param document the document to manipulate
+		 * @param undo the undo edit to fill or <code>null</code>
+		 * @return the change of the document length
+		 * @throws BadLocationException if the operations cannot be applied to the document
+		 */
+		int perform(IDocument document, UndoEdit undo) throws BadLocationException {
+			int size= fOffsets.length;
+			int first= fFrontToBack ? 0 : size - 1;
+			int last= fFrontToBack ? size - 1 : 0;
+			int rangeOffset= fOriginalOffsets[first];
+			int rangeLength= fOriginalOffsets[last] + fLengths[last] - rangeOffset;
+			String original= document.get(rangeOffset, rangeLength);
+
+			int delta= 0;
+			for (int i= 0; i < size; i++)
+				delta+= fTexts[i].length() - fLengths[i];
+
+			StringBuilder buffer= new StringBuilder(rangeLength + delta);
+			int position= 0;
+			for (int k= 0; k < size; k++) {
+				int i= fFrontToBack ? k : size - 1 - k;
+				int start= fOriginalOffsets[i] - rangeOffset;
+				buffer.append(original, position, start);
+				buffer.append(fTexts[i]);
+				position= start + fLengths[i];
+			}
+
+			if (undo != null) {
+				// like UndoCollector, share the instances of equal replaced texts
+				String lastText= null;
+				for (int i= 0; i < size; i++) {
+					int start= fOriginalOffsets[i] - rangeOffset;
+					String text= original.substring(start, start + fLengths[i]);
+					if (text.equals(lastText))
+						text= lastText;
+					else
+						lastText= text;
+					undo.add(new ReplaceEdit(fOffsets[i], fTexts[i].length(), text));
+				}
+			}
+
+			document.replace(rangeOffset, rangeLength, buffer.toString());
+			return delta;
+		}
+	}
+
 	private boolean createUndo() {
 		return (fStyle & TextEdit.CREATE_UNDO) != 0;
 	}
@@ -235,4 +455,8 @@ public class TextEditProcessor {
 	private boolean updateRegions() {
 		return (fStyle & TextEdit.UPDATE_REGIONS) != 0;
 	}
+
+	private boolean bulkUpdate() {
+		return (fStyle & TextEdit.BULK_UPDATE) != 0;
+	}
 }
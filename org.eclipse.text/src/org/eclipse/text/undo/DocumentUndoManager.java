@@ -63,6 +63,12 @@ import org.eclipse.jface.text.TextUtilities;
  */
 public class DocumentUndoManager implements IDocumentUndoManager {
 
+	/**
+	 * The estimated number of bytes held by a text change in addition to its text.
+	 *
+	 * @since 3.6
+	 */
+	private static final int TEXT_CHANGE_OVERHEAD= 96;
 
 	/**
 	 * Represents an undo-able text change, described as the
@@ -412,6 +418,21 @@ public class DocumentUndoManager implements IDocumentUndoManager {
 		protected long getRedoModificationStamp() {
 			return fRedoModificationStamp;
 		}
+
+		/**
+		 * Returns the estimated number of bytes held by this change.
+		 *
+		 * @return the estimated memory usage of this change in bytes
+		 * @since 3.6
+		 */
+		protected long getMemoryUsage() {
+			long usage= TEXT_CHANGE_OVERHEAD;
+			if (fText != null)
+				usage+= 2L * fText.length();
+			if (fPreservedText != null)
+				usage+= 2L * fPreservedText.length();
+			return usage;
+		}
 	}
 
 
@@ -548,6 +569,14 @@ public class DocumentUndoManager implements IDocumentUndoManager {
 
 			return fRedoModificationStamp;
 		}
+
+		@Override
+		protected long getMemoryUsage() {
+			long usage= super.getMemoryUsage();
+			for (int i= 0; i < fChanges.size(); i++)
+				usage+= fChanges.get(i).getMemoryUsage();
+			return usage;
+		}
 	}
 
 
@@ -580,6 +609,7 @@ public class DocumentUndoManager implements IDocumentUndoManager {
 			boolean wasValid= false;
 			if (op != null)
 				wasValid= op.canUndo();
+			UndoableTextChange lastAdded= fLastAddedTextEdit;
 			// Process the change, providing the before and after timestamps
 			processChange(event.getOffset(), event.getOffset()
 					+ event.getLength(), event.getText(), fReplacedText,
@@ -606,6 +636,10 @@ public class DocumentUndoManager implements IDocumentUndoManager {
 					addToOperationHistory(fCurrent);
 				}
 			}
+			fMemoryUsage= -1;
+			// a change that grows in place holds more memory without being added again
+			if (fLastAddedTextEdit == lastAdded)
+				DocumentUndoManagerRegistry.undoHistoryChanged(fDocument, DocumentUndoManager.this);
 		}
 	}
 
@@ -619,6 +653,8 @@ public class DocumentUndoManager implements IDocumentUndoManager {
 		@Override
 		public void historyNotification(final OperationHistoryEvent event) {
 			final int type= event.getEventType();
+			if (event.getOperation() != null && event.getOperation().hasContext(fUndoContext))
+				fMemoryUsage= -1;
 			switch (type) {
 			case OperationHistoryEvent.ABOUT_TO_UNDO:
 			case OperationHistoryEvent.ABOUT_TO_REDO:
@@ -740,6 +776,14 @@ public class DocumentUndoManager implements IDocumentUndoManager {
 	/** The list of clients connected. */
 	private List<Object> fConnected;
 
+	/**
+	 * The cached estimate of the memory held by the undo history or <code>-1</code>
+	 * if it has to be recomputed.
+	 *
+	 * @since 3.6
+	 */
+	private volatile long fMemoryUsage= -1;
+
 	/**
 	 *
 	 * Create a DocumentUndoManager for the given document.
@@ -847,6 +891,7 @@ public class DocumentUndoManager implements IDocumentUndoManager {
 		if (isConnected()) {
 			fFoldingIntoCompoundChange= false;
 			commit();
+			DocumentUndoManagerRegistry.undoHistoryChanged(fDocument, this);
 		}
 	}
 
@@ -858,6 +903,93 @@ public class DocumentUndoManager implements IDocumentUndoManager {
 		fHistory.setLimit(fUndoContext, undoLimit);
 	}
 
+	/**
+	 * Returns the estimated number of bytes held by the undo and redo history
+	 * of this undo manager. The estimate covers the text of all text changes
+	 * recorded for the document and a fixed overhead per change.
+	 *
+	 * @return the estimated memory usage of the undo history in bytes, or
+	 *         <code>0</code> if no client is connected
+	 * @since 3.6
+	 */
+	public long getMemoryUsage() {
+		if (!isConnected())
+			return 0;
+		long usage= fMemoryUsage;
+		if (usage == -1) {
+			usage= computeMemoryUsage(fHistory.getUndoHistory(fUndoContext)) + computeMemoryUsage(fHistory.getRedoHistory(fUndoContext));
+			fMemoryUsage= usage;
+		}
+		return usage;
+	}
+
+	/**
+	 * Sums up the memory held by those of the given operations that were
+	 * created by this undo manager.
+	 *
+	 * @param operations the operations
+	 * @return the estimated memory usage of the operations in bytes
+	 * @since 3.6
+	 */
+	private long computeMemoryUsage(IUndoableOperation[] operations) {
+		long usage= 0;
+		for (int i= 0; i < operations.length; i++)
+			usage+= computeMemoryUsage(operations[i]);
+		return usage;
+	}
+
+	/**
+	 * Returns the memory held by the given operation if it was created by this
+	 * undo manager.
+	 *
+	 * @param operation the operation
+	 * @return the estimated memory usage of the operation in bytes or <code>0</code>
+	 * @since 3.6
+	 */
+	private long computeMemoryUsage(IUndoableOperation operation) {
+		if (operation instanceof UndoableTextChange && ((UndoableTextChange) operation).fDocumentUndoManager == this)
+			return ((UndoableTextChange) operation).getMemoryUsage();
+		return 0;
+	}
+
+	/**
+	 * Discards the redo history and the oldest undoable changes until the
+	 * estimated memory usage of the history does not exceed the given number
+	 * of bytes. If <code>maxMemory</code> is positive the most recent undoable
+	 * change is always kept, otherwise the complete history is discarded.
+	 *
+	 * @param maxMemory the maximal number of bytes the history may hold
+	 * @see #getMemoryUsage()
+	 * @since 3.6
+	 */
+	void trimUndoHistory(long maxMemory) {
+		if (getMemoryUsage() <= maxMemory)
+			return;
+
+		if (maxMemory <= 0) {
+			commit();
+			fHistory.dispose(fUndoContext, true, true, false);
+		} else {
+			fHistory.dispose(fUndoContext, false, true, false);
+			IUndoableOperation[] operations= fHistory.getUndoHistory(fUndoContext);
+			long usage= 0;
+			int keep= 0;
+			for (int i= operations.length - 1; i >= 0; i--) {
+				usage+= computeMemoryUsage(operations[i]);
+				if (usage > maxMemory && keep > 0)
+					break;
+				keep++;
+			}
+			if (keep < operations.length) {
+				// lowering the limit forces the history to drop the oldest operations
+				int limit= fHistory.getLimit(fUndoContext);
+				fHistory.setLimit(fUndoContext, keep);
+				fHistory.setLimit(fUndoContext, limit);
+			}
+		}
+		fMemoryUsage= -1;
+	}
+
 	/**
 	 * Fires a document undo event to all registered document undo listeners.
 	 * Uses a robust iterator.
@@ -907,6 +1039,7 @@ public class DocumentUndoManager implements IDocumentUndoManager {
 				|| edit instanceof UndoableCompoundTextChange) {
 			fHistory.add(edit);
 			fLastAddedTextEdit= edit;
+			DocumentUndoManagerRegistry.undoHistoryChanged(fDocument, this);
 		}
 	}
 
@@ -1164,6 +1297,7 @@ public class DocumentUndoManager implements IDocumentUndoManager {
 	 */
 	private void shutdown() {
 		removeListeners();
+		fMemoryUsage= -1;
 
 		fCurrent= null;
 		fPreviousDelete= null;
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2015 IBM Corporation and others.
+ * Copyright (c) 2000, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -10,7 +10,9 @@
  *******************************************************************************/
 package org.eclipse.text.undo;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.eclipse.core.runtime.Assert;
@@ -29,23 +31,48 @@ import org.eclipse.jface.text.IDocument;
  * document is connected.
  * <p>
  * <em>The recoding of changes starts with the first {@link #connect(IDocument)}.</em></p>
+ * <p>
+ * In addition to the undo level limit of each undo manager, the registry can
+ * enforce a global memory budget for the undo histories of all connected
+ * documents, see {@link #setUndoMemoryBudget(long)}. When the budget is exceeded
+ * the histories of the least recently edited documents are discarded first.</p>
  *
  * @since 3.2
  * @noinstantiate This class is not intended to be instantiated by clients.
  */
 public final class DocumentUndoManagerRegistry {
 
+	/**
+	 * Constant denoting that the undo histories of the connected documents
+	 * are not restricted in the amount of memory they may hold.
+	 *
+	 * @see #setUndoMemoryBudget(long)
+	 * @since 3.6
+	 */
+	public static final long UNLIMITED_UNDO_MEMORY_BUDGET= -1;
+
 	private static final class Record {
 		public Record(IDocument document) {
 			count= 0;
 			undoManager= new DocumentUndoManager(document);
 		}
 		private int count;
-		private IDocumentUndoManager undoManager;
+		private DocumentUndoManager undoManager;
+		/** The value of the edit counter when the document's history last changed. */
+		private long lastEdit;
 	}
 
 	private static Map<IDocument, Record> fgFactory= new HashMap<>();
 
+	/** The memory budget for all undo histories. */
+	private static long fgUndoMemoryBudget= UNLIMITED_UNDO_MEMORY_BUDGET;
+
+	/** Counter used to order the documents by their last edit. */
+	private static long fgEditCounter= 0;
+
+	/** Tells whether the memory budget is currently being enforced. */
+	private static boolean fgIsTrimming= false;
+
 	private DocumentUndoManagerRegistry() {
 		// 	Do not instantiate
 	}
@@ -105,4 +132,113 @@ public final class DocumentUndoManagerRegistry {
 		return record.undoManager;
 	}
 
+	/**
+	 * Sets the maximal number of bytes the undo histories of all connected
+	 * documents may hold together. If the budget is exceeded, the histories of
+	 * the least recently edited documents are discarded until the budget is met
+	 * again. The most recent change of the most recently edited document is
+	 * always kept.
+	 * <p>
+	 * The memory usage is an estimate based on the length of the recorded text,
+	 * see {@link DocumentUndoManager#getMemoryUsage()}.</p>
+	 *
+	 * @param budget the budget in bytes or {@link #UNLIMITED_UNDO_MEMORY_BUDGET}
+	 * @since 3.6
+	 */
+	public static synchronized void setUndoMemoryBudget(long budget) {
+		Assert.isLegal(budget >= 0 || budget == UNLIMITED_UNDO_MEMORY_BUDGET);
+		fgUndoMemoryBudget= budget;
+		enforceUndoMemoryBudget();
+	}
+
+	/**
+	 * Returns the maximal number of bytes the undo histories of all connected
+	 * documents may hold together.
+	 *
+	 * @return the budget in bytes or {@link #UNLIMITED_UNDO_MEMORY_BUDGET}
+	 * @since 3.6
+	 */
+	public static synchronized long getUndoMemoryBudget() {
+		return fgUndoMemoryBudget;
+	}
+
+	/**
+	 * Returns the estimated number of bytes held by the undo histories of all
+	 * connected documents.
+	 *
+	 * @return the estimated memory usage in bytes
+	 * @since 3.6
+	 */
+	public static synchronized long getUndoMemoryUsage() {
+		long usage= 0;
+		for (Record record : fgFactory.values())
+			usage+= record.undoManager.getMemoryUsage();
+		return usage;
+	}
+
+	/**
+	 * Returns the estimated number of bytes held by the undo history of the
+	 * given document.
+	 *
+	 * @param document the document
+	 * @return the estimated memory usage in bytes or <code>0</code> if the
+	 *         document is not connected
+	 * @since 3.6
+	 */
+	public static synchronized long getUndoMemoryUsage(IDocument document) {
+		Assert.isNotNull(document);
+		Record record= fgFactory.get(document);
+		if (record == null)
+			return 0;
+		return record.undoManager.getMemoryUsage();
+	}
+
+	/**
+	 * Informs this registry that the undo history of the given document has
+	 * changed.
+	 *
+	 * @param document the document
+	 * @param undoManager the undo manager whose history changed
+	 * @since 3.6
+	 */
+	static synchronized void undoHistoryChanged(IDocument document, DocumentUndoManager undoManager) {
+		Record record= fgFactory.get(document);
+		if (record == null || record.undoManager != undoManager)
+			return;
+		record.lastEdit= ++fgEditCounter;
+		enforceUndoMemoryBudget();
+	}
+
+	/**
+	 * Discards undo history, starting with the least recently edited document,
+	 * until the undo memory budget is met.
+	 *
+	 * @since 3.6
+	 */
+	private static void enforceUndoMemoryBudget() {
+		if (fgUndoMemoryBudget == UNLIMITED_UNDO_MEMORY_BUDGET || fgIsTrimming)
+			return;
+
+		long usage= getUndoMemoryUsage();
+		if (usage <= fgUndoMemoryBudget)
+			return;
+
+		List<Record> records= new ArrayList<>(fgFactory.values());
+		records.sort((r1, r2) -> Long.compare(r1.lastEdit, r2.lastEdit));
+		fgIsTrimming= true;
+		try {
+			for (int i= 0; i < records.size() && usage > fgUndoMemoryBudget; i++) {
+				DocumentUndoManager undoManager= records.get(i).undoManager;
+				long recordUsage= undoManager.getMemoryUsage();
+				if (i < records.size() - 1)
+					undoManager.trimUndoHistory(0);
+				else
+					undoManager.trimUndoHistory(Math.max(1, fgUndoMemoryBudget - (usage - recordUsage)));
+				usage+= undoManager.getMemoryUsage() - recordUsage;
+			}
+		} finally {
+			fgIsTrimming= false;
+		}
+	}
+
 }
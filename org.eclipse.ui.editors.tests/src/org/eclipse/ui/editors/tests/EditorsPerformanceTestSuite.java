@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2005, 2008 IBM Corporation and others.
+ * Copyright (c) 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -8,32 +8,22 @@
  * Contributors:
  *     IBM Corporation - initial API and implementation
  *******************************************************************************/
-package org.eclipse.ui.internal.texteditor.quickdiff.compare.equivalence;
+package org.eclipse.ui.editors.tests;
+
+import org.junit.runner.RunWith;
+import org.junit.runners.Suite;
+import org.junit.runners.Suite.SuiteClasses;
 
 
 /**
- * @since 3.2
+ * Performance test suite for org.eclipse.ui.editors.
+ *
+ * @since 3.11
  */
-public final class IntHash extends Hash {
-
-	private final int fHash;
-
-	public IntHash(int hash) {
-		fHash= hash;
-	}
-
-	@Override
-	public boolean equals(Object obj) {
-		if (obj instanceof IntHash) {
-			return fHash == ((IntHash) obj).fHash;
-		}
-
-		return false;
-	}
-	
-	@Override
-	public int hashCode() {
-		return fHash;
-	}
-
+@RunWith(Suite.class)
+@SuiteClasses({
+		TextFileBufferManagerPerformanceTest.class
+})
+public class EditorsPerformanceTestSuite {
+	// see @SuiteClasses
 }
@@ -25,8 +25,10 @@ import org.junit.runners.Suite.SuiteClasses;
 		ChainedPreferenceStoreTest.class,
 		EncodingChangeTests.class,
 		GotoLineTest.class,
+		LastSaveContentCacheTest.class,
 		SegmentedModeTest.class,
 		MarkerAnnotationOrderTest.class,
+		MarkerAnnotationModelTest.class,
 		ZoomTest.class
 })
 public class EditorsTestSuite {
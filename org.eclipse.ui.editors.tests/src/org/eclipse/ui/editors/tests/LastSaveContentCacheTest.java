@@ -0,0 +1,140 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.ui.editors.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.eclipse.core.runtime.CoreException;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IFolder;
+import org.eclipse.core.resources.IStorage;
+
+import org.eclipse.core.filebuffers.tests.ResourceHelper;
+
+import org.eclipse.text.tests.Accessor;
+
+import org.eclipse.ui.internal.editors.quickdiff.LastSaveReferenceProvider;
+
+/**
+ * Tests the cache of saved file contents used by the last save quick diff reference.
+ *
+ * @since 3.11
+ */
+public class LastSaveContentCacheTest {
+
+	private static final String PROJECT= "LastSaveContentCacheTestProject";
+
+	private static final String CACHE= "org.eclipse.ui.internal.editors.quickdiff.LastSaveContentCache";
+
+	private static final String KEY= CACHE + "$FileKey";
+
+	private Accessor fCache;
+
+	private Class<?> fKeyClass;
+
+	private IFile fFile;
+
+	@Before
+	public void setUp() throws Exception {
+		ClassLoader loader= LastSaveReferenceProvider.class.getClassLoader();
+		fCache= new Accessor(CACHE, loader);
+		fKeyClass= Class.forName(KEY, false, loader);
+		IFolder folder= ResourceHelper.createFolder(PROJECT + "/folder/");
+		fFile= ResourceHelper.createFile(folder, "file.txt", "saved\n");
+	}
+
+	@After
+	public void tearDown() {
+		ResourceHelper.deleteProject(PROJECT);
+	}
+
+	private Object getKey() throws CoreException {
+		return fCache.invoke("getKey", new Class[] { IStorage.class, String.class }, new Object[] { fFile, fFile.getCharset() });
+	}
+
+	private String get(Object key) {
+		return (String) fCache.invoke("get", new Class[] { fKeyClass }, new Object[] { key });
+	}
+
+	private String share(Object key, String content) {
+		return (String) fCache.invoke("share", new Class[] { fKeyClass, String.class }, new Object[] { key, content });
+	}
+
+	private void save(String content) throws CoreException {
+		fFile.setContents(new ByteArrayInputStream(content.getBytes()), true, false, null);
+	}
+
+	@Test
+	public void testHit() throws Exception {
+		String content= "saved\n";
+		Object key= getKey();
+		assertNotNull(key);
+		assertSame(content, share(key, content));
+
+		assertSame(content, get(getKey()));
+	}
+
+	@Test
+	public void testSharedContents() throws Exception {
+		String content= "shared\n";
+		assertSame(content, share(null, content));
+
+		String copy= new String(content);
+		assertNotSame(content, copy);
+		assertSame(content, share(getKey(), copy));
+		assertSame(content, get(getKey()));
+	}
+
+	@Test
+	public void testMissAfterSave() throws Exception {
+		String content= "saved\n";
+		Object key= getKey();
+		share(key, content);
+
+		save("changed\n");
+		Object newKey= getKey();
+		assertNotNull(newKey);
+		assertNull(get(newKey));
+		assertSame(content, get(key));
+	}
+
+	@Test
+	public void testEviction() throws Exception {
+		int maxFiles= new Accessor(CACHE, LastSaveReferenceProvider.class.getClassLoader()).getInt("MAX_FILES");
+		List<Object> keys= new ArrayList<>();
+		List<String> contents= new ArrayList<>();
+		for (int i= 0; i <= maxFiles; i++) {
+			String content= "state " + i + "\n";
+			save(content);
+			Object key= getKey();
+			keys.add(key);
+			// keep the contents strongly reachable
+			contents.add(share(key, content));
+		}
+
+		assertNull(get(keys.get(0)));
+		for (int i= 1; i <= maxFiles; i++)
+			assertEquals(contents.get(i), get(keys.get(i)));
+	}
+}
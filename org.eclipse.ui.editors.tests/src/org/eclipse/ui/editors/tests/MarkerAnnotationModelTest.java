@@ -0,0 +1,105 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.ui.editors.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.eclipse.core.runtime.CoreException;
+
+import org.eclipse.core.resources.IMarker;
+import org.eclipse.core.resources.ResourcesPlugin;
+
+import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.Position;
+
+import org.eclipse.ui.texteditor.AbstractMarkerAnnotationModel;
+import org.eclipse.ui.texteditor.MarkerAnnotation;
+
+/**
+ * Tests the mapping from markers to annotations of {@link AbstractMarkerAnnotationModel}.
+ *
+ * @since 3.11
+ */
+public class MarkerAnnotationModelTest {
+
+	private static final String TYPE= "org.eclipse.ui.workbench.texteditor.error"; //$NON-NLS-1$
+
+	/**
+	 * Model which does not retrieve any markers on its own.
+	 */
+	private static class TestMarkerAnnotationModel extends AbstractMarkerAnnotationModel {
+
+		@Override
+		protected IMarker[] retrieveMarkers() throws CoreException {
+			return null;
+		}
+
+		@Override
+		protected void deleteMarkers(IMarker[] markers) throws CoreException {
+		}
+
+		@Override
+		protected void listenToMarkerChanges(boolean listen) {
+		}
+
+		@Override
+		protected boolean isAcceptable(IMarker marker) {
+			return true;
+		}
+	}
+
+	private IMarker fMarker;
+
+	private Document fDocument;
+
+	private TestMarkerAnnotationModel fModel;
+
+
+	@Before
+	public void setUp() throws CoreException {
+		fMarker= ResourcesPlugin.getWorkspace().getRoot().createMarker(IMarker.PROBLEM);
+		fDocument= new Document("line 1\nline 2\n"); //$NON-NLS-1$
+		fModel= new TestMarkerAnnotationModel();
+		fModel.connect(fDocument);
+	}
+
+	@After
+	public void tearDown() throws CoreException {
+		fModel.disconnect(fDocument);
+		fMarker.delete();
+	}
+
+	@Test
+	public void testRemoveReplacedAnnotation() throws Exception {
+		MarkerAnnotation first= new MarkerAnnotation(TYPE, fMarker);
+		fModel.addAnnotation(first, new Position(0, 4));
+		assertSame(first, fModel.getMarkerAnnotation(fMarker));
+
+		// a second annotation for the same marker replaces the first one in the mapping
+		MarkerAnnotation second= new MarkerAnnotation(TYPE, fMarker);
+		fModel.addAnnotation(second, new Position(7, 4));
+		assertSame(second, fModel.getMarkerAnnotation(fMarker));
+
+		// removing the replaced annotation keeps the mapping of the second one
+		fModel.removeAnnotation(first);
+		assertSame(second, fModel.getMarkerAnnotation(fMarker));
+		assertEquals(new Position(7, 4), fModel.getMarkerPosition(fMarker));
+
+		fModel.removeAnnotation(second);
+		assertNull(fModel.getMarkerAnnotation(fMarker));
+	}
+}
@@ -0,0 +1,174 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.ui.editors.tests;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.eclipse.test.performance.Performance;
+import org.eclipse.test.performance.PerformanceMeter;
+
+import org.eclipse.core.runtime.IPath;
+
+import org.eclipse.core.resources.IFolder;
+
+import org.eclipse.core.filebuffers.FileBuffers;
+import org.eclipse.core.filebuffers.ITextFileBuffer;
+import org.eclipse.core.filebuffers.ITextFileBufferManager;
+import org.eclipse.core.filebuffers.LocationKind;
+import org.eclipse.core.filebuffers.tests.ResourceHelper;
+
+/**
+ * Measures the registries of the text file buffer manager while several threads look up,
+ * connect and disconnect file buffers at the same time.
+ *
+ * @since 3.11
+ */
+public class TextFileBufferManagerPerformanceTest {
+
+	private static final String PROJECT= "TextFileBufferManagerPerformanceTestProject";
+
+	private static final int FILES= 200;
+
+	private static final int THREADS= 4;
+
+	private static final int ITERATIONS= 200;
+
+	private static final int WARM_UP_RUNS= 2;
+
+	private static final int MEASURED_RUNS= 5;
+
+	/**
+	 * A task run by each thread for each file.
+	 */
+	private interface Task {
+		void run(IPath location) throws Exception;
+	}
+
+	private ITextFileBufferManager fManager;
+
+	private IPath[] fLocations;
+
+
+	@Before
+	public void setUp() throws Exception {
+		fManager= FileBuffers.getTextFileBufferManager();
+		IFolder folder= ResourceHelper.createFolder(PROJECT + "/folder/");
+		fLocations= new IPath[FILES];
+		for (int i= 0; i < FILES; i++) {
+			fLocations[i]= ResourceHelper.createFile(folder, "file" + i + ".txt", "content " + i + "\n").getFullPath();
+			// keep the file buffers registered, so that only the registries are measured
+			fManager.connect(fLocations[i], LocationKind.IFILE, null);
+		}
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		for (int i= 0; i < FILES; i++)
+			fManager.disconnect(fLocations[i], LocationKind.IFILE, null);
+		ResourceHelper.deleteProject(PROJECT);
+	}
+
+	@Test
+	public void testConcurrentLookups() throws Exception {
+		measure("concurrentLookups", new Task() {
+			@Override
+			public void run(IPath location) {
+				ITextFileBuffer fileBuffer= fManager.getTextFileBuffer(location, LocationKind.IFILE);
+				assertNotNull(fileBuffer);
+				assertSame(fileBuffer, fManager.getTextFileBuffer(fileBuffer.getDocument()));
+			}
+		});
+	}
+
+	@Test
+	public void testConcurrentConnects() throws Exception {
+		measure("concurrentConnects", new Task() {
+			@Override
+			public void run(IPath location) throws Exception {
+				fManager.connect(location, LocationKind.IFILE, null);
+				try {
+					assertNotNull(fManager.getTextFileBuffer(location, LocationKind.IFILE));
+				} finally {
+					fManager.disconnect(location, LocationKind.IFILE, null);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Runs the given task for all files in several threads at the same time.
+	 *
+	 * @param scenario the name of the scenario
+	 * @param task the task
+	 * @throws Exception if the task fails in one of the threads
+	 */
+	private void measure(String scenario, Task task) throws Exception {
+		for (int i= 0; i < WARM_UP_RUNS; i++)
+			runConcurrently(task);
+
+		Performance performance= Performance.getDefault();
+		PerformanceMeter meter= performance.createPerformanceMeter(performance.getDefaultScenarioId(getClass(), scenario));
+		try {
+			for (int i= 0; i < MEASURED_RUNS; i++) {
+				meter.start();
+				runConcurrently(task);
+				meter.stop();
+			}
+			meter.commit();
+			performance.assertPerformance(meter);
+		} finally {
+			meter.dispose();
+		}
+	}
+
+	private void runConcurrently(final Task task) throws Exception {
+		final CountDownLatch start= new CountDownLatch(1);
+		final Throwable[] failures= new Throwable[THREADS];
+		Thread[] threads= new Thread[THREADS];
+		for (int i= 0; i < THREADS; i++) {
+			final int index= i;
+			threads[i]= new Thread("TextFileBufferManagerPerformanceTest " + i) {
+				@Override
+				public void run() {
+					try {
+						start.await();
+						for (int j= 0; j < ITERATIONS; j++) {
+							// the threads start at different files
+							for (int k= 0; k < FILES; k++)
+								task.run(fLocations[(index * FILES / THREADS + j + k) % FILES]);
+						}
+					} catch (Throwable x) {
+						failures[index]= x;
+					}
+				}
+			};
+			threads[i].start();
+		}
+
+		start.countDown();
+		for (int i= 0; i < THREADS; i++)
+			threads[i].join();
+
+		for (int i= 0; i < THREADS; i++) {
+			if (failures[i] instanceof Error)
+				throw (Error) failures[i];
+			if (failures[i] != null)
+				throw (Exception) failures[i];
+		}
+	}
+}
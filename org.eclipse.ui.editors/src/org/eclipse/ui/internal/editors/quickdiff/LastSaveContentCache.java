@@ -0,0 +1,189 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.ui.internal.editors.quickdiff;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.eclipse.core.runtime.IPath;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IStorage;
+
+
+/**
+ * Shares the saved contents of files between the reference documents of all
+ * {@link LastSaveReferenceProvider}s.
+ * <p>
+ * Contents are keyed by their hash code, so that reference documents of editors
+ * showing the same saved contents share one string instead of each holding a
+ * copy. In addition, the contents of workspace files are remembered by path,
+ * modification stamp and charset, so that connecting another editor to an
+ * unchanged file does not read it from disk again.
+ * </p>
+ * <p>
+ * The cache only holds weak references to the contents, i.e. it never keeps
+ * contents alive that are no longer used by a reference document, and the number
+ * of remembered files is bounded.
+ * </p>
+ *
+ * @since 3.10
+ */
+final class LastSaveContentCache {
+
+	/** The maximal number of files whose contents are remembered. */
+	private static final int MAX_FILES= 64;
+
+	/**
+	 * Identifies one saved state of a workspace file.
+	 */
+	static final class FileKey {
+
+		private final IPath fPath;
+		private final long fModificationStamp;
+		private final String fCharset;
+
+		private FileKey(IPath path, long modificationStamp, String charset) {
+			fPath= path;
+			fModificationStamp= modificationStamp;
+			fCharset= charset;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof FileKey))
+				return false;
+			FileKey other= (FileKey) obj;
+			return fModificationStamp == other.fModificationStamp && fPath.equals(other.fPath)
+					&& (fCharset == null ? other.fCharset == null : fCharset.equals(other.fCharset));
+		}
+
+		@Override
+		public int hashCode() {
+			return fPath.hashCode() ^ (int) fModificationStamp;
+		}
+	}
+
+	/**
+	 * A weak reference to shared contents that remembers the hash code it is
+	 * registered under.
+	 */
+	private static final class ContentReference extends WeakReference<String> {
+
+		private final int fHash;
+
+		ContentReference(String content, ReferenceQueue<String> queue) {
+			super(content, queue);
+			fHash= content.hashCode();
+		}
+	}
+
+	/** The shared contents by hash code. */
+	private static final Map<Integer, ContentReference> fgContents= new HashMap<>();
+	/** The queue of cleared content references. */
+	private static final ReferenceQueue<String> fgQueue= new ReferenceQueue<>();
+	/** The contents of recently read or saved files, in access order. */
+	private static final Map<FileKey, ContentReference> fgFiles= new LinkedHashMap<FileKey, ContentReference>(16, 0.75f, true) {
+		private static final long serialVersionUID= 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<FileKey, ContentReference> eldest) {
+			return size() > MAX_FILES;
+		}
+	};
+
+	private LastSaveContentCache() {
+	}
+
+	/**
+	 * Returns the key for the current state of the given storage.
+	 *
+	 * @param storage the storage
+	 * @param charset the charset used to decode the storage, or <code>null</code>
+	 * @return the key, or <code>null</code> if the storage is not a local workspace file
+	 *         whose state can be identified
+	 */
+	static FileKey getKey(IStorage storage, String charset) {
+		if (!(storage instanceof IFile))
+			return null;
+		IFile file= (IFile) storage;
+		long stamp= file.getModificationStamp();
+		if (stamp == IResource.NULL_STAMP || !file.isSynchronized(IResource.DEPTH_ZERO))
+			return null;
+		return new FileKey(file.getFullPath(), stamp, charset);
+	}
+
+	/**
+	 * Returns the contents remembered for the given file state.
+	 *
+	 * @param key the file state, may be <code>null</code>
+	 * @return the contents, or <code>null</code> if none are known
+	 */
+	static synchronized String get(FileKey key) {
+		if (key == null)
+			return null;
+		ContentReference reference= fgFiles.get(key);
+		return reference == null ? null : reference.get();
+	}
+
+	/**
+	 * Returns shared contents equal to the given contents and remembers them for
+	 * the given file state.
+	 *
+	 * @param key the file state, may be <code>null</code>
+	 * @param content the contents
+	 * @return a string equal to <code>content</code> that may be shared with other
+	 *         reference documents
+	 */
+	static synchronized String share(FileKey key, String content) {
+		purge();
+
+		Integer hash= Integer.valueOf(content.hashCode());
+		ContentReference reference= fgContents.get(hash);
+		String shared= reference == null ? null : reference.get();
+		if (shared == null || !shared.equals(content)) {
+			// on a hash collision the newer contents win
+			reference= new ContentReference(content, fgQueue);
+			fgContents.put(hash, reference);
+			shared= content;
+		}
+
+		if (key != null)
+			fgFiles.put(key, reference);
+		return shared;
+	}
+
+	/**
+	 * Removes the cleared references.
+	 */
+	private static void purge() {
+		ContentReference reference= (ContentReference) fgQueue.poll();
+		if (reference == null)
+			return;
+
+		do {
+			Integer hash= Integer.valueOf(reference.fHash);
+			if (fgContents.get(hash) == reference)
+				fgContents.remove(hash);
+			reference= (ContentReference) fgQueue.poll();
+		} while (reference != null);
+
+		for (Iterator<ContentReference> iter= fgFiles.values().iterator(); iter.hasNext();) {
+			if (iter.next().get() == null)
+				iter.remove();
+		}
+	}
+}
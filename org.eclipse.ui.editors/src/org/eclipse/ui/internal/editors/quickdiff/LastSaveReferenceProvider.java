@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2010 IBM Corporation and others.
+ * Copyright (c) 2000, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -34,7 +34,10 @@ import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IStorage;
 
 import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.DocumentSnapshot;
 import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentExtension4;
+import org.eclipse.jface.text.IDocumentExtension5;
 
 import org.eclipse.ui.IEditorInput;
 import org.eclipse.ui.IStorageEditorInput;
@@ -42,6 +45,7 @@ import org.eclipse.ui.IWorkbenchPartSite;
 import org.eclipse.ui.IWorkbenchWindow;
 
 import org.eclipse.ui.texteditor.IDocumentProvider;
+import org.eclipse.ui.texteditor.IDocumentProviderExtension3;
 import org.eclipse.ui.texteditor.IElementStateListener;
 import org.eclipse.ui.texteditor.ITextEditor;
 import org.eclipse.ui.texteditor.quickdiff.IQuickDiffReferenceProvider;
@@ -49,6 +53,8 @@ import org.eclipse.ui.texteditor.quickdiff.IQuickDiffReferenceProvider;
 import org.eclipse.ui.editors.text.EditorsUI;
 import org.eclipse.ui.editors.text.IStorageDocumentProvider;
 
+import org.eclipse.ui.internal.editors.quickdiff.LastSaveContentCache.FileKey;
+
 /**
  * Default provider for the quickdiff display - the saved document is taken as
  * the reference.
@@ -92,17 +98,30 @@ public class LastSaveReferenceProvider implements IQuickDiffReferenceProvider, I
 	 */
 	private final class ReadJob extends Job {
 
+		/** The document that has just been saved or reverted, or <code>null</code>. */
+		private final IDocument fSavedDocument;
+		/** The modification stamp of <code>fSavedDocument</code> in its saved state. */
+		private final long fSavedStamp;
+
 		/**
 		 * Creates a new instance.
+		 *
+		 * @param savedDocument the document that is in sync with the storage, or
+		 *            <code>null</code> if the storage has to be read
+		 * @param savedStamp the modification stamp of <code>savedDocument</code> when it was
+		 *            in sync with the storage
+		 * @since 3.10
 		 */
-		public ReadJob() {
+		public ReadJob(IDocument savedDocument, long savedStamp) {
 			super(QuickDiffMessages.getString("LastSaveReferenceProvider.LastSaveReferenceProvider.readJob.label")); //$NON-NLS-1$
+			fSavedDocument= savedDocument;
+			fSavedStamp= savedStamp;
 			setSystem(true);
 			setPriority(SHORT);
 		}
 
 		/**
-		 * Calls {@link LastSaveReferenceProvider#readDocument(IProgressMonitor, boolean)} and
+		 * Calls {@link LastSaveReferenceProvider#readDocument(IProgressMonitor, boolean, IDocument, long)} and
 		 * returns {@link Status#OK_STATUS}.
 		 *
 		 * {@inheritDoc}
@@ -112,7 +131,7 @@ public class LastSaveReferenceProvider implements IQuickDiffReferenceProvider, I
 		 */
 		@Override
 		protected IStatus run(IProgressMonitor monitor) {
-			readDocument(monitor, false);
+			readDocument(monitor, false, fSavedDocument, fSavedStamp);
 			return Status.OK_STATUS;
 		}
 	}
@@ -120,7 +139,7 @@ public class LastSaveReferenceProvider implements IQuickDiffReferenceProvider, I
 	@Override
 	public IDocument getReference(IProgressMonitor monitor) {
 		if (!fDocumentRead)
-			readDocument(monitor, true); // force reading it
+			readDocument(monitor, true, null, IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP); // force reading it
 		return fReference;
 	}
 
@@ -184,13 +203,23 @@ public class LastSaveReferenceProvider implements IQuickDiffReferenceProvider, I
 
 	/**
 	 * Reads in the saved document into <code>fReference</code>.
+	 * <p>
+	 * The contents are shared with other reference documents through
+	 * {@link LastSaveContentCache}. They are only read from the storage if neither
+	 * the saved document is still unchanged nor the cache knows the contents of the
+	 * storage.
+	 * </p>
 	 *
 	 * @param monitor a progress monitor, or <code>null</code>
 	 * @param force <code>true</code> if the reference document should also
 	 *        be read if the current document is <code>null</code>,<code>false</code>
 	 *        if it should only be updated if it already existed.
+	 * @param savedDocument the document that has just been saved or reverted, or
+	 *        <code>null</code> if the contents have to be read from the storage
+	 * @param savedStamp the modification stamp of <code>savedDocument</code> when it
+	 *        was in sync with the storage
 	 */
-	private void readDocument(IProgressMonitor monitor, boolean force) {
+	private void readDocument(IProgressMonitor monitor, boolean force, IDocument savedDocument, long savedStamp) {
 
 		// protect against concurrent disposal
 		IDocumentProvider prov= fDocumentProvider;
@@ -231,15 +260,18 @@ public class LastSaveReferenceProvider implements IQuickDiffReferenceProvider, I
 				try {
 					lockDocument(monitor, jobMgr, rule);
 
-					String encoding;
-					if (storage instanceof IEncodedStorage)
-						encoding= ((IEncodedStorage) storage).getCharset();
-					else
-						encoding= null;
-
-					boolean skipUTF8BOM= isUTF8BOM(encoding, storage);
-
-					setDocumentContent(doc, storage, encoding, monitor, skipUTF8BOM);
+					String encoding= getEncoding(storage);
+					FileKey key= LastSaveContentCache.getKey(storage, encoding);
+					String content= getSavedContent(savedDocument, savedStamp);
+					if (content == null)
+						content= LastSaveContentCache.get(key);
+					if (content == null) {
+						boolean skipUTF8BOM= isUTF8BOM(encoding, storage);
+						content= readContent(storage, encoding, monitor, skipUTF8BOM);
+					}
+
+					if (content != null)
+						doc.set(LastSaveContentCache.share(key, content));
 				} finally {
 					unlockDocument(jobMgr, rule);
 					fProgressMonitor= null;
@@ -273,8 +305,71 @@ public class LastSaveReferenceProvider implements IQuickDiffReferenceProvider, I
 		return null;
 	}
 
+	/**
+	 * Schedules a job that updates the reference document after the document of
+	 * the editor input has been saved or reverted. If the document is in sync with
+	 * its storage, the job takes a snapshot of the document instead of reading the
+	 * storage again, unless the document has been modified in the meantime.
+	 * <p>
+	 * This is called from element state listener notifications, so it only remembers
+	 * the document and its modification stamp and leaves all content access to the job.
+	 * </p>
+	 */
+	private void scheduleReadJob() {
+		IDocumentProvider provider= fDocumentProvider;
+		IEditorInput input= fEditorInput;
+
+		IDocument document= null;
+		long stamp= IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP;
+		if (input instanceof IStorageEditorInput && isSaved(provider, input)) {
+			document= provider.getDocument(input);
+			if (document instanceof IDocumentExtension4)
+				stamp= ((IDocumentExtension4) document).getModificationStamp();
+		}
+
+		new ReadJob(document, stamp).schedule();
+	}
+
+	/**
+	 * Tells whether the document of the given element has no unsaved changes and is
+	 * in sync with its storage.
+	 *
+	 * @param provider the document provider, may be <code>null</code>
+	 * @param element the element
+	 * @return <code>true</code> if the document contents are the saved contents
+	 */
+	private static boolean isSaved(IDocumentProvider provider, Object element) {
+		if (provider == null || provider.canSaveDocument(element))
+			return false;
+		return !(provider instanceof IDocumentProviderExtension3) || ((IDocumentProviderExtension3) provider).isSynchronized(element);
+	}
+
 	/* utility methods */
 
+	private static String getEncoding(IStorage storage) throws CoreException {
+		if (storage instanceof IEncodedStorage)
+			return ((IEncodedStorage) storage).getCharset();
+		return null;
+	}
+
+	/**
+	 * Returns the contents of the given document if it has not been modified since
+	 * it was in sync with its storage.
+	 *
+	 * @param document the saved document, may be <code>null</code>
+	 * @param savedStamp the modification stamp of the document when it was in sync
+	 *            with its storage
+	 * @return the saved contents, or <code>null</code> if they have to be read from
+	 *         the storage
+	 * @since 3.10
+	 */
+	private static String getSavedContent(IDocument document, long savedStamp) {
+		if (savedStamp == IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP || !(document instanceof IDocumentExtension5))
+			return null;
+		DocumentSnapshot snapshot= ((IDocumentExtension5) document).getSnapshot();
+		return snapshot.getModificationStamp() == savedStamp ? snapshot.get() : null;
+	}
+
 	private void lockDocument(IProgressMonitor monitor, IJobManager jobMgr, ISchedulingRule rule) {
 		if (rule != null) {
 			jobMgr.beginRule(rule, monitor);
@@ -343,17 +438,16 @@ public class LastSaveReferenceProvider implements IQuickDiffReferenceProvider, I
 	}
 
 	/**
-	 * Initializes the given document with the given stream using the given
-	 * encoding.
+	 * Reads the contents of the given storage using the given encoding.
 	 *
-	 * @param document the document to be initialized
 	 * @param storage the storage which delivers the document content
 	 * @param encoding the character encoding for reading the given stream
 	 * @param monitor a progress monitor for cancellation, or <code>null</code>
 	 * @param skipUTF8BOM whether to skip three bytes before reading the stream
+	 * @return the contents, or <code>null</code> if reading has been canceled
 	 * @exception CoreException if the given storage can not be accessed or read
 	 */
-	private static void setDocumentContent(IDocument document, IStorage storage, String encoding, IProgressMonitor monitor, boolean skipUTF8BOM) throws CoreException {
+	private static String readContent(IStorage storage, String encoding, IProgressMonitor monitor, boolean skipUTF8BOM) throws CoreException {
 		Reader in= null;
 		InputStream contentStream= storage.getContents();
 		try {
@@ -376,13 +470,13 @@ public class LastSaveReferenceProvider implements IQuickDiffReferenceProvider, I
 			int n= in.read(readBuffer);
 			while (n > 0) {
 				if (monitor != null && monitor.isCanceled())
-					return;
+					return null;
 
 				buffer.append(readBuffer, 0, n);
 				n= in.read(readBuffer);
 			}
 
-			document.set(buffer.toString());
+			return buffer.toString();
 
 		} catch (IOException x) {
 			throw new CoreException(new Status(IStatus.ERROR, EditorsUI.PLUGIN_ID, IStatus.OK, "Failed to access or read underlying storage", x)); //$NON-NLS-1$
@@ -437,7 +531,7 @@ public class LastSaveReferenceProvider implements IQuickDiffReferenceProvider, I
 	public void elementDirtyStateChanged(Object element, boolean isDirty) {
 		if (!isDirty && element == fEditorInput) {
 			// document has been saved or reverted - recreate reference
-			new ReadJob().schedule();
+			scheduleReadJob();
 		}
 	}
 
@@ -449,7 +543,7 @@ public class LastSaveReferenceProvider implements IQuickDiffReferenceProvider, I
 	public void elementContentReplaced(Object element) {
 		if (element == fEditorInput) {
 			// document has been reverted or replaced
-			new ReadJob().schedule();
+			scheduleReadJob();
 		}
 	}
 
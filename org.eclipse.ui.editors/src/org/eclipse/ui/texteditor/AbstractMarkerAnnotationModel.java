@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2015 IBM Corporation and others.
+ * Copyright (c) 2000, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -11,10 +11,15 @@
 package org.eclipse.ui.texteditor;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.osgi.framework.Bundle;
 
@@ -75,6 +80,11 @@ public abstract class AbstractMarkerAnnotationModel extends AnnotationModel impl
 	private List<IMarkerUpdater> fInstantiatedMarkerUpdaters= null;
 	/** List of registered but not yet instantiated marker updaters */
 	private List<IConfigurationElement> fMarkerUpdaterSpecifications= null;
+	/**
+	 * The marker annotations managed by this model, by marker. Guarded by itself.
+	 * @since 3.10
+	 */
+	private final Map<IMarker, MarkerAnnotation> fMarkerAnnotations= new HashMap<>();
 
 	private static final String ID= "id"; //$NON-NLS-1$
 
@@ -237,6 +247,98 @@ public abstract class AbstractMarkerAnnotationModel extends AnnotationModel impl
 		}
 	}
 
+	/**
+	 * Creates an annotation for the given marker and puts it into the given map of
+	 * annotations to be added to this model. Does nothing if the marker is not acceptable
+	 * to this model or its position is invalid.
+	 *
+	 * @param marker the marker
+	 * @param annotationsToAdd the annotations to be added, with their positions
+	 * @since 3.10
+	 */
+	private void collectMarkerAnnotation(IMarker marker, Map<Annotation, Position> annotationsToAdd) {
+		if (isAcceptable(marker)) {
+			Position p= createPositionFromMarker(marker);
+			if (p != null && isValidPosition(p)) {
+				MarkerAnnotation annotation= createMarkerAnnotation(marker);
+				if (annotation != null && !annotationsToAdd.containsKey(annotation))
+					annotationsToAdd.put(annotation, p);
+			}
+		}
+	}
+
+	/**
+	 * Tells whether the given position can be added to the connected document.
+	 *
+	 * @param position the position
+	 * @return <code>true</code> if the position is valid or this model is not connected
+	 * @since 3.10
+	 */
+	private boolean isValidPosition(Position position) {
+		if (fDocument == null)
+			return true;
+		return position.getOffset() >= 0 && position.getLength() >= 0 && position.getOffset() + position.getLength() <= fDocument.getLength();
+	}
+
+	/**
+	 * Removes and adds the given annotations with one call to
+	 * {@link #replaceAnnotations(Annotation[], Map, boolean)}, so that their positions are
+	 * updated in one pass. Does not fire a model change event.
+	 *
+	 * @param annotationsToRemove the annotations to be removed
+	 * @param annotationsToAdd the annotations to be added, with valid positions
+	 * @since 3.10
+	 */
+	private void replaceMarkerAnnotations(Collection<Annotation> annotationsToRemove, Map<Annotation, Position> annotationsToAdd) {
+		if (annotationsToRemove.isEmpty() && annotationsToAdd.isEmpty())
+			return;
+
+		try {
+			replaceAnnotations(annotationsToRemove.toArray(new Annotation[annotationsToRemove.size()]), annotationsToAdd, false);
+		} catch (BadLocationException x) {
+			// cannot happen, the positions have been checked
+		}
+	}
+
+	/**
+	 * Updates the annotations of the given markers. The annotations of added and removed
+	 * markers are added and removed in one batch. Does not fire a model change event.
+	 *
+	 * @param added the markers which have been added
+	 * @param removed the markers which have been removed
+	 * @param changed the markers which have changed
+	 * @since 3.10
+	 */
+	void updateMarkerAnnotations(Iterable<IMarker> added, Iterable<IMarker> removed, Iterable<IMarker> changed) {
+		List<Annotation> toRemove= new ArrayList<>();
+		Map<Annotation, Position> toAdd= new HashMap<>();
+
+		for (IMarker marker : removed) {
+			MarkerAnnotation a= getMarkerAnnotation(marker);
+			if (a != null)
+				toRemove.add(a);
+		}
+
+		for (IMarker marker : added) {
+			if (getMarkerAnnotation(marker) == null)
+				collectMarkerAnnotation(marker, toAdd);
+		}
+
+		for (IMarker marker : changed) {
+			MarkerAnnotation a= getMarkerAnnotation(marker);
+			if (a != null) {
+				Position p= createPositionFromMarker(marker);
+				if (p != null) {
+					a.update();
+					modifyAnnotationPosition(a, p, false);
+				}
+			} else
+				collectMarkerAnnotation(marker, toAdd);
+		}
+
+		replaceMarkerAnnotations(toRemove, toAdd);
+	}
+
 	/**
 	 * Connects to the source of markers as marker change listener.
 	 * @see AnnotationModel#connected()
@@ -398,11 +500,11 @@ public abstract class AbstractMarkerAnnotationModel extends AnnotationModel impl
 				Annotation a= e.next();
 				if (a instanceof MarkerAnnotation)
 					markerAnnotations.add(a);
-
-				// remove annotations from annotation model
-				removeAnnotation(a, false);
 			}
 
+			// remove annotations from annotation model
+			super.removeAnnotations(annotations, false, modelInitiated);
+
 			if (markerAnnotations.size() > 0) {
 
 				if (modelInitiated) {
@@ -434,6 +536,51 @@ public abstract class AbstractMarkerAnnotationModel extends AnnotationModel impl
 		}
 	}
 
+	@Override
+	protected void addAnnotation(Annotation annotation, Position position, boolean fireModelChanged) throws BadLocationException {
+		if (!(annotation instanceof MarkerAnnotation) || getAnnotationMap().containsKey(annotation)) {
+			super.addAnnotation(annotation, position, fireModelChanged);
+			return;
+		}
+
+		// register the annotation first, listeners may look it up when the model fires
+		MarkerAnnotation markerAnnotation= (MarkerAnnotation) annotation;
+		synchronized (fMarkerAnnotations) {
+			fMarkerAnnotations.put(markerAnnotation.getMarker(), markerAnnotation);
+		}
+		try {
+			super.addAnnotation(annotation, position, fireModelChanged);
+		} finally {
+			if (!getAnnotationMap().containsKey(annotation)) {
+				synchronized (fMarkerAnnotations) {
+					if (fMarkerAnnotations.get(markerAnnotation.getMarker()) == markerAnnotation)
+						fMarkerAnnotations.remove(markerAnnotation.getMarker());
+				}
+			}
+		}
+	}
+
+	@Override
+	protected void removeAnnotation(Annotation annotation, boolean fireModelChanged) {
+		if (annotation instanceof SimpleMarkerAnnotation && getAnnotationMap().containsKey(annotation)) {
+			IMarker marker= ((SimpleMarkerAnnotation) annotation).getMarker();
+			synchronized (fMarkerAnnotations) {
+				// another annotation may have been registered for the marker in the meantime
+				if (fMarkerAnnotations.get(marker) == annotation)
+					fMarkerAnnotations.remove(marker);
+			}
+		}
+		super.removeAnnotation(annotation, fireModelChanged);
+	}
+
+	@Override
+	protected void removeAllAnnotations(boolean fireModelChanged) {
+		synchronized (fMarkerAnnotations) {
+			fMarkerAnnotations.clear();
+		}
+		super.removeAllAnnotations(fireModelChanged);
+	}
+
 	/**
 	 * Removes the annotation corresponding to the given marker. Does nothing
 	 * if there is no annotation for this marker.
@@ -450,22 +597,52 @@ public abstract class AbstractMarkerAnnotationModel extends AnnotationModel impl
 	/**
 	 * Re-populates this model with annotations for all markers retrieved
 	 * from the maker source via <code>retrieveMarkers</code>.
+	 * <p>
+	 * Annotations of markers that still exist are kept and updated, the annotations
+	 * of the other markers are removed and added in one batch.
+	 * </p>
 	 *
 	 * @throws CoreException if there is a problem getting the markers
 	 */
 	private void catchupWithMarkers() throws CoreException {
 
-		for (Iterator<Annotation> e=getAnnotationIterator(false); e.hasNext();) {
-			Annotation a= e.next();
-			if (a instanceof MarkerAnnotation)
-				removeAnnotation(a, false);
+		IMarker[] markers= retrieveMarkers();
+
+		Map<IMarker, MarkerAnnotation> obsolete;
+		synchronized (fMarkerAnnotations) {
+			obsolete= new HashMap<>(fMarkerAnnotations);
 		}
 
-		IMarker[] markers= retrieveMarkers();
+		List<Annotation> toRemove= new ArrayList<>();
+		Map<Annotation, Position> toAdd= new HashMap<>();
 		if (markers != null) {
-			for (int i= 0; i < markers.length; i++)
-				addMarkerAnnotation(markers[i]);
+			for (int i= 0; i < markers.length; i++) {
+				IMarker marker= markers[i];
+				MarkerAnnotation a= obsolete.remove(marker);
+				if (a == null) {
+					collectMarkerAnnotation(marker, toAdd);
+					continue;
+				}
+
+				Position p= isAcceptable(marker) ? createPositionFromMarker(marker) : null;
+				if (p == null || !isValidPosition(p)) {
+					toRemove.add(a);
+					continue;
+				}
+
+				a.update();
+				Position current= getAnnotationMap().get(a);
+				if (current != null && !current.isDeleted() && current.equals(p)) {
+					modifyAnnotation(a, false);
+				} else {
+					toRemove.add(a);
+					toAdd.put(a, p);
+				}
+			}
 		}
+		toRemove.addAll(obsolete.values());
+
+		replaceMarkerAnnotations(toRemove, toAdd);
 	}
 
 	/**
@@ -475,17 +652,9 @@ public abstract class AbstractMarkerAnnotationModel extends AnnotationModel impl
 	 * @return the annotation, or <code>null</code> if none
 	 */
 	public final MarkerAnnotation getMarkerAnnotation(IMarker marker) {
-		Iterator<Annotation> e= getAnnotationIterator(false);
-		while (e.hasNext()) {
-			Object o= e.next();
-			if (o instanceof MarkerAnnotation) {
-				MarkerAnnotation a= (MarkerAnnotation) o;
-				if (marker.equals(a.getMarker())) {
-					return a;
-				}
-			}
+		synchronized (fMarkerAnnotations) {
+			return fMarkerAnnotations.get(marker);
 		}
-		return null;
 	}
 
 	/**
@@ -624,6 +793,7 @@ public abstract class AbstractMarkerAnnotationModel extends AnnotationModel impl
 		try {
 
 			// update all markers with the positions known by the annotation model
+			Set<Annotation> deleted= new HashSet<>(fDeletedAnnotations);
 			for (Iterator<Annotation> e= getAnnotationIterator(false); e.hasNext();) {
 				Object o= e.next();
 				if (o instanceof MarkerAnnotation) {
@@ -631,7 +801,7 @@ public abstract class AbstractMarkerAnnotationModel extends AnnotationModel impl
 					IMarker marker= a.getMarker();
 					Position position= annotationMap.get(a);
 					if ( !updateMarker(marker, document, position)) {
-						if ( !fDeletedAnnotations.contains(a))
+						if (deleted.add(a))
 							fDeletedAnnotations.add(a);
 					}
 				}
@@ -654,6 +824,9 @@ public abstract class AbstractMarkerAnnotationModel extends AnnotationModel impl
 	 */
 	public void resetMarkers() {
 
+		Set<Annotation> toRemove= new LinkedHashSet<>();
+		Map<Annotation, Position> toAdd= new HashMap<>();
+
 		// re-initializes the positions from the markers
 		for (Iterator<Annotation> e= getAnnotationIterator(false); e.hasNext();) {
 			Object o= e.next();
@@ -661,12 +834,9 @@ public abstract class AbstractMarkerAnnotationModel extends AnnotationModel impl
 				MarkerAnnotation a= (MarkerAnnotation) o;
 				Position p= createPositionFromMarker(a.getMarker());
 				if (p != null) {
-					removeAnnotation(a, false);
-					try {
-						addAnnotation(a, p, false);
-					} catch (BadLocationException e1) {
-						// ignore invalid position
-					}
+					toRemove.add(a);
+					if (isValidPosition(p))
+						toAdd.put(a, p);
 				}
 			}
 		}
@@ -677,16 +847,14 @@ public abstract class AbstractMarkerAnnotationModel extends AnnotationModel impl
 			if (o instanceof MarkerAnnotation) {
 				MarkerAnnotation a= (MarkerAnnotation) o;
 				Position p= createPositionFromMarker(a.getMarker());
-				if (p != null)
-					try {
-						addAnnotation(a, p, false);
-					} catch (BadLocationException e1) {
-						// ignore invalid position
-					}
+				if (p != null && isValidPosition(p) && !toAdd.containsKey(a) && (toRemove.contains(a) || !getAnnotationMap().containsKey(a)))
+					toAdd.put(a, p);
 			}
 		}
 		fDeletedAnnotations.clear();
 
+		replaceMarkerAnnotations(toRemove, toAdd);
+
 		// fire annotation model changed
 		fireModelChanged();
 	}
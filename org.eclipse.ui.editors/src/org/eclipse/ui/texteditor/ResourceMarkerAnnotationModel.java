@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2015 IBM Corporation and others.
+ * Copyright (c) 2000, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -10,8 +10,8 @@
  *******************************************************************************/
 package org.eclipse.ui.texteditor;
 
-import java.util.HashSet;
-import java.util.Iterator;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.eclipse.core.runtime.Assert;
 import org.eclipse.core.runtime.CoreException;
@@ -26,9 +26,6 @@ import org.eclipse.core.resources.IResourceDelta;
 import org.eclipse.core.resources.IWorkspace;
 import org.eclipse.core.resources.IWorkspaceRunnable;
 
-import org.eclipse.jface.text.Position;
-import org.eclipse.jface.text.source.Annotation;
-
 
 
 /**
@@ -112,19 +109,21 @@ public class ResourceMarkerAnnotationModel extends AbstractMarkerAnnotationModel
 	}
 
 	/**
-	 * Updates this model to the given marker deltas.
+	 * Updates this model to the given marker deltas. The annotations of added
+	 * and removed markers are added and removed in one batch.
 	 *
 	 * @param markerDeltas the array of marker deltas
 	 */
 	private void batchedUpdate(IMarkerDelta[] markerDeltas) {
-		HashSet<IMarker> removedMarkers= new HashSet<>(markerDeltas.length);
-		HashSet<IMarker> modifiedMarkers= new HashSet<>(markerDeltas.length);
+		List<IMarker> addedMarkers= new ArrayList<>(markerDeltas.length);
+		List<IMarker> removedMarkers= new ArrayList<>(markerDeltas.length);
+		List<IMarker> modifiedMarkers= new ArrayList<>(markerDeltas.length);
 
 		for (int i= 0; i < markerDeltas.length; i++) {
 			IMarkerDelta delta= markerDeltas[i];
 			switch (delta.getKind()) {
 				case IResourceDelta.ADDED:
-					addMarkerAnnotation(delta.getMarker());
+					addedMarkers.add(delta.getMarker());
 					break;
 				case IResourceDelta.REMOVED:
 					removedMarkers.add(delta.getMarker());
@@ -135,36 +134,7 @@ public class ResourceMarkerAnnotationModel extends AbstractMarkerAnnotationModel
 				}
 		}
 
-		if (modifiedMarkers.isEmpty() && removedMarkers.isEmpty())
-			return;
-
-		Iterator<Annotation> e= getAnnotationIterator(false);
-		while (e.hasNext()) {
-			Object o= e.next();
-			if (o instanceof MarkerAnnotation) {
-				MarkerAnnotation a= (MarkerAnnotation)o;
-				IMarker marker= a.getMarker();
-
-				if (removedMarkers.remove(marker))
-					removeAnnotation(a, false);
-
-				if (modifiedMarkers.remove(marker)) {
-					Position p= createPositionFromMarker(marker);
-					if (p != null) {
-						a.update();
-						modifyAnnotationPosition(a, p, false);
-					}
-				}
-
-				if (modifiedMarkers.isEmpty() && removedMarkers.isEmpty())
-					return;
-
-			}
-		}
-
-		Iterator<IMarker> iter= modifiedMarkers.iterator();
-		while (iter.hasNext())
-			addMarkerAnnotation(iter.next());
+		updateMarkerAnnotations(addedMarkers, removedMarkers, modifiedMarkers);
 	}
 
 	@Override
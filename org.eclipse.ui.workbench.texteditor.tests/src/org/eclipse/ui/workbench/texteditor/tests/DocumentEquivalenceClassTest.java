@@ -0,0 +1,110 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.ui.workbench.texteditor.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.DocumentEvent;
+import org.eclipse.jface.text.IDocument;
+
+import org.eclipse.ui.internal.texteditor.quickdiff.compare.equivalence.DJBHashFunction;
+import org.eclipse.ui.internal.texteditor.quickdiff.compare.equivalence.DocumentEquivalenceClass;
+import org.eclipse.ui.internal.texteditor.quickdiff.compare.equivalence.IHashFunction;
+
+/**
+ * Tests {@link DocumentEquivalenceClass}.
+ *
+ * @since 3.11
+ */
+public class DocumentEquivalenceClassTest {
+
+	private final IHashFunction fHashFunction= new DJBHashFunction();
+
+	@Test
+	public void testHashes() throws Exception {
+		IDocument document= new Document("a\r\nb\n\na\rb");
+		DocumentEquivalenceClass equivalence= new DocumentEquivalenceClass(document, fHashFunction);
+		assertEquals(5, equivalence.getCount());
+		assertEquals(equivalence.getHash(0), equivalence.getHash(3));
+		assertEquals(equivalence.getHash(1), equivalence.getHash(4));
+		assertTrue(equivalence.getHash(0) != equivalence.getHash(1));
+		assertEquals(fHashFunction.computeHash("", 0, 0), equivalence.getHash(2));
+	}
+
+	@Test
+	public void testUpdate() throws Exception {
+		Random random= new Random(17);
+		IDocument document= new Document("first\nsecond\nthird\n");
+		DocumentEquivalenceClass equivalence= new DocumentEquivalenceClass(document, fHashFunction);
+
+		for (int i= 0; i < 500; i++) {
+			int offset= random.nextInt(document.getLength() + 1);
+			int length= random.nextInt(Math.min(20, document.getLength() - offset) + 1);
+			StringBuffer text= new StringBuffer();
+			for (int j= random.nextInt(4); j > 0; j--)
+				text.append("line").append(random.nextInt(10)).append(random.nextBoolean() ? "\n" : "");
+
+			equivalence.update(new DocumentEvent(document, offset, length, text.toString()));
+			document.replace(offset, length, text.toString());
+
+			if (random.nextInt(5) == 0)
+				getHashes(equivalence, random.nextInt(equivalence.getCount()));
+			else if (random.nextInt(5) == 0)
+				assertHashes(document, equivalence);
+		}
+		assertHashes(document, equivalence);
+	}
+
+	@Test
+	public void testUpdateLines() throws Exception {
+		IDocument document= new Document("a\nb\nc\nd\ne");
+		DocumentEquivalenceClass equivalence= new DocumentEquivalenceClass(document, fHashFunction);
+		assertHashes(document, equivalence);
+
+		// update after the modification, as done at the end of rewrite sessions
+		document.replace(2, 4, "x\ny\nz\n");
+		equivalence.update(1, 2, 3);
+		assertHashes(document, equivalence);
+
+		document.replace(0, 8, "");
+		equivalence.update(0, 5, 1);
+		assertHashes(document, equivalence);
+	}
+
+	@Test
+	public void testLoadAndForget() throws Exception {
+		IDocument document= new Document("a\nb\nc\nd");
+		DocumentEquivalenceClass equivalence= new DocumentEquivalenceClass(document, fHashFunction);
+		equivalence.loadAndForget();
+		document.set("");
+		assertEquals(4, equivalence.getCount());
+		assertEquals(fHashFunction.computeHash("c", 0, 1), equivalence.getHash(2));
+	}
+
+	private void getHashes(DocumentEquivalenceClass equivalence, int line) {
+		for (int i= line; i < equivalence.getCount(); i+= 3)
+			equivalence.getHash(i);
+	}
+
+	private void assertHashes(IDocument document, DocumentEquivalenceClass equivalence) throws Exception {
+		assertEquals(document.getNumberOfLines(), equivalence.getCount());
+		for (int line= 0; line < document.getNumberOfLines(); line++) {
+			String content= document.get(document.getLineOffset(line), document.getLineInformation(line).getLength());
+			assertEquals(fHashFunction.computeHash(content, 0, content.length()), equivalence.getHash(line));
+		}
+	}
+}
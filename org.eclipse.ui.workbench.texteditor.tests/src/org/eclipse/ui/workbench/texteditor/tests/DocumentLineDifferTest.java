@@ -0,0 +1,177 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.ui.workbench.texteditor.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+
+import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.DocumentRewriteSession;
+import org.eclipse.jface.text.DocumentRewriteSessionType;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.source.ILineDiffInfo;
+
+import org.eclipse.ui.internal.texteditor.quickdiff.DocumentLineDiffer;
+
+import org.eclipse.ui.texteditor.ITextEditor;
+import org.eclipse.ui.texteditor.quickdiff.IQuickDiffReferenceProvider;
+
+/**
+ * Tests how the {@link DocumentLineDiffer} follows rewrite sessions.
+ *
+ * @since 3.11
+ */
+public class DocumentLineDifferTest {
+
+	private static final String REFERENCE= "a\nb\nc\nd\ne\nf\ng\nh\ni\nj\n";
+
+	private static final long TIMEOUT= 10000;
+
+	/**
+	 * Differ allowing to request initialization from the tests.
+	 */
+	private static class TestDiffer extends DocumentLineDiffer {
+		@Override
+		public synchronized void initialize() {
+			super.initialize();
+		}
+	}
+
+	/**
+	 * Reference provider returning a fixed text.
+	 */
+	private static class ReferenceProvider implements IQuickDiffReferenceProvider {
+		@Override
+		public IDocument getReference(IProgressMonitor monitor) {
+			return new Document(REFERENCE);
+		}
+		@Override
+		public void dispose() {
+		}
+		@Override
+		public String getId() {
+			return "test"; //$NON-NLS-1$
+		}
+		@Override
+		public void setActiveEditor(ITextEditor editor) {
+		}
+		@Override
+		public boolean isEnabled() {
+			return true;
+		}
+		@Override
+		public void setId(String id) {
+		}
+	}
+
+	private Document fDocument;
+
+	private TestDiffer fDiffer;
+
+
+	@Before
+	public void setUp() throws Exception {
+		fDocument= new Document(REFERENCE);
+		fDiffer= new TestDiffer();
+		fDiffer.setReferenceProvider(new ReferenceProvider());
+		fDiffer.connect(fDocument);
+		waitForSynchronization(fDiffer);
+	}
+
+	@After
+	public void tearDown() {
+		fDiffer.disconnect(fDocument);
+	}
+
+	private static void waitForSynchronization(DocumentLineDiffer differ) throws InterruptedException {
+		long end= System.currentTimeMillis() + TIMEOUT;
+		while (!differ.isSynchronized()) {
+			assertTrue("differ not synchronized", System.currentTimeMillis() < end); //$NON-NLS-1$
+			Thread.sleep(20);
+		}
+	}
+
+	private void assertSameDifferences() throws Exception {
+		waitForSynchronization(fDiffer);
+		TestDiffer expected= new TestDiffer();
+		expected.setReferenceProvider(new ReferenceProvider());
+		Document copy= new Document(fDocument.get());
+		expected.connect(copy);
+		try {
+			waitForSynchronization(expected);
+			for (int line= 0; line < fDocument.getNumberOfLines(); line++) {
+				ILineDiffInfo expectedInfo= expected.getLineInfo(line);
+				ILineDiffInfo info= fDiffer.getLineInfo(line);
+				assertEquals("line " + line, expectedInfo.getChangeType(), info.getChangeType()); //$NON-NLS-1$
+				assertEquals("line " + line, expectedInfo.getRemovedLinesAbove(), info.getRemovedLinesAbove()); //$NON-NLS-1$
+				assertEquals("line " + line, expectedInfo.getRemovedLinesBelow(), info.getRemovedLinesBelow()); //$NON-NLS-1$
+			}
+		} finally {
+			expected.disconnect(copy);
+		}
+	}
+
+	@Test
+	public void testSequentialSession() throws Exception {
+		DocumentRewriteSession session= fDocument.startRewriteSession(DocumentRewriteSessionType.SEQUENTIAL);
+		fDocument.replace(2, 2, "B\nX\n");
+		fDocument.replace(fDocument.getLineOffset(6), 2, "");
+		fDocument.stopRewriteSession(session);
+
+		assertTrue(fDiffer.isSynchronized());
+		assertSameDifferences();
+	}
+
+	@Test
+	public void testUnrestrictedSession() throws Exception {
+		DocumentRewriteSession session= fDocument.startRewriteSession(DocumentRewriteSessionType.UNRESTRICTED);
+		assertFalse(fDiffer.isSuspended());
+		fDocument.replace(fDocument.getLineOffset(8), 2, "I\n");
+		fDocument.replace(0, 0, "0\n");
+		fDocument.stopRewriteSession(session);
+
+		assertTrue(fDiffer.isSynchronized());
+		assertSameDifferences();
+	}
+
+	@Test
+	public void testInitializeDuringSession() throws Exception {
+		DocumentRewriteSession session= fDocument.startRewriteSession(DocumentRewriteSessionType.SEQUENTIAL);
+		fDocument.replace(2, 2, "B\n");
+		fDiffer.initialize();
+
+		// give a premature initialization the chance to copy the document
+		Thread.sleep(1000);
+		assertFalse(fDiffer.isSynchronized());
+
+		fDocument.replace(fDocument.getLineOffset(5), 4, "F\nG\nY\n");
+		fDocument.stopRewriteSession(session);
+
+		assertSameDifferences();
+	}
+
+	@Test
+	public void testSmallSession() throws Exception {
+		DocumentRewriteSession session= fDocument.startRewriteSession(DocumentRewriteSessionType.UNRESTRICTED_SMALL);
+		fDocument.replace(4, 1, "C");
+		fDocument.stopRewriteSession(session);
+
+		assertTrue(fDiffer.isSynchronized());
+		assertSameDifferences();
+	}
+}
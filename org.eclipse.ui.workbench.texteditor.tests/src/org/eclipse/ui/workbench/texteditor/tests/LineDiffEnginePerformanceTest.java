@@ -0,0 +1,108 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.ui.workbench.texteditor.tests;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import org.eclipse.test.performance.Performance;
+import org.eclipse.test.performance.PerformanceMeter;
+
+import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.IDocument;
+
+import org.eclipse.ui.internal.texteditor.quickdiff.HistogramLineDiffEngine;
+import org.eclipse.ui.internal.texteditor.quickdiff.ILineDiffEngine;
+import org.eclipse.ui.internal.texteditor.quickdiff.RangeDifferencerLineDiffEngine;
+import org.eclipse.ui.internal.texteditor.quickdiff.compare.equivalence.DocEquivalenceComparator;
+import org.eclipse.ui.internal.texteditor.quickdiff.compare.equivalence.DocumentEquivalenceClass;
+
+/**
+ * Measures the {@link ILineDiffEngine} implementations used by quick diff on large
+ * documents, including the hashing of the lines.
+ *
+ * @since 3.11
+ */
+public class LineDiffEnginePerformanceTest {
+
+	private static final int WARM_UP_RUNS= 2;
+
+	private static final int MEASURED_RUNS= 5;
+
+	@Test
+	public void testHistogramFewChanges() throws Exception {
+		measure(new HistogramLineDiffEngine(), "histogramFewChanges", 200000, 500);
+	}
+
+	@Test
+	public void testLCSFewChanges() throws Exception {
+		measure(new RangeDifferencerLineDiffEngine(), "lcsFewChanges", 200000, 500);
+	}
+
+	@Test
+	public void testHistogramManyChanges() throws Exception {
+		measure(new HistogramLineDiffEngine(), "histogramManyChanges", 200000, 25);
+	}
+
+	@Test
+	public void testLCSManyChanges() throws Exception {
+		measure(new RangeDifferencerLineDiffEngine(), "lcsManyChanges", 200000, 25);
+	}
+
+	/**
+	 * Diffs a generated document against a copy in which about every
+	 * <code>changeInterval</code>th line has been changed.
+	 *
+	 * @param engine the engine to measure
+	 * @param scenario the name of the scenario
+	 * @param lines the number of lines of the document
+	 * @param changeInterval the average distance between changed lines
+	 */
+	private void measure(ILineDiffEngine engine, String scenario, int lines, int changeInterval) {
+		Random random= new Random(42);
+		StringBuffer reference= new StringBuffer();
+		StringBuffer current= new StringBuffer();
+		for (int i= 0; i < lines; i++) {
+			String line= i % 10 == 0 ? "}" : "line " + i;
+			reference.append(line).append('\n');
+			if (random.nextInt(changeInterval) == 0)
+				current.append("changed ").append(i).append('\n');
+			else
+				current.append(line).append('\n');
+		}
+		IDocument left= new Document(reference.toString());
+		IDocument right= new Document(current.toString());
+
+		for (int i= 0; i < WARM_UP_RUNS; i++)
+			diff(engine, left, right);
+
+		Performance performance= Performance.getDefault();
+		PerformanceMeter meter= performance.createPerformanceMeter(performance.getDefaultScenarioId(getClass(), scenario));
+		try {
+			for (int i= 0; i < MEASURED_RUNS; i++) {
+				meter.start();
+				diff(engine, left, right);
+				meter.stop();
+			}
+			meter.commit();
+			performance.assertPerformance(meter);
+		} finally {
+			meter.dispose();
+		}
+	}
+
+	private static void diff(ILineDiffEngine engine, IDocument left, IDocument right) {
+		DocEquivalenceComparator leftComparator= new DocEquivalenceComparator(new DocumentEquivalenceClass(left), null);
+		DocEquivalenceComparator rightComparator= new DocEquivalenceComparator(new DocumentEquivalenceClass(right), null);
+		engine.findRanges(null, leftComparator, rightComparator);
+	}
+}
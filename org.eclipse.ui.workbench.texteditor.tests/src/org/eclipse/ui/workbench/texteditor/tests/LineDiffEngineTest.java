@@ -0,0 +1,206 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.ui.workbench.texteditor.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IRegion;
+
+import org.eclipse.ui.internal.texteditor.quickdiff.HistogramLineDiffEngine;
+import org.eclipse.ui.internal.texteditor.quickdiff.ILineDiffEngine;
+import org.eclipse.ui.internal.texteditor.quickdiff.QuickDiffRangeDifference;
+import org.eclipse.ui.internal.texteditor.quickdiff.RangeDifferencerLineDiffEngine;
+import org.eclipse.ui.internal.texteditor.quickdiff.compare.equivalence.DocEquivalenceComparator;
+import org.eclipse.ui.internal.texteditor.quickdiff.compare.equivalence.DocumentEquivalenceClass;
+
+import org.eclipse.compare.rangedifferencer.RangeDifference;
+
+/**
+ * Tests the {@link ILineDiffEngine} implementations used by quick diff.
+ *
+ * @since 3.11
+ */
+public class LineDiffEngineTest {
+
+	private final ILineDiffEngine fHistogram= new HistogramLineDiffEngine();
+	private final ILineDiffEngine fLCS= new RangeDifferencerLineDiffEngine();
+
+	@Test
+	public void testIdentical() throws Exception {
+		String text= "a\nb\nc\n";
+		List<QuickDiffRangeDifference> ranges= check(fHistogram, text, text);
+		assertEquals(1, ranges.size());
+		assertEquals(RangeDifference.NOCHANGE, ranges.get(0).kind());
+		assertEquals(4, ranges.get(0).leftLength());
+	}
+
+	@Test
+	public void testEmpty() throws Exception {
+		check(fHistogram, "", "");
+		check(fHistogram, "", "a\nb\n");
+		check(fHistogram, "a\nb\n", "");
+	}
+
+	@Test
+	public void testInsert() throws Exception {
+		List<QuickDiffRangeDifference> ranges= check(fHistogram, "a\nb\nc\n", "a\nb\nx\ny\nc\n");
+		assertEquals(3, ranges.size());
+		assertRange(ranges.get(1), RangeDifference.CHANGE, 2, 0, 2, 2);
+	}
+
+	@Test
+	public void testDelete() throws Exception {
+		List<QuickDiffRangeDifference> ranges= check(fHistogram, "a\nb\nx\ny\nc\n", "a\nb\nc\n");
+		assertEquals(3, ranges.size());
+		assertRange(ranges.get(1), RangeDifference.CHANGE, 2, 2, 2, 0);
+	}
+
+	@Test
+	public void testChange() throws Exception {
+		List<QuickDiffRangeDifference> ranges= check(fHistogram, "a\nb\nc\nd\n", "a\nx\nc\ny\n");
+		assertEquals(5, ranges.size());
+		assertRange(ranges.get(1), RangeDifference.CHANGE, 1, 1, 1, 1);
+		assertRange(ranges.get(3), RangeDifference.CHANGE, 3, 1, 3, 1);
+	}
+
+	@Test
+	public void testAlignsUniqueLines() throws Exception {
+		String reference= "void a() {\n\tx();\n}\n\nvoid b() {\n\ty();\n}\n";
+		String current= "void a() {\n\tx();\n}\n\nvoid c() {\n\tz();\n}\n\nvoid b() {\n\ty();\n}\n";
+		List<QuickDiffRangeDifference> ranges= check(fHistogram, reference, current);
+		assertEquals(3, ranges.size());
+		assertRange(ranges.get(1), RangeDifference.CHANGE, 4, 0, 4, 4);
+	}
+
+	@Test
+	public void testRepetitiveLines() throws Exception {
+		StringBuffer reference= new StringBuffer();
+		StringBuffer current= new StringBuffer();
+		for (int i= 0; i < 500; i++) {
+			reference.append(i % 2 == 0 ? "}\n" : "\n");
+			current.append(i % 3 == 0 ? "}\n" : "\n");
+		}
+		check(fHistogram, reference.toString(), current.toString());
+	}
+
+	@Test
+	public void testRandomEdits() throws Exception {
+		Random random= new Random(4711);
+		for (int run= 0; run < 50; run++) {
+			String[] lines= new String[random.nextInt(200)];
+			for (int i= 0; i < lines.length; i++)
+				lines[i]= random.nextInt(4) == 0 ? "}" : "line" + random.nextInt(lines.length + 1);
+			String reference= join(lines);
+			for (int edit= random.nextInt(10); edit >= 0 && lines.length > 0; edit--)
+				lines[random.nextInt(lines.length)]= "edit" + edit;
+			String current= join(lines) + (random.nextBoolean() ? "appended\n" : "");
+
+			check(fHistogram, reference, current);
+			check(fLCS, reference, current);
+		}
+	}
+
+	@Test
+	public void testLargeDocument() throws Exception {
+		Random random= new Random(42);
+		StringBuffer reference= new StringBuffer();
+		StringBuffer current= new StringBuffer();
+		int changes= 0;
+		for (int i= 0; i < 200000; i++) {
+			String line= i % 10 == 0 ? "}" : "line " + i;
+			reference.append(line).append('\n');
+			if (random.nextInt(1000) == 0) {
+				current.append("changed ").append(i).append('\n');
+				changes++;
+			} else {
+				current.append(line).append('\n');
+			}
+		}
+
+		List<QuickDiffRangeDifference> ranges= check(fHistogram, reference.toString(), current.toString());
+		int changed= 0;
+		for (QuickDiffRangeDifference range : ranges) {
+			if (range.kind() == RangeDifference.CHANGE)
+				changed+= range.rightLength();
+		}
+		assertEquals(changes, changed);
+	}
+
+	private static void assertRange(RangeDifference range, int kind, int leftStart, int leftLength, int rightStart, int rightLength) {
+		assertEquals(kind, range.kind());
+		assertEquals(leftStart, range.leftStart());
+		assertEquals(leftLength, range.leftLength());
+		assertEquals(rightStart, range.rightStart());
+		assertEquals(rightLength, range.rightLength());
+	}
+
+	/**
+	 * Diffs the two texts and checks that the differences are consistent, i.e. that they
+	 * cover both documents, alternate between changed and unchanged ranges and that the
+	 * unchanged ranges are really equal.
+	 *
+	 * @param engine the engine to test
+	 * @param reference the reference text
+	 * @param current the current text
+	 * @return the differences
+	 * @throws BadLocationException if the documents cannot be accessed
+	 */
+	private static List<QuickDiffRangeDifference> check(ILineDiffEngine engine, String reference, String current) throws BadLocationException {
+		IDocument left= new Document(reference);
+		IDocument right= new Document(current);
+		DocEquivalenceComparator leftComparator= new DocEquivalenceComparator(new DocumentEquivalenceClass(left), null);
+		DocEquivalenceComparator rightComparator= new DocEquivalenceComparator(new DocumentEquivalenceClass(right), null);
+		List<QuickDiffRangeDifference> ranges= engine.findRanges(null, leftComparator, rightComparator);
+
+		int leftLine= 0, rightLine= 0;
+		int previousKind= -1;
+		for (QuickDiffRangeDifference range : ranges) {
+			assertEquals(leftLine, range.leftStart());
+			assertEquals(rightLine, range.rightStart());
+			assertTrue(range.maxLength() > 0);
+			assertTrue(range.kind() != previousKind);
+			if (range.kind() == RangeDifference.NOCHANGE) {
+				assertEquals(range.leftLength(), range.rightLength());
+				for (int i= 0; i < range.leftLength(); i++)
+					assertEquals(getLine(left, leftLine + i), getLine(right, rightLine + i));
+			} else {
+				assertEquals(RangeDifference.CHANGE, range.kind());
+			}
+			previousKind= range.kind();
+			leftLine= range.leftEnd();
+			rightLine= range.rightEnd();
+		}
+		assertEquals(left.getNumberOfLines(), leftLine);
+		assertEquals(right.getNumberOfLines(), rightLine);
+		return ranges;
+	}
+
+	private static String getLine(IDocument document, int line) throws BadLocationException {
+		IRegion region= document.getLineInformation(line);
+		return document.get(region.getOffset(), region.getLength());
+	}
+
+	private static String join(String[] lines) {
+		StringBuffer buffer= new StringBuffer();
+		for (int i= 0; i < lines.length; i++)
+			buffer.append(lines[i]).append('\n');
+		return buffer.toString();
+	}
+}
@@ -0,0 +1,29 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.ui.workbench.texteditor.tests;
+
+import org.junit.runner.RunWith;
+import org.junit.runners.Suite;
+import org.junit.runners.Suite.SuiteClasses;
+
+
+/**
+ * Performance test suite for org.eclipse.ui.workbench.texteditor.
+ *
+ * @since 3.11
+ */
+@RunWith(Suite.class)
+@SuiteClasses({
+		LineDiffEnginePerformanceTest.class
+})
+public class WorkbenchTextEditorPerformanceTestSuite {
+	// see @SuiteClasses
+}
@@ -33,6 +33,9 @@ import org.eclipse.ui.workbench.texteditor.tests.rulers.RulerTestSuite;
 		ChangeRegionTest.class,
 		RulerTestSuite.class,
 		HunkComputerTest.class,
+		DocumentEquivalenceClassTest.class,
+		LineDiffEngineTest.class,
+		DocumentLineDifferTest.class,
 		ScreenshotTest.class
 })
 public class WorkbenchTextEditorTestSuite {
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2015 IBM Corporation and others.
+ * Copyright (c) 2000, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -11,7 +11,6 @@
 package org.eclipse.ui.internal.texteditor.quickdiff;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.ConcurrentModificationException;
 import java.util.Iterator;
 import java.util.LinkedList;
@@ -27,6 +26,7 @@ import org.eclipse.core.runtime.Platform;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.jobs.Job;
 
+import org.eclipse.jface.text.AbstractDocument;
 import org.eclipse.jface.text.BadLocationException;
 import org.eclipse.jface.text.Document;
 import org.eclipse.jface.text.DocumentEvent;
@@ -34,7 +34,9 @@ import org.eclipse.jface.text.DocumentRewriteSessionEvent;
 import org.eclipse.jface.text.DocumentRewriteSessionType;
 import org.eclipse.jface.text.IDocument;
 import org.eclipse.jface.text.IDocumentExtension4;
+import org.eclipse.jface.text.IDocumentExtension5;
 import org.eclipse.jface.text.IDocumentListener;
+import org.eclipse.jface.text.IDocumentListenerExtension;
 import org.eclipse.jface.text.IDocumentRewriteSessionListener;
 import org.eclipse.jface.text.IRegion;
 import org.eclipse.jface.text.ISynchronizable;
@@ -61,10 +63,7 @@ import org.eclipse.ui.progress.IProgressConstants;
 
 import org.eclipse.ui.texteditor.quickdiff.IQuickDiffReferenceProvider;
 
-import org.eclipse.compare.rangedifferencer.AbstractRangeDifferenceFactory;
-import org.eclipse.compare.rangedifferencer.IRangeComparator;
 import org.eclipse.compare.rangedifferencer.RangeDifference;
-import org.eclipse.compare.rangedifferencer.RangeDifferencer;
 
 /**
  * Standard implementation of <code>ILineDiffer</code> as an incremental diff engine. A
@@ -81,21 +80,31 @@ import org.eclipse.compare.rangedifferencer.RangeDifferencer;
  *
  * @since 3.0
  */
-public class DocumentLineDiffer implements ILineDiffer, IDocumentListener, IAnnotationModel, ILineDifferExtension, ILineDifferExtension2 {
+public class DocumentLineDiffer implements ILineDiffer, IDocumentListener, IDocumentListenerExtension, IAnnotationModel, ILineDifferExtension, ILineDifferExtension2 {
 
 
 	/**
-	 * Custom range difference factory.
-	 * 
-	 * @since 3.5
+	 * Preference key of the diff algorithm used by the differ, in the preferences of the
+	 * <code>org.eclipse.ui.workbench.texteditor</code> plug-in. The value is either
+	 * {@link #LCS_DIFF_ALGORITHM} (the default) or {@link #HISTOGRAM_DIFF_ALGORITHM}. The
+	 * histogram engine is faster on large documents but may align changed lines differently, so
+	 * it has to be enabled explicitly.
+	 *
+	 * @since 3.10
 	 */
-	private static class RangeDifferenceFactory extends AbstractRangeDifferenceFactory {
-		@Override
-		protected org.eclipse.compare.rangedifferencer.RangeDifference createRangeDifference() {
-			return new QuickDiffRangeDifference();
-		}
-	}
-
+	public static final String DIFF_ALGORITHM_PREFERENCE= "quickdiff.diffAlgorithm"; //$NON-NLS-1$
+	/**
+	 * Value of {@link #DIFF_ALGORITHM_PREFERENCE} selecting the {@link HistogramLineDiffEngine}.
+	 *
+	 * @since 3.10
+	 */
+	public static final String HISTOGRAM_DIFF_ALGORITHM= "histogram"; //$NON-NLS-1$
+	/**
+	 * Value of {@link #DIFF_ALGORITHM_PREFERENCE} selecting the {@link RangeDifferencerLineDiffEngine}.
+	 *
+	 * @since 3.10
+	 */
+	public static final String LCS_DIFF_ALGORITHM= "lcs"; //$NON-NLS-1$
 
 	/**
 	 * Artificial line difference information indicating a change with an empty line as original text.
@@ -217,17 +226,37 @@ public class DocumentLineDiffer implements ILineDiffer, IDocumentListener, IAnno
 		public void documentRewriteSessionChanged(DocumentRewriteSessionEvent event) {
 			if (event.getSession().getSessionType() == DocumentRewriteSessionType.UNRESTRICTED_SMALL)
 				return;
-			if (DocumentRewriteSessionEvent.SESSION_START.equals(event.getChangeType()))
-				suspend();
-			else if (DocumentRewriteSessionEvent.SESSION_STOP.equals(event.getChangeType()))
-				resume();
+			if (DocumentRewriteSessionEvent.SESSION_START.equals(event.getChangeType())) {
+				if (!startIncrementalRewriteSession(event.getDocument(), event.getSession().getSessionType()))
+					suspend();
+			} else if (DocumentRewriteSessionEvent.SESSION_STOP.equals(event.getChangeType())) {
+				if (!stopIncrementalRewriteSession())
+					resume();
+			}
 		}
 	};
+	/**
+	 * <code>true</code> if the differ stays synchronized during the active rewrite session
+	 * and updates its differences from the summary of the session's changes, see
+	 * {@link #documentChangedInRewriteSession(DocumentEvent)}.
+	 * @since 3.10
+	 */
+	private boolean fIncrementalRewriteSession;
+	/**
+	 * <code>true</code> if the differ has to be initialized once the rewrite session that is
+	 * tracked incrementally has been stopped.
+	 * @since 3.10
+	 */
+	private boolean fInitializeAfterRewriteSession;
 
 	private Thread fThread;
 	private DocumentEvent fLastUIEvent;
 
-	private RangeDifferenceFactory fRangeDiffFactory= new RangeDifferenceFactory();
+	/**
+	 * The engine computing the differences.
+	 * @since 3.10
+	 */
+	private volatile ILineDiffEngine fDiffEngine= new HistogramLineDiffEngine();
 
 
 	/**
@@ -469,6 +498,13 @@ public class DocumentLineDiffer implements ILineDiffer, IDocumentListener, IAnno
 		// make new incoming changes go into the queue of stored events, plus signal we can't restore.
 		fState= INITIALIZING;
 
+		// the document does not send the changes of the session before it ends, so a copy taken
+		// now could not be brought back in sync with the document
+		if (fIncrementalRewriteSession) {
+			fInitializeAfterRewriteSession= true;
+			return;
+		}
+
 		if (fRightDocument == null)
 			return;
 
@@ -504,7 +540,7 @@ public class DocumentLineDiffer implements ILineDiffer, IDocumentListener, IAnno
 			public IStatus run(IProgressMonitor monitor) {
 
 				// 1:	wait for any previous job that was canceled to avoid job flooding
-				// It will return relatively quickly as RangeDifferencer supports canceling
+				// It will return relatively quickly as the diff engines support canceling
 				if (oldJob != null)
 					try {
 						oldJob.join();
@@ -621,12 +657,20 @@ public class DocumentLineDiffer implements ILineDiffer, IDocumentListener, IAnno
 				IHashFunction hash= new DJBHashFunction();
 				DocumentEquivalenceClass leftEquivalent= new DocumentEquivalenceClass(reference, hash);
 				fLeftEquivalent= leftEquivalent;
-				IRangeComparator ref= new DocEquivalenceComparator(leftEquivalent, null);
+				DocEquivalenceComparator ref= new DocEquivalenceComparator(leftEquivalent, null);
 
 				DocumentEquivalenceClass rightEquivalent= new DocumentEquivalenceClass(actual, hash);
 				fRightEquivalent= rightEquivalent;
-				IRangeComparator act= new DocEquivalenceComparator(rightEquivalent, null);
-				ArrayList<QuickDiffRangeDifference> diffs= asQuickDiffRangeDifference(RangeDifferencer.findRanges(fRangeDiffFactory, monitor, ref, act));
+				DocEquivalenceComparator act= new DocEquivalenceComparator(rightEquivalent, null);
+
+				ILineDiffEngine engine= createDiffEngine();
+				fDiffEngine= engine;
+				ArrayList<QuickDiffRangeDifference> diffs;
+				try {
+					diffs= engine.findRanges(monitor, ref, act);
+				} catch (OperationCanceledException e) {
+					return Status.CANCEL_STATUS;
+				}
 				// 7:	Reset the model to the just gotten differences
 				// 		re-inject stored events to get up to date.
 				synchronized (DocumentLineDiffer.this) {
@@ -732,7 +776,16 @@ public class DocumentLineDiffer implements ILineDiffer, IDocumentListener, IAnno
 				return null;
 			}
 
+			/**
+			 * Creates a copy of <code>document</code>. The copy shares the text of the
+			 * document's snapshot if it has one, and only copies it once it is modified.
+			 *
+			 * @param document the document to create a copy of
+			 * @return a copy of the document
+			 */
 			private IDocument createUnprotectedCopy(IDocument document) {
+				if (document instanceof IDocumentExtension5)
+					return new Document(((IDocumentExtension5) document).getSnapshot().get());
 				return new Document(document.get());
 			}
 		};
@@ -878,6 +931,182 @@ public class DocumentLineDiffer implements ILineDiffer, IDocumentListener, IAnno
 		}
 	}
 
+	/**
+	 * Starts tracking a rewrite session incrementally instead of suspending the differ. This is
+	 * possible if the differ is synchronized and the document sends a summary of the session's
+	 * changes to {@link IDocumentListenerExtension}s, which {@link AbstractDocument} does for
+	 * sequential and unrestricted sessions. The summary covers the region from the first to the
+	 * last change of the session, so an unrestricted session that changes the document at both
+	 * ends re-diffs all of it. Rewrite sessions of other documents suspend the differ, which is
+	 * fully re-initialized once the session has been stopped.
+	 * <p>
+	 * Re-initializations requested while the session is tracked are deferred until it has been
+	 * stopped.
+	 * </p>
+	 *
+	 * @param document the document in which the session has been started
+	 * @param sessionType the type of the session
+	 * @return <code>true</code> if the session is tracked incrementally, <code>false</code> if
+	 *         the differ must be suspended
+	 * @since 3.10
+	 */
+	private synchronized boolean startIncrementalRewriteSession(IDocument document, DocumentRewriteSessionType sessionType) {
+		boolean summarized= sessionType == DocumentRewriteSessionType.UNRESTRICTED || sessionType == DocumentRewriteSessionType.SEQUENTIAL || sessionType == DocumentRewriteSessionType.STRICTLY_SEQUENTIAL;
+		fIncrementalRewriteSession= summarized && isInitialized() && document == fRightDocument && document instanceof AbstractDocument;
+		fInitializeAfterRewriteSession= false;
+		return fIncrementalRewriteSession;
+	}
+
+	/**
+	 * Stops tracking a rewrite session incrementally and performs a deferred initialization.
+	 *
+	 * @return <code>true</code> if the session has been tracked incrementally,
+	 *         <code>false</code> if the differ must be resumed
+	 * @since 3.10
+	 */
+	private synchronized boolean stopIncrementalRewriteSession() {
+		boolean incremental= fIncrementalRewriteSession;
+		fIncrementalRewriteSession= false;
+		if (fInitializeAfterRewriteSession) {
+			fInitializeAfterRewriteSession= false;
+			initialize();
+		}
+		return incremental;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Re-diffs only the lines around the changed region, using the line hashes that are
+	 * still valid, instead of re-initializing the differ with copies of both documents.
+	 * </p>
+	 *
+	 * @since 3.10
+	 */
+	@Override
+	public synchronized void documentChangedInRewriteSession(DocumentEvent event) {
+		if (fIgnoreDocumentEvents || fInitializeAfterRewriteSession)
+			return;
+
+		if (event.getDocument() != fRightDocument || !isInitialized()) {
+			initialize();
+			return;
+		}
+
+		try {
+			if (!handleChangedInRewriteSession(event)) {
+				initialize();
+				return;
+			}
+		} catch (BadLocationException e) {
+			reinitOnError(e);
+			return;
+		} catch (IndexOutOfBoundsException e) {
+			reinitOnError(e);
+			return;
+		} catch (ConcurrentModificationException e) {
+			reinitOnError(e);
+			return;
+		}
+
+		fireModelChanged();
+	}
+
+	/**
+	 * Updates the differences after the right document has been changed as described by the
+	 * given summary of a rewrite session.
+	 *
+	 * @param event the event describing all changes of the session, relative to the document
+	 *            before the session
+	 * @return <code>true</code> if the differences have been updated, <code>false</code> if
+	 *         the differ must be re-initialized
+	 * @throws BadLocationException if document access fails
+	 * @since 3.10
+	 */
+	private boolean handleChangedInRewriteSession(DocumentEvent event) throws BadLocationException {
+		IDocument right= fRightDocument;
+		DocumentEquivalenceClass leftEquivalent= fLeftEquivalent;
+		DocumentEquivalenceClass rightEquivalent= fRightEquivalent;
+		List<QuickDiffRangeDifference> differences= fDifferences;
+		if (right == null || leftEquivalent == null || rightEquivalent == null || differences.isEmpty())
+			return false;
+
+		// the changed lines, widened by one line to be safe against line delimiters
+		// which are split by the boundaries of the change
+		int oldCount= rightEquivalent.getCount();
+		int newCount= right.getNumberOfLines();
+		int lineDelta= newCount - oldCount;
+		String text= event.getText();
+		int firstLine= Math.max(0, right.getLineOfOffset(event.getOffset()) - 1);
+		int lastLine= Math.min(newCount - 1, right.getLineOfOffset(event.getOffset() + (text == null ? 0 : text.length())) + 1);
+		int oldLastLine= lastLine - lineDelta;
+		if (oldLastLine < firstLine - 1 || oldLastLine >= oldCount)
+			return false;
+
+		rightEquivalent.update(firstLine, oldLastLine - firstLine + 1, lastLine - firstLine + 1);
+
+		synchronized (differences) {
+			// the differences touching the changed lines, and one more on each side
+			int size= differences.size();
+			int first= 0;
+			while (first < size - 1 && differences.get(first).rightEnd() <= firstLine)
+				first++;
+			first= Math.max(0, first - 1);
+			int last= first;
+			while (last < size - 1 && differences.get(last + 1).rightStart() <= oldLastLine)
+				last++;
+			last= Math.min(size - 1, last + 1);
+
+			int leftStart= differences.get(first).leftStart();
+			int leftEnd= differences.get(last).leftEnd();
+			int rightStart= differences.get(first).rightStart();
+			int rightEnd= differences.get(last).rightEnd() + lineDelta;
+			if (rightEnd < rightStart)
+				return false;
+
+			DocEquivalenceComparator reference= new DocEquivalenceComparator(leftEquivalent, new LineRange(leftStart, leftEnd - leftStart));
+			DocEquivalenceComparator change= new DocEquivalenceComparator(rightEquivalent, new LineRange(rightStart, rightEnd - rightStart));
+			List<QuickDiffRangeDifference> diffs= fDiffEngine.findRanges(null, reference, change);
+			for (Iterator<QuickDiffRangeDifference> it= diffs.iterator(); it.hasNext();) {
+				QuickDiffRangeDifference d= it.next();
+				d.shiftLeft(leftStart);
+				d.shiftRight(rightStart);
+			}
+
+			differences.subList(first, last + 1).clear();
+			differences.addAll(first, diffs);
+			int end= first + diffs.size();
+			for (int i= end; i < differences.size(); i++)
+				differences.get(i).shiftRight(lineDelta);
+
+			mergeDifferences(differences, end);
+			mergeDifferences(differences, first);
+			fLastDifference= null;
+
+			QuickDiffRangeDifference tail= differences.get(differences.size() - 1);
+			return tail.leftEnd() == leftEquivalent.getCount() && tail.rightEnd() == newCount;
+		}
+	}
+
+	/**
+	 * Merges the difference at the given index with the preceding one if both are of the
+	 * same kind.
+	 *
+	 * @param differences the differences
+	 * @param index the index of the difference to merge with its predecessor
+	 * @since 3.10
+	 */
+	private static void mergeDifferences(List<QuickDiffRangeDifference> differences, int index) {
+		if (index <= 0 || index >= differences.size())
+			return;
+		QuickDiffRangeDifference previous= differences.get(index - 1);
+		QuickDiffRangeDifference next= differences.get(index);
+		if (previous.kind() != next.kind())
+			return;
+		differences.set(index - 1, new QuickDiffRangeDifference(previous.kind(), previous.rightStart(), previous.rightLength() + next.rightLength(), previous.leftStart(), previous.leftLength() + next.leftLength()));
+		differences.remove(index);
+	}
+
 	/**
 	 * Re-initializes the differ if an exception is thrown upon accessing the documents. This can
 	 * happen if the documents get concurrently modified from a background thread.
@@ -984,7 +1213,7 @@ public class DocumentLineDiffer implements ILineDiffer, IDocumentListener, IAnno
 			leftLine += lineDelta;
 		int leftEndLine= leftLine - shiftAfter;
 		ILineRange leftRange= new LineRange(leftStartLine, leftEndLine - leftStartLine);
-		IRangeComparator reference= new DocEquivalenceComparator(leftEquivalent, leftRange);
+		DocEquivalenceComparator reference= new DocEquivalenceComparator(leftEquivalent, leftRange);
 
 		// right (actual) document
 		int rightStartLine= consistentBefore.rightStart() + shiftBefore;
@@ -993,7 +1222,7 @@ public class DocumentLineDiffer implements ILineDiffer, IDocumentListener, IAnno
 			rightLine += lineDelta;
 		int rightEndLine= rightLine - shiftAfter;
 		ILineRange rightRange= new LineRange(rightStartLine, rightEndLine - rightStartLine);
-		IRangeComparator change= new DocEquivalenceComparator(rightEquivalent, rightRange);
+		DocEquivalenceComparator change= new DocEquivalenceComparator(rightEquivalent, rightRange);
 
 		// put an upper bound to the delay we can afford
 		if (leftLine - shiftAfter - leftStartLine > 50 || rightLine - shiftAfter - rightStartLine > 50) {
@@ -1006,7 +1235,7 @@ public class DocumentLineDiffer implements ILineDiffer, IDocumentListener, IAnno
 //					">\n\n<" + right.get(rightRegion.getOffset(), rightRegion.getLength()) + ">\n"); //$NON-NLS-1$ //$NON-NLS-2$
 
 		// compare
-		List<QuickDiffRangeDifference> diffs= asQuickDiffRangeDifference(RangeDifferencer.findRanges(fRangeDiffFactory, null, reference, change));
+		List<QuickDiffRangeDifference> diffs= fDiffEngine.findRanges(null, reference, change);
 		if (diffs.size() == 0) {
 			diffs.add(new QuickDiffRangeDifference(RangeDifference.CHANGE, 0, 0, 0, 0));
 		}
@@ -1126,16 +1355,16 @@ public class DocumentLineDiffer implements ILineDiffer, IDocumentListener, IAnno
 	}
 
 	/**
-	 * Converts a {@code RangeDifference[]} into an {@code ArrayList<QuickDiffRangeDifference>}.
-	 * This is unsafe in general, but OK if used carefully.
-	 * Workaround for <a href="https://bugs.eclipse.org/483319">bug 483319</a>.
-	 * 
-	 * @param ranges the ranges, <em>must</em> be of type {@link QuickDiffRangeDifference}
-	 * @return the ranges as a modifiable list
+	 * Creates the diff engine selected by the {@link #DIFF_ALGORITHM_PREFERENCE} preference.
+	 *
+	 * @return the diff engine to use
+	 * @since 3.10
 	 */
-	@SuppressWarnings({ "unchecked", "rawtypes" })
-	private static ArrayList<QuickDiffRangeDifference> asQuickDiffRangeDifference(RangeDifference[] ranges) {
-		return new ArrayList(Arrays.asList(ranges));
+	private static ILineDiffEngine createDiffEngine() {
+		String algorithm= Platform.getPreferencesService().getString(TextEditorPlugin.PLUGIN_ID, DIFF_ALGORITHM_PREFERENCE, LCS_DIFF_ALGORITHM, null);
+		if (HISTOGRAM_DIFF_ALGORITHM.equals(algorithm))
+			return new HistogramLineDiffEngine();
+		return new RangeDifferencerLineDiffEngine();
 	}
 
 	/**
@@ -1549,6 +1778,7 @@ public class DocumentLineDiffer implements ILineDiffer, IDocumentListener, IAnno
 			fLastDifference= null;
 			fStoredEvents.clear();
 			fDifferences.clear();
+			fInitializeAfterRewriteSession= false;
 
 			fState= SUSPENDED;
 
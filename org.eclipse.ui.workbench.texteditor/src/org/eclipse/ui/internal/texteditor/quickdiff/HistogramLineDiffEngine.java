@@ -0,0 +1,320 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.ui.internal.texteditor.quickdiff;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+
+import org.eclipse.ui.internal.texteditor.quickdiff.compare.equivalence.DocEquivalenceComparator;
+
+import org.eclipse.compare.rangedifferencer.IRangeComparator;
+import org.eclipse.compare.rangedifferencer.RangeDifference;
+import org.eclipse.compare.rangedifferencer.RangeDifferencer;
+
+
+/**
+ * Line diff engine using the histogram diff algorithm, an extension of patience diff.
+ * <p>
+ * The engine searches the longest common region of the two line ranges that contains
+ * the lines occurring least often in the reference range, and recursively diffs the
+ * parts before and after that region. Unlike a longest common subsequence computation
+ * this takes time close to linear in the number of lines for typical documents and
+ * tends to align changes along unique lines such as declarations instead of along
+ * repetitive lines such as blank lines or closing braces.
+ * </p>
+ * <p>
+ * Regions that cannot be split because all their common lines occur too often are
+ * diffed with {@link RangeDifferencer}.
+ * </p>
+ *
+ * @since 3.10
+ */
+public final class HistogramLineDiffEngine implements ILineDiffEngine {
+
+	/**
+	 * Lines occurring more often than this in a region of the reference document are not
+	 * used to split the region.
+	 */
+	private static final int MAX_CHAIN_LENGTH= 64;
+
+	/** The recursion depth after which regions are diffed with the fallback algorithm. */
+	private static final int MAX_DEPTH= 64;
+
+	/**
+	 * Compares two line ranges given as arrays of line hashes.
+	 */
+	private static final class HashComparator implements IRangeComparator {
+
+		private final int[] fHashes;
+		private final int fStart;
+		private final int fLength;
+
+		HashComparator(int[] hashes, int start, int length) {
+			fHashes= hashes;
+			fStart= start;
+			fLength= length;
+		}
+
+		@Override
+		public int getRangeCount() {
+			return fLength;
+		}
+
+		@Override
+		public boolean rangesEqual(int thisIndex, IRangeComparator other, int otherIndex) {
+			HashComparator comparator= (HashComparator) other;
+			return fHashes[fStart + thisIndex] == comparator.fHashes[comparator.fStart + otherIndex];
+		}
+
+		@Override
+		public boolean skipRangeComparison(int length, int maxLength, IRangeComparator other) {
+			return false;
+		}
+	}
+
+	/**
+	 * Computes the differences of one pair of line ranges.
+	 */
+	private static final class Differ {
+
+		private final IProgressMonitor fMonitor;
+		/** The line hashes of the reference range. */
+		private final int[] fA;
+		/** The line hashes of the current range. */
+		private final int[] fB;
+
+		/* histogram of the region of the reference range being split */
+		/** Bucket heads, the index of the first record of a bucket plus one. */
+		private final int[] fTable;
+		/** The line hash of a record. */
+		private final int[] fRecordHash;
+		/** The number of occurrences of the line of a record. */
+		private final int[] fRecordCount;
+		/** The first occurrence of the line of a record, relative to the region start. */
+		private final int[] fRecordFirst;
+		/** The next record in the same bucket, or <code>-1</code>. */
+		private final int[] fRecordNext;
+		/** The record of a line, indexed relative to the region start. */
+		private final int[] fLineRecord;
+		/** The next occurrence of the same line, relative to the region start, or <code>-1</code>. */
+		private final int[] fLineNext;
+
+		/* the found unchanged regions, in document order */
+		private int[] fMatchA= new int[16];
+		private int[] fMatchB= new int[16];
+		private int[] fMatchLength= new int[16];
+		private int fMatches;
+
+		Differ(IProgressMonitor monitor, int[] a, int[] b) {
+			fMonitor= monitor;
+			fA= a;
+			fB= b;
+			int n= a.length;
+			fTable= new int[tableSize(n)];
+			fRecordHash= new int[n];
+			fRecordCount= new int[n];
+			fRecordFirst= new int[n];
+			fRecordNext= new int[n];
+			fLineRecord= new int[n];
+			fLineNext= new int[n];
+		}
+
+		ArrayList<QuickDiffRangeDifference> findRanges() {
+			diff(0, fA.length, 0, fB.length, 0);
+
+			ArrayList<QuickDiffRangeDifference> ranges= new ArrayList<>(2 * fMatches + 1);
+			int a= 0, b= 0;
+			for (int i= 0; i < fMatches; i++) {
+				int matchA= fMatchA[i], matchB= fMatchB[i], length= fMatchLength[i];
+				if (matchA > a || matchB > b)
+					ranges.add(new QuickDiffRangeDifference(RangeDifference.CHANGE, b, matchB - b, a, matchA - a));
+				ranges.add(new QuickDiffRangeDifference(RangeDifference.NOCHANGE, matchB, length, matchA, length));
+				a= matchA + length;
+				b= matchB + length;
+			}
+			if (a < fA.length || b < fB.length)
+				ranges.add(new QuickDiffRangeDifference(RangeDifference.CHANGE, b, fB.length - b, a, fA.length - a));
+			return ranges;
+		}
+
+		private void diff(int aStart, int aEnd, int bStart, int bEnd, int depth) {
+			int prefix= 0;
+			while (aStart + prefix < aEnd && bStart + prefix < bEnd && fA[aStart + prefix] == fB[bStart + prefix])
+				prefix++;
+			if (prefix > 0) {
+				addMatch(aStart, bStart, prefix);
+				aStart+= prefix;
+				bStart+= prefix;
+			}
+
+			int suffix= 0;
+			while (aEnd - suffix > aStart && bEnd - suffix > bStart && fA[aEnd - suffix - 1] == fB[bEnd - suffix - 1])
+				suffix++;
+			aEnd-= suffix;
+			bEnd-= suffix;
+
+			if (aStart < aEnd && bStart < bEnd)
+				split(aStart, aEnd, bStart, bEnd, depth);
+
+			if (suffix > 0)
+				addMatch(aEnd, bEnd, suffix);
+		}
+
+		private void split(int aStart, int aEnd, int bStart, int bEnd, int depth) {
+			if (fMonitor != null && fMonitor.isCanceled())
+				throw new OperationCanceledException();
+
+			if (depth >= MAX_DEPTH) {
+				fallback(aStart, aEnd, bStart, bEnd);
+				return;
+			}
+
+			buildHistogram(aStart, aEnd);
+
+			int bestA= -1, bestB= -1, bestLength= 0;
+			int bestCount= MAX_CHAIN_LENGTH;
+			boolean hasCommon= false;
+			for (int b= bStart; b < bEnd;) {
+				int record= findRecord(fB[b], aEnd - aStart);
+				if (record == -1) {
+					b++;
+					continue;
+				}
+				hasCommon= true;
+				if (fRecordCount[record] > bestCount) {
+					b++;
+					continue;
+				}
+
+				int next= b + 1;
+				for (int line= fRecordFirst[record]; line != -1; line= fLineNext[line]) {
+					int count= fRecordCount[record];
+					int as= aStart + line, bs= b;
+					int ae= as + 1, be= b + 1;
+					while (as > aStart && bs > bStart && fA[as - 1] == fB[bs - 1]) {
+						as--;
+						bs--;
+						count= Math.min(count, fRecordCount[fLineRecord[as - aStart]]);
+					}
+					while (ae < aEnd && be < bEnd && fA[ae] == fB[be]) {
+						count= Math.min(count, fRecordCount[fLineRecord[ae - aStart]]);
+						ae++;
+						be++;
+					}
+					if (next < be)
+						next= be;
+					if (bestLength < ae - as || count < bestCount) {
+						bestA= as;
+						bestB= bs;
+						bestLength= ae - as;
+						bestCount= count;
+					}
+				}
+				b= next;
+			}
+
+			if (bestLength == 0) {
+				// either there are no common lines at all, or they are all too frequent
+				if (hasCommon)
+					fallback(aStart, aEnd, bStart, bEnd);
+				return;
+			}
+
+			diff(aStart, bestA, bStart, bestB, depth + 1);
+			addMatch(bestA, bestB, bestLength);
+			diff(bestA + bestLength, aEnd, bestB + bestLength, bEnd, depth + 1);
+		}
+
+		private void buildHistogram(int aStart, int aEnd) {
+			int n= aEnd - aStart;
+			Arrays.fill(fTable, 0, tableSize(n), 0);
+			int records= 0;
+			for (int line= n - 1; line >= 0; line--) {
+				int hash= fA[aStart + line];
+				int record= findRecord(hash, n);
+				if (record == -1) {
+					record= records++;
+					int bucket= bucket(hash, n);
+					fRecordHash[record]= hash;
+					fRecordCount[record]= 0;
+					fRecordFirst[record]= -1;
+					fRecordNext[record]= fTable[bucket] - 1;
+					fTable[bucket]= record + 1;
+				}
+				fLineRecord[line]= record;
+				fLineNext[line]= fRecordFirst[record];
+				fRecordFirst[record]= line;
+				fRecordCount[record]++;
+			}
+		}
+
+		private int findRecord(int hash, int n) {
+			int record= fTable[bucket(hash, n)] - 1;
+			while (record != -1 && fRecordHash[record] != hash)
+				record= fRecordNext[record];
+			return record;
+		}
+
+		private void fallback(int aStart, int aEnd, int bStart, int bEnd) {
+			IRangeComparator left= new HashComparator(fA, aStart, aEnd - aStart);
+			IRangeComparator right= new HashComparator(fB, bStart, bEnd - bStart);
+			RangeDifference[] ranges= RangeDifferencer.findRanges(fMonitor, left, right);
+			if (fMonitor != null && fMonitor.isCanceled())
+				throw new OperationCanceledException();
+			for (int i= 0; i < ranges.length; i++) {
+				RangeDifference range= ranges[i];
+				if (range.kind() == RangeDifference.NOCHANGE)
+					addMatch(aStart + range.leftStart(), bStart + range.rightStart(), range.leftLength());
+			}
+		}
+
+		private void addMatch(int a, int b, int length) {
+			int last= fMatches - 1;
+			if (last >= 0 && fMatchA[last] + fMatchLength[last] == a && fMatchB[last] + fMatchLength[last] == b) {
+				fMatchLength[last]+= length;
+				return;
+			}
+			if (fMatches == fMatchA.length) {
+				int capacity= 2 * fMatches;
+				fMatchA= Arrays.copyOf(fMatchA, capacity);
+				fMatchB= Arrays.copyOf(fMatchB, capacity);
+				fMatchLength= Arrays.copyOf(fMatchLength, capacity);
+			}
+			fMatchA[fMatches]= a;
+			fMatchB[fMatches]= b;
+			fMatchLength[fMatches]= length;
+			fMatches++;
+		}
+
+		private static int tableSize(int n) {
+			return Integer.highestOneBit(Math.max(n, 1)) << 1;
+		}
+
+		private static int bucket(int hash, int n) {
+			return (hash * 0x9E3779B9 >>> 16 ^ hash) & (tableSize(n) - 1);
+		}
+	}
+
+	@Override
+	public ArrayList<QuickDiffRangeDifference> findRanges(IProgressMonitor monitor, DocEquivalenceComparator left, DocEquivalenceComparator right) {
+		return new Differ(monitor, getHashes(left), getHashes(right)).findRanges();
+	}
+
+	private static int[] getHashes(DocEquivalenceComparator comparator) {
+		int[] hashes= new int[comparator.getRangeCount()];
+		for (int i= 0; i < hashes.length; i++)
+			hashes[i]= comparator.getHash(i);
+		return hashes;
+	}
+}
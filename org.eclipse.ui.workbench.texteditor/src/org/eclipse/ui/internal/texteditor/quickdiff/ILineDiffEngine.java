@@ -0,0 +1,49 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.ui.internal.texteditor.quickdiff;
+
+import java.util.ArrayList;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+
+import org.eclipse.ui.internal.texteditor.quickdiff.compare.equivalence.DocEquivalenceComparator;
+
+
+/**
+ * Computes the line differences between a reference document and the current
+ * document for a {@link DocumentLineDiffer}.
+ * <p>
+ * Implementations must be stateless, as an engine may be used by several
+ * differs and threads at the same time.
+ * </p>
+ *
+ * @since 3.10
+ */
+public interface ILineDiffEngine {
+
+	/**
+	 * Finds the differences between two line ranges. Like
+	 * {@link org.eclipse.compare.rangedifferencer.RangeDifferencer#findRanges(org.eclipse.compare.rangedifferencer.AbstractRangeDifferenceFactory, IProgressMonitor, org.eclipse.compare.rangedifferencer.IRangeComparator, org.eclipse.compare.rangedifferencer.IRangeComparator)
+	 * RangeDifferencer.findRanges}, the returned differences cover both ranges completely
+	 * and include the unchanged ranges. All line numbers are relative to the start of the
+	 * compared ranges.
+	 *
+	 * @param monitor the progress monitor used to cancel the computation, may be
+	 *            <code>null</code>
+	 * @param left the lines of the reference document
+	 * @param right the lines of the current document
+	 * @return the differences, in document order; the result is undefined if the monitor
+	 *         has been canceled
+	 * @throws org.eclipse.core.runtime.OperationCanceledException if the computation is
+	 *             aborted because the monitor has been canceled
+	 */
+	ArrayList<QuickDiffRangeDifference> findRanges(IProgressMonitor monitor, DocEquivalenceComparator left, DocEquivalenceComparator right);
+}
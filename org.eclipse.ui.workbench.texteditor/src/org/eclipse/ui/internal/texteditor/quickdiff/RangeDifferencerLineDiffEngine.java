@@ -0,0 +1,64 @@
+/*******************************************************************************
+ * Copyright (c) 2000, 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.ui.internal.texteditor.quickdiff;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+
+import org.eclipse.ui.internal.texteditor.quickdiff.compare.equivalence.DocEquivalenceComparator;
+
+import org.eclipse.compare.rangedifferencer.AbstractRangeDifferenceFactory;
+import org.eclipse.compare.rangedifferencer.RangeDifference;
+import org.eclipse.compare.rangedifferencer.RangeDifferencer;
+
+
+/**
+ * Line diff engine based on the longest common subsequence computation of
+ * {@link RangeDifferencer}.
+ *
+ * @since 3.10
+ */
+public final class RangeDifferencerLineDiffEngine implements ILineDiffEngine {
+
+	/**
+	 * Custom range difference factory.
+	 *
+	 * @since 3.5
+	 */
+	private static class RangeDifferenceFactory extends AbstractRangeDifferenceFactory {
+		@Override
+		protected RangeDifference createRangeDifference() {
+			return new QuickDiffRangeDifference();
+		}
+	}
+
+	private final RangeDifferenceFactory fRangeDiffFactory= new RangeDifferenceFactory();
+
+	@Override
+	public ArrayList<QuickDiffRangeDifference> findRanges(IProgressMonitor monitor, DocEquivalenceComparator left, DocEquivalenceComparator right) {
+		return asQuickDiffRangeDifference(RangeDifferencer.findRanges(fRangeDiffFactory, monitor, left, right));
+	}
+
+	/**
+	 * Converts a {@code RangeDifference[]} into an {@code ArrayList<QuickDiffRangeDifference>}.
+	 * This is unsafe in general, but OK if used carefully.
+	 * Workaround for <a href="https://bugs.eclipse.org/483319">bug 483319</a>.
+	 *
+	 * @param ranges the ranges, <em>must</em> be of type {@link QuickDiffRangeDifference}
+	 * @return the ranges as a modifiable list
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static ArrayList<QuickDiffRangeDifference> asQuickDiffRangeDifference(RangeDifference[] ranges) {
+		return new ArrayList(Arrays.asList(ranges));
+	}
+}
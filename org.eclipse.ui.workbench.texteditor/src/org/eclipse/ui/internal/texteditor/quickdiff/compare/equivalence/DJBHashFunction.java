@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2005, 2008 IBM Corporation and others.
+ * Copyright (c) 2005, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -17,19 +17,13 @@ package org.eclipse.ui.internal.texteditor.quickdiff.compare.equivalence;
 public final class DJBHashFunction implements IHashFunction {
 
 	@Override
-	public Hash computeHash(CharSequence string) {
-		return new IntHash(hash(string));
+	public int computeHash(CharSequence seq, int start, int end) {
+		int hash= 5381;
+		for (int i= start; i < end; i++) {
+			char ch= seq.charAt(i);
+			hash= ((hash << 5) + hash) + ch; /* hash * 33 + ch */
+		}
+		return hash;
 	}
 
-	private int hash(CharSequence seq){
-        int hash = 5381;
-        int len= seq.length();
-        for (int i= 0; i < len; i++) {
-        	char ch= seq.charAt(i);
-            hash = ((hash << 5) + hash) + ch; /* hash * 33 + ch */
-        }
-
-        return hash;
-    }
-
 }
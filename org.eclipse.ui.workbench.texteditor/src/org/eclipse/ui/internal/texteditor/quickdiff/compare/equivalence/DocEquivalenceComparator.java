@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2009 IBM Corporation and others.
+ * Copyright (c) 2000, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -74,9 +74,7 @@ public final class DocEquivalenceComparator implements IRangeComparator {
 		if (other instanceof DocEquivalenceComparator) {
 			DocEquivalenceComparator dec= (DocEquivalenceComparator) other;
 			try {
-				Hash ourHash= getHash(thisIndex);
-				Hash otherHash= dec.getHash(otherIndex);
-				return ourHash.equals(otherHash);
+				return getHash(thisIndex) == dec.getHash(otherIndex);
 			} catch (ConcurrentModificationException e) {
 				fSkip= true;
 			} catch (IndexOutOfBoundsException e) {
@@ -86,7 +84,17 @@ public final class DocEquivalenceComparator implements IRangeComparator {
 		return false;
 	}
 
-	Hash getHash(int index) {
+	/**
+	 * Returns the equivalence hash of a line.
+	 *
+	 * @param index the number of the line within this range comparator
+	 * @return the hash of the line
+	 * @throws IndexOutOfBoundsException if <code>index</code> is not a legal line
+	 * @throws ConcurrentModificationException if the document is modified
+	 *         concurrently to this method call
+	 * @since 3.10
+	 */
+	public int getHash(int index) {
 		return fEquivalenceClass.getHash(fLineOffset + index);
 	}
 
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2005, 2015 IBM Corporation and others.
+ * Copyright (c) 2005, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -10,9 +10,7 @@
  *******************************************************************************/
 package org.eclipse.ui.internal.texteditor.quickdiff.compare.equivalence;
 
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.ConcurrentModificationException;
 
 import org.eclipse.core.runtime.Assert;
@@ -29,7 +27,21 @@ public final class DocumentEquivalenceClass {
 
 	private static final boolean DEBUG= false;
 
-	private final ArrayList<Hash> fHashes;
+	/** Marks a line whose hash has not been computed yet. */
+	private static final long UNKNOWN= Long.MIN_VALUE;
+	/** The minimal size of the gap in {@link #fHashes}. */
+	private static final int MIN_GAP_SIZE= 16;
+	/** The maximal number of lines hashed from one chunk of document text. */
+	private static final int MAX_CHUNK_LINES= 256;
+
+	/**
+	 * The line hashes, or {@link #UNKNOWN}. The array contains a gap between
+	 * <code>fGapStart</code> and <code>fGapEnd</code> so that lines can be inserted and
+	 * removed around the last modification without shifting all following lines.
+	 */
+	private long[] fHashes;
+	private int fGapStart;
+	private int fGapEnd;
 	private IDocument fDocument;
 	private final IHashFunction fHashFunction;
 
@@ -39,8 +51,11 @@ public final class DocumentEquivalenceClass {
 
 	public DocumentEquivalenceClass(IDocument document, IHashFunction hashFunction) {
 		fDocument= document;
-		Hash[] nulls= new Hash[fDocument.getNumberOfLines()];
-		fHashes= new ArrayList<>(Arrays.asList(nulls));
+		int lines= fDocument.getNumberOfLines();
+		fHashes= new long[lines + MIN_GAP_SIZE];
+		fGapStart= lines;
+		fGapEnd= fHashes.length;
+		Arrays.fill(fHashes, 0, lines, UNKNOWN);
 
 		if (hashFunction == null)
 			throw new NullPointerException("hashFunction"); //$NON-NLS-1$
@@ -58,7 +73,7 @@ public final class DocumentEquivalenceClass {
 	 * @throws ConcurrentModificationException if the document is
 	 *         modified concurrently to this method call
 	 */
-	public Hash getHash(int line) {
+	public int getHash(int line) {
 		try {
 			return internalGetHash(line);
 		} catch (BadLocationException x) {
@@ -66,19 +81,45 @@ public final class DocumentEquivalenceClass {
 		}
 	}
 
-	private Hash internalGetHash(int line) throws BadLocationException {
-		Hash hash= fHashes.get(line);
-		if (hash == null) {
+	private int internalGetHash(int line) throws BadLocationException {
+		if (line < 0 || line >= getCount())
+			throw new IndexOutOfBoundsException(Integer.toString(line));
+
+		long hash= fHashes[index(line)];
+		if (hash == UNKNOWN) {
 			if (fDocument == null)
 				throw new AssertionError("hash cannot be null after loadAndForget"); //$NON-NLS-1$
 
-			IRegion lineRegion= fDocument.getLineInformation(line);
-			String lineContents= fDocument.get(lineRegion.getOffset(), lineRegion.getLength());
-			hash= fHashFunction.computeHash(lineContents);
-			fHashes.set(line, hash);
+			computeHashes(line);
+			hash= fHashes[index(line)];
 		}
 
-		return hash;
+		return (int) hash;
+	}
+
+	/**
+	 * Computes the hashes of <code>line</code> and the following lines whose hashes are
+	 * unknown. The text of the lines is read with a single document access instead of
+	 * creating a string per line.
+	 *
+	 * @param line the first line to compute
+	 * @throws BadLocationException if the document has been modified concurrently
+	 */
+	private void computeHashes(int line) throws BadLocationException {
+		int end= line + 1;
+		int count= getCount();
+		while (end < count && end - line < MAX_CHUNK_LINES && fHashes[index(end)] == UNKNOWN)
+			end++;
+
+		int offset= fDocument.getLineOffset(line);
+		IRegion last= fDocument.getLineInformation(end - 1);
+		String text= fDocument.get(offset, last.getOffset() + last.getLength() - offset);
+
+		for (int i= line; i < end; i++) {
+			IRegion lineRegion= i == end - 1 ? last : fDocument.getLineInformation(i);
+			int start= lineRegion.getOffset() - offset;
+			fHashes[index(i)]= fHashFunction.computeHash(text, start, start + lineRegion.getLength());
+		}
 	}
 
 	/**
@@ -103,24 +144,73 @@ public final class DocumentEquivalenceClass {
 		String text= event.getText();
 		int linesAfter= (text == null ? 0 : fDocument.computeNumberOfLines(text)) + 1;
 		int firstLine= fDocument.getLineOfOffset(event.getOffset());
+		update(firstLine, linesBefore, linesAfter);
+	}
+
+	/**
+	 * Replaces the hashes of the given lines by unknown hashes. Unlike
+	 * {@link #update(DocumentEvent)} this does not access the document and can
+	 * therefore also be called after the document has been modified.
+	 *
+	 * @param firstLine the first replaced line
+	 * @param linesBefore the number of replaced lines
+	 * @param linesAfter the number of lines replacing them
+	 * @since 3.10
+	 */
+	public void update(int firstLine, int linesBefore, int linesAfter) {
+		if (fDocument == null)
+			throw new IllegalStateException("update must not be called after loadAndForget"); //$NON-NLS-1$
+		Assert.isTrue(firstLine >= 0 && linesBefore >= 0 && linesAfter >= 0);
+		Assert.isTrue(firstLine + linesBefore <= getCount());
+
+		moveGap(firstLine);
+		fGapEnd+= linesBefore;
+		if (fGapEnd - fGapStart < linesAfter)
+			growGap(linesAfter);
+		Arrays.fill(fHashes, fGapStart, fGapStart + linesAfter, UNKNOWN);
+		fGapStart+= linesAfter;
+	}
+
+	/**
+	 * Moves the gap so that it starts at the given line.
+	 *
+	 * @param line the line at which the gap should start
+	 */
+	private void moveGap(int line) {
+		int gapSize= fGapEnd - fGapStart;
+		if (line < fGapStart)
+			System.arraycopy(fHashes, line, fHashes, line + gapSize, fGapStart - line);
+		else if (line > fGapStart)
+			System.arraycopy(fHashes, fGapEnd, fHashes, fGapStart, line - fGapStart);
+		fGapStart= line;
+		fGapEnd= line + gapSize;
+	}
 
-		int delta= linesAfter - linesBefore;
-		int changed= Math.min(linesAfter, linesBefore);
+	/**
+	 * Reallocates the hashes so that the gap has at least the given size.
+	 *
+	 * @param minGapSize the minimal gap size
+	 */
+	private void growGap(int minGapSize) {
+		int count= getCount();
+		int gapSize= Math.max(minGapSize, Math.max(MIN_GAP_SIZE, count / 8));
+		long[] hashes= new long[count + gapSize];
+		int tail= fHashes.length - fGapEnd;
+		System.arraycopy(fHashes, 0, hashes, 0, fGapStart);
+		System.arraycopy(fHashes, fGapEnd, hashes, hashes.length - tail, tail);
+		fHashes= hashes;
+		fGapEnd= hashes.length - tail;
+	}
 
-		if (delta > 0) {
-			Hash[] nulls= new Hash[delta];
-			fHashes.addAll(firstLine + changed, Arrays.asList(nulls));
-		} else if (delta < 0) {
-			fHashes.subList(firstLine, firstLine - delta).clear();
-		}
-		Collections.fill(fHashes.subList(firstLine, firstLine + changed), null);
+	private int index(int line) {
+		return line < fGapStart ? line : line + fGapEnd - fGapStart;
 	}
 
 	/**
 	 * @return the number of items
 	 */
 	public int getCount() {
-		return fHashes.size();
+		return fHashes.length - (fGapEnd - fGapStart);
 	}
 
 	public void setDocument(IDocument document) {
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2005 IBM Corporation and others.
+ * Copyright (c) 2005, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -16,6 +16,16 @@ package org.eclipse.ui.internal.texteditor.quickdiff.compare.equivalence;
  */
 public interface IHashFunction {
 
-	Hash computeHash(CharSequence string);
+	/**
+	 * Computes the hash of a range of characters. Ranges containing the same characters
+	 * must have the same hash.
+	 *
+	 * @param sequence the characters
+	 * @param start the start index of the range, inclusive
+	 * @param end the end index of the range, exclusive
+	 * @return the hash of the range
+	 * @since 3.10
+	 */
+	int computeHash(CharSequence sequence, int start, int end);
 
 }
@@ -17,8 +17,12 @@ package org.eclipse.ui.internal.texteditor.quickdiff.compare.equivalence;
 public class SystemHashFunction implements IHashFunction {
 
 	@Override
-	public Hash computeHash(CharSequence seq) {
-		return new IntHash(seq.toString().hashCode());
+	public int computeHash(CharSequence seq, int start, int end) {
+		// same as String.hashCode()
+		int hash= 0;
+		for (int i= start; i < end; i++)
+			hash= 31 * hash + seq.charAt(i);
+		return hash;
 	}
 
 }